@@ -5,6 +5,8 @@ import Foundation
 public typealias TYPE_INT32 = Int32
 public typealias TYPE_BOOL = Bool
 public typealias TYPE_BYTES = Data
+public typealias TYPE_FLOAT = Float
+public typealias TYPE_DOUBLE = Double
 
 /// Type of proto field.
 public enum ProtoType: String, CaseIterable {
@@ -12,6 +14,8 @@ public enum ProtoType: String, CaseIterable {
     case int32 = "TYPE_INT32"
     case byte = "TYPE_BYTES"
     case bool = "TYPE_BOOL"
+    case float = "TYPE_FLOAT"
+    case double = "TYPE_DOUBLE"
 }
 
 // TODO(#67): Add support little endian encoding/decoding.
@@ -67,6 +71,51 @@ public class ProtoDecoder {
         }.pointee
     }
 
+    /// Decode data to unsigned integer in little endian byte order.
+    /// - parameter fromByte: starting byte.
+    /// - parameter toByte: ending byte, at most 8 bytes after the starting byte.
+    /// - parameter data: data from which need to convert.
+    /// - returns: converted value UInt64.
+    private class func decodeUInt64(fromByte: Int, toByte: Int, data: Data) -> UInt64 {
+        var result: UInt64 = 0
+        for index in (fromByte..<toByte).reversed() {
+            result = (result << 8) | UInt64(data[index])
+        }
+        return result
+    }
+
+    /// Convert IEEE 754 binary16 number to Float, the conversion is exact.
+    /// - parameter bits: binary16 number.
+    /// - returns: converted value Float.
+    class func float16ToFloat(bits: UInt16) -> Float {
+        let sign = UInt32(bits & 0x8000) << 16
+        let exponent = UInt32(bits >> 10) & 0x1F
+        let mantissa = UInt32(bits) & 0x3FF
+        if exponent == 0x1F {
+            return Float(bitPattern: sign | 0x7F80_0000 | (mantissa << 13))
+        }
+        if exponent == 0 {
+            let value = Float(mantissa) * Float(sign: .plus, exponent: -24, significand: 1)
+            return sign != 0 ? -value : value
+        }
+        return Float(bitPattern: sign | ((exponent - 15 + 127) << 23) | (mantissa << 13))
+    }
+
+    /// Decode IEEE 754 number of 2, 4 or 8 bytes to Double.
+    /// - parameter fromByte: starting byte.
+    /// - parameter toByte: ending byte.
+    /// - parameter data: data from which need to convert.
+    /// - returns: converted value Double.
+    private class func decodeIeee754(fromByte: Int, toByte: Int, data: Data) throws -> Double {
+        let bits = ProtoDecoder.decodeUInt64(fromByte: fromByte, toByte: toByte, data: data)
+        switch toByte - fromByte {
+        case 2: return Double(ProtoDecoder.float16ToFloat(bits: UInt16(truncatingIfNeeded: bits)))
+        case 4: return Double(Float(bitPattern: UInt32(truncatingIfNeeded: bits)))
+        case 8: return Double(bitPattern: bits)
+        default: throw ProtoParserErrors.wrongData
+        }
+    }
+
     /// Decode data to Bool.
     /// - parameter fromByte: starting byte.
     /// - parameter data: data from which need to convert.
@@ -104,14 +153,116 @@ public class ProtoDecoder {
                 throw ProtoParserErrors.wrongData
             }
             return ProtoDecoder.decodeBool(fromByte: from, data: data)
+        case .float:
+            return Float(try ProtoDecoder.decodeIeee754(fromByte: from, toByte: to, data: data))
+        case .double:
+            return try ProtoDecoder.decodeIeee754(fromByte: from, toByte: to, data: data)
         default:
             throw ProtoParserErrors.notSupportedType
         }
     }
+
+    /// Decode fixed-point field to its value.
+    /// - parameter data: data which need to be converted.
+    /// - parameter from: from byte inside data.
+    /// - parameter to: to byte, the field has 1 to 4 bytes.
+    /// - parameter scale: the value of one unit of the encoded integer.
+    /// - parameter offset: the value of the encoded integer 0.
+    /// - returns: integer * scale + offset.
+    public class func decodeFixedPoint(data: Data, from: Int, to: Int, scale: Double, offset: Double) throws -> Double {
+        if to > data.count || to - from < 1 || to - from > 4 {
+            throw ProtoParserErrors.wrongData
+        }
+        return Double(ProtoDecoder.decodeUInt64(fromByte: from, toByte: to, data: data)) * scale + offset
+    }
+
+    /// Decode length-prefixed field to its value.
+    /// - parameter data: data which need to be converted.
+    /// - parameter from: from byte inside data, the first byte of the length prefix.
+    /// - parameter to: to byte, the value has at most (to - from - lengthPrefixSize) bytes.
+    /// - parameter lengthPrefixSize: the number of bytes of the length prefix, from 1 to 4.
+    /// - returns: the value, or nil if the length or the value are not fully present in data.
+    public class func decodeLengthPrefixed(data: Data, from: Int, to: Int, lengthPrefixSize: Int) throws -> Data? {
+        if lengthPrefixSize < 1 || lengthPrefixSize > 4 || to - from <= lengthPrefixSize {
+            throw ProtoParserErrors.wrongData
+        }
+        let valueFrom = from + lengthPrefixSize
+        if valueFrom > data.count {
+            return nil
+        }
+        let size = Int(ProtoDecoder.decodeUInt64(fromByte: from, toByte: valueFrom, data: data))
+        if size > to - valueFrom {
+            throw ProtoParserErrors.wrongData
+        }
+        if valueFrom + size > data.count {
+            return nil
+        }
+        return data.subdata(in: valueFrom..<valueFrom + size)
+    }
 }
 
 /// Encoder bytes helper.
 public class ProtoEncoder {
+    /// Encode unsigned integer to data in little endian byte order.
+    /// - parameter value: value to convert.
+    /// - parameter count: the number of bytes.
+    /// - returns: converted Data.
+    private class func encodeUInt64(value: UInt64, count: Int) -> Data {
+        return Data((0..<count).map { UInt8(truncatingIfNeeded: value >> (8 * UInt64($0))) })
+    }
+
+    /// Convert Float to IEEE 754 binary16 number, rounding to the nearest even value.
+    /// - parameter value: value to convert.
+    /// - returns: binary16 number.
+    class func floatToFloat16(value: Float) -> UInt16 {
+        let bits = value.bitPattern
+        let sign = (bits >> 16) & 0x8000
+        let exponent = Int((bits >> 23) & 0xFF)
+        var mantissa = bits & 0x7F_FFFF
+        if exponent == 0xFF {
+            return UInt16(sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0))
+        }
+        let halfExponent = exponent - 127 + 15
+        if halfExponent >= 0x1F {
+            return UInt16(sign | 0x7C00)
+        }
+        var half: UInt32
+        let remainder: UInt32
+        let halfway: UInt32
+        if halfExponent <= 0 {
+            if halfExponent < -10 {
+                return UInt16(sign)
+            }
+            // Subnormal binary16 number, the implicit leading bit becomes explicit.
+            mantissa |= 0x80_0000
+            let shift = UInt32(14 - halfExponent)
+            half = mantissa >> shift
+            remainder = mantissa & ((1 << shift) - 1)
+            halfway = 1 << (shift - 1)
+        } else {
+            half = (UInt32(halfExponent) << 10) | (mantissa >> 13)
+            remainder = mantissa & 0x1FFF
+            halfway = 0x1000
+        }
+        if remainder > halfway || (remainder == halfway && half & 1 != 0) {
+            half += 1
+        }
+        return UInt16(sign | half)
+    }
+
+    /// Encode value to IEEE 754 number of 2, 4 or 8 bytes.
+    /// - parameter value: value to convert.
+    /// - parameter count: the number of bytes.
+    /// - returns: converted Data.
+    private class func encodeIeee754(value: Double, count: Int) throws -> Data {
+        switch count {
+        case 2: return ProtoEncoder.encodeUInt64(value: UInt64(ProtoEncoder.floatToFloat16(value: Float(value))), count: count)
+        case 4: return ProtoEncoder.encodeUInt64(value: UInt64(Float(value).bitPattern), count: count)
+        case 8: return ProtoEncoder.encodeUInt64(value: value.bitPattern, count: count)
+        default: throw ProtoParserErrors.wrongData
+        }
+    }
+
     /// Encode any object to data.
     /// - parameter object: any object to convert.
     /// - parameter from: from byte inside data.
@@ -143,8 +294,51 @@ public class ProtoEncoder {
             var valuePointer = object
             let data = NSData(bytes: &valuePointer, length: 1)
             return data as Data
+        case .float:
+            return try ProtoEncoder.encodeIeee754(value: Double(object as! Float), count: to - from)
+        case .double:
+            return try ProtoEncoder.encodeIeee754(value: object as! Double, count: to - from)
         default:
             throw ProtoParserErrors.notSupportedType
         }
     }
+
+    /// Encode value of fixed-point field to data.
+    /// - parameter value: value to convert.
+    /// - parameter from: from byte inside data.
+    /// - parameter to: to byte, the field has 1 to 4 bytes.
+    /// - parameter scale: the value of one unit of the encoded integer.
+    /// - parameter offset: the value of the encoded integer 0.
+    /// - returns: the integer nearest to (value - offset) / scale, converted to Data.
+    public class func encodeFixedPoint(value: Double, from: Int, to: Int, scale: Double, offset: Double) throws -> Data {
+        let count = to - from
+        if count < 1 || count > 4 {
+            throw ProtoParserErrors.wrongData
+        }
+        let units = (value - offset) / scale
+        let maxUnits = Double((UInt64(1) << UInt64(8 * count)) - 1)
+        if !(units > -0.5 && units < maxUnits + 0.5) {
+            throw ProtoParserErrors.wrongData
+        }
+        return ProtoEncoder.encodeUInt64(value: UInt64(units.rounded()), count: count)
+    }
+
+    /// Encode value of length-prefixed field to data.
+    /// - parameter value: value to convert.
+    /// - parameter from: from byte inside data, the first byte of the length prefix.
+    /// - parameter to: to byte, the value has at most (to - from - lengthPrefixSize) bytes.
+    /// - parameter lengthPrefixSize: the number of bytes of the length prefix, from 1 to 4.
+    /// - parameter trailing: the field ends the message, so the data ends right after the value.
+    /// - returns: the length and the value, padded with zeros to the end of the field if it is not trailing.
+    public class func encodeLengthPrefixed(value: Data, from: Int, to: Int, lengthPrefixSize: Int, trailing: Bool) throws -> Data {
+        if lengthPrefixSize < 1 || lengthPrefixSize > 4 || value.count > to - from - lengthPrefixSize {
+            throw ProtoParserErrors.wrongData
+        }
+        var data = ProtoEncoder.encodeUInt64(value: UInt64(value.count), count: lengthPrefixSize)
+        data.append(value)
+        if !trailing {
+            data.append(Data(count: to - from - data.count))
+        }
+        return data
+    }
 }
@@ -53,6 +53,48 @@ class ProtoParserTests: XCTestCase {
         expect { try ProtoDecoder.decode(data: Data.init(hex: "36172540"), from: 0, to: 10, type: .byte) as? Data }.to(throwError(ProtoParserErrors.wrongData))
     }
 
+    func testDecodeFloat16() throws {
+        let decoded = try ProtoDecoder.decode(data: Data.init(hex: "AA003EAA"), from: 1, to: 3, type: .float) as? Float
+        expect(decoded).to(equal(1.5))
+    }
+
+    func testDecodeFloat32() throws {
+        let decoded = try ProtoDecoder.decode(data: Data.init(hex: "0000AB42"), from: 0, to: 4, type: .float) as? Float
+        expect(decoded).to(equal(85.5))
+    }
+
+    func testDecodeDouble64() throws {
+        let decoded = try ProtoDecoder.decode(data: Data.init(hex: "0000000000C87240"), from: 0, to: 8, type: .double) as? Double
+        expect(decoded).to(equal(300.5))
+    }
+
+    func testDecodeFloatWrongSize() throws {
+        expect { try ProtoDecoder.decode(data: Data.init(hex: "0000AB"), from: 0, to: 3, type: .float) as? Float }.to(throwError(ProtoParserErrors.wrongData))
+    }
+
+    func testDecodeFixedPoint() throws {
+        let decoded = try ProtoDecoder.decodeFixedPoint(data: Data.init(hex: "0618"), from: 0, to: 2, scale: 0.01, offset: -40)
+        expect(decoded).to(beCloseTo(21.5))
+    }
+
+    func testDecodeFixedPointMoreThan4BytesFails() throws {
+        expect { try ProtoDecoder.decodeFixedPoint(data: Data.init(hex: "0618000000"), from: 0, to: 5, scale: 1, offset: 0) }.to(throwError(ProtoParserErrors.wrongData))
+    }
+
+    func testDecodeLengthPrefixed() throws {
+        let decoded = try ProtoDecoder.decodeLengthPrefixed(data: Data.init(hex: "0002ABCD"), from: 1, to: 5, lengthPrefixSize: 1)
+        expect(decoded).to(equal(Data.init(hex: "ABCD")))
+    }
+
+    func testDecodeLengthPrefixedShortData() throws {
+        let decoded = try ProtoDecoder.decodeLengthPrefixed(data: Data.init(hex: "0300AB"), from: 0, to: 6, lengthPrefixSize: 2)
+        expect(decoded).to(beNil())
+    }
+
+    func testDecodeLengthPrefixedTooLongFails() throws {
+        expect { try ProtoDecoder.decodeLengthPrefixed(data: Data.init(hex: "04ABCDEF01"), from: 0, to: 4, lengthPrefixSize: 1) }.to(throwError(ProtoParserErrors.wrongData))
+    }
+
     func testDecodeNilType() {
         expect { try ProtoDecoder.decode(data: Data.init(hex: "7BAAAAAA"), from: 0, to: 4, type: nil) as? Int32 }.to(throwError(ProtoParserErrors.notSupportedType))
     }
@@ -114,6 +156,53 @@ class ProtoParserTests: XCTestCase {
         expect { try ProtoEncoder.encode(object: Data(hex: "36172540"), from: 0, to: 15, type: .byte) }.to(throwError(ProtoParserErrors.wrongData))
     }
 
+    func testEncodeFloat16() throws {
+        let encoded = try ProtoEncoder.encode(object: Float(1.5), from: 0, to: 2, type: .float)
+        expect(encoded).to(equal(Data.init(hex: "003E")))
+    }
+
+    func testEncodeFloat16Rounding() throws {
+        let encoded = try ProtoEncoder.encode(object: Float(1) / 3, from: 0, to: 2, type: .float)
+        expect(encoded).to(equal(Data.init(hex: "5535")))
+    }
+
+    func testEncodeFloat32() throws {
+        let encoded = try ProtoEncoder.encode(object: Float(85.5), from: 0, to: 4, type: .float)
+        expect(encoded).to(equal(Data.init(hex: "0000AB42")))
+    }
+
+    func testEncodeDouble64() throws {
+        let encoded = try ProtoEncoder.encode(object: Double(300.5), from: 0, to: 8, type: .double)
+        expect(encoded).to(equal(Data.init(hex: "0000000000C87240")))
+    }
+
+    func testEncodeDoubleWrongSize() throws {
+        expect { try ProtoEncoder.encode(object: Double(300.5), from: 0, to: 3, type: .double) }.to(throwError(ProtoParserErrors.wrongData))
+    }
+
+    func testEncodeFixedPoint() throws {
+        let encoded = try ProtoEncoder.encodeFixedPoint(value: 21.5, from: 0, to: 2, scale: 0.01, offset: -40)
+        expect(encoded).to(equal(Data.init(hex: "0618")))
+    }
+
+    func testEncodeFixedPointValueDoesNotFit() throws {
+        expect { try ProtoEncoder.encodeFixedPoint(value: -41, from: 0, to: 2, scale: 0.01, offset: -40) }.to(throwError(ProtoParserErrors.wrongData))
+    }
+
+    func testEncodeLengthPrefixed() throws {
+        let encoded = try ProtoEncoder.encodeLengthPrefixed(value: Data.init(hex: "ABCD"), from: 0, to: 5, lengthPrefixSize: 1, trailing: false)
+        expect(encoded).to(equal(Data.init(hex: "02ABCD0000")))
+    }
+
+    func testEncodeLengthPrefixedTrailing() throws {
+        let encoded = try ProtoEncoder.encodeLengthPrefixed(value: Data.init(hex: "ABCD"), from: 0, to: 6, lengthPrefixSize: 2, trailing: true)
+        expect(encoded).to(equal(Data.init(hex: "0200ABCD")))
+    }
+
+    func testEncodeLengthPrefixedTooLongFails() throws {
+        expect { try ProtoEncoder.encodeLengthPrefixed(value: Data.init(hex: "ABCDEF"), from: 0, to: 3, lengthPrefixSize: 1, trailing: true) }.to(throwError(ProtoParserErrors.wrongData))
+    }
+
     func testEncodeWrongType() {
         expect { try ProtoEncoder.encode(object: 123, from: 0, to: 4, type: .unknown) }.to(throwError(ProtoParserErrors.notSupportedType))
     }
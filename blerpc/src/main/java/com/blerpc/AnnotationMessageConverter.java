@@ -5,8 +5,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import com.blerpc.proto.Blerpc;
 import com.blerpc.proto.ByteOrder;
 import com.blerpc.proto.FieldExtension;
+import com.blerpc.proto.FloatEncoding;
 import com.blerpc.proto.MessageExtension;
 import com.google.common.base.Optional;
+import com.google.common.base.Utf8;
 import com.google.common.math.LongMath;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors.Descriptor;
@@ -16,15 +18,24 @@ import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Message;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Message converter that serialize/deserialize proto message to byte array based on byte range descriptions in annotations.
+ *
+ * <p>The annotations of a message type are validated and compiled into a {@link CodecPlan} with absolute byte ranges and
+ * resolved byte orders the first time the type is converted. The plan is reused for all later messages of the type.
  */
 public class AnnotationMessageConverter implements MessageConverter {
 
   private final ByteOrder defaultByteOrder;
+  private final ConcurrentHashMap<Descriptor, CodecPlan> plans = new ConcurrentHashMap<>();
 
   /**
    * Create {@link AnnotationMessageConverter} instance for big endian byte order.
@@ -47,260 +58,590 @@ public class AnnotationMessageConverter implements MessageConverter {
   @Override
   public byte[] serializeRequest(MethodDescriptor methodDescriptor, Message message) {
     checkHasExtension(message);
+    ByteBuffer buffer = ByteBuffer.allocate(getSerializedSize(message));
+    serializeRequest(methodDescriptor, message, Integer.MAX_VALUE, buffer);
+    return buffer.array();
+  }
+
+  @Override
+  public void serializeRequest(MethodDescriptor methodDescriptor, Message message, int maxPayloadSize,
+      ByteBuffer buffer) {
+    checkHasExtension(message);
+    int messageBytesSize = getSerializedSize(message);
+    if (buffer.remaining() < messageBytesSize) {
+      throw new BufferOverflowException();
+    }
+    if (messageBytesSize == 0) {
+      return;
+    }
+    CodecPlan plan = getPlan(message);
+    // Fields are written at absolute indexes relative to the start of the message, so that nothing is allocated.
+    int offset = buffer.position();
+    // The buffer can be reused, so bytes of unset fields and gaps between fields are cleared.
+    for (int i = 0; i < messageBytesSize; i++) {
+      buffer.put(offset + i, (byte) 0);
+    }
+    serializeMessage(buffer, offset, message, plan);
+    buffer.position(offset + messageBytesSize);
+  }
+
+  // A message with a trailing field ends right after the value of the field. A value that doesn't fit into the field
+  // fails later, when it is serialized.
+  private int getSerializedSize(Message message) {
     int messageBytesSize = getMessageExtension(message).getSizeBytes();
     if (messageBytesSize == 0) {
-      return new byte[0];
-    }
-    byte[] requestBytes = new byte[messageBytesSize];
-    serializeMessage(requestBytes, message, FieldExtension.newBuilder()
-        .setFromByte(0)
-        .setToByte(messageBytesSize)
-        .setByteOrder(defaultByteOrder)
-        .build(), false);
-    return requestBytes;
-  }
-
-  private void serializeMessage(byte[] requestBytes,
-                                Message message,
-                                FieldExtension messageFieldExtension,
-                                boolean useFieldByteOrder) {
-    validateMessageSchema(message, messageFieldExtension);
-    for (Map.Entry<FieldDescriptor, Object> entry : message.getAllFields().entrySet()) {
-      FieldDescriptor fieldDescriptor = entry.getKey();
-      Object fieldValue = entry.getValue();
-      String fieldName = fieldDescriptor.getName();
-      @SuppressWarnings("OptionalGetWithoutIsPresent") // absent value is impossible here
-      FieldExtension relativeBytesRangeFieldExtension =
-          getRelativeBytesRangeFieldExtension(
-                  messageFieldExtension,
-                  Optional.absent(),
-                  fieldDescriptor,
-                  message,
-                  useFieldByteOrder)
-              .get();
+      return 0;
+    }
+    CodecPlan plan = getPlan(message);
+    int index = plan.trailingField;
+    if (index < 0) {
+      return messageBytesSize;
+    }
+    Object fieldValue = message.getField(plan.fields[index]);
+    int valueSize = plan.types[index].equals(JavaType.STRING)
+        ? Utf8.encodedLength((String) fieldValue)
+        : ((ByteString) fieldValue).size();
+    return Math.min(plan.fromBytes[index] + plan.lengthPrefixSizes[index] + valueSize, messageBytesSize);
+  }
 
-      JavaType fieldType = fieldDescriptor.getType().getJavaType();
-      switch (fieldType) {
-        case MESSAGE:
-          serializeMessage(requestBytes, (Message) fieldValue, relativeBytesRangeFieldExtension, hasByteOrder(fieldDescriptor));
-          break;
-        case INT:
-          serializeInt(requestBytes, (Integer) fieldValue, relativeBytesRangeFieldExtension, fieldName);
-          break;
-        case LONG:
-          serializeLong(requestBytes, (Long) fieldValue, relativeBytesRangeFieldExtension, fieldName);
-          break;
-        case ENUM:
-          serializeEnum(requestBytes, (EnumValueDescriptor) fieldValue, relativeBytesRangeFieldExtension, fieldName);
-          break;
-        case BOOLEAN:
-          serializeBoolean(requestBytes, (Boolean) fieldValue, relativeBytesRangeFieldExtension, fieldName);
-          break;
-        case BYTE_STRING:
-          serializeByteString(requestBytes, (ByteString) fieldValue, relativeBytesRangeFieldExtension, fieldName);
-          break;
-        // TODO(#5): Add support of String, Float and Double.
-        default:
-          throw new IllegalArgumentException(String.format("Unsupported field type: %s, field name: %s",
-              fieldType.name(),
-              fieldName));
+  private void serializeMessage(ByteBuffer requestBytes, int offset, Message message, CodecPlan plan) {
+    for (int i = 0; i < plan.fields.length; i++) {
+      FieldDescriptor fieldDescriptor = plan.fields[i];
+      if (plan.repeated[i]) {
+        serializeRepeatedField(requestBytes, offset, message, plan, i);
+        continue;
       }
+      // A fixed-point zero is not encoded by zero bytes when the field has an offset.
+      if (!message.hasField(fieldDescriptor) && !plan.fixedPoint[i]) {
+        continue;
+      }
+      Object fieldValue = message.getField(fieldDescriptor);
+      if (plan.bitFields[i]) {
+        serializeBits(requestBytes, bitFieldValue(fieldValue, plan, i), 8 * offset + plan.fromBits[i],
+            8 * offset + plan.toBits[i]);
+        continue;
+      }
+      serializeValue(requestBytes, offset, fieldValue, plan, i);
     }
   }
 
-  private void serializeInt(byte[] messageBytes, int fieldValue, FieldExtension fieldExtension, String fieldName) {
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
-    checkArgument(bytesSize <= 4,
-        "Int32 field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
-        fieldName,
-        bytesSize);
-    serializeLong(messageBytes, fieldValue, fieldExtension, fieldName);
+  // Element k of a repeated field is written like a single value of a message that starts k elements later.
+  private void serializeRepeatedField(ByteBuffer requestBytes, int offset, Message message, CodecPlan plan, int index) {
+    FieldDescriptor fieldDescriptor = plan.fields[index];
+    int elementSize = plan.elementSizes[index];
+    int count = message.getRepeatedFieldCount(fieldDescriptor);
+    int capacity = (plan.toBytes[index] - plan.fromBytes[index]) / elementSize;
+    checkArgument(count <= capacity,
+        "Repeated field %s has %s elements, but only %s fit into its bytes range",
+        fieldDescriptor.getName(),
+        count,
+        capacity);
+    for (int k = 0; k < count; k++) {
+      serializeValue(requestBytes, offset + k * elementSize, message.getRepeatedField(fieldDescriptor, k), plan, index);
+    }
   }
 
-  private void serializeLong(byte[] messageBytes, long fieldValue, FieldExtension fieldExtension, String fieldName) {
-    int firstByte = fieldExtension.getFromByte();
-    int bytesCount = fieldExtension.getToByte() - firstByte;
-    checkArgument(bytesCount <= 8,
-        "Int64 field %s has unsupported size %s. Only sizes in [1, 8] are supported.",
-        fieldName,
-        bytesCount);
-    if (fieldExtension.getByteOrder().equals(ByteOrder.BIG_ENDIAN)) {
+  private void serializeValue(ByteBuffer requestBytes, int offset, Object fieldValue, CodecPlan plan, int i) {
+    FieldDescriptor fieldDescriptor = plan.fields[i];
+    int firstByte = offset + plan.fromBytes[i];
+    int bytesCount = plan.elementSizes[i];
+    switch (plan.types[i]) {
+      case MESSAGE:
+        serializeMessage(requestBytes, offset, (Message) fieldValue, plan.messagePlans[i]);
+        break;
+      case INT:
+        serializeLong(requestBytes, (Integer) fieldValue, firstByte, bytesCount, plan.bigEndian[i]);
+        break;
+      case LONG:
+        serializeLong(requestBytes, (Long) fieldValue, firstByte, bytesCount, plan.bigEndian[i]);
+        break;
+      case ENUM:
+        checkArgument(plan.enumRangeErrors[i] == null, plan.enumRangeErrors[i]);
+        serializeLong(requestBytes, ((EnumValueDescriptor) fieldValue).getNumber(), firstByte, bytesCount,
+            plan.bigEndian[i]);
+        break;
+      case BOOLEAN:
+        requestBytes.put(firstByte, (Boolean) fieldValue ? (byte) 1 : (byte) 0);
+        break;
+      case BYTE_STRING:
+        if (plan.lengthPrefixSizes[i] > 0) {
+          serializeLengthPrefixed(requestBytes, (ByteString) fieldValue, firstByte, plan, i);
+        } else {
+          serializeByteString(requestBytes, (ByteString) fieldValue, firstByte, bytesCount, fieldDescriptor.getName());
+        }
+        break;
+      case STRING:
+        serializeLengthPrefixed(requestBytes, ByteString.copyFromUtf8((String) fieldValue), firstByte, plan, i);
+        break;
+      case FLOAT:
+      case DOUBLE:
+        serializeLong(requestBytes, encodeFloat(((Number) fieldValue).doubleValue(), plan, i), firstByte, bytesCount,
+            plan.bigEndian[i]);
+        break;
+      default:
+        throw new IllegalStateException("Codec plan has unsupported field " + fieldDescriptor.getName());
+    }
+  }
+
+  private static void serializeLong(ByteBuffer messageBytes, long fieldValue, int firstByte, int bytesCount,
+      boolean bigEndian) {
+    if (bigEndian) {
       for (int i = 0; i < bytesCount; i++) {
-        messageBytes[firstByte + i] = (byte) (fieldValue >> (8 * (bytesCount - i - 1)));
+        messageBytes.put(firstByte + i, (byte) (fieldValue >> (8 * (bytesCount - i - 1))));
       }
     } else {
       for (int i = 0; i < bytesCount; i++) {
-        messageBytes[firstByte + i] = (byte) (fieldValue >> (8 * i));
+        messageBytes.put(firstByte + i, (byte) (fieldValue >> (8 * i)));
       }
     }
   }
 
-  private void serializeBoolean(byte[] messageBytes, boolean fieldValue, FieldExtension fieldExtension, String fieldName) {
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
-    checkArgument(bytesSize == 1,
-        "Boolean field %s has unsupported size %s. Only sizes 1 are supported.",
-        fieldName,
-        bytesSize);
-    messageBytes[fieldExtension.getFromByte()] = fieldValue ? (byte) 1 : (byte) 0;
+  private static long bitFieldValue(Object fieldValue, CodecPlan plan, int index) {
+    switch (plan.types[index]) {
+      case INT:
+        return (Integer) fieldValue;
+      case LONG:
+        return (Long) fieldValue;
+      case ENUM:
+        checkArgument(plan.enumRangeErrors[index] == null, plan.enumRangeErrors[index]);
+        return ((EnumValueDescriptor) fieldValue).getNumber();
+      case BOOLEAN:
+        return (Boolean) fieldValue ? 1 : 0;
+      default:
+        throw new IllegalStateException("Codec plan has unsupported bit field " + plan.fields[index].getName());
+    }
   }
 
-  private void serializeByteString(byte[] messageBytes, ByteString byteString, FieldExtension fieldExtension, String fieldName) {
-    // TODO(#5): support for variable-length byte strings.
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
+  // Bits are numbered from the least significant bit of the first byte, the bytes of a field are read as one little
+  // endian word, so that the value is inserted with one mask and one shift.
+  private static void serializeBits(ByteBuffer messageBytes, long fieldValue, int firstBit, int lastBit) {
+    int firstByte = firstBit >>> 3;
+    int bytesCount = ((lastBit - 1) >>> 3) - firstByte + 1;
+    int shift = firstBit & 7;
+    long mask = ((1L << (lastBit - firstBit)) - 1) << shift;
+    long word = deserializeLong(messageBytes, firstByte, firstByte + bytesCount, false);
+    serializeLong(messageBytes, (word & ~mask) | ((fieldValue << shift) & mask), firstByte, bytesCount, false);
+  }
+
+  private static long deserializeBits(ByteBuffer bytes, int firstBit, int lastBit) {
+    int firstByte = firstBit >>> 3;
+    long word = deserializeLong(bytes, firstByte, ((lastBit - 1) >>> 3) + 1, false);
+    return (word >>> (firstBit & 7)) & ((1L << (lastBit - firstBit)) - 1);
+  }
+
+  private static long encodeFloat(double value, CodecPlan plan, int index) {
+    int bytesCount = plan.elementSizes[index];
+    if (plan.fixedPoint[index]) {
+      return FloatEncodings.toFixedPoint(value, plan.scales[index], plan.offsets[index], bytesCount,
+          plan.fields[index].getName());
+    }
+    switch (bytesCount) {
+      case 2:
+        return FloatEncodings.floatToFloat16((float) value);
+      case 4:
+        return Float.floatToRawIntBits((float) value);
+      default:
+        return Double.doubleToRawLongBits(value);
+    }
+  }
+
+  private static double decodeFloat(long bits, CodecPlan plan, int index) {
+    if (plan.fixedPoint[index]) {
+      return FloatEncodings.fromFixedPoint(bits, plan.scales[index], plan.offsets[index]);
+    }
+    switch (plan.elementSizes[index]) {
+      case 2:
+        return FloatEncodings.float16ToFloat((int) bits);
+      case 4:
+        return Float.intBitsToFloat((int) bits);
+      default:
+        return Double.longBitsToDouble(bits);
+    }
+  }
+
+  private static void serializeByteString(ByteBuffer messageBytes, ByteString byteString, int firstByte,
+      int bytesSize, String fieldName) {
     checkArgument(bytesSize == byteString.size(),
         "Declared size %s of ByteString %s is not equal to ByteString real size %s",
         bytesSize,
         fieldName,
         byteString.size());
-    byteString.copyTo(messageBytes, fieldExtension.getFromByte());
+    for (int i = 0; i < bytesSize; i++) {
+      messageBytes.put(firstByte + i, byteString.byteAt(i));
+    }
   }
 
-  private void serializeEnum(byte[] messageBytes, EnumValueDescriptor enumDescriptor, FieldExtension fieldExtension, String fieldName) {
-    checkEnumBytesRangeValid(enumDescriptor.getType(), fieldExtension, fieldName);
-    checkBytesRangeEnoughForEnum(enumDescriptor, fieldExtension);
-    serializeLong(messageBytes, enumDescriptor.getNumber(), fieldExtension, fieldName);
+  private static void serializeLengthPrefixed(ByteBuffer messageBytes, ByteString value, int firstByte, CodecPlan plan,
+      int index) {
+    int prefixSize = plan.lengthPrefixSizes[index];
+    checkArgument(value.size() <= plan.elementSizes[index] - prefixSize,
+        "Value of field %s has %s bytes, but at most %s fit into its bytes range",
+        plan.fields[index].getName(),
+        value.size(),
+        plan.elementSizes[index] - prefixSize);
+    serializeLong(messageBytes, value.size(), firstByte, prefixSize, plan.bigEndian[index]);
+    for (int i = 0; i < value.size(); i++) {
+      messageBytes.put(firstByte + prefixSize + i, value.byteAt(i));
+    }
   }
 
   @Override
   public Message deserializeResponse(MethodDescriptor methodDescriptor, Message message, byte[] value) {
-    if (value.length == 0) {
+    return deserializeResponse(methodDescriptor, message, ByteBuffer.wrap(value));
+  }
+
+  @Override
+  public Message deserializeResponse(MethodDescriptor methodDescriptor, Message message, ByteBuffer value) {
+    if (!value.hasRemaining()) {
       return message.getDefaultInstanceForType();
     }
     checkHasExtension(message);
-    int messageBytesSize = getMessageExtension(message).getSizeBytes();
-    return deserializeMessage(message, value, FieldExtension.newBuilder()
-        .setFromByte(0)
-        .setToByte(messageBytesSize)
-        .setByteOrder(defaultByteOrder)
-        .build(), false);
-  }
-
-  private Message deserializeMessage(Message message,
-                                     byte[] value,
-                                     FieldExtension messageFieldExtension,
-                                     boolean useFieldByteOrder) {
-    validateMessageSchema(message, messageFieldExtension);
+    // Fields are read at absolute indexes relative to the start of the value.
+    return deserializeMessage(message, value.slice(), 0, getPlan(message));
+  }
+
+  private Message deserializeMessage(Message message, ByteBuffer value, int offset, CodecPlan plan) {
+    int valueSize = value.limit();
     Message.Builder messageBuilder = message.toBuilder();
-    for (FieldDescriptor fieldDescriptor : message.getDescriptorForType().getFields()) {
-      Optional<FieldExtension> relativeBytesRangeFieldExtensionOptional =
-          getRelativeBytesRangeFieldExtension(
-              messageFieldExtension,
-              Optional.of(value.length),
-              fieldDescriptor,
-              message,
-              useFieldByteOrder);
-      if (!relativeBytesRangeFieldExtensionOptional.isPresent()) {
+    for (int i = 0; i < plan.fields.length; i++) {
+      FieldDescriptor fieldDescriptor = plan.fields[i];
+      if (plan.repeated[i]) {
+        deserializeRepeatedField(messageBuilder, value, offset, plan, i);
         continue;
       }
+      if (plan.lengthPrefixSizes[i] > 0) {
+        deserializeLengthPrefixedField(messageBuilder, value, offset, plan, i);
+        continue;
+      }
+      // Fields that are not fully present in a short value are skipped.
+      if (offset + plan.toBytes[i] > valueSize) {
+        continue;
+      }
+      if (plan.bitFields[i]) {
+        long bits = deserializeBits(value, 8 * offset + plan.fromBits[i], 8 * offset + plan.toBits[i]);
+        switch (plan.types[i]) {
+          case INT:
+            messageBuilder.setField(fieldDescriptor, (int) bits);
+            break;
+          case LONG:
+            messageBuilder.setField(fieldDescriptor, bits);
+            break;
+          case ENUM:
+            messageBuilder.setField(fieldDescriptor, fieldDescriptor.getEnumType().findValueByNumber((int) bits));
+            break;
+          default:
+            messageBuilder.setField(fieldDescriptor, bits != 0);
+            break;
+        }
+        continue;
+      }
+      Message prototype = plan.types[i].equals(JavaType.MESSAGE) ? (Message) message.getField(fieldDescriptor) : null;
+      messageBuilder.setField(fieldDescriptor, deserializeValue(value, offset, prototype, plan, i));
+    }
+    return messageBuilder.build();
+  }
 
-      FieldExtension relativeBytesRangeFieldExtension =
-          relativeBytesRangeFieldExtensionOptional.get();
+  // The number of elements is computed once, then every element that is present is read without further checks.
+  private void deserializeRepeatedField(Message.Builder messageBuilder, ByteBuffer value, int offset, CodecPlan plan,
+      int index) {
+    FieldDescriptor fieldDescriptor = plan.fields[index];
+    int elementSize = plan.elementSizes[index];
+    int firstByte = offset + plan.fromBytes[index];
+    long count = Math.min((plan.toBytes[index] - plan.fromBytes[index]) / elementSize,
+        Math.max(0, value.limit() - firstByte) / elementSize);
+    int countField = plan.countFields[index];
+    if (countField >= 0) {
+      count = offset + plan.toBytes[countField] > value.limit()
+          ? 0
+          : Math.min(count, deserializeLong(value, offset + plan.fromBytes[countField], offset + plan.toBytes[countField],
+              plan.bigEndian[countField]));
+    }
+    Message prototype = plan.types[index].equals(JavaType.MESSAGE)
+        ? messageBuilder.newBuilderForField(fieldDescriptor).getDefaultInstanceForType()
+        : null;
+    for (int k = 0; k < count; k++) {
+      messageBuilder.addRepeatedField(fieldDescriptor,
+          deserializeValue(value, offset + k * elementSize, prototype, plan, index));
+    }
+  }
+
+  // A length-prefixed field is read if its prefix and its value are present, so that a trailing field ends the value.
+  private static void deserializeLengthPrefixedField(Message.Builder messageBuilder, ByteBuffer value, int offset,
+      CodecPlan plan, int index) {
+    int prefixSize = plan.lengthPrefixSizes[index];
+    int firstByte = offset + plan.fromBytes[index] + prefixSize;
+    if (firstByte > value.limit()) {
+      return;
+    }
+    long valueSize = deserializeLong(value, firstByte - prefixSize, firstByte, plan.bigEndian[index]);
+    checkArgument(valueSize <= plan.elementSizes[index] - prefixSize,
+        "Value of field %s has %s bytes, but at most %s fit into its bytes range",
+        plan.fields[index].getName(),
+        valueSize,
+        plan.elementSizes[index] - prefixSize);
+    if (firstByte + valueSize > value.limit()) {
+      return;
+    }
+    ByteString bytes = deserializeByteString(value, firstByte, firstByte + (int) valueSize);
+    messageBuilder.setField(plan.fields[index],
+        plan.types[index].equals(JavaType.STRING) ? bytes.toStringUtf8() : bytes);
+  }
+
+  // The prototype is the default instance of a MESSAGE field and null for other fields.
+  private Object deserializeValue(ByteBuffer value, int offset, Message prototype, CodecPlan plan, int i) {
+    int firstByte = offset + plan.fromBytes[i];
+    int lastByte = firstByte + plan.elementSizes[i];
+    switch (plan.types[i]) {
+      case MESSAGE:
+        return deserializeMessage(prototype, value, offset, plan.messagePlans[i]);
+      case INT:
+        return (int) deserializeLong(value, firstByte, lastByte, plan.bigEndian[i]);
+      case LONG:
+        return deserializeLong(value, firstByte, lastByte, plan.bigEndian[i]);
+      case ENUM:
+        return plan.fields[i].getEnumType()
+            .findValueByNumber((int) deserializeLong(value, firstByte, lastByte, plan.bigEndian[i]));
+      case BOOLEAN:
+        return value.get(firstByte) != 0;
+      case BYTE_STRING:
+        return deserializeByteString(value, firstByte, lastByte);
+      case FLOAT:
+        return (float) decodeFloat(deserializeLong(value, firstByte, lastByte, plan.bigEndian[i]), plan, i);
+      case DOUBLE:
+        return decodeFloat(deserializeLong(value, firstByte, lastByte, plan.bigEndian[i]), plan, i);
+      default:
+        throw new IllegalStateException("Codec plan has unsupported field " + plan.fields[i].getName());
+    }
+  }
+
+  private static long deserializeLong(ByteBuffer bytes, int firstByte, int lastByte, boolean bigEndian) {
+    long result = 0;
+    if (bigEndian) {
+      for (int i = firstByte; i < lastByte; i++) {
+        result <<= 8;
+        result |= bytes.get(i) & 0xFF;
+      }
+    } else {
+      for (int i = lastByte; i > firstByte; i--) {
+        result <<= 8;
+        result |= bytes.get(i - 1) & 0xFF;
+      }
+    }
+    return result;
+  }
+
+  private static ByteString deserializeByteString(ByteBuffer bytes, int firstByte, int lastByte) {
+    ByteBuffer fieldBytes = bytes.duplicate();
+    fieldBytes.position(firstByte);
+    return ByteString.copyFrom(fieldBytes, lastByte - firstByte);
+  }
+
+  private CodecPlan getPlan(Message message) {
+    Descriptor descriptor = message.getDescriptorForType();
+    CodecPlan plan = plans.get(descriptor);
+    if (plan == null) {
+      // A message type that fails validation is not cached and fails again on the next call.
+      plan = compileMessage(descriptor, FieldExtension.newBuilder()
+          .setFromByte(0)
+          .setToByte(getMessageExtension(descriptor).getSizeBytes())
+          .setByteOrder(defaultByteOrder)
+          .build(), false);
+      plans.put(descriptor, plan);
+    }
+    return plan;
+  }
+
+  private static CodecPlan compileMessage(Descriptor descriptor,
+                                          FieldExtension messageFieldExtension,
+                                          boolean useFieldByteOrder) {
+    validateMessageSchema(descriptor, messageFieldExtension);
+    List<FieldDescriptor> fields = descriptor.getFields();
+    CodecPlan plan = new CodecPlan(fields.size());
+    for (int i = 0; i < fields.size(); i++) {
+      FieldDescriptor fieldDescriptor = fields.get(i);
       String fieldName = fieldDescriptor.getName();
+      FieldExtension relativeBytesRangeFieldExtension =
+          getRelativeBytesRangeFieldExtension(messageFieldExtension, fieldDescriptor, descriptor, useFieldByteOrder);
+      int bytesSize = relativeBytesRangeFieldExtension.getToByte() - relativeBytesRangeFieldExtension.getFromByte();
       JavaType fieldType = fieldDescriptor.getType().getJavaType();
+      if (isBitField(relativeBytesRangeFieldExtension)) {
+        compileBitField(plan, i, fieldDescriptor, relativeBytesRangeFieldExtension);
+        continue;
+      }
+      // A repeated field is compiled as its first element, element k is k element sizes later.
+      FieldExtension elementFieldExtension = relativeBytesRangeFieldExtension;
+      if (fieldDescriptor.isRepeated()) {
+        checkArgument(!fieldType.equals(JavaType.BYTE_STRING),
+            "Unsupported repeated field type: %s, field name: %s",
+            fieldType.name(),
+            fieldName);
+        bytesSize = getFieldExtension(fieldDescriptor).getElementSize();
+        elementFieldExtension = relativeBytesRangeFieldExtension.toBuilder()
+            .setToByte(relativeBytesRangeFieldExtension.getFromByte() + bytesSize)
+            .build();
+      }
       switch (fieldType) {
         case MESSAGE:
-          messageBuilder.setField(fieldDescriptor, deserializeMessage((Message) message.getField(fieldDescriptor),
-              value,
-              relativeBytesRangeFieldExtension,
-              hasByteOrder(fieldDescriptor)));
+          plan.messagePlans[i] = compileMessage(fieldDescriptor.getMessageType(), elementFieldExtension,
+              hasByteOrder(fieldDescriptor));
           break;
         case INT:
-          messageBuilder.setField(fieldDescriptor, deserializeInt(value, relativeBytesRangeFieldExtension, fieldName));
+          checkArgument(bytesSize <= 4,
+              "Int32 field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
+              fieldName,
+              bytesSize);
           break;
         case LONG:
-          messageBuilder.setField(fieldDescriptor, deserializeLong(value, relativeBytesRangeFieldExtension, fieldName));
+          checkArgument(bytesSize <= 8,
+              "Int64 field %s has unsupported size %s. Only sizes in [1, 8] are supported.",
+              fieldName,
+              bytesSize);
           break;
         case ENUM:
-          messageBuilder.setField(fieldDescriptor, deserializeEnum(value, fieldDescriptor, relativeBytesRangeFieldExtension));
+          checkEnumBytesRangeValid(fieldDescriptor.getEnumType(), bytesSize, fieldName);
+          plan.enumRangeErrors[i] = getEnumRangeError(fieldDescriptor.getEnumType(), bytesSize).orNull();
           break;
         case BOOLEAN:
-          messageBuilder.setField(fieldDescriptor, deserializeBoolean(value, relativeBytesRangeFieldExtension, fieldName));
+          checkArgument(bytesSize == 1,
+              "Boolean field %s has unsupported size %s. Only sizes 1 are supported.",
+              fieldName,
+              bytesSize);
           break;
         case BYTE_STRING:
-          messageBuilder.setField(fieldDescriptor, deserializeByteString(value, relativeBytesRangeFieldExtension));
           break;
-        // TODO(#5): Add support of String, Float and Double.
+        case STRING:
+          // Strings have a variable size, only length-prefixed strings are supported.
+          checkArgument(getFieldExtension(fieldDescriptor).getLengthPrefixSize() > 0,
+              "Unsupported field type: %s, field name: %s",
+              fieldType.name(),
+              fieldName);
+          break;
+        case FLOAT:
+        case DOUBLE:
+          FieldExtension fieldExtension = getFieldExtension(fieldDescriptor);
+          checkFloatBytesRangeValid(fieldExtension, fieldType, bytesSize, fieldName);
+          plan.fixedPoint[i] = fieldExtension.getFloatEncoding().equals(FloatEncoding.FIXED_POINT);
+          plan.scales[i] = fieldExtension.getScale();
+          plan.offsets[i] = fieldExtension.getOffset();
+          break;
         default:
           throw new IllegalArgumentException(String.format("Unsupported field type: %s, field name: %s",
               fieldType.name(),
               fieldName));
       }
-    }
-    return messageBuilder.build();
-  }
-
-  private int deserializeInt(byte[] bytes, FieldExtension fieldExtension, String fieldName) {
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
-    checkArgument(bytesSize <= 4,
-        "Int32 field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
-        fieldName,
-        bytesSize);
-    return (int) deserializeLong(bytes, fieldExtension, fieldName);
-  }
-
-  private long deserializeLong(byte[] bytes, FieldExtension fieldExtension, String fieldName) {
-    int firstByte = fieldExtension.getFromByte();
-    int lastByte = fieldExtension.getToByte();
-    int bytesSize = lastByte - firstByte;
-    checkArgument(bytesSize <= 8,
-        "Int64 field %s has unsupported size %s. Only sizes in [1, 8] are supported.",
-        fieldName,
-        bytesSize);
-
-    long result = 0;
-    if (fieldExtension.getByteOrder().equals(ByteOrder.BIG_ENDIAN)) {
-      for (int i = firstByte; i < lastByte; i++) {
-        result <<= 8;
-        result |= bytes[i] & 0xFF;
+      plan.fields[i] = fieldDescriptor;
+      plan.types[i] = fieldType;
+      plan.fromBytes[i] = relativeBytesRangeFieldExtension.getFromByte();
+      plan.toBytes[i] = relativeBytesRangeFieldExtension.getToByte();
+      plan.bigEndian[i] = relativeBytesRangeFieldExtension.getByteOrder().equals(ByteOrder.BIG_ENDIAN);
+      plan.repeated[i] = fieldDescriptor.isRepeated();
+      plan.elementSizes[i] = bytesSize;
+      String countField = getFieldExtension(fieldDescriptor).getCountField();
+      if (!countField.isEmpty()) {
+        plan.countFields[i] = descriptor.findFieldByName(countField).getIndex();
       }
-    } else {
-      for (int i = lastByte; i > firstByte; i--) {
-        result <<= 8;
-        result |= bytes[i - 1] & 0xFF;
+      plan.lengthPrefixSizes[i] = getFieldExtension(fieldDescriptor).getLengthPrefixSize();
+      if (plan.lengthPrefixSizes[i] > 0 && plan.toBytes[i] == messageFieldExtension.getToByte()) {
+        plan.trailingField = i;
       }
     }
-    return result;
-  }
-
-  private EnumValueDescriptor deserializeEnum(byte[] bytes, FieldDescriptor fieldDescriptor, FieldExtension fieldExtension) {
-    checkEnumBytesRangeValid(fieldDescriptor.getEnumType(), fieldExtension, fieldDescriptor.getName());
-    return fieldDescriptor.getEnumType()
-        .findValueByNumber((int) deserializeLong(bytes, fieldExtension, fieldDescriptor.getName()));
-  }
-
-  private boolean deserializeBoolean(byte[] bytes, FieldExtension fieldExtension, String fieldName) {
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
-    checkArgument(bytesSize == 1,
-        "Boolean field %s has unsupported size %s. Only sizes 1 are supported.",
-        fieldName,
-        bytesSize);
-    return bytes[fieldExtension.getFromByte()] != 0;
+    return plan;
   }
 
-  private ByteString deserializeByteString(byte[] bytes, FieldExtension fieldExtension) {
-    // TODO(#5): support for variable-length byte strings.
-    int byteSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
-    return ByteString.copyFrom(bytes, fieldExtension.getFromByte(), byteSize);
+  private static MessageExtension getMessageExtension(Message message) {
+    return getMessageExtension(message.getDescriptorForType());
   }
 
-  private static MessageExtension getMessageExtension(Message message) {
-    return message.getDescriptorForType().getOptions().getExtension(Blerpc.message);
+  private static MessageExtension getMessageExtension(Descriptor descriptor) {
+    return descriptor.getOptions().getExtension(Blerpc.message);
   }
 
   private static FieldExtension getFieldExtension(FieldDescriptor descriptor) {
     return descriptor.getOptions().getExtension(Blerpc.field);
   }
 
-  private static void validateMessageSchema(Message message, FieldExtension fieldExtension) {
-    checkHasExpectedBytesSize(message, fieldExtension);
-    List<FieldDescriptor> fields = message.getDescriptorForType().getFields();
+  private static void validateMessageSchema(Descriptor descriptor, FieldExtension fieldExtension) {
+    checkHasExpectedBytesSize(descriptor, fieldExtension);
+    List<FieldDescriptor> fields = descriptor.getFields();
     for (FieldDescriptor field : fields) {
       checkFieldHasExtension(field);
-      checkBytesRangeValid(getFieldExtension(field), getMessageExtension(message).getSizeBytes(), field);
+      if (isBitField(getFieldExtension(field))) {
+        checkBitsRangeValid(getFieldExtension(field), getMessageExtension(descriptor).getSizeBytes(), field);
+      } else {
+        checkBytesRangeValid(getFieldExtension(field), getMessageExtension(descriptor).getSizeBytes(), field);
+      }
+      checkLengthPrefixValid(getFieldExtension(field), field);
+      checkRepeatedFieldValid(getFieldExtension(field), field, descriptor);
     }
     checkBytesRangesNotIntersect(fields);
   }
 
+  private static void checkRepeatedFieldValid(FieldExtension fieldExtension, FieldDescriptor field, Descriptor descriptor) {
+    String name = field.getName();
+    int elementSize = fieldExtension.getElementSize();
+    String countFieldName = fieldExtension.getCountField();
+    if (!field.isRepeated()) {
+      checkArgument(elementSize == 0 && countFieldName.isEmpty(),
+          "Field %s has element_size or count_field but is not repeated",
+          name);
+      return;
+    }
+    checkArgument(!isBitField(fieldExtension),
+        "Repeated field %s can't have a bits range",
+        name);
+    checkArgument(elementSize > 0,
+        "Repeated field %s has element_size = %s which must be bigger than zero",
+        name,
+        elementSize);
+    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
+    checkArgument(bytesSize % elementSize == 0,
+        "Repeated field %s has bytes range size %s which is not a multiple of element_size = %s",
+        name,
+        bytesSize,
+        elementSize);
+    if (countFieldName.isEmpty()) {
+      return;
+    }
+    FieldDescriptor countField = descriptor.findFieldByName(countFieldName);
+    checkArgument(countField != null
+            && !countField.isRepeated()
+            && !isBitField(getFieldExtension(countField))
+            && (countField.getJavaType().equals(JavaType.INT) || countField.getJavaType().equals(JavaType.LONG)),
+        "Count field %s of repeated field %s must be an int32 or int64 field of message %s",
+        countFieldName,
+        name,
+        descriptor.getName());
+  }
+
+  private static void checkLengthPrefixValid(FieldExtension fieldExtension, FieldDescriptor field) {
+    int prefixSize = fieldExtension.getLengthPrefixSize();
+    if (prefixSize == 0) {
+      return;
+    }
+    String name = field.getName();
+    JavaType fieldType = field.getJavaType();
+    checkArgument(!field.isRepeated()
+            && !isBitField(fieldExtension)
+            && (fieldType.equals(JavaType.BYTE_STRING) || fieldType.equals(JavaType.STRING)),
+        "Field %s has length_prefix_size but is not a singular bytes or string field",
+        name);
+    checkArgument(prefixSize > 0 && prefixSize <= 4,
+        "Field %s has unsupported length_prefix_size = %s. Only sizes in [1, 4] are supported.",
+        name,
+        prefixSize);
+    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
+    checkArgument(bytesSize > prefixSize,
+        "Field %s has bytes range size %s which must be bigger than length_prefix_size = %s",
+        name,
+        bytesSize,
+        prefixSize);
+    checkArgument(prefixSize == 4 || bytesSize - prefixSize < 1 << (8 * prefixSize),
+        "Field %s has maximum size %s which doesn't fit into length_prefix_size = %s",
+        name,
+        bytesSize - prefixSize,
+        prefixSize);
+  }
+
   private static void checkHasExtension(Message message) {
     Descriptor descriptor = message.getDescriptorForType();
     checkArgument(descriptor.getOptions().hasExtension(Blerpc.message) || descriptor.getFields().isEmpty(),
@@ -308,12 +649,12 @@ public class AnnotationMessageConverter implements MessageConverter {
         descriptor.getName());
   }
 
-  private static void checkHasExpectedBytesSize(Message message, FieldExtension fieldExtension) {
-    int messageBytesSize = getMessageExtension(message).getSizeBytes();
+  private static void checkHasExpectedBytesSize(Descriptor descriptor, FieldExtension fieldExtension) {
+    int messageBytesSize = getMessageExtension(descriptor).getSizeBytes();
     int expectedBytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
     checkArgument(messageBytesSize == expectedBytesSize,
         "Non-primitive message %s has declared size %s, which is not equal to the size of it's type %s.",
-        message.getDescriptorForType().getName(),
+        descriptor.getName(),
         expectedBytesSize,
         messageBytesSize);
   }
@@ -344,20 +685,63 @@ public class AnnotationMessageConverter implements MessageConverter {
         messageBytesSize);
   }
 
+  private static void checkBitsRangeValid(FieldExtension fieldExtension, int messageBytesSize, FieldDescriptor descriptor) {
+    String name = descriptor.getName();
+    int firstBit = fieldExtension.getFromBit();
+    int lastBit = fieldExtension.getToBit();
+    checkArgument(fieldExtension.getFromByte() == 0 && fieldExtension.getToByte() == 0,
+        "Field %s has both bytes and bits ranges",
+        name);
+    checkArgument(firstBit < lastBit,
+        "Field %s has from_bit = %s which must be less than to_bit = %s",
+        name,
+        firstBit,
+        lastBit);
+    checkArgument(firstBit >= 0,
+        "Field %s has from_bit = %s which is less than zero",
+        name,
+        firstBit);
+    checkArgument(lastBit <= 8 * messageBytesSize,
+        "Field %s has to_bit = %s which is bigger than message bits size = %s",
+        name,
+        lastBit,
+        8 * messageBytesSize);
+  }
+
+  // If any two ranges intersect, then some range also intersects with the next range in the order of their first bits.
+  // Ranges of byte fields are reported in bytes, ranges that involve a bit field are reported in bits.
   private static void checkBytesRangesNotIntersect(List<FieldDescriptor> fields) {
-    for (int i = 0; i < fields.size(); i++) {
-      for (int j = i + 1; j < fields.size(); j++) {
-        FieldExtension firstExtension = getFieldExtension(fields.get(i));
-        FieldExtension secondExtension = getFieldExtension(fields.get(j));
-        checkArgument(!bytesRangesIntersect(firstExtension, secondExtension),
-            "Field %s bytes range [%s, %s] intersects with another field %s bytes range [%s, %s]",
-            fields.get(i).getName(),
-            firstExtension.getFromByte(),
-            firstExtension.getToByte(),
-            fields.get(j).getName(),
-            secondExtension.getFromByte(),
-            secondExtension.getToByte());
+    List<FieldDescriptor> sortedFields = new ArrayList<>(fields);
+    Collections.sort(sortedFields,
+        (first, second) -> Integer.compare(getFromBit(getFieldExtension(first)), getFromBit(getFieldExtension(second))));
+    for (int i = 0; i + 1 < sortedFields.size(); i++) {
+      FieldDescriptor firstField = sortedFields.get(i);
+      FieldDescriptor secondField = sortedFields.get(i + 1);
+      if (firstField.getIndex() > secondField.getIndex()) {
+        firstField = sortedFields.get(i + 1);
+        secondField = sortedFields.get(i);
+      }
+      FieldExtension firstExtension = getFieldExtension(firstField);
+      FieldExtension secondExtension = getFieldExtension(secondField);
+      if (isBitField(firstExtension) || isBitField(secondExtension)) {
+        checkArgument(!bitsRangesIntersect(firstExtension, secondExtension),
+            "Field %s bits range [%s, %s] intersects with another field %s bits range [%s, %s]",
+            firstField.getName(),
+            getFromBit(firstExtension),
+            getToBit(firstExtension),
+            secondField.getName(),
+            getFromBit(secondExtension),
+            getToBit(secondExtension));
+        continue;
       }
+      checkArgument(!bytesRangesIntersect(firstExtension, secondExtension),
+          "Field %s bytes range [%s, %s] intersects with another field %s bytes range [%s, %s]",
+          firstField.getName(),
+          firstExtension.getFromByte(),
+          firstExtension.getToByte(),
+          secondField.getName(),
+          secondExtension.getFromByte(),
+          secondExtension.getToByte());
     }
   }
 
@@ -368,22 +752,81 @@ public class AnnotationMessageConverter implements MessageConverter {
         : secondExtension.getToByte() > firstExtension.getFromByte();
   }
 
-  private static void checkBytesRangeEnoughForEnum(EnumValueDescriptor enumValueDescriptor, FieldExtension fieldExtension) {
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
-    EnumDescriptor enumDescriptor = enumValueDescriptor.getType();
+  private static boolean bitsRangesIntersect(FieldExtension firstExtension, FieldExtension secondExtension) {
+    return getFromBit(firstExtension) < getToBit(secondExtension) && getFromBit(secondExtension) < getToBit(firstExtension);
+  }
+
+  private static boolean isBitField(FieldExtension fieldExtension) {
+    return fieldExtension.getFromBit() != 0 || fieldExtension.getToBit() != 0;
+  }
+
+  private static int getFromBit(FieldExtension fieldExtension) {
+    return isBitField(fieldExtension) ? fieldExtension.getFromBit() : 8 * fieldExtension.getFromByte();
+  }
+
+  private static int getToBit(FieldExtension fieldExtension) {
+    return isBitField(fieldExtension) ? fieldExtension.getToBit() : 8 * fieldExtension.getToByte();
+  }
+
+  private static void compileBitField(CodecPlan plan, int index, FieldDescriptor fieldDescriptor,
+      FieldExtension relativeFieldExtension) {
+    String fieldName = fieldDescriptor.getName();
+    JavaType fieldType = fieldDescriptor.getType().getJavaType();
+    int bitsSize = relativeFieldExtension.getToBit() - relativeFieldExtension.getFromBit();
+    switch (fieldType) {
+      case INT:
+      case LONG:
+      case ENUM:
+        checkArgument(bitsSize <= 32,
+            "Bit field %s has unsupported size %s. Only sizes in [1, 32] bits are supported.",
+            fieldName,
+            bitsSize);
+        if (fieldType.equals(JavaType.ENUM)) {
+          plan.enumRangeErrors[index] =
+              getEnumRangeError(fieldDescriptor.getEnumType(), bitsSize, bitsSize + " bit(s)").orNull();
+        }
+        break;
+      case BOOLEAN:
+        checkArgument(bitsSize == 1,
+            "Boolean bit field %s has unsupported size %s. Only size 1 is supported.",
+            fieldName,
+            bitsSize);
+        break;
+      default:
+        throw new IllegalArgumentException(String.format("Unsupported bit field type: %s, field name: %s",
+            fieldType.name(),
+            fieldName));
+    }
+    plan.fields[index] = fieldDescriptor;
+    plan.types[index] = fieldType;
+    plan.bitFields[index] = true;
+    plan.fromBits[index] = relativeFieldExtension.getFromBit();
+    plan.toBits[index] = relativeFieldExtension.getToBit();
+    // The bytes that contain the field, a field is only deserialized from values that contain all of them.
+    plan.fromBytes[index] = relativeFieldExtension.getFromByte();
+    plan.toBytes[index] = relativeFieldExtension.getToByte();
+  }
+
+  // Enum values that don't fit into the bytes range are only an error when a message with the enum field set is serialized.
+  private static Optional<String> getEnumRangeError(EnumDescriptor enumDescriptor, int bytesSize) {
+    return getEnumRangeError(enumDescriptor, 8 * bytesSize, bytesSize + " byte(s)");
+  }
+
+  private static Optional<String> getEnumRangeError(EnumDescriptor enumDescriptor, int bitsSize, String sizeDescription) {
     int maxValueNumber = 0;
-    for (EnumValueDescriptor value : enumValueDescriptor.getType().getValues()) {
+    for (EnumValueDescriptor value : enumDescriptor.getValues()) {
       maxValueNumber = Math.max(maxValueNumber, value.getNumber());
     }
-    checkArgument(LongMath.pow(2, 8 * bytesSize) - 1 >= maxValueNumber,
-        "%s byte(s) not enough for %s enum that has %s max number",
-        bytesSize,
+    if (LongMath.pow(2, bitsSize) - 1 >= maxValueNumber) {
+      return Optional.absent();
+    }
+    return Optional.of(String.format("%s not enough for %s enum that has %s max number",
+        sizeDescription,
         enumDescriptor.getName(),
-        maxValueNumber);
+        maxValueNumber));
   }
 
-  private static void checkEnumBytesRangeValid(EnumDescriptor enumDescriptor, FieldExtension fieldExtension, String fieldName) {
-    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
+  private static void checkEnumBytesRangeValid(EnumDescriptor enumDescriptor, int bytesSize, String fieldName) {
     checkArgument(bytesSize <= 4,
         "Enum %s field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
         enumDescriptor.getName(),
@@ -391,26 +834,49 @@ public class AnnotationMessageConverter implements MessageConverter {
         bytesSize);
   }
 
-  private Optional<FieldExtension> getRelativeBytesRangeFieldExtension(FieldExtension messageFieldExtension,
-                                                                       Optional<Integer> valueSizeToCheck,
-                                                                       FieldDescriptor fieldDescriptor,
-                                                                       Message message,
-                                                                       boolean useFieldByteOrder) {
-    int firstByte = messageFieldExtension.getFromByte();
-    FieldExtension embeddedFieldExtension = getFieldExtension(fieldDescriptor);
-    int lastByte = embeddedFieldExtension.getToByte() + firstByte;
-    if (valueSizeToCheck.isPresent() && lastByte > valueSizeToCheck.get()) {
-      return Optional.absent();
+  private static void checkFloatBytesRangeValid(FieldExtension fieldExtension, JavaType fieldType, int bytesSize,
+      String fieldName) {
+    if (fieldExtension.getFloatEncoding().equals(FloatEncoding.FIXED_POINT)) {
+      checkArgument(bytesSize <= 4,
+          "Fixed-point field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
+          fieldName,
+          bytesSize);
+      checkArgument(fieldExtension.getScale() != 0,
+          "Fixed-point field %s must have a non-zero scale.",
+          fieldName);
+      return;
     }
+    checkArgument(bytesSize == 2 || bytesSize == 4 || bytesSize == 8,
+        "%s field %s has unsupported size %s. Only sizes 2, 4 and 8 are supported.",
+        fieldType.equals(JavaType.FLOAT) ? "Float" : "Double",
+        fieldName,
+        bytesSize);
+  }
 
+  private static FieldExtension getRelativeBytesRangeFieldExtension(FieldExtension messageFieldExtension,
+                                                                    FieldDescriptor fieldDescriptor,
+                                                                    Descriptor descriptor,
+                                                                    boolean useFieldByteOrder) {
+    int firstByte = messageFieldExtension.getFromByte();
+    FieldExtension embeddedFieldExtension = getFieldExtension(fieldDescriptor);
     ByteOrder messageFieldOrder = messageFieldExtension.getByteOrder();
-    return Optional.of(FieldExtension.newBuilder()
+    if (isBitField(embeddedFieldExtension)) {
+      int firstBit = embeddedFieldExtension.getFromBit() + 8 * firstByte;
+      int lastBit = embeddedFieldExtension.getToBit() + 8 * firstByte;
+      return FieldExtension.newBuilder()
+          .setFromBit(firstBit)
+          .setToBit(lastBit)
+          .setFromByte(firstBit / 8)
+          .setToByte((lastBit + 7) / 8)
+          .build();
+    }
+    return FieldExtension.newBuilder()
         .setFromByte(embeddedFieldExtension.getFromByte() + firstByte)
-        .setToByte(lastByte)
+        .setToByte(embeddedFieldExtension.getToByte() + firstByte)
         .setByteOrder(useFieldByteOrder ? messageFieldOrder :
             getByteOrderOrDefault(embeddedFieldExtension.getByteOrder(),
-                getByteOrderOrDefault(getMessageExtension(message).getByteOrder(), messageFieldOrder)))
-        .build());
+                getByteOrderOrDefault(getMessageExtension(descriptor).getByteOrder(), messageFieldOrder)))
+        .build();
   }
 
   private static ByteOrder getByteOrderOrDefault(ByteOrder currentByteOrder, ByteOrder defaultByteOrder) {
@@ -420,4 +886,57 @@ public class AnnotationMessageConverter implements MessageConverter {
   private static boolean hasByteOrder(FieldDescriptor fieldDescriptor) {
     return !getFieldExtension(fieldDescriptor).getByteOrder().equals(ByteOrder.DEFAULT);
   }
+
+  /**
+   * Validated layout of a message type: the absolute byte range and the byte order of each field.
+   */
+  private static class CodecPlan {
+    final FieldDescriptor[] fields;
+    final JavaType[] types;
+    final int[] fromBytes;
+    final int[] toBytes;
+    final boolean[] bigEndian;
+    // Plans of MESSAGE fields.
+    final CodecPlan[] messagePlans;
+    // Errors for ENUM fields with enum values that don't fit into the field.
+    final String[] enumRangeErrors;
+    // Bit fields and their absolute bit ranges.
+    final boolean[] bitFields;
+    final int[] fromBits;
+    final int[] toBits;
+    // Repeated fields, the sizes of their elements and the indexes of their count fields or -1. The element size of
+    // a field that is not repeated is the size of the field.
+    final boolean[] repeated;
+    final int[] elementSizes;
+    final int[] countFields;
+    // Sizes of the length prefixes of variable-size fields or 0, and the index of the length-prefixed field that ends
+    // at the end of the message or -1. Only a top level message is serialized up to the end of its trailing field.
+    final int[] lengthPrefixSizes;
+    int trailingField = -1;
+    // Encodings of FLOAT and DOUBLE fields.
+    final boolean[] fixedPoint;
+    final double[] scales;
+    final double[] offsets;
+
+    CodecPlan(int fieldCount) {
+      fields = new FieldDescriptor[fieldCount];
+      types = new JavaType[fieldCount];
+      fromBytes = new int[fieldCount];
+      toBytes = new int[fieldCount];
+      bigEndian = new boolean[fieldCount];
+      messagePlans = new CodecPlan[fieldCount];
+      enumRangeErrors = new String[fieldCount];
+      bitFields = new boolean[fieldCount];
+      fromBits = new int[fieldCount];
+      toBits = new int[fieldCount];
+      repeated = new boolean[fieldCount];
+      elementSizes = new int[fieldCount];
+      countFields = new int[fieldCount];
+      Arrays.fill(countFields, -1);
+      lengthPrefixSizes = new int[fieldCount];
+      fixedPoint = new boolean[fieldCount];
+      scales = new double[fieldCount];
+      offsets = new double[fieldCount];
+    }
+  }
 }
@@ -10,25 +10,39 @@ import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothProfile;
 import android.content.Context;
 import android.os.Handler;
-import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.CallPriority;
 import com.blerpc.proto.MethodType;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
+import com.google.common.math.LongMath;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcChannel;
 import com.google.protobuf.RpcController;
+import java.math.RoundingMode;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -37,19 +51,88 @@ import java.util.logging.Logger;
  */
 public class BleRpcChannel implements RpcChannel {
 
+  /**
+   * MTU of a connection before it is negotiated.
+   */
+  public static final int DEFAULT_MTU = 23;
+  /**
+   * The largest MTU a device can negotiate.
+   */
+  public static final int MAX_MTU = 517;
+  // Bytes of an ATT write packet taken by the opcode and the attribute handle.
+  private static final int ATT_WRITE_HEADER_SIZE = 3;
+  private static final long NOTIFICATION_RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // Free request buffers of each size kept with pooled request buffers, more than enough for pipelined chunks.
+  private static final int MAX_POOLED_BUFFERS_PER_SIZE = 16;
+  // The time the bluetooth stack has to report the disconnect of a released connection.
+  @VisibleForTesting
+  static final long DISCONNECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
   private final BluetoothDevice bluetoothDevice;
   private final MessageConverter messageConverter;
   private final Context context;
   private final Handler workHandler;
   private final Handler listenerHandler;
   private final Logger logger;
+  private final BleRpcChannelOptions options;
+  private final RequestBufferPool requestBufferPool;
 
   private ConnectionStatus connectionStatus = ConnectionStatus.DISCONNECTED;
   private Optional<BluetoothGatt> bluetoothGatt = Optional.absent();
-
-  private boolean callInProgress = false;
-  private final LinkedList<RpcCall> calls = new LinkedList<RpcCall>();
+  private volatile int mtu = DEFAULT_MTU;
+  private int connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+  private long lastBusyTimeNanos = 0;
+  private long notificationWindowStartNanos = 0;
+  private int notificationsInWindow = 0;
+
+  private Optional<RpcCall> callInProgress = Optional.absent();
+  private final CallScheduler<RpcCall> calls;
+  // Write-without-response calls handed to the bluetooth stack, each of them holds one write credit.
+  private final LinkedList<RpcCall> writesWithoutResponse = new LinkedList<>();
   private final Map<UUID, SubscriptionCallsGroup> subscriptions = new HashMap<>();
+  // Queued or in-flight READ calls that later identical READ calls are attached to.
+  private final Map<MethodRoute, RpcCall> pendingReads = new HashMap<>();
+  // Queued WRITE calls that are superseded by newer calls to the same characteristic.
+  private final Map<UUID, RpcCall> queuedCoalescingWrites = new HashMap<>();
+  // Chunks of the fragmented request in progress that are not written yet, see BleCharacteristicRule.fragmented.
+  private final ArrayDeque<byte[]> pendingChunks = new ArrayDeque<>();
+  private int chunksInFlight = 0;
+  private Optional<String> chunkError = Optional.absent();
+  // Reused for serializing fragmented requests and pooled requests, grows to the largest request.
+  private ByteBuffer requestBuffer = ByteBuffer.allocate(MAX_MTU);
+  // The value of the WRITE call in progress or null. It is returned to the pool when the call finishes, because the
+  // response of the call is read from the characteristic, which still holds the written value.
+  private byte[] writeValueInProgress = null;
+  // Chunks of the fragmented READ call in progress.
+  private final Fragments.Reassembler readReassembler = new Fragments.Reassembler();
+  // Subscriptions with notifications that wait for the end of the batch window.
+  private final Set<SubscriptionCallsGroup> subscriptionsWithPendingNotifications = new LinkedHashSet<>();
+  private final Runnable notificationFlush = this::flushNotifications;
+  // Fails the operation the channel waits for when the bluetooth stack doesn't report its result in time.
+  private final Runnable operationWatchdog = this::handleOperationTimeout;
+  // Characteristics with operations that timed out, once for every callback the stack still reports for them. The
+  // stack reports operations in order, so the next callbacks of these characteristics belong to the timed out calls.
+  private final Multiset<UUID> lateCharacteristicCallbacks = HashMultiset.create();
+  private final Multiset<UUID> lateDescriptorCallbacks = HashMultiset.create();
+  private final Runnable connectionIdleCheck = this::checkConnectionIdle;
+  private final Runnable reconnect = this::startConnection;
+  private final Runnable releaseConnection = this::releaseConnection;
+  private final Runnable queuedCallsExpiry = this::failExpiredQueuedCalls;
+  private final Runnable disconnectWatchdog = this::handleDisconnectTimeout;
+  private int reconnectAttempts = 0;
+  // Whether the connection pool was told that the channel has no calls and subscriptions.
+  private boolean reportedConnectionIdle = false;
+  private final ConnectionPool.Client connectionPoolClient = new ConnectionPool.Client() {
+    @Override
+    public void onSlotGranted() {
+      workHandler.post(BleRpcChannel.this::handleConnectionSlotGranted);
+    }
+
+    @Override
+    public void onEvictionRequested() {
+      workHandler.post(BleRpcChannel.this::handleConnectionEviction);
+    }
+  };
 
   // BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE and BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE are null in tests,
   // these variables are here for the purpuse of setting them in tests to real values.
@@ -78,6 +161,34 @@ public class BleRpcChannel implements RpcChannel {
       Handler listenerHandler,
       Logger logger
   ) {
+    this(bluetoothDevice, context, messageConverter, workHandler, listenerHandler, logger,
+        BleRpcChannelOptions.getDefaultInstance());
+  }
+
+  /**
+   * Create a {@link BleRpcChannel} with custom options.
+   *
+   * @param bluetoothDevice  a {@link BluetoothDevice} to connect to.
+   * @param context          an application context.
+   * @param messageConverter a {@link MessageConverter} for serializing requests and deserializing responses.
+   * @param workHandler      a handler to run all channel's code.
+   * @param listenerHandler  a handler run rpc callbacks.
+   * @param logger           a loggen for debug logging.
+   * @param options          channel tuning options.
+   */
+  public BleRpcChannel(
+      BluetoothDevice bluetoothDevice,
+      Context context,
+      MessageConverter messageConverter,
+      Handler workHandler,
+      Handler listenerHandler,
+      Logger logger,
+      BleRpcChannelOptions options
+  ) {
+    this.options = options;
+    this.requestBufferPool = new RequestBufferPool(
+        options.getPooledRequestBuffers() ? MAX_POOLED_BUFFERS_PER_SIZE : 0, options.getMetrics());
+    this.calls = options.getCallSchedulerFactory().create(options.getTicker());
     this.bluetoothDevice = bluetoothDevice;
     this.messageConverter = messageConverter;
     this.context = context;
@@ -97,7 +208,8 @@ public class BleRpcChannel implements RpcChannel {
     checkArgument(controller instanceof BleRpcController, "Invalid RpcController instance.");
     workHandler.post(() -> {
       // TODO: move validation outside handler.
-      RpcCall rpcCall = new RpcCall(method, (BleRpcController) controller, request, responsePrototype, done);
+      RpcCall rpcCall = new RpcCall(method, (BleRpcController) controller, request, responsePrototype, done,
+          options.getTicker().read(), options.getCallTimeoutNanos());
       if (!checkMethodType(rpcCall)) {
         return;
       }
@@ -107,7 +219,13 @@ public class BleRpcChannel implements RpcChannel {
         case DISCONNECTED:
           startConnection();
           break;
+        case WAITING_FOR_CONNECTION_SLOT:
+          scheduleQueuedCallsExpiry();
+          break;
+        case WAITING_TO_RECONNECT:
+        case DISCONNECTING:
         case CONNECTING:
+        case NEGOTIATING_MTU:
           break;
         case CONNECTED:
           startNextCallIfNotInProgress();
@@ -116,6 +234,19 @@ public class BleRpcChannel implements RpcChannel {
     });
   }
 
+  /**
+   * Get the MTU negotiated with the device, see {@link BleRpcChannelOptions.Builder#setMtu}.
+   *
+   * @return the MTU of the current connection, {@link #DEFAULT_MTU} if it wasn't negotiated.
+   */
+  public int getMtu() {
+    return mtu;
+  }
+
+  private int getMaxPayloadSize() {
+    return mtu - ATT_WRITE_HEADER_SIZE;
+  }
+
   private boolean checkMethodType(RpcCall rpcCall) {
     MethodType methodType = rpcCall.getMethodType();
     switch (methodType) {
@@ -132,10 +263,49 @@ public class BleRpcChannel implements RpcChannel {
   }
 
   private void addCall(RpcCall rpcCall) {
+    workHandler.removeCallbacks(releaseConnection);
+    reportConnectionIdle(false);
+    if (rpcCall.getMethodType().equals(MethodType.READ) && options.getCoalesceReads()) {
+      RpcCall pendingRead = pendingReads.get(rpcCall.route);
+      if (pendingRead != null && !isQueuedWithLowerPriority(pendingRead, rpcCall)) {
+        pendingRead.coalescedCalls.add(rpcCall);
+        options.getMetrics().onCallCoalesced(MethodType.READ);
+        return;
+      }
+      pendingReads.put(rpcCall.route, rpcCall);
+      if (pendingRead != null) {
+        // The queued read waits for the result of the new call, which is sent with the higher priority.
+        calls.remove(pendingRead);
+        rpcCall.coalescedCalls.addAll(detachCoalescedCalls(pendingRead));
+        options.getMetrics().onCallCoalesced(MethodType.READ);
+      }
+    }
+    if (rpcCall.isCoalescingWrite()) {
+      supersedeQueuedWrite(rpcCall);
+    }
     calls.add(rpcCall);
     if (rpcCall.getMethodType().equals(MethodType.SUBSCRIBE)) {
       getSubscriptionForCall(rpcCall).calls.add(rpcCall);
     }
+    if (isQueueBusy()) {
+      onConnectionBusy();
+    }
+  }
+
+  private boolean isQueuedWithLowerPriority(RpcCall pendingRead, RpcCall rpcCall) {
+    boolean inProgress = callInProgress.isPresent() && callInProgress.get() == pendingRead;
+    return !inProgress && pendingRead.getPriority().getNumber() > rpcCall.getPriority().getNumber();
+  }
+
+  private void supersedeQueuedWrite(RpcCall rpcCall) {
+    RpcCall queuedCall = queuedCoalescingWrites.put(rpcCall.getCharacteristic(), rpcCall);
+    if (queuedCall == null) {
+      return;
+    }
+    calls.remove(queuedCall);
+    queuedCall.controller.setCoalesced();
+    notifyDefaultResultForCall(queuedCall);
+    options.getMetrics().onCallCoalesced(MethodType.WRITE);
   }
 
   private SubscriptionCallsGroup getSubscriptionForCall(RpcCall rpcCall) {
@@ -143,14 +313,21 @@ public class BleRpcChannel implements RpcChannel {
     if (subscriptions.containsKey(characteristic)) {
       return subscriptions.get(characteristic);
     } else {
-      SubscriptionCallsGroup subscription = new SubscriptionCallsGroup(rpcCall.getService(), characteristic,
-          rpcCall.getDescriptor(), rpcCall.method, rpcCall.responsePrototype);
+      SubscriptionCallsGroup subscription = new SubscriptionCallsGroup(rpcCall.method, rpcCall.route,
+          rpcCall.responsePrototype, options.getMetrics());
       subscriptions.put(characteristic, subscription);
       return subscription;
     }
   }
 
   private void startConnection() {
+    if (options.getConnectionPool().isPresent() && !options.getConnectionPool().get().acquire(connectionPoolClient)) {
+      // Connecting starts once another channel returns its slot.
+      connectionStatus = ConnectionStatus.WAITING_FOR_CONNECTION_SLOT;
+      scheduleQueuedCallsExpiry();
+      return;
+    }
+    workHandler.removeCallbacks(queuedCallsExpiry);
     connectionStatus = ConnectionStatus.CONNECTING;
     bluetoothGatt = Optional.fromNullable(bluetoothDevice.connectGatt(context, /*autoConnect=*/ false, gattCallback));
     if (!bluetoothGatt.isPresent()) {
@@ -158,8 +335,39 @@ public class BleRpcChannel implements RpcChannel {
     }
   }
 
+  // Calls are not started while the channel waits for a connection slot, so they are failed at their deadlines.
+  private void scheduleQueuedCallsExpiry() {
+    workHandler.removeCallbacks(queuedCallsExpiry);
+    long deadlineNanos = Long.MAX_VALUE;
+    for (RpcCall call : calls) {
+      deadlineNanos = Math.min(deadlineNanos, getLatestDeadline(call));
+    }
+    if (deadlineNanos != Long.MAX_VALUE) {
+      workHandler.postDelayed(queuedCallsExpiry, toMillis(deadlineNanos - options.getTicker().read()));
+    }
+  }
+
+  private void failExpiredQueuedCalls() {
+    if (!connectionStatus.equals(ConnectionStatus.WAITING_FOR_CONNECTION_SLOT)) {
+      return;
+    }
+    long now = options.getTicker().read();
+    for (RpcCall call : ImmutableList.copyOf(calls)) {
+      if (now >= getLatestDeadline(call)) {
+        removeQueuedCall(call);
+        notifyCallFailed(call, "Call to characteristic %s expired before it was sent.", call.getCharacteristic());
+      }
+    }
+    if (calls.isEmpty()) {
+      // Stops waiting for the slot.
+      reset();
+      return;
+    }
+    scheduleQueuedCallsExpiry();
+  }
+
   private void startNextCallIfNotInProgress() {
-    if (!callInProgress) {
+    if (!callInProgress.isPresent()) {
       startNextCall();
     }
   }
@@ -172,24 +380,120 @@ public class BleRpcChannel implements RpcChannel {
         return;
       }
     }
+    scheduleConnectionRelease();
+  }
+
+  private void scheduleConnectionRelease() {
+    if (!isConnectionIdle()) {
+      return;
+    }
+    reportConnectionIdle(true);
+    if (options.getConnectionLingerNanos() == 0) {
+      return;
+    }
+    workHandler.removeCallbacks(releaseConnection);
+    workHandler.postDelayed(releaseConnection, toMillis(options.getConnectionLingerNanos()));
+  }
+
+  // Subscriptions without subscribers don't hold the connection, notifications stop with it.
+  private boolean isConnectionIdle() {
+    if (callInProgress.isPresent() || !calls.isEmpty() || !writesWithoutResponse.isEmpty()) {
+      return false;
+    }
+    for (SubscriptionCallsGroup subscription : subscriptions.values()) {
+      subscription.clearCanceled();
+      if (subscription.hasAnySubscriber()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void releaseConnection() {
+    if (!connectionStatus.equals(ConnectionStatus.CONNECTED) || !isConnectionIdle()) {
+      return;
+    }
+    connectionStatus = ConnectionStatus.DISCONNECTING;
+    bluetoothGatt.get().disconnect();
+    // The connection is closed anyway if the stack doesn't report the disconnect in time.
+    workHandler.postDelayed(disconnectWatchdog, toMillis(DISCONNECT_TIMEOUT_NANOS));
+  }
+
+  private void handleDisconnectTimeout() {
+    if (connectionStatus.equals(ConnectionStatus.DISCONNECTING)) {
+      finishDisconnecting();
+    }
+  }
+
+  private void reportConnectionIdle(boolean idle) {
+    if (!options.getConnectionPool().isPresent() || reportedConnectionIdle == idle) {
+      return;
+    }
+    reportedConnectionIdle = idle;
+    options.getConnectionPool().get().setIdle(connectionPoolClient, idle);
+  }
+
+  private void handleConnectionSlotGranted() {
+    // The slot might have been returned by a reset while the grant was posted.
+    if (connectionStatus.equals(ConnectionStatus.WAITING_FOR_CONNECTION_SLOT)
+        && options.getConnectionPool().get().holds(connectionPoolClient)) {
+      startConnection();
+    }
+  }
+
+  private void handleConnectionEviction() {
+    if (connectionStatus.equals(ConnectionStatus.DISCONNECTING)) {
+      return;
+    }
+    if (connectionStatus.equals(ConnectionStatus.CONNECTED) && isConnectionIdle()) {
+      releaseConnection();
+      return;
+    }
+    // A call was made after the channel was reported idle, the pool evicts another channel.
+    reportedConnectionIdle = false;
+    options.getConnectionPool().get().setIdle(connectionPoolClient, false);
   }
 
+  private void finishDisconnecting() {
+    restoreSubscriptions();
+    closeConnection();
+    connectionStatus = ConnectionStatus.DISCONNECTED;
+    // Calls made while disconnecting open a new connection right away.
+    if (!calls.isEmpty()) {
+      startConnection();
+    }
+  }
+
+  // Returns true if the channel has to wait for a GATT callback before starting more calls.
   private boolean tryStartNextCall(BluetoothGatt gatt) {
     RpcCall rpcCall = calls.peek();
     if (rpcCall.isUnsubscribeCall) {
-      return startNextUnsubscribeCall(gatt, rpcCall);
+      return waitForWritesWithoutResponse() || startNextUnsubscribeCall(gatt, rpcCall);
     }
 
     if (!validateCharacteristic(gatt, rpcCall)) {
-      calls.poll();
+      removeQueuedCall(rpcCall);
       return false;
     }
 
     if (skipCall(gatt, rpcCall)) {
-      calls.poll();
+      removeQueuedCall(rpcCall);
       return false;
     }
 
+    if (rpcCall.isFragmented() && rpcCall.getMethodType().equals(MethodType.WRITE)) {
+      return waitForWritesWithoutResponse() || startNextFragmentedWriteCall(gatt, rpcCall);
+    }
+
+    if (rpcCall.isWriteWithoutResponse()) {
+      return startNextWriteWithoutResponseCall(gatt, rpcCall);
+    }
+
+    // Callbacks of the bluetooth stack can't be told apart, so wait until all writes without response are sent.
+    if (waitForWritesWithoutResponse()) {
+      return true;
+    }
+
     switch (rpcCall.getMethodType()) {
       case READ:
       case WRITE:
@@ -201,10 +505,14 @@ public class BleRpcChannel implements RpcChannel {
     }
   }
 
+  private boolean waitForWritesWithoutResponse() {
+    return !writesWithoutResponse.isEmpty();
+  }
+
   private boolean validateCharacteristic(BluetoothGatt gatt, RpcCall rpcCall) {
     try {
       Characteristics.validate(gatt, rpcCall.getService(), rpcCall.getCharacteristic(), rpcCall.getDescriptor(),
-          rpcCall.getMethodType());
+          rpcCall.getMethodType(), rpcCall.isWriteWithoutResponse());
       return true;
     } catch (Characteristics.BleValidationException exception) {
       notifyCallFailed(rpcCall, exception.getMessage());
@@ -215,6 +523,7 @@ public class BleRpcChannel implements RpcChannel {
   private boolean skipCall(BluetoothGatt gatt, RpcCall rpcCall) {
     return skipFailedCall(rpcCall)
         || skipCancelledCall(rpcCall)
+        || skipExpiredCall(rpcCall)
         || skipSubscriptionNotNeeded(rpcCall);
   }
 
@@ -232,12 +541,35 @@ public class BleRpcChannel implements RpcChannel {
     if (!rpcCall.controller.isCanceled()) {
       return false;
     }
+    // The value is still needed if any of the attached calls is not canceled.
+    for (RpcCall coalescedCall : rpcCall.coalescedCalls) {
+      if (!coalescedCall.controller.isCanceled()) {
+        return false;
+      }
+    }
     if (!rpcCall.getMethodType().equals(MethodType.SUBSCRIBE)) {
       notifyDefaultResultForCall(rpcCall);
     }
     return true;
   }
 
+  private boolean skipExpiredCall(RpcCall rpcCall) {
+    if (options.getTicker().read() < getLatestDeadline(rpcCall)) {
+      return false;
+    }
+    notifyCallFailed(rpcCall, "Call to characteristic %s expired before it was sent.", rpcCall.getCharacteristic());
+    return true;
+  }
+
+  // The result of a call is needed until the last of the calls attached to it expires.
+  private static long getLatestDeadline(RpcCall rpcCall) {
+    long deadlineNanos = rpcCall.deadlineNanos;
+    for (RpcCall coalescedCall : rpcCall.coalescedCalls) {
+      deadlineNanos = Math.max(deadlineNanos, coalescedCall.deadlineNanos);
+    }
+    return deadlineNanos;
+  }
+
   private boolean skipSubscriptionNotNeeded(RpcCall rpcCall) {
     if (!rpcCall.getMethodType().equals(MethodType.SUBSCRIBE)) {
       return false;
@@ -245,7 +577,7 @@ public class BleRpcChannel implements RpcChannel {
 
     SubscriptionCallsGroup subscription = getSubscription(rpcCall.getCharacteristic());
     if (subscription.status.equals(SubscriptionStatus.SUBSCRIBED)) {
-      rpcCall.controller.onSubscribeSuccess();
+      notifySubscribeSuccess(rpcCall);
     }
     if (!subscription.status.equals(SubscriptionStatus.UNSUBSCRIBED)) {
       return true;
@@ -255,7 +587,7 @@ public class BleRpcChannel implements RpcChannel {
   }
 
   private boolean startNextReadWriteCall(BluetoothGatt bluetoothGatt, RpcCall rpcCall) {
-    callInProgress = true;
+    startCall(rpcCall);
     try {
       makeRequest(bluetoothGatt, rpcCall);
       return true;
@@ -282,6 +614,12 @@ public class BleRpcChannel implements RpcChannel {
     }
   }
 
+  // Values are passed to the converter without copying, a missing value is passed as an empty one.
+  private static ByteBuffer getValue(BluetoothGattCharacteristic characteristic) {
+    byte[] value = characteristic.getValue();
+    return ByteBuffer.wrap(value != null ? value : new byte[0]);
+  }
+
   private static void makeReadRequest(BluetoothGatt bluetoothGatt, RpcCall rpcCall)
       throws Characteristics.BleApiException {
     Characteristics.readValue(bluetoothGatt, rpcCall.getService(), rpcCall.getCharacteristic());
@@ -289,11 +627,197 @@ public class BleRpcChannel implements RpcChannel {
 
   private void makeWriteRequest(BluetoothGatt bluetoothGatt, RpcCall rpcCall)
       throws CouldNotConvertMessageException, Characteristics.BleApiException {
-    byte[] value = messageConverter.serializeRequest(rpcCall.method, rpcCall.request);
-    Characteristics.writeValue(bluetoothGatt, rpcCall.getService(), rpcCall.getCharacteristic(), value);
+    byte[] value = serializeRequest(rpcCall);
+    try {
+      Characteristics.writeValue(bluetoothGatt, rpcCall.getService(), rpcCall.getCharacteristic(), value);
+    } catch (Characteristics.BleApiException exception) {
+      requestBufferPool.release(value);
+      throw exception;
+    }
+    writeValueInProgress = value;
+  }
+
+  // With pooled request buffers the request is copied from the reused request buffer into a pooled array, otherwise the
+  // converter allocates the array.
+  private byte[] serializeRequest(RpcCall rpcCall) throws CouldNotConvertMessageException {
+    if (!options.getPooledRequestBuffers()) {
+      byte[] value = messageConverter.serializeRequest(rpcCall.method, rpcCall.request, getMaxPayloadSize());
+      options.getMetrics().onRequestBufferAllocated(value.length);
+      return value;
+    }
+    ByteBuffer request = serializeIntoRequestBuffer(rpcCall, getMaxPayloadSize());
+    byte[] value = requestBufferPool.acquire(request.remaining());
+    request.get(value);
+    return value;
+  }
+
+  private boolean startNextWriteWithoutResponseCall(BluetoothGatt bluetoothGatt, RpcCall rpcCall) {
+    if (writesWithoutResponse.size() >= options.getWriteWithoutResponseCredits()) {
+      // No credits left: the next credit is returned in onCharacteristicWrite.
+      return true;
+    }
+
+    try {
+      byte[] value = serializeRequest(rpcCall);
+      try {
+        // Unlike writes with response, writes without response can't be split by the bluetooth stack.
+        if (value.length > getMaxPayloadSize()) {
+          throw CouldNotConvertMessageException.serializeRequest(
+              "Request of %d bytes doesn't fit into a write without response with MTU %d.", value.length, mtu);
+        }
+        Characteristics.writeValue(bluetoothGatt, rpcCall.getService(), rpcCall.getCharacteristic(), value,
+            /* withoutResponse= */ true);
+      } finally {
+        // The response of a write without response is not read, so the value is no longer needed once the stack took it.
+        requestBufferPool.release(value);
+      }
+    } catch (CouldNotConvertMessageException exception) {
+      removeQueuedCall(rpcCall);
+      notifyCallFailed(rpcCall, exception.getMessage());
+      return false;
+    } catch (Characteristics.BleApiException exception) {
+      if (!writesWithoutResponse.isEmpty()) {
+        // The stack is busy with previous writes, retry when it accepts one of them.
+        return true;
+      }
+      removeQueuedCall(rpcCall);
+      notifyCallFailed(rpcCall, exception.getMessage());
+      return false;
+    }
+    dequeueCall(rpcCall);
+    writesWithoutResponse.add(rpcCall);
+    startWatchdog(getEarliestWriteDeadline());
+    return false;
+  }
+
+  private boolean startNextFragmentedWriteCall(BluetoothGatt bluetoothGatt, RpcCall rpcCall) {
+    startCall(rpcCall);
+    try {
+      // Fragmented requests are not limited by the MTU.
+      Fragments.split(serializeIntoRequestBuffer(rpcCall, Integer.MAX_VALUE), getMaxPayloadSize(), requestBufferPool,
+          pendingChunks);
+      writeChunks(bluetoothGatt, rpcCall);
+      return true;
+    } catch (CouldNotConvertMessageException | Characteristics.BleApiException exception) {
+      finishRpcCall();
+      notifyCallFailed(rpcCall, exception.getMessage());
+      return false;
+    }
+  }
+
+  private ByteBuffer serializeIntoRequestBuffer(RpcCall rpcCall, int maxPayloadSize)
+      throws CouldNotConvertMessageException {
+    while (true) {
+      requestBuffer.clear();
+      try {
+        messageConverter.serializeRequest(rpcCall.method, rpcCall.request, maxPayloadSize, requestBuffer);
+        requestBuffer.flip();
+        return requestBuffer;
+      } catch (BufferOverflowException exception) {
+        requestBuffer = ByteBuffer.allocate(requestBuffer.capacity() * 2);
+        options.getMetrics().onRequestBufferAllocated(requestBuffer.capacity());
+      }
+    }
+  }
+
+  // Chunks written without response are pipelined up to the write credits, other chunks are written one by one.
+  private void writeChunks(BluetoothGatt bluetoothGatt, RpcCall rpcCall) throws Characteristics.BleApiException {
+    int window = rpcCall.isWriteWithoutResponse() ? options.getWriteWithoutResponseCredits() : 1;
+    while (!pendingChunks.isEmpty() && chunksInFlight < window) {
+      try {
+        Characteristics.writeValue(bluetoothGatt, rpcCall.getService(), rpcCall.getCharacteristic(),
+            pendingChunks.peek(), rpcCall.isWriteWithoutResponse());
+      } catch (Characteristics.BleApiException exception) {
+        if (chunksInFlight > 0) {
+          // The stack is busy with previous chunks, retry when it accepts one of them.
+          return;
+        }
+        throw exception;
+      }
+      // Chunks are not read back, so they are no longer needed once the stack took them.
+      requestBufferPool.release(pendingChunks.poll());
+      chunksInFlight++;
+    }
+  }
+
+  private void handleChunkWritten(BluetoothGattCharacteristic characteristic, int status) {
+    chunksInFlight--;
+    if (status != BluetoothGatt.GATT_SUCCESS && !chunkError.isPresent()) {
+      // Chunks already handed to the stack are still reported, so wait for them before finishing the call.
+      chunkError = Optional.of(String.format("Failed to write chunk of characteristic %s: status=%d.",
+          characteristic.getUuid(), status));
+      pendingChunks.clear();
+    }
+    if (!pendingChunks.isEmpty()) {
+      RpcCall rpcCall = callInProgress.get();
+      // The stack makes progress, give it time for the next chunks.
+      startWatchdog(getLatestDeadline(rpcCall));
+      try {
+        writeChunks(bluetoothGatt.get(), rpcCall);
+      } catch (Characteristics.BleApiException exception) {
+        chunkError = Optional.of(exception.getMessage());
+        pendingChunks.clear();
+      }
+    }
+    if (chunksInFlight > 0) {
+      return;
+    }
+    Optional<String> error = chunkError;
+    RpcCall rpcCall = finishRpcCall();
+    if (error.isPresent()) {
+      notifyCallFailed(rpcCall, error.get());
+    } else {
+      // The response of a fragmented write is not read from the characteristic.
+      notifyDefaultResultForCall(rpcCall);
+    }
+    startNextCallIfNotInProgress();
+  }
+
+  private void handleChunkRead(byte[] chunk) {
+    RpcCall rpcCall = callInProgress.get();
+    Optional<ByteBuffer> value;
+    try {
+      value = readReassembler.add(chunk);
+      if (!value.isPresent()) {
+        // The device returns the next chunk on every read.
+        startWatchdog(getLatestDeadline(rpcCall));
+        makeReadRequest(bluetoothGatt.get(), rpcCall);
+        return;
+      }
+    } catch (CouldNotConvertMessageException | Characteristics.BleApiException exception) {
+      handleError(exception.getMessage());
+      return;
+    }
+    handleResult(value.get());
+  }
+
+  private void handleWriteWithoutResponseSent(BluetoothGattCharacteristic characteristic, int status) {
+    RpcCall rpcCall = writesWithoutResponse.poll();
+    if (writesWithoutResponse.isEmpty()) {
+      stopWatchdog();
+    } else {
+      // The stack makes progress, give it time for the next write.
+      startWatchdog(getEarliestWriteDeadline());
+    }
+    if (status != BluetoothGatt.GATT_SUCCESS) {
+      notifyCallFailed(rpcCall, "Failed to write characteristic %s without response: status=%d.",
+          characteristic.getUuid(), status);
+    } else {
+      // There is no response from the device, so the call finishes once the stack has sent the value.
+      notifyDefaultResultForCall(rpcCall);
+    }
+    startNextCallIfNotInProgress();
   }
 
-  private void handleResult(byte[] value) {
+  private long getEarliestWriteDeadline() {
+    long deadlineNanos = Long.MAX_VALUE;
+    for (RpcCall call : writesWithoutResponse) {
+      deadlineNanos = Math.min(deadlineNanos, call.deadlineNanos);
+    }
+    return deadlineNanos;
+  }
+
+  private void handleResult(ByteBuffer value) {
     RpcCall currentCall = finishRpcCall();
     try {
       Message response = messageConverter.deserializeResponse(currentCall.method, currentCall.responsePrototype, value);
@@ -312,7 +836,7 @@ public class BleRpcChannel implements RpcChannel {
 
   private boolean startNextSubscribeCall(BluetoothGatt bluetoothGatt, RpcCall rpcCall) {
     SubscriptionCallsGroup subscription = getSubscription(rpcCall.getCharacteristic());
-    callInProgress = true;
+    startCall(rpcCall);
     subscription.status = SubscriptionStatus.SUBSCRIBING;
     try {
       makeSubscribeRequest(bluetoothGatt, rpcCall);
@@ -349,7 +873,12 @@ public class BleRpcChannel implements RpcChannel {
     RpcCall rpcCall = finishRpcCall();
     SubscriptionCallsGroup subscription = getSubscribingSubscription(rpcCall.getCharacteristic());
     subscription.status = SubscriptionStatus.SUBSCRIBED;
-    rpcCall.controller.onSubscribeSuccess();
+    subscription.reassembler.reset();
+    // The device starts a new sequence with a keyframe on every subscription.
+    if (subscription.deltaStream != null) {
+      subscription.deltaStream.reset();
+    }
+    notifySubscribeSuccess(rpcCall);
     startNextCallIfNotInProgress();
   }
 
@@ -363,16 +892,23 @@ public class BleRpcChannel implements RpcChannel {
     startNextCallIfNotInProgress();
   }
 
+  // Calls of a subscription restored after reconnecting are not notified again.
+  private static void notifySubscribeSuccess(RpcCall rpcCall) {
+    if (!rpcCall.subscribeSuccessNotified) {
+      rpcCall.subscribeSuccessNotified = true;
+      rpcCall.controller.onSubscribeSuccess();
+    }
+  }
+
   private void startUnsubscribing(SubscriptionCallsGroup subscription) {
     subscription.status = SubscriptionStatus.UNSUBSCRIBING;
-    calls.add(RpcCall.unsubscribeCall(subscription.serviceUuid, subscription.characteristicUuid,
-        subscription.descriptorUuid));
+    calls.add(RpcCall.unsubscribeCall(subscription.route, options.getTicker().read()));
     startNextCallIfNotInProgress();
   }
 
   private boolean startNextUnsubscribeCall(BluetoothGatt bluetoothGatt, RpcCall rpcCall) {
     getUnsubscribingSubscription(rpcCall.getCharacteristic());
-    callInProgress = true;
+    startCall(rpcCall);
     makeUnsubscribeRequest(bluetoothGatt, rpcCall);
     return true;
   }
@@ -436,6 +972,7 @@ public class BleRpcChannel implements RpcChannel {
     if (!subscription.status.equals(SubscriptionStatus.SUBSCRIBED)) {
       return;
     }
+    countNotification();
 
     // If all calls were cancelled, abandon the subscription.
     subscription.clearCanceled();
@@ -445,16 +982,65 @@ public class BleRpcChannel implements RpcChannel {
     }
 
     try {
-      Message response = messageConverter.deserializeResponse(subscription.method, subscription.responsePrototype, characteristic.getValue());
-      for (RpcCall call : subscription.calls) {
-        notifyResultForCall(call, response);
+      ByteBuffer value;
+      if (subscription.route.isFragmented()) {
+        Optional<ByteBuffer> wholeValue = subscription.reassembler.add(characteristic.getValue());
+        if (!wholeValue.isPresent()) {
+          return;
+        }
+        value = wholeValue.get();
+      } else {
+        value = getValue(characteristic);
+      }
+      if (subscription.deltaStream != null) {
+        Optional<ByteBuffer> fullValue = subscription.deltaStream.add(value);
+        if (!fullValue.isPresent()) {
+          options.getMetrics().onDeltaNotificationDropped(subscription.method);
+          return;
+        }
+        value = fullValue.get();
       }
+      Message response = messageConverter.deserializeResponse(subscription.method, subscription.responsePrototype, value);
+      deliverNotification(subscription, response);
     } catch (CouldNotConvertMessageException exception) {
       failAllSubscribers(subscription, exception.getMessage());
       startUnsubscribing(subscription);
     }
   }
 
+  // All subscribers of a notification are called from a single post to the listener handler.
+  private void deliverNotification(SubscriptionCallsGroup subscription, Message response) {
+    if (options.getNotificationBatchWindowNanos() == 0) {
+      NotificationBatch batch = new NotificationBatch(subscription.calls, Collections.singletonList(response));
+      listenerHandler.post(batch::deliver);
+      return;
+    }
+    subscription.pendingNotifications.add(response);
+    if (subscriptionsWithPendingNotifications.isEmpty()) {
+      workHandler.postDelayed(notificationFlush, toMillis(options.getNotificationBatchWindowNanos()));
+    }
+    subscriptionsWithPendingNotifications.add(subscription);
+  }
+
+  private void flushNotifications() {
+    if (subscriptionsWithPendingNotifications.isEmpty()) {
+      return;
+    }
+    workHandler.removeCallbacks(notificationFlush);
+    ImmutableList.Builder<NotificationBatch> batches = ImmutableList.builder();
+    for (SubscriptionCallsGroup subscription : subscriptionsWithPendingNotifications) {
+      batches.add(new NotificationBatch(subscription.calls, subscription.pendingNotifications));
+      subscription.pendingNotifications.clear();
+    }
+    subscriptionsWithPendingNotifications.clear();
+    ImmutableList<NotificationBatch> notificationBatches = batches.build();
+    listenerHandler.post(() -> {
+      for (NotificationBatch batch : notificationBatches) {
+        batch.deliver();
+      }
+    });
+  }
+
   private SubscriptionCallsGroup getSubscribingSubscription(UUID characteristicUuid) {
     SubscriptionCallsGroup subscription = getSubscriptionWithSubscribers(characteristicUuid);
     checkArgument(subscription.status.equals(SubscriptionStatus.SUBSCRIBING), "The characteristic %s is not subscribing.", characteristicUuid);
@@ -480,11 +1066,190 @@ public class BleRpcChannel implements RpcChannel {
     return subscriptions.get(characteristicUuid);
   }
 
+  private void startCall(RpcCall rpcCall) {
+    dequeueCall(rpcCall);
+    callInProgress = Optional.of(rpcCall);
+    startWatchdog(getLatestDeadline(rpcCall));
+  }
+
+  // The call is sent, so it counts for the order of the following calls.
+  private void dequeueCall(RpcCall rpcCall) {
+    checkArgument(calls.poll() == rpcCall, "Only the next queued call can be sent.");
+    forgetCoalescingWrite(rpcCall);
+    options.getMetrics().onQueueWait(rpcCall.getPriority(), options.getTicker().read() - rpcCall.getEnqueueTimeNanos());
+  }
+
+  private void removeQueuedCall(RpcCall rpcCall) {
+    calls.remove(rpcCall);
+    forgetCoalescingWrite(rpcCall);
+  }
+
+  private void forgetCoalescingWrite(RpcCall rpcCall) {
+    if (rpcCall.isCoalescingWrite() && queuedCoalescingWrites.get(rpcCall.getCharacteristic()) == rpcCall) {
+      queuedCoalescingWrites.remove(rpcCall.getCharacteristic());
+    }
+  }
+
   private RpcCall finishRpcCall() {
-    checkArgument(callInProgress, "There is no call in progress.");
-    checkArgument(!calls.isEmpty(), "There are no RPC calls.");
-    callInProgress = false;
-    return calls.poll();
+    checkArgument(callInProgress.isPresent(), "There is no call in progress.");
+    RpcCall rpcCall = callInProgress.get();
+    callInProgress = Optional.absent();
+    if (writeValueInProgress != null) {
+      // The response is deserialized from the value right after this, before any other request is serialized.
+      requestBufferPool.release(writeValueInProgress);
+      writeValueInProgress = null;
+    }
+    pendingChunks.clear();
+    chunksInFlight = 0;
+    chunkError = Optional.absent();
+    readReassembler.reset();
+    stopWatchdog();
+    return rpcCall;
+  }
+
+  // Fires at the call deadline or when the bluetooth stack takes longer than the operation timeout, whichever comes first.
+  private void startWatchdog(long deadlineNanos) {
+    workHandler.removeCallbacks(operationWatchdog);
+    long timeoutNanos = options.getOperationTimeoutNanos();
+    if (deadlineNanos != Long.MAX_VALUE) {
+      long remainingNanos = deadlineNanos - options.getTicker().read();
+      timeoutNanos = timeoutNanos == 0 ? remainingNanos : Math.min(timeoutNanos, remainingNanos);
+    } else if (timeoutNanos == 0) {
+      return;
+    }
+    workHandler.postDelayed(operationWatchdog, toMillis(timeoutNanos));
+  }
+
+  private boolean isQueueBusy() {
+    return options.getHighPriorityQueueDepth() != 0 && calls.size() >= options.getHighPriorityQueueDepth();
+  }
+
+  private void countNotification() {
+    if (options.getHighPriorityNotificationRate() == 0) {
+      return;
+    }
+    long now = options.getTicker().read();
+    if (now - notificationWindowStartNanos >= NOTIFICATION_RATE_WINDOW_NANOS) {
+      notificationWindowStartNanos = now;
+      notificationsInWindow = 0;
+    }
+    notificationsInWindow++;
+    if (notificationsInWindow >= options.getHighPriorityNotificationRate()) {
+      onConnectionBusy();
+    }
+  }
+
+  private void onConnectionBusy() {
+    lastBusyTimeNanos = options.getTicker().read();
+    if (connectionPriority != BluetoothGatt.CONNECTION_PRIORITY_HIGH
+        && requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH)) {
+      workHandler.postDelayed(connectionIdleCheck, toMillis(options.getConnectionIdleTimeoutNanos()));
+    }
+  }
+
+  private void checkConnectionIdle() {
+    if (isQueueBusy()) {
+      lastBusyTimeNanos = options.getTicker().read();
+    }
+    long idleNanos = options.getTicker().read() - lastBusyTimeNanos;
+    if (idleNanos < options.getConnectionIdleTimeoutNanos()) {
+      workHandler.postDelayed(connectionIdleCheck, toMillis(options.getConnectionIdleTimeoutNanos() - idleNanos));
+      return;
+    }
+    // The request fails while the stack is busy, retry it so the connection does not stay at the high priority.
+    if (!requestConnectionPriority(options.getIdleConnectionPriority())
+        && connectionStatus.equals(ConnectionStatus.CONNECTED)) {
+      workHandler.postDelayed(connectionIdleCheck, toMillis(options.getConnectionIdleTimeoutNanos()));
+    }
+  }
+
+  private boolean requestConnectionPriority(int priority) {
+    // Calls queued while connecting are checked again once the channel is connected.
+    if (!connectionStatus.equals(ConnectionStatus.CONNECTED)) {
+      return false;
+    }
+    if (!bluetoothGatt.get().requestConnectionPriority(priority)) {
+      logger.info(String.format("Could not request connection priority %d.", priority));
+      return false;
+    }
+    options.getMetrics().onConnectionPriorityChanged(connectionPriority, priority);
+    connectionPriority = priority;
+    return true;
+  }
+
+  private static long toMillis(long nanos) {
+    return LongMath.divide(Math.max(0, nanos), 1000000, RoundingMode.CEILING);
+  }
+
+  private void stopWatchdog() {
+    workHandler.removeCallbacks(operationWatchdog);
+  }
+
+  private void handleOperationTimeout() {
+    if (options.getRecycleConnectionOnTimeout()
+        || (callInProgress.isPresent() && callInProgress.get().isUnsubscribeCall)) {
+      failAllAndReset("Bluetooth operation timed out.");
+      return;
+    }
+    if (callInProgress.isPresent()) {
+      expectLateCallbacks(callInProgress.get());
+      RpcCall rpcCall = finishRpcCall();
+      if (rpcCall.getMethodType().equals(MethodType.SUBSCRIBE)) {
+        failAllSubscribersAndClear(getSubscribingSubscription(rpcCall.getCharacteristic()),
+            "Subscribing to characteristic %s timed out.", rpcCall.getCharacteristic());
+      } else {
+        notifyCallFailed(rpcCall, "Call to characteristic %s timed out.", rpcCall.getCharacteristic());
+      }
+    } else {
+      for (RpcCall call : writesWithoutResponse) {
+        lateCharacteristicCallbacks.add(call.getCharacteristic());
+        notifyCallFailed(call, "Write to characteristic %s timed out.", call.getCharacteristic());
+      }
+      writesWithoutResponse.clear();
+    }
+    startNextCallIfNotInProgress();
+  }
+
+  private void expectLateCallbacks(RpcCall rpcCall) {
+    if (rpcCall.getMethodType().equals(MethodType.SUBSCRIBE)) {
+      lateDescriptorCallbacks.add(rpcCall.getCharacteristic());
+    } else {
+      // Chunks written without response are reported one by one, other calls wait for a single operation.
+      lateCharacteristicCallbacks.add(rpcCall.getCharacteristic(), Math.max(1, chunksInFlight));
+    }
+  }
+
+  private boolean isLateCallback(BluetoothGattCharacteristic characteristic) {
+    if (!lateCharacteristicCallbacks.remove(characteristic.getUuid())) {
+      return false;
+    }
+    logger.info(String.format("Late callback of characteristic %s ignored.", characteristic.getUuid()));
+    return true;
+  }
+
+  private boolean isLateCallback(BluetoothGattDescriptor descriptor) {
+    if (!lateDescriptorCallbacks.remove(descriptor.getCharacteristic().getUuid())) {
+      return false;
+    }
+    logger.info(String.format("Late callback of descriptor %s ignored.", descriptor.getUuid()));
+    return true;
+  }
+
+  private boolean isWaitingForCharacteristic(BluetoothGattCharacteristic characteristic) {
+    return callInProgress.isPresent() && callInProgress.get().getCharacteristic().equals(characteristic.getUuid());
+  }
+
+  // Descriptor writes the channel does not wait for are ignored.
+  private boolean isWaitingForDescriptor(BluetoothGattDescriptor descriptor, boolean enable) {
+    if (!callInProgress.isPresent()) {
+      return false;
+    }
+    RpcCall rpcCall = callInProgress.get();
+    if (!rpcCall.getMethodType().equals(MethodType.SUBSCRIBE)
+        || !rpcCall.getCharacteristic().equals(descriptor.getCharacteristic().getUuid())) {
+      return false;
+    }
+    return enable != rpcCall.isUnsubscribeCall;
   }
 
   private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
@@ -497,16 +1262,23 @@ public class BleRpcChannel implements RpcChannel {
           return;
         }
 
+        if (connectionStatus.equals(ConnectionStatus.DISCONNECTING)) {
+          if (state == BluetoothProfile.STATE_DISCONNECTED) {
+            finishDisconnecting();
+          }
+          return;
+        }
+
         boolean success =
             state == BluetoothProfile.STATE_CONNECTED
                 && status == BluetoothGatt.GATT_SUCCESS;
         if (!success) {
-          failAllAndReset("Could not connect: state=%d, status=%d.", state, status);
+          handleConnectionLost("Could not connect: state=%d, status=%d.", state, status);
           return;
         }
 
         if (!gatt.discoverServices()) {
-          failAllAndReset("Could not start service discovery.");
+          handleConnectionLost("Could not start service discovery.");
           return;
         }
       });
@@ -516,22 +1288,50 @@ public class BleRpcChannel implements RpcChannel {
     public void onServicesDiscovered(BluetoothGatt gatt, int status) {
       workHandler.post(() -> {
         if (status != BluetoothGatt.GATT_SUCCESS) {
-          failAllAndReset("Services discovery failed, status=%d.", status);
+          handleConnectionLost("Services discovery failed, status=%d.", status);
           return;
         }
 
-        connectionStatus = ConnectionStatus.CONNECTED;
-        startNextCall();
+        if (options.getMtu() != 0) {
+          if (gatt.requestMtu(options.getMtu())) {
+            // Connecting finishes in onMtuChanged.
+            connectionStatus = ConnectionStatus.NEGOTIATING_MTU;
+            return;
+          }
+          logger.info(String.format("Could not request MTU %d, using the default MTU.", options.getMtu()));
+        }
+        finishConnecting();
+      });
+    }
+
+    @Override
+    public void onMtuChanged(BluetoothGatt gatt, int newMtu, int status) {
+      workHandler.post(() -> {
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+          mtu = newMtu;
+        } else {
+          logger.info(String.format("MTU negotiation failed, status=%d.", status));
+        }
+        if (connectionStatus.equals(ConnectionStatus.NEGOTIATING_MTU)) {
+          finishConnecting();
+        }
       });
     }
 
     @Override
     public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
       workHandler.post(() -> {
-        if (status != BluetoothGatt.GATT_SUCCESS) {
+        if (isLateCallback(characteristic)) {
+          return;
+        }
+        if (!isWaitingForCharacteristic(characteristic)) {
+          logger.info(String.format("Unexpected read of characteristic %s.", characteristic.getUuid()));
+        } else if (status != BluetoothGatt.GATT_SUCCESS) {
           handleError("Failed to read characteristic %s: status=%d.", characteristic.getUuid(), status);
+        } else if (callInProgress.get().isFragmented()) {
+          handleChunkRead(characteristic.getValue());
         } else {
-          handleResult(characteristic.getValue());
+          handleResult(getValue(characteristic));
         }
       });
     }
@@ -539,10 +1339,19 @@ public class BleRpcChannel implements RpcChannel {
     @Override
     public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
       workHandler.post(() -> {
-        if (status != BluetoothGatt.GATT_SUCCESS) {
+        if (isLateCallback(characteristic)) {
+          return;
+        }
+        if (!writesWithoutResponse.isEmpty()) {
+          handleWriteWithoutResponseSent(characteristic, status);
+        } else if (!isWaitingForCharacteristic(characteristic)) {
+          logger.info(String.format("Unexpected write of characteristic %s.", characteristic.getUuid()));
+        } else if (callInProgress.get().isFragmented()) {
+          handleChunkWritten(characteristic, status);
+        } else if (status != BluetoothGatt.GATT_SUCCESS) {
           handleError("Failed to write characteristic %s: status=%d.", characteristic.getUuid(), status);
         } else {
-          handleResult(characteristic.getValue());
+          handleResult(getValue(characteristic));
         }
       });
     }
@@ -550,8 +1359,14 @@ public class BleRpcChannel implements RpcChannel {
     @Override
     public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
       workHandler.post(() -> {
+        if (isLateCallback(descriptor)) {
+          return;
+        }
         byte[] value = descriptor.getValue();
-        if (Arrays.equals(value, ENABLE_NOTIFICATION_VALUE)) {
+        boolean enable = Arrays.equals(value, ENABLE_NOTIFICATION_VALUE);
+        if (!isWaitingForDescriptor(descriptor, enable)) {
+          logger.info(String.format("Unexpected write of descriptor %s.", descriptor.getUuid()));
+        } else if (enable) {
           handleSubscribed(status);
         } else if (Arrays.equals(value, DISABLE_NOTIFICATION_VALUE)) {
           handleUnsubscribed(gatt, status);
@@ -567,18 +1382,113 @@ public class BleRpcChannel implements RpcChannel {
     }
   };
 
-  protected void reset() {
-    connectionStatus = ConnectionStatus.DISCONNECTED;
-    callInProgress = false;
-    calls.clear();
-    subscriptions.clear();
+  private void finishConnecting() {
+    connectionStatus = ConnectionStatus.CONNECTED;
+    reconnectAttempts = 0;
+    if (isQueueBusy()) {
+      onConnectionBusy();
+    }
+    startNextCall();
+  }
+
+  private void handleConnectionLost(String format, Object... args) {
+    if (reconnectAttempts >= options.getMaxReconnectAttempts()) {
+      failAllAndReset(format, args);
+      return;
+    }
+    logger.info(String.format("Connection lost: %s", String.format(format, args)));
+    // Operations that might have reached the device are not repeated.
+    if (callInProgress.isPresent()) {
+      RpcCall rpcCall = finishRpcCall();
+      if (rpcCall.getMethodType().equals(MethodType.READ)) {
+        calls.add(rpcCall);
+      } else if (rpcCall.getMethodType().equals(MethodType.WRITE)) {
+        notifyCallFailed(rpcCall, format, args);
+      }
+    }
+    for (RpcCall call : writesWithoutResponse) {
+      notifyCallFailed(call, format, args);
+    }
+    writesWithoutResponse.clear();
+    restoreSubscriptions();
+    closeConnection();
+
+    if (calls.isEmpty()) {
+      reset();
+      return;
+    }
+    long delayNanos = Math.min(options.getMaxReconnectDelayNanos(),
+        LongMath.saturatedMultiply(options.getInitialReconnectDelayNanos(),
+            LongMath.saturatedPow(2, reconnectAttempts)));
+    reconnectAttempts++;
+    connectionStatus = ConnectionStatus.WAITING_TO_RECONNECT;
+    workHandler.postDelayed(reconnect, toMillis(delayNanos));
+  }
+
+  // Queue subscriptions to be enabled again once the connection is restored.
+  private void restoreSubscriptions() {
+    ImmutableSet<RpcCall> queuedCalls = ImmutableSet.copyOf(calls);
+    for (RpcCall call : queuedCalls) {
+      // Notifications are disabled when the connection is lost.
+      if (call.isUnsubscribeCall) {
+        removeQueuedCall(call);
+      }
+    }
+    for (SubscriptionCallsGroup subscription : ImmutableList.copyOf(subscriptions.values())) {
+      subscription.clearCanceled();
+      if (!subscription.hasAnySubscriber()) {
+        subscriptions.remove(subscription.characteristicUuid);
+        continue;
+      }
+      subscription.status = SubscriptionStatus.UNSUBSCRIBED;
+      for (RpcCall call : subscription.calls) {
+        if (!queuedCalls.contains(call)) {
+          calls.add(call);
+        }
+      }
+    }
+  }
+
+  private void closeConnection() {
+    mtu = DEFAULT_MTU;
+    connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+    notificationsInWindow = 0;
+    workHandler.removeCallbacks(connectionIdleCheck);
+    workHandler.removeCallbacks(releaseConnection);
+    workHandler.removeCallbacks(disconnectWatchdog);
+    workHandler.removeCallbacks(queuedCallsExpiry);
+    stopWatchdog();
+    // A closed connection reports no more callbacks.
+    lateCharacteristicCallbacks.clear();
+    lateDescriptorCallbacks.clear();
     if (bluetoothGatt.isPresent()) {
       bluetoothGatt.get().close();
       bluetoothGatt = Optional.absent();
     }
+    if (options.getConnectionPool().isPresent()) {
+      reportedConnectionIdle = false;
+      options.getConnectionPool().get().release(connectionPoolClient);
+    }
+  }
+
+  protected void reset() {
+    connectionStatus = ConnectionStatus.DISCONNECTED;
+    reconnectAttempts = 0;
+    workHandler.removeCallbacks(reconnect);
+    callInProgress = Optional.absent();
+    calls.clear();
+    writesWithoutResponse.clear();
+    subscriptions.clear();
+    pendingReads.clear();
+    queuedCoalescingWrites.clear();
+    subscriptionsWithPendingNotifications.clear();
+    workHandler.removeCallbacks(notificationFlush);
+    closeConnection();
   }
 
   private void failAllSubscribers(SubscriptionCallsGroup subscription, String format, Object... args) {
+    // Notifications received before the failure are delivered before it.
+    flushNotifications();
     for (RpcCall rpcCall : subscription.calls) {
       notifyCallFailed(rpcCall, format, args);
     }
@@ -592,13 +1502,22 @@ public class BleRpcChannel implements RpcChannel {
   }
 
   private void failAllAndReset(String format, Object... args) {
-    FluentIterable<RpcCall> callsToNotify = FluentIterable.from(calls)
+    flushNotifications();
+    // Calls attached to a pending READ call are failed together with it.
+    ImmutableSet<RpcCall> pendingCalls = ImmutableSet.<RpcCall>builder()
+        .addAll(callInProgress.asSet())
+        .addAll(calls)
+        .build();
+    FluentIterable<RpcCall> callsToNotify = FluentIterable.from(pendingCalls)
         .filter(rpcCall -> !rpcCall.isUnsubscribeCall)
         .filter(rpcCall -> !skipFailedCall(rpcCall));
     for (RpcCall call : callsToNotify) {
       notifyCallFailed(call, format, args);
     }
-    for (RpcCall call : Sets.difference(allSubscriptionCalls(), ImmutableSet.copyOf(calls))) {
+    for (RpcCall call : writesWithoutResponse) {
+      notifyCallFailed(call, format, args);
+    }
+    for (RpcCall call : Sets.difference(allSubscriptionCalls(), pendingCalls)) {
       notifyCallFailed(call, format, args);
     }
     // TODO: reset before calling user code.
@@ -610,8 +1529,10 @@ public class BleRpcChannel implements RpcChannel {
   }
 
   private void notifyCallFailed(RpcCall rpcCall, String format, Object... args) {
-    rpcCall.controller.setFailed(String.format(format, args));
-    notifyDefaultResultForCall(rpcCall);
+    for (RpcCall call : detachCoalescedCalls(rpcCall)) {
+      call.controller.setFailed(String.format(format, args));
+      callCallback(call, call.responsePrototype.getDefaultInstanceForType());
+    }
   }
 
   private void notifyDefaultResultForCall(RpcCall rpcCall) {
@@ -619,7 +1540,22 @@ public class BleRpcChannel implements RpcChannel {
   }
 
   private void notifyResultForCall(RpcCall rpcCall, Message message) {
-    callCallback(rpcCall, message);
+    for (RpcCall call : detachCoalescedCalls(rpcCall)) {
+      callCallback(call, message);
+    }
+  }
+
+  // Finish coalescing into the call, new identical calls will queue a new one.
+  private ImmutableList<RpcCall> detachCoalescedCalls(RpcCall rpcCall) {
+    if (!pendingReads.isEmpty() && pendingReads.get(rpcCall.route) == rpcCall) {
+      pendingReads.remove(rpcCall.route);
+    }
+    ImmutableList<RpcCall> waitingCalls = ImmutableList.<RpcCall>builder()
+        .add(rpcCall)
+        .addAll(rpcCall.coalescedCalls)
+        .build();
+    rpcCall.coalescedCalls.clear();
+    return waitingCalls;
   }
 
   private void callCallback(RpcCall rpcCall, Message message) {
@@ -631,94 +1567,126 @@ public class BleRpcChannel implements RpcChannel {
     listenerHandler.post(() -> rpcCall.done.run(message));
   }
 
-  private static class RpcCall {
+  private static class RpcCall implements CallScheduler.Call {
     private final MethodDescriptor method;
+    private final MethodRoute route;
     private final BleRpcController controller;
     private final Message request;
     private final Message responsePrototype;
     private final RpcCallback<Message> done;
     private final boolean isUnsubscribeCall;
-    private final UUID serviceUuid;
-    private final UUID characteristicUuid;
-    private final UUID descriptorUuid;
+    private final CallPriority priority;
+    private final long enqueueTimeNanos;
+    private final long deadlineNanos;
+    // Identical READ calls that wait for the result of this call.
+    private final List<RpcCall> coalescedCalls = new ArrayList<>();
+    private boolean subscribeSuccessNotified = false;
 
     // Create normal RpcCall.
     RpcCall(MethodDescriptor method, BleRpcController controller, Message request, Message responsePrototype,
-            RpcCallback<Message> done) {
+            RpcCallback<Message> done, long enqueueTimeNanos, long defaultTimeoutNanos) {
       this.method = method;
+      this.route = MethodRoute.forMethod(method);
       this.controller = controller;
       this.request = request;
       this.responsePrototype = responsePrototype;
       this.done = done;
       this.isUnsubscribeCall = false;
-      this.serviceUuid = null;
-      this.characteristicUuid = null;
-      this.descriptorUuid = null;
+      // The priority set in the controller wins over the priority declared for the method.
+      this.priority = controller.getPriority().equals(CallPriority.PRIORITY_DEFAULT)
+          ? route.getPriority()
+          : controller.getPriority();
+      this.enqueueTimeNanos = enqueueTimeNanos;
+      long timeoutNanos = controller.getTimeoutNanos() == 0 ? defaultTimeoutNanos : controller.getTimeoutNanos();
+      // Subscriptions last until they are cancelled, only their operations time out.
+      this.deadlineNanos = timeoutNanos == 0 || route.getMethodType().equals(MethodType.SUBSCRIBE)
+          ? Long.MAX_VALUE
+          : LongMath.saturatedAdd(enqueueTimeNanos, timeoutNanos);
     }
 
     // Create fake RpcCall for unsubscribing.
-    RpcCall(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid) {
+    RpcCall(MethodRoute route, long enqueueTimeNanos) {
       this.method = null;
+      this.route = route;
       this.controller = null;
       this.request = null;
       this.responsePrototype = null;
       this.done = null;
       this.isUnsubscribeCall = true;
-      this.serviceUuid = serviceUuid;
-      this.characteristicUuid = characteristicUuid;
-      this.descriptorUuid = descriptorUuid;
+      this.priority = route.getPriority();
+      this.enqueueTimeNanos = enqueueTimeNanos;
+      this.deadlineNanos = Long.MAX_VALUE;
     }
 
-    static RpcCall unsubscribeCall(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid) {
-      return new RpcCall(serviceUuid, characteristicUuid, descriptorUuid);
+    static RpcCall unsubscribeCall(MethodRoute route, long enqueueTimeNanos) {
+      return new RpcCall(route, enqueueTimeNanos);
+    }
+
+    @Override
+    public CallPriority getPriority() {
+      return priority;
+    }
+
+    @Override
+    public long getEnqueueTimeNanos() {
+      return enqueueTimeNanos;
     }
 
     UUID getService() {
-      if (isUnsubscribeCall) {
-        return serviceUuid;
-      }
-      return UUID.fromString(method.getService().getOptions().getExtension(Blerpc.service).getUuid());
+      return route.getService();
     }
 
-    UUID getCharacteristic() {
-      if (isUnsubscribeCall) {
-        return characteristicUuid;
-      }
-      return UUID.fromString(method.getOptions().getExtension(Blerpc.characteristic).getUuid());
+    @Override
+    public UUID getCharacteristic() {
+      return route.getCharacteristic();
     }
 
     UUID getDescriptor() {
-      if (isUnsubscribeCall) {
-        return descriptorUuid;
-      }
-      String descriptorUuid = method.getOptions().getExtension(Blerpc.characteristic).getDescriptorUuid();
-      return descriptorUuid.isEmpty() ? null : UUID.fromString(descriptorUuid);
+      return route.getDescriptor();
     }
 
     MethodType getMethodType() {
-      if (isUnsubscribeCall) {
-        return MethodType.SUBSCRIBE;
-      }
-      return method.getOptions().getExtension(Blerpc.characteristic).getType();
+      return route.getMethodType();
+    }
+
+    boolean isWriteWithoutResponse() {
+      return route.isWriteWithoutResponse();
+    }
+
+    boolean isCoalescingWrite() {
+      return route.isCoalescingWrite();
+    }
+
+    boolean isFragmented() {
+      return route.isFragmented();
     }
   }
 
   private static class SubscriptionCallsGroup {
-    private final UUID serviceUuid;
     private final UUID characteristicUuid;
-    private final UUID descriptorUuid;
     private final Set<RpcCall> calls = new HashSet<>();
     private SubscriptionStatus status = SubscriptionStatus.UNSUBSCRIBED;
     private final MethodDescriptor method;
+    private final MethodRoute route;
     private final Message responsePrototype;
-
-    private SubscriptionCallsGroup(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid,
-                                   MethodDescriptor method, Message responsePrototype) {
-      this.serviceUuid = serviceUuid;
-      this.characteristicUuid = characteristicUuid;
-      this.descriptorUuid = descriptorUuid;
+    // Notifications that wait for the end of the batch window.
+    private final List<Message> pendingNotifications = new ArrayList<>();
+    // Chunks of the notified value, only used by fragmented characteristics. Notifications are not acknowledged, so a
+    // value with a lost chunk is dropped instead of failing the subscription.
+    private final Fragments.Reassembler reassembler;
+    // The last rebuilt value of delta-encoded characteristics, null for other characteristics.
+    private final DeltaStream deltaStream;
+
+    private SubscriptionCallsGroup(MethodDescriptor method, MethodRoute route, Message responsePrototype,
+                                   BleRpcChannelMetrics metrics) {
+      this.characteristicUuid = route.getCharacteristic();
       this.method = method;
+      this.route = route;
       this.responsePrototype = responsePrototype;
+      this.reassembler = new Fragments.Reassembler(() -> metrics.onFragmentedNotificationDropped(method));
+      this.deltaStream = route.isDeltaEncoded()
+          ? new DeltaStream(route.getDeltaWordSize(), route.getDeltaByteOrder())
+          : null;
     }
 
     void clearCanceled() {
@@ -736,9 +1704,37 @@ public class BleRpcChannel implements RpcChannel {
     }
   }
 
+  // Notifications delivered to the subscribers of a characteristic with a single post to the listener handler.
+  private static class NotificationBatch {
+    private final ImmutableList<RpcCall> subscribers;
+    private final List<Message> notifications;
+
+    NotificationBatch(Collection<RpcCall> subscribers, List<Message> notifications) {
+      this.subscribers = ImmutableList.copyOf(subscribers);
+      this.notifications = Collections.unmodifiableList(new ArrayList<>(notifications));
+    }
+
+    void deliver() {
+      for (RpcCall subscriber : subscribers) {
+        Optional<RpcCallback<List<Message>>> batchCallback = subscriber.controller.getNotificationBatchCallback();
+        if (batchCallback.isPresent()) {
+          batchCallback.get().run(notifications);
+          continue;
+        }
+        for (Message notification : notifications) {
+          subscriber.done.run(notification);
+        }
+      }
+    }
+  }
+
   private enum ConnectionStatus {
     DISCONNECTED,
+    WAITING_TO_RECONNECT,
+    WAITING_FOR_CONNECTION_SLOT,
+    DISCONNECTING,
     CONNECTING,
+    NEGOTIATING_MTU,
     CONNECTED
   }
 
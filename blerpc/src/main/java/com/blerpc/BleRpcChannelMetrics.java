@@ -0,0 +1,97 @@
+package com.blerpc;
+
+import com.blerpc.proto.CallPriority;
+import com.blerpc.proto.MethodType;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+
+/**
+ * A listener for performance events of a {@link BleRpcChannel}. Methods are called on the channel's work handler
+ * and must return quickly. All methods do nothing by default.
+ */
+public interface BleRpcChannelMetrics {
+
+  /**
+   * A metrics listener that ignores all events.
+   */
+  BleRpcChannelMetrics NONE = new BleRpcChannelMetrics() {
+  };
+
+  /**
+   * Called when a call leaves the queue to be sent to the device.
+   *
+   * @param priority  the priority class of the call.
+   * @param waitNanos how long the call waited in the queue.
+   */
+  default void onQueueWait(CallPriority priority, long waitNanos) {
+  }
+
+  /**
+   * Called when a call is merged with another call to the same characteristic instead of being sent on its own.
+   *
+   * @param methodType the type of the coalesced call.
+   */
+  default void onCallCoalesced(MethodType methodType) {
+  }
+
+  /**
+   * Called when the channel changed the connection priority, see
+   * {@link android.bluetooth.BluetoothGatt#requestConnectionPriority(int)}.
+   *
+   * @param previousPriority the connection priority before the change.
+   * @param priority         the requested connection priority.
+   */
+  default void onConnectionPriorityChanged(int previousPriority, int priority) {
+  }
+
+  /**
+   * Called when the channel allocates a buffer for the value of a write. Without pooled request buffers every write
+   * allocates its value, see {@link BleRpcChannelOptions.Builder#setPooledRequestBuffers(boolean)}.
+   *
+   * @param sizeBytes the size of the allocated buffer.
+   */
+  default void onRequestBufferAllocated(int sizeBytes) {
+  }
+
+  /**
+   * Called when a notification of a delta-encoded characteristic is dropped because an earlier notification was lost
+   * and the next keyframe has not arrived yet, see com.blerpc.BleCharacteristicRule.delta_word_size.
+   *
+   * @param method the subscribed method.
+   */
+  default void onDeltaNotificationDropped(MethodDescriptor method) {
+  }
+
+  /**
+   * Called when a notification of a fragmented characteristic is dropped because one of its chunks was lost, see
+   * com.blerpc.BleCharacteristicRule.fragmented.
+   *
+   * @param method the subscribed method.
+   */
+  default void onFragmentedNotificationDropped(MethodDescriptor method) {
+  }
+
+  /**
+   * Called by a {@link ConnectionPool} when a channel takes or returns a slot or starts or stops waiting for one. Pool
+   * events are called on the work handler of any channel using the pool.
+   *
+   * @param connections    the number of channels that hold a slot.
+   * @param waiting        the number of channels waiting for a slot.
+   * @param maxConnections the number of slots of the pool.
+   */
+  default void onConnectionPoolChanged(int connections, int waiting, int maxConnections) {
+  }
+
+  /**
+   * Called by a {@link ConnectionPool} when a channel takes a slot.
+   *
+   * @param waitNanos how long the channel waited for the slot, 0 if a slot was free.
+   */
+  default void onConnectionSlotWait(long waitNanos) {
+  }
+
+  /**
+   * Called by a {@link ConnectionPool} when an idle channel closed its connection to free a slot for a waiting channel.
+   */
+  default void onIdleConnectionEvicted() {
+  }
+}
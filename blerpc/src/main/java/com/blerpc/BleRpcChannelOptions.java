@@ -0,0 +1,559 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.bluetooth.BluetoothGatt;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options of a {@link BleRpcChannel}.
+ */
+public class BleRpcChannelOptions {
+
+  private static final BleRpcChannelOptions DEFAULT_INSTANCE = newBuilder().build();
+
+  private final int writeWithoutResponseCredits;
+  private final boolean coalesceReads;
+  private final int mtu;
+  private final int highPriorityQueueDepth;
+  private final int highPriorityNotificationRate;
+  private final long connectionIdleTimeoutNanos;
+  private final int idleConnectionPriority;
+  private final int maxReconnectAttempts;
+  private final long initialReconnectDelayNanos;
+  private final long maxReconnectDelayNanos;
+  private final long connectionLingerNanos;
+  private final long notificationBatchWindowNanos;
+  private final long callTimeoutNanos;
+  private final long operationTimeoutNanos;
+  private final boolean recycleConnectionOnTimeout;
+  private final boolean pooledRequestBuffers;
+  private final CallScheduler.Factory callSchedulerFactory;
+  private final BleRpcChannelMetrics metrics;
+  private final Optional<ConnectionPool> connectionPool;
+  private final Ticker ticker;
+
+  private BleRpcChannelOptions(Builder builder) {
+    this.writeWithoutResponseCredits = builder.writeWithoutResponseCredits;
+    this.coalesceReads = builder.coalesceReads;
+    this.mtu = builder.mtu;
+    this.highPriorityQueueDepth = builder.highPriorityQueueDepth;
+    this.highPriorityNotificationRate = builder.highPriorityNotificationRate;
+    this.connectionIdleTimeoutNanos = builder.connectionIdleTimeoutNanos;
+    this.idleConnectionPriority = builder.idleConnectionPriority;
+    this.maxReconnectAttempts = builder.maxReconnectAttempts;
+    this.initialReconnectDelayNanos = builder.initialReconnectDelayNanos;
+    this.maxReconnectDelayNanos = builder.maxReconnectDelayNanos;
+    this.connectionLingerNanos = builder.connectionLingerNanos;
+    this.notificationBatchWindowNanos = builder.notificationBatchWindowNanos;
+    this.callTimeoutNanos = builder.callTimeoutNanos;
+    this.operationTimeoutNanos = builder.operationTimeoutNanos;
+    this.recycleConnectionOnTimeout = builder.recycleConnectionOnTimeout;
+    this.pooledRequestBuffers = builder.pooledRequestBuffers;
+    this.callSchedulerFactory = builder.callSchedulerFactory;
+    this.metrics = builder.metrics;
+    this.connectionPool = builder.connectionPool;
+    this.ticker = builder.ticker;
+  }
+
+  /**
+   * Get options with default values.
+   *
+   * @return default options.
+   */
+  public static BleRpcChannelOptions getDefaultInstance() {
+    return DEFAULT_INSTANCE;
+  }
+
+  /**
+   * Create a builder for {@link BleRpcChannelOptions}.
+   *
+   * @return a builder with default values.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Get the maximum number of write-without-response calls that can be handed to the bluetooth stack
+   * before the channel waits for the stack to accept them.
+   *
+   * @return the number of write credits.
+   */
+  public int getWriteWithoutResponseCredits() {
+    return writeWithoutResponseCredits;
+  }
+
+  /**
+   * Check if a READ call made while an identical READ call is queued or in progress waits for its result
+   * instead of reading the characteristic again.
+   *
+   * @return true if READ calls are coalesced.
+   */
+  public boolean getCoalesceReads() {
+    return coalesceReads;
+  }
+
+  /**
+   * Get the MTU the channel requests after connecting to the device.
+   *
+   * @return the requested MTU, 0 if the channel doesn't negotiate MTU.
+   */
+  public int getMtu() {
+    return mtu;
+  }
+
+  /**
+   * Get the number of queued calls at which the channel requests {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH}.
+   *
+   * @return the queue depth threshold, 0 if queue depth doesn't change the connection priority.
+   */
+  public int getHighPriorityQueueDepth() {
+    return highPriorityQueueDepth;
+  }
+
+  /**
+   * Get the number of notifications per second at which the channel requests
+   * {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH}.
+   *
+   * @return the notification rate threshold, 0 if notifications don't change the connection priority.
+   */
+  public int getHighPriorityNotificationRate() {
+    return highPriorityNotificationRate;
+  }
+
+  /**
+   * Get the time without high load after which the channel leaves {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH}.
+   *
+   * @return the idle timeout in nanoseconds.
+   */
+  public long getConnectionIdleTimeoutNanos() {
+    return connectionIdleTimeoutNanos;
+  }
+
+  /**
+   * Get the connection priority the channel requests when the connection becomes idle.
+   *
+   * @return {@link BluetoothGatt#CONNECTION_PRIORITY_BALANCED} or {@link BluetoothGatt#CONNECTION_PRIORITY_LOW_POWER}.
+   */
+  public int getIdleConnectionPriority() {
+    return idleConnectionPriority;
+  }
+
+  /**
+   * Get the number of times in a row the channel tries to restore a lost connection before failing all calls.
+   *
+   * @return the number of reconnect attempts, 0 if the channel doesn't reconnect.
+   */
+  public int getMaxReconnectAttempts() {
+    return maxReconnectAttempts;
+  }
+
+  /**
+   * Get the delay before the first attempt to restore a lost connection.
+   *
+   * @return the initial reconnect delay in nanoseconds.
+   */
+  public long getInitialReconnectDelayNanos() {
+    return initialReconnectDelayNanos;
+  }
+
+  /**
+   * Get the longest delay between attempts to restore a lost connection.
+   *
+   * @return the maximum reconnect delay in nanoseconds.
+   */
+  public long getMaxReconnectDelayNanos() {
+    return maxReconnectDelayNanos;
+  }
+
+  /**
+   * Get the time the connection is kept open after the channel runs out of calls and subscriptions.
+   *
+   * @return the linger time in nanoseconds, 0 if the connection is kept open until the channel is reset.
+   */
+  public long getConnectionLingerNanos() {
+    return connectionLingerNanos;
+  }
+
+  /**
+   * Get the time notifications are collected for before they are delivered to subscribers together.
+   *
+   * @return the batch window in nanoseconds, 0 if every notification is delivered as soon as it is received.
+   */
+  public long getNotificationBatchWindowNanos() {
+    return notificationBatchWindowNanos;
+  }
+
+  /**
+   * Get the default time a READ or WRITE call may take, counted from the moment it is made.
+   *
+   * @return the call timeout in nanoseconds, 0 if calls don't time out.
+   */
+  public long getCallTimeoutNanos() {
+    return callTimeoutNanos;
+  }
+
+  /**
+   * Get the time the channel waits for the bluetooth stack to report the result of an operation.
+   *
+   * @return the operation timeout in nanoseconds, 0 if the channel waits forever.
+   */
+  public long getOperationTimeoutNanos() {
+    return operationTimeoutNanos;
+  }
+
+  /**
+   * Check if the GATT connection is closed and all calls fail when an operation times out.
+   *
+   * @return true if the connection is recycled on timeouts.
+   */
+  public boolean getRecycleConnectionOnTimeout() {
+    return recycleConnectionOnTimeout;
+  }
+
+  /**
+   * Check if requests are serialized into buffers that the channel reuses for later writes.
+   *
+   * @return true if request buffers are pooled.
+   */
+  public boolean getPooledRequestBuffers() {
+    return pooledRequestBuffers;
+  }
+
+  /**
+   * Get the factory of the scheduler that orders queued calls.
+   *
+   * @return the call scheduler factory.
+   */
+  public CallScheduler.Factory getCallSchedulerFactory() {
+    return callSchedulerFactory;
+  }
+
+  /**
+   * Get the listener for performance events of the channel.
+   *
+   * @return the metrics listener.
+   */
+  public BleRpcChannelMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get the pool that bounds the number of connections the channel shares with other channels.
+   *
+   * @return the connection pool, absent if the channel connects without waiting for a slot.
+   */
+  public Optional<ConnectionPool> getConnectionPool() {
+    return connectionPool;
+  }
+
+  Ticker getTicker() {
+    return ticker;
+  }
+
+  /**
+   * A builder for {@link BleRpcChannelOptions}.
+   */
+  public static class Builder {
+
+    private int writeWithoutResponseCredits = 4;
+    private boolean coalesceReads = false;
+    private int mtu = 0;
+    private int highPriorityQueueDepth = 0;
+    private int highPriorityNotificationRate = 0;
+    private long connectionIdleTimeoutNanos = TimeUnit.SECONDS.toNanos(2);
+    private int idleConnectionPriority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+    private int maxReconnectAttempts = 0;
+    private long initialReconnectDelayNanos = TimeUnit.MILLISECONDS.toNanos(500);
+    private long maxReconnectDelayNanos = TimeUnit.SECONDS.toNanos(30);
+    private long connectionLingerNanos = 0;
+    private long notificationBatchWindowNanos = 0;
+    private long callTimeoutNanos = 0;
+    private long operationTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private boolean recycleConnectionOnTimeout = false;
+    private boolean pooledRequestBuffers = false;
+    private CallScheduler.Factory callSchedulerFactory = FifoCallScheduler.factory();
+    private BleRpcChannelMetrics metrics = BleRpcChannelMetrics.NONE;
+    private Optional<ConnectionPool> connectionPool = Optional.absent();
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder() {
+    }
+
+    /**
+     * Set the maximum number of outstanding write-without-response calls.
+     *
+     * @param writeWithoutResponseCredits a positive number of write credits.
+     * @return this builder.
+     */
+    public Builder setWriteWithoutResponseCredits(int writeWithoutResponseCredits) {
+      checkArgument(writeWithoutResponseCredits > 0, "Write credits must be positive, got %s.",
+          writeWithoutResponseCredits);
+      this.writeWithoutResponseCredits = writeWithoutResponseCredits;
+      return this;
+    }
+
+    /**
+     * Set whether identical READ calls share one characteristic read. Disabled by default, enable it only if all
+     * characteristics read by the channel return the same value to reads that overlap in time. A call is coalesced
+     * into a read in progress, or into a queued read of the same or higher priority.
+     *
+     * @param coalesceReads true to coalesce READ calls.
+     * @return this builder.
+     */
+    public Builder setCoalesceReads(boolean coalesceReads) {
+      this.coalesceReads = coalesceReads;
+      return this;
+    }
+
+    /**
+     * Set the MTU to request after connecting to the device. The device may agree to a smaller MTU,
+     * see {@link BleRpcChannel#getMtu()}.
+     *
+     * @param mtu the MTU from {@value BleRpcChannel#DEFAULT_MTU} to {@value BleRpcChannel#MAX_MTU},
+     *            0 to keep the default MTU.
+     * @return this builder.
+     */
+    public Builder setMtu(int mtu) {
+      checkArgument(mtu == 0 || (mtu >= BleRpcChannel.DEFAULT_MTU && mtu <= BleRpcChannel.MAX_MTU),
+          "MTU must be 0 or from %s to %s, got %s.", BleRpcChannel.DEFAULT_MTU, BleRpcChannel.MAX_MTU, mtu);
+      this.mtu = mtu;
+      return this;
+    }
+
+    /**
+     * Set the number of queued calls at which the channel requests {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH}
+     * to drain the queue faster. Disabled by default.
+     *
+     * @param highPriorityQueueDepth the queue depth threshold, 0 to disable.
+     * @return this builder.
+     */
+    public Builder setHighPriorityQueueDepth(int highPriorityQueueDepth) {
+      checkArgument(highPriorityQueueDepth >= 0, "Queue depth must not be negative, got %s.", highPriorityQueueDepth);
+      this.highPriorityQueueDepth = highPriorityQueueDepth;
+      return this;
+    }
+
+    /**
+     * Set the number of notifications per second at which the channel requests
+     * {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH}. Disabled by default.
+     *
+     * @param highPriorityNotificationRate the notification rate threshold, 0 to disable.
+     * @return this builder.
+     */
+    public Builder setHighPriorityNotificationRate(int highPriorityNotificationRate) {
+      checkArgument(highPriorityNotificationRate >= 0, "Notification rate must not be negative, got %s.",
+          highPriorityNotificationRate);
+      this.highPriorityNotificationRate = highPriorityNotificationRate;
+      return this;
+    }
+
+    /**
+     * Set the time without high load after which the channel leaves {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH}.
+     * 2 seconds by default.
+     *
+     * @param connectionIdleTimeout the idle timeout.
+     * @param timeUnit              the time unit of the timeout.
+     * @return this builder.
+     */
+    public Builder setConnectionIdleTimeout(long connectionIdleTimeout, TimeUnit timeUnit) {
+      checkArgument(connectionIdleTimeout > 0, "Idle timeout must be positive, got %s.", connectionIdleTimeout);
+      this.connectionIdleTimeoutNanos = timeUnit.toNanos(connectionIdleTimeout);
+      return this;
+    }
+
+    /**
+     * Set the connection priority the channel requests when the connection becomes idle.
+     * {@link BluetoothGatt#CONNECTION_PRIORITY_BALANCED} by default.
+     *
+     * @param idleConnectionPriority {@link BluetoothGatt#CONNECTION_PRIORITY_BALANCED} or
+     *                               {@link BluetoothGatt#CONNECTION_PRIORITY_LOW_POWER}.
+     * @return this builder.
+     */
+    public Builder setIdleConnectionPriority(int idleConnectionPriority) {
+      checkArgument(idleConnectionPriority == BluetoothGatt.CONNECTION_PRIORITY_BALANCED
+          || idleConnectionPriority == BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER,
+          "Unsupported idle connection priority %s.", idleConnectionPriority);
+      this.idleConnectionPriority = idleConnectionPriority;
+      return this;
+    }
+
+    /**
+     * Set the number of times in a row the channel tries to restore a lost connection. While reconnecting, queued
+     * calls wait and subscriptions are kept, they are restored once the device is connected again. Calls that might
+     * have reached the device when the connection was lost fail. Disabled by default.
+     *
+     * @param maxReconnectAttempts the number of reconnect attempts, 0 to fail all calls when the connection is lost.
+     * @return this builder.
+     */
+    public Builder setMaxReconnectAttempts(int maxReconnectAttempts) {
+      checkArgument(maxReconnectAttempts >= 0, "Reconnect attempts must not be negative, got %s.",
+          maxReconnectAttempts);
+      this.maxReconnectAttempts = maxReconnectAttempts;
+      return this;
+    }
+
+    /**
+     * Set the delays between attempts to restore a lost connection. The delay starts at the initial delay and
+     * doubles with every failed attempt up to the maximum delay. 500 milliseconds to 30 seconds by default.
+     *
+     * @param initialDelay the delay before the first attempt.
+     * @param maxDelay     the longest delay between attempts.
+     * @param timeUnit     the time unit of the delays.
+     * @return this builder.
+     */
+    public Builder setReconnectDelay(long initialDelay, long maxDelay, TimeUnit timeUnit) {
+      checkArgument(initialDelay >= 0, "Initial reconnect delay must not be negative, got %s.", initialDelay);
+      checkArgument(maxDelay >= initialDelay, "Maximum reconnect delay %s is less than the initial delay %s.",
+          maxDelay, initialDelay);
+      this.initialReconnectDelayNanos = timeUnit.toNanos(initialDelay);
+      this.maxReconnectDelayNanos = timeUnit.toNanos(maxDelay);
+      return this;
+    }
+
+    /**
+     * Set the time the connection is kept open after the channel runs out of calls and subscriptions. Calls made
+     * within this time skip connecting and service discovery, after it the device is disconnected. A call made while
+     * disconnecting opens a new connection as soon as the old one is closed. 0, the default, keeps the connection
+     * open until the channel is reset.
+     *
+     * @param connectionLinger the linger time.
+     * @param timeUnit         the time unit of the linger time.
+     * @return this builder.
+     */
+    public Builder setConnectionLinger(long connectionLinger, TimeUnit timeUnit) {
+      checkArgument(connectionLinger >= 0, "Connection linger must not be negative, got %s.", connectionLinger);
+      this.connectionLingerNanos = timeUnit.toNanos(connectionLinger);
+      return this;
+    }
+
+    /**
+     * Set the time notifications are collected for before they are delivered to subscribers together, with a
+     * single post to the listener handler. Subscribers with a batch callback receive all notifications of the window
+     * in one list, see {@link BleRpcController#setNotificationBatchCallback}. 0, the default, delivers every
+     * notification as soon as it is received.
+     *
+     * @param notificationBatchWindow the batch window.
+     * @param timeUnit                the time unit of the batch window.
+     * @return this builder.
+     */
+    public Builder setNotificationBatchWindow(long notificationBatchWindow, TimeUnit timeUnit) {
+      checkArgument(notificationBatchWindow >= 0, "Notification batch window must not be negative, got %s.",
+          notificationBatchWindow);
+      this.notificationBatchWindowNanos = timeUnit.toNanos(notificationBatchWindow);
+      return this;
+    }
+
+    /**
+     * Set the default time a READ or WRITE call may take, counted from the moment it is made. Queued calls that
+     * expire are failed without being sent. Can be overridden by {@link BleRpcController#setTimeout}.
+     *
+     * @param callTimeout the call timeout, 0 for calls that never time out.
+     * @param timeUnit    the time unit of the timeout.
+     * @return this builder.
+     */
+    public Builder setCallTimeout(long callTimeout, TimeUnit timeUnit) {
+      checkArgument(callTimeout >= 0, "Call timeout must not be negative, got %s.", callTimeout);
+      this.callTimeoutNanos = timeUnit.toNanos(callTimeout);
+      return this;
+    }
+
+    /**
+     * Set the time the channel waits for the bluetooth stack to report the result of an operation before the
+     * operation fails. 30 seconds by default.
+     *
+     * @param operationTimeout the operation timeout, 0 to wait forever.
+     * @param timeUnit         the time unit of the timeout.
+     * @return this builder.
+     */
+    public Builder setOperationTimeout(long operationTimeout, TimeUnit timeUnit) {
+      checkArgument(operationTimeout >= 0, "Operation timeout must not be negative, got %s.", operationTimeout);
+      this.operationTimeoutNanos = timeUnit.toNanos(operationTimeout);
+      return this;
+    }
+
+    /**
+     * Set whether the GATT connection is closed and all calls fail when an operation times out. Otherwise only the
+     * timed out call fails.
+     *
+     * @param recycleConnectionOnTimeout true to recycle the connection on timeouts.
+     * @return this builder.
+     */
+    public Builder setRecycleConnectionOnTimeout(boolean recycleConnectionOnTimeout) {
+      this.recycleConnectionOnTimeout = recycleConnectionOnTimeout;
+      return this;
+    }
+
+    /**
+     * Set whether requests are serialized into buffers that the channel reuses once the bluetooth stack has taken the
+     * written value, instead of the array returned by {@link MessageConverter#serializeRequest}. Requests are serialized
+     * with {@link MessageConverter#serializeRequest(com.google.protobuf.Descriptors.MethodDescriptor,
+     * com.google.protobuf.Message, int, java.nio.ByteBuffer)}, so the converter should implement it without allocating,
+     * like {@link AnnotationMessageConverter} does. The converter must not keep the values it deserializes responses
+     * of WRITE calls from, they are reused for later writes.
+     *
+     * @param pooledRequestBuffers true to pool request buffers.
+     * @return this builder.
+     */
+    public Builder setPooledRequestBuffers(boolean pooledRequestBuffers) {
+      this.pooledRequestBuffers = pooledRequestBuffers;
+      return this;
+    }
+
+    /**
+     * Set the factory of the scheduler that orders queued calls. By default calls are sent in the order they were made,
+     * set {@link PriorityCallScheduler#factory()} to send calls of a higher priority first.
+     *
+     * @param callSchedulerFactory the call scheduler factory.
+     * @return this builder.
+     */
+    public Builder setCallSchedulerFactory(CallScheduler.Factory callSchedulerFactory) {
+      this.callSchedulerFactory = checkNotNull(callSchedulerFactory);
+      return this;
+    }
+
+    /**
+     * Set the listener for performance events of the channel.
+     *
+     * @param metrics the metrics listener.
+     * @return this builder.
+     */
+    public Builder setMetrics(BleRpcChannelMetrics metrics) {
+      this.metrics = checkNotNull(metrics);
+      return this;
+    }
+
+    /**
+     * Set the pool that bounds the number of connections of all channels sharing it. A channel that connects while the
+     * pool is full waits for a slot with its calls queued, idle channels of the pool are disconnected to make room for
+     * it. Not set by default.
+     *
+     * @param connectionPool the connection pool.
+     * @return this builder.
+     */
+    public Builder setConnectionPool(ConnectionPool connectionPool) {
+      this.connectionPool = Optional.of(connectionPool);
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker);
+      return this;
+    }
+
+    /**
+     * Build {@link BleRpcChannelOptions}.
+     *
+     * @return the options.
+     */
+    public BleRpcChannelOptions build() {
+      return new BleRpcChannelOptions(this);
+    }
+  }
+}
@@ -1,7 +1,15 @@
 package com.blerpc;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.blerpc.proto.CallPriority;
+import com.google.common.base.Optional;
+import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -10,12 +18,20 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class BleRpcController implements RpcController {
 
   private AtomicBoolean canceled = new AtomicBoolean(false);
+  private AtomicBoolean coalesced = new AtomicBoolean(false);
   private boolean failed = false;
   private String failMassage = null;
+  private volatile CallPriority priority = CallPriority.PRIORITY_DEFAULT;
+  private volatile long timeoutNanos = 0;
+  private volatile Optional<RpcCallback<List<Message>>> notificationBatchCallback = Optional.absent();
 
   @Override
   public void reset() {
     canceled.set(false);
+    coalesced.set(false);
+    priority = CallPriority.PRIORITY_DEFAULT;
+    timeoutNanos = 0;
+    notificationBatchCallback = Optional.absent();
     synchronized (this) {
       failed = false;
       failMassage = null;
@@ -59,6 +75,82 @@ public class BleRpcController implements RpcController {
     throw new UnsupportedOperationException("Not implemented.");
   }
 
+  /**
+   * Set the scheduling priority of the call, overriding the priority declared for the method.
+   * Must be called before the call is made. Priorities are used by {@link PriorityCallScheduler}.
+   *
+   * @param priority the call priority, {@link CallPriority#PRIORITY_DEFAULT} to use the method's priority.
+   */
+  public void setPriority(CallPriority priority) {
+    this.priority = priority;
+  }
+
+  /**
+   * Get the scheduling priority of the call.
+   *
+   * @return the call priority, {@link CallPriority#PRIORITY_DEFAULT} if it wasn't set.
+   */
+  public CallPriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * Set the time the call may take, counted from the moment it is made. A call that doesn't finish in time
+   * fails. Overrides {@link BleRpcChannelOptions#getCallTimeoutNanos()}, must be called before the call is made.
+   * Only applies to {@link com.blerpc.proto.MethodType#READ} and {@link com.blerpc.proto.MethodType#WRITE} calls.
+   *
+   * @param timeout  the call timeout, 0 to use the channel's default.
+   * @param timeUnit the time unit of the timeout.
+   */
+  public void setTimeout(long timeout, TimeUnit timeUnit) {
+    checkArgument(timeout >= 0, "Timeout must not be negative, got %s.", timeout);
+    this.timeoutNanos = timeUnit.toNanos(timeout);
+  }
+
+  /**
+   * Get the time the call may take.
+   *
+   * @return the call timeout in nanoseconds, 0 if it wasn't set.
+   */
+  public long getTimeoutNanos() {
+    return timeoutNanos;
+  }
+
+  /**
+   * Set a callback that receives the notifications of a {@link com.blerpc.proto.MethodType#SUBSCRIBE} call in
+   * batches instead of the call's own callback. A batch holds the notifications received within
+   * {@link BleRpcChannelOptions#getNotificationBatchWindowNanos()}, in the order they were received.
+   * Must be called before the call is made.
+   *
+   * @param callback the callback to receive notification batches.
+   */
+  public void setNotificationBatchCallback(RpcCallback<List<Message>> callback) {
+    this.notificationBatchCallback = Optional.of(checkNotNull(callback));
+  }
+
+  /**
+   * Get the callback that receives notification batches.
+   *
+   * @return the batch callback, absent if notifications are delivered one by one.
+   */
+  public Optional<RpcCallback<List<Message>>> getNotificationBatchCallback() {
+    return notificationBatchCallback;
+  }
+
+  /**
+   * Check if the call was superseded by a newer call before it was sent to the device. Such calls complete
+   * with a default response, see {@link com.blerpc.proto.BleCharacteristicRule#getCoalesceWrites()}.
+   *
+   * @return true if the call was coalesced.
+   */
+  public boolean isCoalesced() {
+    return coalesced.get();
+  }
+
+  void setCoalesced() {
+    coalesced.set(true);
+  }
+
   /**
    * A callback that is called when a subscription to BLE characteristic process finished successfully.
    * It will always be called exactly once for {@link com.blerpc.proto.MethodType#SUBSCRIBE} methods.
@@ -0,0 +1,109 @@
+package com.blerpc;
+
+import com.blerpc.proto.CallPriority;
+import com.google.common.base.Ticker;
+import java.util.UUID;
+
+/**
+ * A queue of calls waiting to be sent to a device by a {@link BleRpcChannel}. Decides which call goes next.
+ *
+ * @param <T> type of the queued calls.
+ */
+public interface CallScheduler<T extends CallScheduler.Call> extends Iterable<T> {
+
+  /**
+   * Add a call to the queue.
+   *
+   * @param call the call to add.
+   */
+  void add(T call);
+
+  /**
+   * Get the call that should be sent next, without removing it. The queue must not be empty.
+   * Returns the same call until the queue is modified.
+   *
+   * @return the next call.
+   */
+  T peek();
+
+  /**
+   * Remove the call returned by {@link #peek()} because it is sent to the device. The queue must not be empty.
+   * Unlike calls dropped with {@link #remove(Call)}, sent calls count for the order of the following calls.
+   *
+   * @return the sent call.
+   */
+  default T poll() {
+    T call = peek();
+    remove(call);
+    return call;
+  }
+
+  /**
+   * Remove a call from the queue without sending it.
+   *
+   * @param call the call to remove.
+   * @return true if the call was in the queue.
+   */
+  boolean remove(T call);
+
+  /**
+   * Check if the queue is empty.
+   *
+   * @return true if there are no queued calls.
+   */
+  boolean isEmpty();
+
+  /**
+   * Get the number of queued calls.
+   *
+   * @return the number of queued calls.
+   */
+  int size();
+
+  /**
+   * Remove all calls from the queue.
+   */
+  void clear();
+
+  /**
+   * A call that can be scheduled.
+   */
+  interface Call {
+
+    /**
+     * Get the priority of the call. Never {@link CallPriority#PRIORITY_DEFAULT}.
+     *
+     * @return the call priority.
+     */
+    CallPriority getPriority();
+
+    /**
+     * Get the characteristic the call interacts with.
+     *
+     * @return the characteristic UUID.
+     */
+    UUID getCharacteristic();
+
+    /**
+     * Get the time the call was queued at.
+     *
+     * @return the {@link Ticker#read()} value at the time the call was queued.
+     */
+    long getEnqueueTimeNanos();
+  }
+
+  /**
+   * A factory for creating a scheduler for every channel.
+   */
+  interface Factory {
+
+    /**
+     * Create a {@link CallScheduler}.
+     *
+     * @param ticker a time source used for {@link Call#getEnqueueTimeNanos()}.
+     * @param <T>    type of the queued calls.
+     * @return a new empty scheduler.
+     */
+    <T extends Call> CallScheduler<T> create(Ticker ticker);
+  }
+}
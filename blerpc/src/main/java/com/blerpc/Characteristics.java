@@ -15,6 +15,12 @@ class Characteristics {
   /* Validate characteristic and descriptor to be usable for a given method. */
   public static void validate(BluetoothGatt bluetoothGatt, UUID serviceId, UUID characteristicId,
       UUID descriptorId, MethodType methodType) throws BleValidationException {
+    validate(bluetoothGatt, serviceId, characteristicId, descriptorId, methodType, /* withoutResponse= */ false);
+  }
+
+  /* Validate characteristic and descriptor to be usable for a given method, which may write without response. */
+  public static void validate(BluetoothGatt bluetoothGatt, UUID serviceId, UUID characteristicId,
+      UUID descriptorId, MethodType methodType, boolean withoutResponse) throws BleValidationException {
     BluetoothGattService service = bluetoothGatt.getService(serviceId);
     if (service == null) {
       throw new BleValidationException("Device does not have service %s.", serviceId);
@@ -36,6 +42,10 @@ class Characteristics {
     }
 
     validateCharacteristicProperties(serviceId, characteristicId, characteristic, methodType);
+    if (withoutResponse && !hasProperty(characteristic, BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE)) {
+      throw new BleValidationException("Characteristic %s on service %s is not writable without response.",
+          characteristicId, serviceId);
+    }
   }
 
   private static void validateCharacteristicProperties(UUID serviceId, UUID characteristicId,
@@ -80,6 +90,10 @@ class Characteristics {
     return (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0;
   }
 
+  private static boolean hasProperty(BluetoothGattCharacteristic characteristic, int property) {
+    return (characteristic.getProperties() & property) != 0;
+  }
+
   /* Read value of a descriptor. */
   public static void readValue(BluetoothGatt gatt, UUID serviceId, UUID characteristicId) throws BleApiException {
     BluetoothGattCharacteristic characteristic = getCharacteristic(gatt, serviceId, characteristicId);
@@ -91,7 +105,19 @@ class Characteristics {
   /* Write value to a characteristic. */
   public static void writeValue(BluetoothGatt gatt, UUID serviceId, UUID characteristicId, byte[] value)
       throws BleApiException {
+    writeValue(gatt, serviceId, characteristicId, value, /* withoutResponse= */ false);
+  }
+
+  /* Write value to a characteristic, optionally without waiting for a response from the device. */
+  public static void writeValue(BluetoothGatt gatt, UUID serviceId, UUID characteristicId, byte[] value,
+      boolean withoutResponse) throws BleApiException {
     BluetoothGattCharacteristic characteristic = getCharacteristic(gatt, serviceId, characteristicId);
+    if (withoutResponse) {
+      characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+    } else if (hasProperty(characteristic, BluetoothGattCharacteristic.PROPERTY_WRITE)) {
+      // The write type is kept in the characteristic object, so restore it after writes without response.
+      characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+    }
     // characteristic.setValue always returns true (as of the date this code was written).
     checkArgument(characteristic.setValue(value), "Failed to set value \"%s\" for characteristic %s in service %s.",
         Arrays.toString(value), characteristicId, serviceId);
@@ -0,0 +1,203 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bound on the number of GATT connections that {@link BleRpcChannel}s sharing the pool keep open at the same time,
+ * see {@link BleRpcChannelOptions.Builder#setConnectionPool(ConnectionPool)}. Android allows only a few GATT clients
+ * at a time and fails connections beyond that limit.
+ *
+ * <p>A channel takes a slot of the pool when it connects and returns it when its connection is closed. A channel that
+ * connects while all slots are taken waits for a slot with its calls queued. Connected channels without calls and
+ * subscriptions are disconnected to free slots for waiting channels, the least recently used first. All methods are
+ * thread-safe.
+ */
+public class ConnectionPool {
+
+  private final int maxConnections;
+  private final BleRpcChannelMetrics metrics;
+  private final Ticker ticker;
+
+  // Channels that hold a slot.
+  private final Set<Client> holders = new HashSet<>();
+  // Holders without calls and subscriptions, the least recently used first.
+  private final LinkedHashSet<Client> idleHolders = new LinkedHashSet<>();
+  // Holders asked to close their connection.
+  private final Set<Client> evictedHolders = new HashSet<>();
+  // Channels waiting for a slot, in the order they asked for it, with the time they started waiting.
+  private final LinkedHashMap<Client, Long> waiters = new LinkedHashMap<>();
+
+  /**
+   * Create a {@link ConnectionPool}.
+   *
+   * @param maxConnections - the maximum number of open connections.
+   */
+  public ConnectionPool(int maxConnections) {
+    this(maxConnections, BleRpcChannelMetrics.NONE);
+  }
+
+  /**
+   * Create a {@link ConnectionPool} that reports its occupancy and wait times.
+   *
+   * @param maxConnections - the maximum number of open connections.
+   * @param metrics        - the listener for events of the pool.
+   */
+  public ConnectionPool(int maxConnections, BleRpcChannelMetrics metrics) {
+    this(maxConnections, metrics, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  ConnectionPool(int maxConnections, BleRpcChannelMetrics metrics, Ticker ticker) {
+    checkArgument(maxConnections > 0, "Max connections must be positive, got %s.", maxConnections);
+    this.maxConnections = maxConnections;
+    this.metrics = checkNotNull(metrics);
+    this.ticker = checkNotNull(ticker);
+  }
+
+  /**
+   * Get the maximum number of open connections.
+   *
+   * @return the number of slots of the pool.
+   */
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  /**
+   * Get the number of channels that hold a slot.
+   *
+   * @return the number of taken slots.
+   */
+  public synchronized int getConnectionsCount() {
+    return holders.size();
+  }
+
+  /**
+   * Get the number of channels waiting for a slot.
+   *
+   * @return the number of waiting channels.
+   */
+  public synchronized int getWaitingCount() {
+    return waiters.size();
+  }
+
+  /* Take a slot for the client, returns false if the client has to wait for Client.onSlotGranted(). */
+  boolean acquire(Client client) {
+    List<Client> evicted;
+    synchronized (this) {
+      if (holders.contains(client)) {
+        return true;
+      }
+      if (holders.size() < maxConnections) {
+        holders.add(client);
+        metrics.onConnectionSlotWait(0);
+        reportOccupancy();
+        return true;
+      }
+      if (!waiters.containsKey(client)) {
+        waiters.put(client, ticker.read());
+        reportOccupancy();
+      }
+      evicted = evictIdleHolders();
+    }
+    requestEviction(evicted);
+    return false;
+  }
+
+  /* Return the slot of the client or stop waiting for it. */
+  void release(Client client) {
+    List<Client> granted = new ArrayList<>();
+    synchronized (this) {
+      if (waiters.remove(client) != null) {
+        reportOccupancy();
+        return;
+      }
+      if (!holders.remove(client)) {
+        return;
+      }
+      idleHolders.remove(client);
+      if (evictedHolders.remove(client)) {
+        metrics.onIdleConnectionEvicted();
+      }
+      Iterator<Map.Entry<Client, Long>> waiting = waiters.entrySet().iterator();
+      while (holders.size() < maxConnections && waiting.hasNext()) {
+        Map.Entry<Client, Long> waiter = waiting.next();
+        waiting.remove();
+        holders.add(waiter.getKey());
+        metrics.onConnectionSlotWait(ticker.read() - waiter.getValue());
+        granted.add(waiter.getKey());
+      }
+      reportOccupancy();
+    }
+    for (Client waiter : granted) {
+      waiter.onSlotGranted();
+    }
+  }
+
+  /* Check if the client holds a slot. */
+  synchronized boolean holds(Client client) {
+    return holders.contains(client);
+  }
+
+  /* Mark a holder as idle, which makes it the most recently used idle holder, or as busy. */
+  void setIdle(Client client, boolean idle) {
+    List<Client> evicted;
+    synchronized (this) {
+      if (!holders.contains(client)) {
+        return;
+      }
+      idleHolders.remove(client);
+      evictedHolders.remove(client);
+      if (idle) {
+        idleHolders.add(client);
+      }
+      evicted = evictIdleHolders();
+    }
+    requestEviction(evicted);
+  }
+
+  // Holders asked to close their connection free one slot each for the waiters.
+  private List<Client> evictIdleHolders() {
+    List<Client> evicted = new ArrayList<>();
+    Iterator<Client> idle = idleHolders.iterator();
+    while (waiters.size() > evictedHolders.size() && idle.hasNext()) {
+      Client client = idle.next();
+      idle.remove();
+      evictedHolders.add(client);
+      evicted.add(client);
+    }
+    return evicted;
+  }
+
+  private static void requestEviction(List<Client> evicted) {
+    for (Client client : evicted) {
+      client.onEvictionRequested();
+    }
+  }
+
+  private void reportOccupancy() {
+    metrics.onConnectionPoolChanged(holders.size(), waiters.size(), maxConnections);
+  }
+
+  /* A channel using the pool. Callbacks are called on any thread without the pool's lock. */
+  interface Client {
+
+    /* The client waiting for a slot got it and can connect. */
+    void onSlotGranted();
+
+    /* The client should close its connection if it is still idle, otherwise mark itself as busy. */
+    void onEvictionRequested();
+  }
+}
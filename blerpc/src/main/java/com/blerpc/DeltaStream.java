@@ -0,0 +1,94 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Optional;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/* Rebuilds the values of a delta-encoded characteristic from its keyframes and deltas, see
+ * BleCharacteristicRule.delta_word_size. */
+class DeltaStream {
+
+  static final int HEADER_SIZE = 1;
+  static final int MAX_WORD_SIZE = 8;
+  private static final int KEYFRAME_FLAG = 0x80;
+  private static final int SEQUENCE_MASK = 0x7f;
+
+  private final int wordSize;
+  private final boolean bigEndian;
+  // The last rebuilt value, null until the first keyframe and after a lost notification.
+  private byte[] value;
+  private int nextSequence = 0;
+
+  DeltaStream(int wordSize, ByteOrder byteOrder) {
+    checkArgument(wordSize > 0 && wordSize <= MAX_WORD_SIZE, "Delta word size must be from 1 to %s, got %s.",
+        MAX_WORD_SIZE, wordSize);
+    this.wordSize = wordSize;
+    this.bigEndian = byteOrder.equals(ByteOrder.BIG_ENDIAN);
+  }
+
+  /* Add the next notification, returns the rebuilt value or absent if the notification is dropped while waiting for a
+   * keyframe. The returned buffer is only valid until the next notification is added. */
+  Optional<ByteBuffer> add(ByteBuffer notification) throws CouldNotConvertMessageException {
+    if (!notification.hasRemaining()) {
+      reset();
+      throw CouldNotConvertMessageException.deserializeResponse("Notification has no header.");
+    }
+    int header = notification.get(notification.position()) & 0xff;
+    int sequence = header & SEQUENCE_MASK;
+    int length = notification.remaining() - HEADER_SIZE;
+    if ((header & KEYFRAME_FLAG) != 0) {
+      if (length % wordSize != 0) {
+        reset();
+        throw CouldNotConvertMessageException.deserializeResponse(
+            "Keyframe size %d is not a multiple of the word size %d.", length, wordSize);
+      }
+      if (value == null || value.length != length) {
+        value = new byte[length];
+      }
+      ByteBuffer keyframe = notification.duplicate();
+      keyframe.position(keyframe.position() + HEADER_SIZE);
+      keyframe.get(value);
+    } else {
+      if (value == null || sequence != nextSequence) {
+        // A notification was lost, the deltas can't be applied until the next keyframe.
+        reset();
+        return Optional.absent();
+      }
+      int wordsCount = value.length / wordSize;
+      if (length != wordsCount) {
+        reset();
+        throw CouldNotConvertMessageException.deserializeResponse("Expected %d deltas, got %d.", wordsCount, length);
+      }
+      int deltaOffset = notification.position() + HEADER_SIZE;
+      for (int word = 0; word < wordsCount; word++) {
+        addToWord(word * wordSize, notification.get(deltaOffset + word));
+      }
+    }
+    nextSequence = (sequence + 1) & SEQUENCE_MASK;
+    return Optional.of(ByteBuffer.wrap(value));
+  }
+
+  /* Drop the last value, notifications are dropped until the next keyframe. */
+  void reset() {
+    value = null;
+    nextSequence = 0;
+  }
+
+  private void addToWord(int offset, long delta) {
+    long word = 0;
+    for (int i = 0; i < wordSize; i++) {
+      word |= (value[byteIndex(offset, i)] & 0xffL) << (8 * i);
+    }
+    word += delta;
+    for (int i = 0; i < wordSize; i++) {
+      value[byteIndex(offset, i)] = (byte) (word >>> (8 * i));
+    }
+  }
+
+  // Index of the i-th least significant byte of the word at the offset.
+  private int byteIndex(int offset, int i) {
+    return bigEndian ? offset + wordSize - 1 - i : offset + i;
+  }
+}
@@ -0,0 +1,67 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Ticker;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * A {@link CallScheduler} that sends calls in the order they were made, ignoring their priorities.
+ *
+ * @param <T> type of the queued calls.
+ */
+public class FifoCallScheduler<T extends CallScheduler.Call> implements CallScheduler<T> {
+
+  private final LinkedList<T> calls = new LinkedList<>();
+
+  /**
+   * Get a factory for {@link FifoCallScheduler}.
+   *
+   * @return the factory.
+   */
+  public static CallScheduler.Factory factory() {
+    return new CallScheduler.Factory() {
+      @Override
+      public <T extends Call> CallScheduler<T> create(Ticker ticker) {
+        return new FifoCallScheduler<>();
+      }
+    };
+  }
+
+  @Override
+  public void add(T call) {
+    calls.add(call);
+  }
+
+  @Override
+  public T peek() {
+    checkArgument(!calls.isEmpty(), "There are no queued calls.");
+    return calls.peek();
+  }
+
+  @Override
+  public boolean remove(T call) {
+    return calls.remove(call);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return calls.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return calls.size();
+  }
+
+  @Override
+  public void clear() {
+    calls.clear();
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return calls.iterator();
+  }
+}
@@ -0,0 +1,112 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Conversions of float and double field values to the integers that encode them, see com.blerpc.FloatEncoding.
+ *
+ * <p>Used by {@link AnnotationMessageConverter} and by the converters generated by the reactive-blerpc plugin.
+ */
+public final class FloatEncodings {
+
+  private FloatEncodings() {
+  }
+
+  /**
+   * Convert a float to IEEE 754 binary16, rounding to the nearest even value.
+   *
+   * @param value - the value to convert.
+   * @return the 16 bits of the binary16 number in the lowest bits of the result.
+   */
+  public static int floatToFloat16(float value) {
+    int bits = Float.floatToRawIntBits(value);
+    int sign = (bits >>> 16) & 0x8000;
+    int exponent = (bits >>> 23) & 0xFF;
+    int mantissa = bits & 0x7FFFFF;
+    if (exponent == 0xFF) {
+      // Infinity stays infinity, NaN stays a quiet NaN.
+      return sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0);
+    }
+    int halfExponent = exponent - 127 + 15;
+    if (halfExponent >= 0x1F) {
+      return sign | 0x7C00;
+    }
+    int half;
+    int remainder;
+    int halfway;
+    if (halfExponent <= 0) {
+      if (halfExponent < -10) {
+        return sign;
+      }
+      // Subnormal binary16 number, the implicit leading bit becomes explicit.
+      mantissa |= 0x800000;
+      int shift = 14 - halfExponent;
+      half = mantissa >> shift;
+      remainder = mantissa & ((1 << shift) - 1);
+      halfway = 1 << (shift - 1);
+    } else {
+      half = (halfExponent << 10) | (mantissa >> 13);
+      remainder = mantissa & 0x1FFF;
+      halfway = 0x1000;
+    }
+    // A carry out of the mantissa increments the exponent, which is the correctly rounded result.
+    if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+      half++;
+    }
+    return sign | half;
+  }
+
+  /**
+   * Convert IEEE 754 binary16 to a float, the conversion is exact.
+   *
+   * @param bits - the 16 bits of the binary16 number in the lowest bits, higher bits are ignored.
+   * @return the value.
+   */
+  public static float float16ToFloat(int bits) {
+    int sign = (bits & 0x8000) << 16;
+    int exponent = (bits >>> 10) & 0x1F;
+    int mantissa = bits & 0x3FF;
+    if (exponent == 0x1F) {
+      return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+    }
+    if (exponent == 0) {
+      float value = mantissa * 0x1p-24f;
+      return sign != 0 ? -value : value;
+    }
+    return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+  }
+
+  /**
+   * Convert a value to the unsigned integer of a fixed-point field.
+   *
+   * @param value - the value to convert.
+   * @param scale - the value of one unit of the integer.
+   * @param offset - the value of the integer 0.
+   * @param bytesCount - the field size, the integer must fit into it.
+   * @param fieldName - the field name for the error message.
+   * @return the integer nearest to (value - offset) / scale.
+   * @throws IllegalArgumentException if the integer doesn't fit into the field.
+   */
+  public static long toFixedPoint(double value, double scale, double offset, int bytesCount, String fieldName) {
+    double units = (value - offset) / scale;
+    long maxUnits = (1L << (8 * bytesCount)) - 1;
+    checkArgument(units > -0.5 && units < maxUnits + 0.5,
+        "Value %s of fixed-point field %s doesn't fit into %s byte(s).",
+        value,
+        fieldName,
+        bytesCount);
+    return Math.round(units);
+  }
+
+  /**
+   * Convert the unsigned integer of a fixed-point field to its value.
+   *
+   * @param units - the integer.
+   * @param scale - the value of one unit of the integer.
+   * @param offset - the value of the integer 0.
+   * @return units * scale + offset.
+   */
+  public static double fromFixedPoint(long units, double scale, double offset) {
+    return units * scale + offset;
+  }
+}
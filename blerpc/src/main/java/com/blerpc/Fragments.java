@@ -0,0 +1,139 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Optional;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/* Splitting of values that don't fit into one characteristic value into chunks, and their reassembly. */
+class Fragments {
+
+  static final int HEADER_SIZE = 1;
+  private static final int LAST_CHUNK_FLAG = 0x80;
+  private static final int SEQUENCE_MASK = 0x7f;
+
+  private Fragments() {
+  }
+
+  /* Split the remaining bytes of a value into chunks of at most chunkSize bytes, including the header. */
+  static ArrayDeque<byte[]> split(ByteBuffer value, int chunkSize) {
+    ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+    split(value, chunkSize, new RequestBufferPool(0, BleRpcChannelMetrics.NONE), chunks);
+    return chunks;
+  }
+
+  /* Split the remaining bytes of a value into chunks taken from the pool and add them to the queue. */
+  static void split(ByteBuffer value, int chunkSize, RequestBufferPool pool, Queue<byte[]> chunks) {
+    checkArgument(chunkSize > HEADER_SIZE, "Chunk size must be greater than %s, got %s.", HEADER_SIZE, chunkSize);
+    int payloadSize = chunkSize - HEADER_SIZE;
+    int sequence = 0;
+    do {
+      int length = Math.min(payloadSize, value.remaining());
+      boolean last = length == value.remaining();
+      byte[] chunk = pool.acquire(HEADER_SIZE + length);
+      chunk[0] = (byte) ((sequence & SEQUENCE_MASK) | (last ? LAST_CHUNK_FLAG : 0));
+      value.get(chunk, HEADER_SIZE, length);
+      chunks.add(chunk);
+      sequence++;
+    } while (value.hasRemaining());
+  }
+
+  /* Reassembles a value from chunks in the order they were received into a buffer that is reused for all values. */
+  static class Reassembler {
+
+    private static final int INITIAL_CAPACITY = BleRpcChannel.MAX_MTU;
+
+    // Called when a value with a missing chunk is dropped, absent if missing chunks fail the value.
+    private final Optional<Runnable> onValueDropped;
+    private ByteBuffer value = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private int nextSequence = 0;
+    // Whether chunks are dropped until the first chunk of the next value.
+    private boolean dropping = false;
+
+    /* Create a reassembler that fails a value with a missing chunk, for chunks that are received in order. */
+    Reassembler() {
+      this.onValueDropped = Optional.absent();
+    }
+
+    /* Create a reassembler for chunks that can be lost, which drops a value with a missing chunk and starts over with
+     * the first chunk of the next value. */
+    Reassembler(Runnable onValueDropped) {
+      this.onValueDropped = Optional.of(onValueDropped);
+    }
+
+    /* Add the next chunk, returns the whole value once its last chunk is added. The returned buffer is only valid until
+     * the next chunk is added. */
+    Optional<ByteBuffer> add(byte[] chunk) throws CouldNotConvertMessageException {
+      if (chunk == null || chunk.length < HEADER_SIZE) {
+        clearValue();
+        if (onValueDropped.isPresent()) {
+          dropValue();
+          return Optional.absent();
+        }
+        throw CouldNotConvertMessageException.deserializeResponse("Chunk has no header.");
+      }
+      int sequence = chunk[0] & SEQUENCE_MASK;
+      if (sequence != nextSequence) {
+        int expectedSequence = nextSequence;
+        clearValue();
+        if (!onValueDropped.isPresent()) {
+          throw CouldNotConvertMessageException.deserializeResponse("Expected chunk %d, got chunk %d.",
+              expectedSequence, sequence);
+        }
+        dropValue();
+        if (sequence != 0) {
+          return Optional.absent();
+        }
+        // The chunk starts the next value.
+      }
+      dropping = false;
+      int length = chunk.length - HEADER_SIZE;
+      boolean last = (chunk[0] & LAST_CHUNK_FLAG) != 0;
+      if (last && sequence == 0) {
+        // A value that fits into one chunk is not copied.
+        return Optional.of(ByteBuffer.wrap(chunk, HEADER_SIZE, length));
+      }
+      ensureCapacity(length);
+      value.put(chunk, HEADER_SIZE, length);
+      nextSequence = (sequence + 1) & SEQUENCE_MASK;
+      if (!last) {
+        return Optional.absent();
+      }
+      ByteBuffer wholeValue = value.duplicate();
+      wholeValue.flip();
+      clearValue();
+      return Optional.of(wholeValue);
+    }
+
+    /* Drop the chunks of an unfinished value. */
+    void reset() {
+      clearValue();
+      dropping = false;
+    }
+
+    private void clearValue() {
+      value.clear();
+      nextSequence = 0;
+    }
+
+    // Chunks that follow a missing chunk belong to the same dropped value, it is reported once.
+    private void dropValue() {
+      if (!dropping) {
+        dropping = true;
+        onValueDropped.get().run();
+      }
+    }
+
+    private void ensureCapacity(int length) {
+      if (value.remaining() >= length) {
+        return;
+      }
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(value.capacity() * 2, value.position() + length));
+      value.flip();
+      grown.put(value);
+      value = grown;
+    }
+  }
+}
@@ -2,6 +2,8 @@ package com.blerpc;
 
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Message;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /** Represents a service that allows you to interact with the sensor via the Android BLE API. */
 public interface MessageConverter {
@@ -16,6 +18,39 @@ public interface MessageConverter {
    */
   byte[] serializeRequest(MethodDescriptor methodDescriptor, Message message) throws CouldNotConvertMessageException;
 
+  /**
+   * Provides a way to convert a top level request to the byte representation knowing how many bytes fit into
+   * one packet of the connection. Calls {@link #serializeRequest(MethodDescriptor, Message)} by default.
+   *
+   * @param methodDescriptor descriptor received from the {@link com.google.protobuf.Service}.
+   * @param message          request to sent.
+   * @param maxPayloadSize   the number of bytes that fit into one packet with the negotiated MTU.
+   * @return the raw bytes that represent the submitted request for sending to the remote device.
+   * @throws CouldNotConvertMessageException when serializing failed.
+   */
+  default byte[] serializeRequest(MethodDescriptor methodDescriptor, Message message, int maxPayloadSize)
+      throws CouldNotConvertMessageException {
+    return serializeRequest(methodDescriptor, message);
+  }
+
+  /**
+   * Provides a way to convert a top level request to the byte representation written into a caller-supplied buffer,
+   * so that the caller can reuse the buffer for many requests. The request is written starting at the buffer's
+   * position, which is advanced past the written bytes. Calls
+   * {@link #serializeRequest(MethodDescriptor, Message, int)} and copies the result into the buffer by default.
+   *
+   * @param methodDescriptor descriptor received from the {@link com.google.protobuf.Service}.
+   * @param message          request to sent.
+   * @param maxPayloadSize   the number of bytes that fit into one packet with the negotiated MTU.
+   * @param buffer           the buffer to write the request to.
+   * @throws CouldNotConvertMessageException when serializing failed.
+   * @throws BufferOverflowException         when the request doesn't fit into the remaining bytes of the buffer.
+   */
+  default void serializeRequest(MethodDescriptor methodDescriptor, Message message, int maxPayloadSize,
+      ByteBuffer buffer) throws CouldNotConvertMessageException {
+    buffer.put(serializeRequest(methodDescriptor, message, maxPayloadSize));
+  }
+
   /**
    * Provides a way to convert a received bytes from the remote to device to the top level response.
    *
@@ -27,4 +62,26 @@ public interface MessageConverter {
    */
   Message deserializeResponse(MethodDescriptor methodDescriptor, Message responsePrototype, byte[] value)
       throws CouldNotConvertMessageException;
+
+  /**
+   * Provides a way to convert a received bytes from the remote device to the top level response without copying them
+   * out of a larger buffer. The value is the remaining bytes of the buffer, its position is not changed. Calls
+   * {@link #deserializeResponse(MethodDescriptor, Message, byte[])} by default, which copies the value unless it spans
+   * the whole backing array of the buffer.
+   *
+   * @param methodDescriptor  descriptor received from the {@link com.google.protobuf.Service}.
+   * @param responsePrototype method response message prototype received from the {@link com.google.protobuf.RpcChannel}.
+   * @param value             row value received from {@link android.bluetooth.BluetoothGattCharacteristic}.
+   * @return the top-level response that represents the received data.
+   * @throws CouldNotConvertMessageException when deserializing failed.
+   */
+  default Message deserializeResponse(MethodDescriptor methodDescriptor, Message responsePrototype, ByteBuffer value)
+      throws CouldNotConvertMessageException {
+    if (value.hasArray() && value.arrayOffset() + value.position() == 0 && value.remaining() == value.array().length) {
+      return deserializeResponse(methodDescriptor, responsePrototype, value.array());
+    }
+    byte[] bytes = new byte[value.remaining()];
+    value.duplicate().get(bytes);
+    return deserializeResponse(methodDescriptor, responsePrototype, bytes);
+  }
 }
@@ -0,0 +1,129 @@
+package com.blerpc;
+
+import com.blerpc.proto.BleCharacteristicRule;
+import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.CallPriority;
+import com.blerpc.proto.MethodType;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import java.nio.ByteOrder;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * BLE options of a method, resolved once from its protobuf extensions.
+ */
+class MethodRoute {
+
+  private static final ConcurrentMap<MethodDescriptorEqualsWrapper, MethodRoute> ROUTES = new ConcurrentHashMap<>();
+
+  private final MethodType methodType;
+  private final UUID serviceUuid;
+  private final UUID characteristicUuid;
+  private final UUID descriptorUuid;
+  private final boolean writeWithoutResponse;
+  private final boolean coalesceWrites;
+  private final boolean fragmented;
+  private final int deltaWordSize;
+  private final ByteOrder deltaByteOrder;
+  private final CallPriority priority;
+
+  private MethodRoute(MethodDescriptor method) {
+    BleCharacteristicRule rule = method.getOptions().getExtension(Blerpc.characteristic);
+    this.methodType = rule.getType();
+    this.writeWithoutResponse = methodType.equals(MethodType.WRITE) && rule.getWriteWithoutResponse();
+    this.coalesceWrites = methodType.equals(MethodType.WRITE) && rule.getCoalesceWrites();
+    this.fragmented = isSupported(methodType) && rule.getFragmented();
+    this.deltaWordSize = methodType.equals(MethodType.SUBSCRIBE) ? rule.getDeltaWordSize() : 0;
+    this.deltaByteOrder = rule.getDeltaByteOrder().equals(com.blerpc.proto.ByteOrder.LITTLE_ENDIAN)
+        ? ByteOrder.LITTLE_ENDIAN
+        : ByteOrder.BIG_ENDIAN;
+    this.priority = rule.getPriority().equals(CallPriority.PRIORITY_DEFAULT)
+        ? CallPriority.PRIORITY_NORMAL
+        : rule.getPriority();
+    if (!isSupported(methodType)) {
+      // Calls of unsupported methods are failed before they are routed anywhere.
+      this.serviceUuid = null;
+      this.characteristicUuid = null;
+      this.descriptorUuid = null;
+      return;
+    }
+    this.serviceUuid = UUID.fromString(method.getService().getOptions().getExtension(Blerpc.service).getUuid());
+    this.characteristicUuid = UUID.fromString(rule.getUuid());
+    this.descriptorUuid = rule.getDescriptorUuid().isEmpty() ? null : UUID.fromString(rule.getDescriptorUuid());
+  }
+
+  /**
+   * Get the route of a method, resolving it on the first call.
+   *
+   * @param method - the method to get the route for.
+   * @return the route of the method.
+   */
+  static MethodRoute forMethod(MethodDescriptor method) {
+    MethodDescriptorEqualsWrapper key = new MethodDescriptorEqualsWrapper(method);
+    MethodRoute route = ROUTES.get(key);
+    if (route == null) {
+      route = new MethodRoute(method);
+      MethodRoute existingRoute = ROUTES.putIfAbsent(key, route);
+      if (existingRoute != null) {
+        route = existingRoute;
+      }
+    }
+    return route;
+  }
+
+  private static boolean isSupported(MethodType methodType) {
+    switch (methodType) {
+      case READ:
+      case WRITE:
+      case SUBSCRIBE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  MethodType getMethodType() {
+    return methodType;
+  }
+
+  UUID getService() {
+    return serviceUuid;
+  }
+
+  UUID getCharacteristic() {
+    return characteristicUuid;
+  }
+
+  UUID getDescriptor() {
+    return descriptorUuid;
+  }
+
+  boolean isWriteWithoutResponse() {
+    return writeWithoutResponse;
+  }
+
+  boolean isCoalescingWrite() {
+    return coalesceWrites;
+  }
+
+  boolean isFragmented() {
+    return fragmented;
+  }
+
+  boolean isDeltaEncoded() {
+    return deltaWordSize != 0;
+  }
+
+  int getDeltaWordSize() {
+    return deltaWordSize;
+  }
+
+  ByteOrder getDeltaByteOrder() {
+    return deltaByteOrder;
+  }
+
+  CallPriority getPriority() {
+    return priority;
+  }
+}
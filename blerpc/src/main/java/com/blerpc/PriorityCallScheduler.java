@@ -0,0 +1,191 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.blerpc.proto.CallPriority;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CallScheduler} that sends calls with higher priority first.
+ *
+ * <p>Calls of the same priority are taken from different characteristics in turns, so a burst of calls to one
+ * characteristic doesn't delay calls to others. A call that waits for longer than the aging interval is promoted
+ * by one priority class for every interval it waits, so low priority calls are not starved.
+ *
+ * @param <T> type of the queued calls.
+ */
+public class PriorityCallScheduler<T extends CallScheduler.Call> implements CallScheduler<T> {
+
+  private static final ImmutableList<CallPriority> PRIORITIES = ImmutableList.of(
+      CallPriority.PRIORITY_HIGH,
+      CallPriority.PRIORITY_NORMAL,
+      CallPriority.PRIORITY_LOW);
+  private static final long DEFAULT_AGING_INTERVAL_MILLIS = 1000;
+
+  private final Ticker ticker;
+  private final long agingIntervalNanos;
+  // Queues of calls per characteristic for every priority class, in the order characteristics take turns.
+  private final Map<CallPriority, LinkedHashMap<UUID, ArrayDeque<T>>> queues = new EnumMap<>(CallPriority.class);
+  private int size = 0;
+  private T nextCall = null;
+
+  /**
+   * Create a {@link PriorityCallScheduler}.
+   *
+   * @param ticker        a time source for call ages.
+   * @param agingInterval the time a call waits before it is promoted to a higher priority class.
+   * @param timeUnit      the time unit of the aging interval.
+   */
+  public PriorityCallScheduler(Ticker ticker, long agingInterval, TimeUnit timeUnit) {
+    checkArgument(agingInterval > 0, "Aging interval must be positive, got %s.", agingInterval);
+    this.ticker = ticker;
+    this.agingIntervalNanos = timeUnit.toNanos(agingInterval);
+    for (CallPriority priority : PRIORITIES) {
+      queues.put(priority, new LinkedHashMap<>());
+    }
+  }
+
+  /**
+   * Get a factory for {@link PriorityCallScheduler} with the default aging interval of one second.
+   *
+   * @return the factory.
+   */
+  public static CallScheduler.Factory factory() {
+    return factory(DEFAULT_AGING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Get a factory for {@link PriorityCallScheduler}.
+   *
+   * @param agingInterval the time a call waits before it is promoted to a higher priority class.
+   * @param timeUnit      the time unit of the aging interval.
+   * @return the factory.
+   */
+  public static CallScheduler.Factory factory(long agingInterval, TimeUnit timeUnit) {
+    return new CallScheduler.Factory() {
+      @Override
+      public <T extends Call> CallScheduler<T> create(Ticker ticker) {
+        return new PriorityCallScheduler<>(ticker, agingInterval, timeUnit);
+      }
+    };
+  }
+
+  @Override
+  public void add(T call) {
+    checkArgument(queues.containsKey(call.getPriority()), "Unsupported call priority %s.", call.getPriority());
+    LinkedHashMap<UUID, ArrayDeque<T>> characteristicQueues = queues.get(call.getPriority());
+    ArrayDeque<T> queue = characteristicQueues.get(call.getCharacteristic());
+    if (queue == null) {
+      queue = new ArrayDeque<>();
+      characteristicQueues.put(call.getCharacteristic(), queue);
+    }
+    queue.add(call);
+    size++;
+    nextCall = null;
+  }
+
+  @Override
+  public T peek() {
+    checkArgument(size > 0, "There are no queued calls.");
+    if (nextCall == null) {
+      nextCall = selectNextCall();
+    }
+    return nextCall;
+  }
+
+  @Override
+  public T poll() {
+    T call = peek();
+    remove(call);
+    // The characteristic of the sent call gives its turn to the other characteristics of the class.
+    LinkedHashMap<UUID, ArrayDeque<T>> characteristicQueues = queues.get(call.getPriority());
+    ArrayDeque<T> queue = characteristicQueues.remove(call.getCharacteristic());
+    if (queue != null) {
+      characteristicQueues.put(call.getCharacteristic(), queue);
+    }
+    return call;
+  }
+
+  @Override
+  public boolean remove(T call) {
+    LinkedHashMap<UUID, ArrayDeque<T>> characteristicQueues = queues.get(call.getPriority());
+    if (characteristicQueues == null) {
+      return false;
+    }
+    UUID characteristic = call.getCharacteristic();
+    ArrayDeque<T> queue = characteristicQueues.get(characteristic);
+    if (queue == null || !queue.remove(call)) {
+      return false;
+    }
+    // Characteristic turns only move when a call is sent, not when it's dropped.
+    if (queue.isEmpty()) {
+      characteristicQueues.remove(characteristic);
+    }
+    size--;
+    nextCall = null;
+    return true;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (LinkedHashMap<UUID, ArrayDeque<T>> characteristicQueues : queues.values()) {
+      characteristicQueues.clear();
+    }
+    size = 0;
+    nextCall = null;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return Iterables.unmodifiableIterable(
+        Iterables.concat(Iterables.concat(Iterables.transform(queues.values(), Map::values)))).iterator();
+  }
+
+  private T selectNextCall() {
+    long now = ticker.read();
+    T bestCall = null;
+    long bestRank = Long.MAX_VALUE;
+    for (int index = 0; index < PRIORITIES.size(); index++) {
+      LinkedHashMap<UUID, ArrayDeque<T>> characteristicQueues = queues.get(PRIORITIES.get(index));
+      if (characteristicQueues.isEmpty()) {
+        continue;
+      }
+
+      T turnCall = characteristicQueues.values().iterator().next().peek();
+      T oldestCall = turnCall;
+      for (ArrayDeque<T> queue : characteristicQueues.values()) {
+        if (queue.peek().getEnqueueTimeNanos() < oldestCall.getEnqueueTimeNanos()) {
+          oldestCall = queue.peek();
+        }
+      }
+
+      long rank = Math.max(0, index - (now - oldestCall.getEnqueueTimeNanos()) / agingIntervalNanos);
+      // An aged call goes before other calls of its class.
+      T call = rank < index ? oldestCall : turnCall;
+      if (rank < bestRank || (rank == bestRank && call.getEnqueueTimeNanos() < bestCall.getEnqueueTimeNanos())) {
+        bestCall = call;
+        bestRank = rank;
+      }
+    }
+    return bestCall;
+  }
+}
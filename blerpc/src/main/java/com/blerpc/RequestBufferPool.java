@@ -0,0 +1,49 @@
+package com.blerpc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* Byte arrays for values written to characteristics, reused once the bluetooth stack has taken the value. A value is
+ * passed to the stack as a whole array, so arrays are pooled by their exact size. Values longer than the maximum MTU
+ * are not pooled. Not thread safe, the channel uses the pool on its work handler only. */
+class RequestBufferPool {
+
+  private final int maxBuffersPerSize;
+  private final BleRpcChannelMetrics metrics;
+  // Free arrays by their size, created on the first release of an array of the size.
+  private final List<ArrayDeque<byte[]>> freeBuffers =
+      new ArrayList<>(Collections.<ArrayDeque<byte[]>>nCopies(BleRpcChannel.MAX_MTU + 1, null));
+
+  /* Create a pool that keeps up to maxBuffersPerSize free arrays of each size, 0 to allocate every array. */
+  RequestBufferPool(int maxBuffersPerSize, BleRpcChannelMetrics metrics) {
+    this.maxBuffersPerSize = maxBuffersPerSize;
+    this.metrics = metrics;
+  }
+
+  /* Get an array of the given size, its content is undefined. */
+  byte[] acquire(int size) {
+    ArrayDeque<byte[]> buffers = size < freeBuffers.size() ? freeBuffers.get(size) : null;
+    if (buffers != null && !buffers.isEmpty()) {
+      return buffers.pop();
+    }
+    metrics.onRequestBufferAllocated(size);
+    return new byte[size];
+  }
+
+  /* Return an array that is no longer used to the pool. */
+  void release(byte[] buffer) {
+    if (buffer.length >= freeBuffers.size() || maxBuffersPerSize == 0) {
+      return;
+    }
+    ArrayDeque<byte[]> buffers = freeBuffers.get(buffer.length);
+    if (buffers == null) {
+      buffers = new ArrayDeque<>(maxBuffersPerSize);
+      freeBuffers.set(buffer.length, buffers);
+    }
+    if (buffers.size() < maxBuffersPerSize) {
+      buffers.push(buffer);
+    }
+  }
+}
@@ -19,25 +19,29 @@ import java.util.logging.Logger;
 public class ServiceStubFactory {
 
   private static ServiceStubFactory serviceStubFactory = null;
-  private static ConcurrentHashMap<String, BleRpcChannel> bleRpcChannels = new ConcurrentHashMap<>();
+  private static ConcurrentHashMap<String, DeviceChannel> bleRpcChannels = new ConcurrentHashMap<>();
+  private static ConcurrentHashMap<Class<?>, Method> newStubMethods = new ConcurrentHashMap<>();
 
   private Context context;
   private MessageConverter messageConverter;
-  private Handler workHandler;
+  private WorkHandlerPool workHandlers;
   private Handler listenerHandler;
   private Logger logger;
+  private BleRpcChannelOptions channelOptions;
 
   private ServiceStubFactory(Context context,
                              MessageConverter messageConverter,
-                             Handler workHandler,
+                             WorkHandlerPool workHandlers,
                              Handler listenerHandler,
-                             Logger logger
+                             Logger logger,
+                             BleRpcChannelOptions channelOptions
   ) {
     this.context = context;
     this.messageConverter = messageConverter;
-    this.workHandler = workHandler;
+    this.workHandlers = workHandlers;
     this.listenerHandler = listenerHandler;
     this.logger = logger;
+    this.channelOptions = channelOptions;
   }
 
   /**
@@ -55,10 +59,54 @@ public class ServiceStubFactory {
                                                             Handler workHandler,
                                                             Handler listenerHandler,
                                                             Logger logger
+  ) {
+    return getInstance(context, messageConverter, WorkHandlerPool.of(workHandler), listenerHandler, logger);
+  }
+
+  /**
+   * Get a {@link ServiceStubFactory} that runs the channels of different devices on different work handlers.
+   *
+   * @param context          an application context.
+   * @param messageConverter a {@link MessageConverter} for serializing requests and deserializing responses.
+   * @param workHandlers     a pool of handlers to run channels' code, the channel of a device always runs on the same
+   *                         handler. The pool is not stopped by {@link #clearInstance()}.
+   * @param listenerHandler  a handler run rpc callbacks.
+   * @param logger           a logger for debug logging.
+   * @return {@link ServiceStubFactory} object.
+   */
+  public static synchronized ServiceStubFactory getInstance(Context context,
+                                                            MessageConverter messageConverter,
+                                                            WorkHandlerPool workHandlers,
+                                                            Handler listenerHandler,
+                                                            Logger logger
+  ) {
+    return getInstance(context, messageConverter, workHandlers, listenerHandler, logger,
+        BleRpcChannelOptions.getDefaultInstance());
+  }
+
+  /**
+   * Get a {@link ServiceStubFactory} that creates channels with custom options. Channels of all devices share the
+   * options, so a {@link ConnectionPool} set in them bounds the number of devices connected at the same time.
+   *
+   * @param context          an application context.
+   * @param messageConverter a {@link MessageConverter} for serializing requests and deserializing responses.
+   * @param workHandlers     a pool of handlers to run channels' code, the channel of a device always runs on the same
+   *                         handler. The pool is not stopped by {@link #clearInstance()}.
+   * @param listenerHandler  a handler run rpc callbacks.
+   * @param logger           a logger for debug logging.
+   * @param channelOptions   options of the created channels.
+   * @return {@link ServiceStubFactory} object.
+   */
+  public static synchronized ServiceStubFactory getInstance(Context context,
+                                                            MessageConverter messageConverter,
+                                                            WorkHandlerPool workHandlers,
+                                                            Handler listenerHandler,
+                                                            Logger logger,
+                                                            BleRpcChannelOptions channelOptions
   ) {
     Preconditions.checkState(serviceStubFactory == null, "Factory instance already exists");
     serviceStubFactory = new ServiceStubFactory(
-        context, messageConverter, workHandler, listenerHandler, logger
+        context, messageConverter, workHandlers, listenerHandler, logger, channelOptions
     );
     return serviceStubFactory;
   }
@@ -73,26 +121,26 @@ public class ServiceStubFactory {
   }
 
   /**
-   * Get com.google.protobuf.Service object.
+   * Get com.google.protobuf.Service object. The same object is returned for a device and a service class until the
+   * device is disconnected.
    *
    * @param bluetoothDevice - a {@link BluetoothDevice} to connect to.
    * @param serviceClass    - class for creating new stub.
    * @return - com.google.protobuf.Service object.
    */
   public Service provideService(BluetoothDevice bluetoothDevice, Class<?> serviceClass) {
-    String deviceAddress = bluetoothDevice.getAddress();
-    if (!bleRpcChannels.containsKey(deviceAddress)) {
-      bleRpcChannels.putIfAbsent(
-          deviceAddress,
-          new BleRpcChannel(bluetoothDevice, context, messageConverter, workHandler, listenerHandler, logger)
-      );
+    DeviceChannel deviceChannel = getDeviceChannel(bluetoothDevice);
+    Service service = deviceChannel.services.get(serviceClass);
+    if (service != null) {
+      return service;
     }
     try {
-      Method newStub = serviceClass.getMethod("newStub", new Class[]{RpcChannel.class});
-      return (Service) newStub.invoke(null, bleRpcChannels.get(deviceAddress));
+      service = (Service) getNewStubMethod(serviceClass).invoke(null, deviceChannel.channel);
     } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
       throw new RuntimeException("Service class is incorrect");
     }
+    Service existingService = deviceChannel.services.putIfAbsent(serviceClass, service);
+    return existingService != null ? existingService : service;
   }
 
   /**
@@ -103,14 +151,51 @@ public class ServiceStubFactory {
   public void disconnect(String deviceAddress) {
     Preconditions.checkState(bleRpcChannels.containsKey(deviceAddress),
         String.format("Chanel with bluetooth device %s doesn't exist", deviceAddress));
-    bleRpcChannels.get(deviceAddress).reset();
+    bleRpcChannels.get(deviceAddress).channel.reset();
     bleRpcChannels.remove(deviceAddress);
   }
 
+  private DeviceChannel getDeviceChannel(BluetoothDevice bluetoothDevice) {
+    String deviceAddress = bluetoothDevice.getAddress();
+    DeviceChannel deviceChannel = bleRpcChannels.get(deviceAddress);
+    if (deviceChannel != null) {
+      return deviceChannel;
+    }
+    // Channels are created under the lock, so racing calls can't create a channel that is then thrown away.
+    synchronized (bleRpcChannels) {
+      deviceChannel = bleRpcChannels.get(deviceAddress);
+      if (deviceChannel == null) {
+        deviceChannel = new DeviceChannel(new BleRpcChannel(bluetoothDevice, context, messageConverter,
+            workHandlers.handlerFor(deviceAddress), listenerHandler, logger, channelOptions));
+        bleRpcChannels.put(deviceAddress, deviceChannel);
+      }
+      return deviceChannel;
+    }
+  }
+
+  private static Method getNewStubMethod(Class<?> serviceClass) throws NoSuchMethodException {
+    Method newStub = newStubMethods.get(serviceClass);
+    if (newStub == null) {
+      newStub = serviceClass.getMethod("newStub", new Class[]{RpcChannel.class});
+      newStubMethods.putIfAbsent(serviceClass, newStub);
+    }
+    return newStub;
+  }
+
   private static void disconnectAll() {
-    for (BleRpcChannel channel : bleRpcChannels.values()) {
-      channel.reset();
+    for (DeviceChannel deviceChannel : bleRpcChannels.values()) {
+      deviceChannel.channel.reset();
     }
     bleRpcChannels.clear();
   }
+
+  // The channel of a device and the service stubs created for it.
+  private static class DeviceChannel {
+    private final BleRpcChannel channel;
+    private final ConcurrentHashMap<Class<?>, Service> services = new ConcurrentHashMap<>();
+
+    private DeviceChannel(BleRpcChannel channel) {
+      this.channel = channel;
+    }
+  }
 }
@@ -0,0 +1,86 @@
+package com.blerpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import com.google.common.collect.ImmutableList;
+import com.google.common.math.IntMath;
+
+/**
+ * A bounded pool of work handlers for {@link BleRpcChannel}s, striped by device address. The channel of a device always
+ * runs on the same handler, so it keeps its single-threaded guarantees, while channels of different devices are spread
+ * across the handlers and can use multiple cores.
+ */
+public class WorkHandlerPool {
+
+  private static final String THREAD_NAME_PREFIX = "BleRpcWork-";
+
+  private final ImmutableList<Handler> handlers;
+  // Threads created by the pool, empty if the handlers are provided by the caller.
+  private final ImmutableList<HandlerThread> threads;
+
+  private WorkHandlerPool(ImmutableList<Handler> handlers, ImmutableList<HandlerThread> threads) {
+    this.handlers = handlers;
+    this.threads = threads;
+  }
+
+  /**
+   * Create a pool that starts its own work threads. The threads are stopped by {@link #quit()}.
+   *
+   * @param threadsCount - the number of work threads, for example the number of processors.
+   * @return a {@link WorkHandlerPool} object.
+   */
+  public static WorkHandlerPool create(int threadsCount) {
+    checkArgument(threadsCount > 0, "Threads count must be positive, got %s.", threadsCount);
+    ImmutableList.Builder<Handler> handlers = ImmutableList.builder();
+    ImmutableList.Builder<HandlerThread> threads = ImmutableList.builder();
+    for (int i = 0; i < threadsCount; i++) {
+      HandlerThread thread = new HandlerThread(THREAD_NAME_PREFIX + i);
+      thread.start();
+      threads.add(thread);
+      handlers.add(new Handler(thread.getLooper()));
+    }
+    return new WorkHandlerPool(handlers.build(), threads.build());
+  }
+
+  /**
+   * Create a pool of existing handlers, which are not stopped by {@link #quit()}.
+   *
+   * @param handlers - the handlers to run channels' code, every handler must run on a single thread.
+   * @return a {@link WorkHandlerPool} object.
+   */
+  public static WorkHandlerPool of(Handler... handlers) {
+    checkArgument(handlers.length > 0, "At least one handler is required.");
+    return new WorkHandlerPool(ImmutableList.copyOf(handlers), ImmutableList.of());
+  }
+
+  /**
+   * Get the handler for the channel of a device, the same device always gets the same handler.
+   *
+   * @param deviceAddress - the bluetooth device mac address.
+   * @return the handler to run the channel's code.
+   */
+  public Handler handlerFor(String deviceAddress) {
+    return handlers.get(IntMath.mod(deviceAddress.hashCode(), handlers.size()));
+  }
+
+  /**
+   * Get the number of handlers in the pool.
+   *
+   * @return the number of handlers.
+   */
+  public int size() {
+    return handlers.size();
+  }
+
+  /**
+   * Stop the work threads created by the pool after they run their pending messages. Handlers provided by the caller
+   * are left running.
+   */
+  public void quit() {
+    for (HandlerThread thread : threads) {
+      thread.quitSafely();
+    }
+  }
+}
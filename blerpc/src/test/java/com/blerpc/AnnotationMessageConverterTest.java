@@ -2,23 +2,38 @@ package com.blerpc;
 
 import static com.blerpc.Assert.assertError;
 import static com.google.common.truth.Truth.assertThat;
+import static junit.framework.Assert.fail;
 
 import com.blerpc.device.test.proto.TestBigValueEnum;
+import com.blerpc.device.test.proto.TestBitAndByteRangesIntersectMessage;
+import com.blerpc.device.test.proto.TestBitFieldsMessage;
+import com.blerpc.device.test.proto.TestBitRangeBiggerThanCountMessage;
+import com.blerpc.device.test.proto.TestBitsRangesIntersectMessage;
 import com.blerpc.device.test.proto.TestBoolMessage;
 import com.blerpc.device.test.proto.TestByteOrderPropagatedToEmbeddedMessage;
+import com.blerpc.device.test.proto.TestByteStringBitFieldMessage;
 import com.blerpc.device.test.proto.TestByteStringMessage;
+import com.blerpc.device.test.proto.TestBytesAndBitsRangeMessage;
 import com.blerpc.device.test.proto.TestDoubleValueMessage;
+import com.blerpc.device.test.proto.TestElementSizeNotRepeatedMessage;
 import com.blerpc.device.test.proto.TestEmptyMessage;
 import com.blerpc.device.test.proto.TestEnum;
 import com.blerpc.device.test.proto.TestEnumMessage;
 import com.blerpc.device.test.proto.TestExcessiveMessageAtTheEndMessage;
 import com.blerpc.device.test.proto.TestExcessivePrimitiveAtTheEndMessage;
+import com.blerpc.device.test.proto.TestFixedPointWithoutScaleMessage;
+import com.blerpc.device.test.proto.TestFloatEncodingsMessage;
 import com.blerpc.device.test.proto.TestFloatValueMessage;
 import com.blerpc.device.test.proto.TestIntegerMessage;
+import com.blerpc.device.test.proto.TestLengthPrefixTooSmallMessage;
+import com.blerpc.device.test.proto.TestLengthPrefixWrongRangeMessage;
+import com.blerpc.device.test.proto.TestLengthPrefixedIntMessage;
+import com.blerpc.device.test.proto.TestLengthPrefixedMessage;
 import com.blerpc.device.test.proto.TestLongMessage;
 import com.blerpc.device.test.proto.TestMessageWithGaps;
 import com.blerpc.device.test.proto.TestNegativeRangeFromMessage;
 import com.blerpc.device.test.proto.TestNegativeSizeRangeMessage;
+import com.blerpc.device.test.proto.TestNestedBitFieldsMessage;
 import com.blerpc.device.test.proto.TestNoBytesRangeMessage;
 import com.blerpc.device.test.proto.TestNoBytesSizeMessage;
 import com.blerpc.device.test.proto.TestNonPrimitiveFieldMessage;
@@ -28,21 +43,38 @@ import com.blerpc.device.test.proto.TestOverrideEmbeddedByteOrderInFieldMessage;
 import com.blerpc.device.test.proto.TestOverrideMessageOrderMessage;
 import com.blerpc.device.test.proto.TestRangeBiggerThanCountMessage;
 import com.blerpc.device.test.proto.TestRangesIntersectMessage;
+import com.blerpc.device.test.proto.TestRepeatedByteStringMessage;
+import com.blerpc.device.test.proto.TestRepeatedFloatMessage;
+import com.blerpc.device.test.proto.TestRepeatedMessage;
+import com.blerpc.device.test.proto.TestRepeatedWithoutElementSizeMessage;
+import com.blerpc.device.test.proto.TestRepeatedWrongCountFieldMessage;
+import com.blerpc.device.test.proto.TestRepeatedWrongElementSizeMessage;
+import com.blerpc.device.test.proto.TestRepeatedWrongMessageSizeMessage;
+import com.blerpc.device.test.proto.TestRepeatedWrongRangeMessage;
+import com.blerpc.device.test.proto.TestSampleMessage;
 import com.blerpc.device.test.proto.TestSevenBytesLongMessage;
+import com.blerpc.device.test.proto.TestSmallEnumBitFieldMessage;
 import com.blerpc.device.test.proto.TestSmallEnumRangeMessage;
 import com.blerpc.device.test.proto.TestStringValueMessage;
 import com.blerpc.device.test.proto.TestThreeBytesEnumMessage;
 import com.blerpc.device.test.proto.TestThreeBytesIntegerMessage;
+import com.blerpc.device.test.proto.TestWrongBitFieldRangeMessage;
+import com.blerpc.device.test.proto.TestWrongBooleanBitFieldRangeMessage;
 import com.blerpc.device.test.proto.TestWrongBooleanRangeMessage;
 import com.blerpc.device.test.proto.TestWrongEnumRangeMessage;
+import com.blerpc.device.test.proto.TestWrongFixedPointRangeMessage;
+import com.blerpc.device.test.proto.TestWrongFloatRangeMessage;
 import com.blerpc.device.test.proto.TestWrongIntegerRangeMessage;
+import com.blerpc.device.test.proto.TestWrongLengthPrefixSizeMessage;
 import com.blerpc.device.test.proto.TestWrongLongRangeMessage;
 import com.blerpc.device.test.proto.TestZeroBytesMessage;
 import com.blerpc.device.test.proto.TestZeroSizeRangeMessage;
 import com.google.common.primitives.Bytes;
 import com.google.protobuf.ByteString;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -60,6 +92,45 @@ public class AnnotationMessageConverterTest {
   private static final byte[] TEST_BYTE_STRING_BYTE_ARRAY = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
   private static final byte[] TEST_ENUM_BYTE_ARRAY = new byte[]{0, 0, 0, 2};
   private static final byte[] TEST_LITTLE_ENDIAN_ENUM_BYTE_ARRAY = new byte[]{2, 0, 0, 0};
+  private static final byte[] TEST_FLOAT_ENCODINGS_BYTE_ARRAY =
+      new byte[]{62, 0, 66, -85, 0, 0, 64, 114, -56, 0, 0, 0, 0, 0, 24, 6, -55, 0, 0};
+  private static final TestFloatEncodingsMessage TEST_FLOAT_ENCODINGS_MESSAGE = TestFloatEncodingsMessage.newBuilder()
+      .setHalfValue(1.5f)
+      .setFloatValue(85.5f)
+      .setDoubleValue(300.5d)
+      .setFixedPointValue(21.5f)
+      .setFixedPointDoubleValue(100.5d)
+      .build();
+  // bool_value in bit 0, enum_value in bits [1, 3), int_value in bits [3, 12) and byte_value in the third byte.
+  private static final byte[] TEST_BIT_FIELDS_BYTE_ARRAY = new byte[]{101, 9, 7};
+  private static final TestBitFieldsMessage TEST_BIT_FIELDS_MESSAGE = TestBitFieldsMessage.newBuilder()
+      .setBoolValue(true)
+      .setEnumValue(TestEnum.VALUE_2)
+      .setIntValue(300)
+      .setByteValue(7)
+      .build();
+  // Two samples of four bytes selected by the count in the first byte, then two int32 values of two bytes.
+  private static final byte[] TEST_REPEATED_BYTE_ARRAY = new byte[]{2, 44, 1, 1, 1, 5, 0, 2, 0, 0, 7, 1, 44};
+  private static final TestRepeatedMessage TEST_REPEATED_MESSAGE = TestRepeatedMessage.newBuilder()
+      .setCount(2)
+      .addSamples(TestSampleMessage.newBuilder()
+          .setIntValue(300)
+          .setEnumValue(TestEnum.VALUE_1)
+          .setBoolValue(true))
+      .addSamples(TestSampleMessage.newBuilder()
+          .setIntValue(5)
+          .setEnumValue(TestEnum.VALUE_2))
+      .addIntValues(7)
+      .addIntValues(300)
+      .build();
+
+  // A one byte int32, two bytes with a one byte length, then a trailing UTF-8 string with a two byte length.
+  private static final byte[] TEST_LENGTH_PREFIXED_BYTE_ARRAY = new byte[]{7, 2, 1, 2, 0, 0, 0, 3, 104, -61, -87};
+  private static final TestLengthPrefixedMessage TEST_LENGTH_PREFIXED_MESSAGE = TestLengthPrefixedMessage.newBuilder()
+      .setIntValue(7)
+      .setByteStringValue(ByteString.copyFrom(new byte[]{1, 2}))
+      .setStringValue("h\u00e9")
+      .build();
 
   AnnotationMessageConverter converter = new AnnotationMessageConverter();
   AnnotationMessageConverter converterLittleEndian = new AnnotationMessageConverter(ByteOrder.LITTLE_ENDIAN);
@@ -76,6 +147,59 @@ public class AnnotationMessageConverterTest {
         .isEqualTo(TEST_INT_BYTE_ARRAY);
   }
 
+  @Test
+  public void serializeRequest_intoBuffer() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(TEST_INT_BYTE_ARRAY.length + 2);
+    buffer.put((byte) 7);
+    converter.serializeRequest(null, TestIntegerMessage.newBuilder()
+        .setIntValue(intFrom(TEST_INT_BYTE_ARRAY))
+        .build(), Integer.MAX_VALUE, buffer);
+    assertThat(buffer.position()).isEqualTo(TEST_INT_BYTE_ARRAY.length + 1);
+    assertThat(buffer.array()).isEqualTo(Bytes.concat(new byte[]{7}, TEST_INT_BYTE_ARRAY, new byte[]{0}));
+  }
+
+  @Test
+  public void serializeRequest_intoBuffer_overflow() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(TEST_INT_BYTE_ARRAY.length - 1);
+    try {
+      converter.serializeRequest(null, TestIntegerMessage.getDefaultInstance(), Integer.MAX_VALUE, buffer);
+      fail("BufferOverflowException was expected.");
+    } catch (BufferOverflowException exception) {
+      assertThat(buffer.position()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void serializeRequest_intoReusedBuffer() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(14);
+    converter.serializeRequest(null, TestMessageWithGaps.newBuilder()
+        .setIntValue(intFrom(TEST_INT_BYTE_ARRAY))
+        .setLongValue(longFrom(TEST_LONG_BYTE_ARRAY))
+        .build(), Integer.MAX_VALUE, buffer);
+    buffer.clear();
+    Arrays.fill(buffer.array(), (byte) -1);
+    converter.serializeRequest(null, TestMessageWithGaps.newBuilder()
+        .setLongValue(longFrom(TEST_LONG_BYTE_ARRAY))
+        .build(), Integer.MAX_VALUE, buffer);
+    assertThat(buffer.array()).isEqualTo(concatArrays(new byte[6], TEST_LONG_BYTE_ARRAY));
+  }
+
+  @Test
+  public void serializeRequest_sameTypeTwice() throws Exception {
+    assertThat(converter.serializeRequest(null, TestIntegerMessage.newBuilder()
+        .setIntValue(intFrom(TEST_INT_BYTE_ARRAY))
+        .build()))
+        .isEqualTo(TEST_INT_BYTE_ARRAY);
+    assertThat(converter.serializeRequest(null, TestIntegerMessage.newBuilder()
+        .setIntValue(intFrom(TEST_LITTLE_ENDIAN_ENUM_BYTE_ARRAY))
+        .build()))
+        .isEqualTo(TEST_LITTLE_ENDIAN_ENUM_BYTE_ARRAY);
+    assertThat(converter.deserializeResponse(null, TestIntegerMessage.getDefaultInstance(), TEST_INT_BYTE_ARRAY))
+        .isEqualTo(TestIntegerMessage.newBuilder()
+            .setIntValue(intFrom(TEST_INT_BYTE_ARRAY))
+            .build());
+  }
+
   @Test
   public void serializeRequest_long() throws Exception {
     assertThat(converter.serializeRequest(null, TestLongMessage.newBuilder()
@@ -235,12 +359,66 @@ public class AnnotationMessageConverterTest {
     assertError(() -> converter.serializeRequest(null, TestStringValueMessage.newBuilder()
         .setStringValue("Message")
         .build()), "Unsupported field type: STRING");
-    assertError(() -> converter.serializeRequest(null, TestFloatValueMessage.newBuilder()
+  }
+
+  @Test
+  public void serializeRequest_floatValues() throws Exception {
+    assertThat(converter.serializeRequest(null, TestFloatValueMessage.newBuilder()
         .setFloatValue(85.5f)
-        .build()), "Unsupported field type: FLOAT");
-    assertError(() -> converter.serializeRequest(null, TestDoubleValueMessage.newBuilder()
-        .setDoubleValue(300.5678d)
-        .build()), "Unsupported field type: DOUBLE");
+        .build()))
+        .isEqualTo(new byte[] {66, -85, 0, 0});
+    assertThat(converterLittleEndian.serializeRequest(null, TestDoubleValueMessage.newBuilder()
+        .setDoubleValue(300.5d)
+        .build()))
+        .isEqualTo(new byte[] {0, 0, 0, 0, 0, -56, 114, 64});
+  }
+
+  @Test
+  public void serializeRequest_floatEncodings() throws Exception {
+    assertThat(converter.serializeRequest(null, TEST_FLOAT_ENCODINGS_MESSAGE)).isEqualTo(TEST_FLOAT_ENCODINGS_BYTE_ARRAY);
+  }
+
+  @Test
+  public void serializeRequest_fixedPointDefaultValue() throws Exception {
+    // Zero is encoded relative to the offset of -40.
+    assertThat(converter.serializeRequest(null, TestFloatEncodingsMessage.getDefaultInstance()))
+        .isEqualTo(new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 15, -96, 0, 0, 0});
+  }
+
+  @Test
+  public void serializeRequest_fixedPointValueDoesNotFit() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestFloatEncodingsMessage.newBuilder()
+            .setFixedPointValue(-41)
+            .build()),
+        "Value -41.0 of fixed-point field fixed_point_value doesn't fit into 2 byte(s).");
+    assertError(() -> converter.serializeRequest(null, TestFloatEncodingsMessage.newBuilder()
+            .setFixedPointDoubleValue(Double.NaN)
+            .build()),
+        "Value NaN of fixed-point field fixed_point_double_value doesn't fit into 3 byte(s).");
+  }
+
+  @Test
+  public void serializeRequest_wrongFloatRange() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestWrongFloatRangeMessage.newBuilder()
+            .setFloatValue(1)
+            .build()),
+        "Float field float_value has unsupported size 3. Only sizes 2, 4 and 8 are supported.");
+  }
+
+  @Test
+  public void serializeRequest_wrongFixedPointRange() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestWrongFixedPointRangeMessage.newBuilder()
+            .setDoubleValue(1)
+            .build()),
+        "Fixed-point field double_value has unsupported size 5. Only sizes in [1, 4] are supported.");
+  }
+
+  @Test
+  public void serializeRequest_fixedPointWithoutScale() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestFixedPointWithoutScaleMessage.newBuilder()
+            .setFloatValue(1)
+            .build()),
+        "Fixed-point field float_value must have a non-zero scale.");
   }
 
   @Test
@@ -283,6 +461,167 @@ public class AnnotationMessageConverterTest {
         "3 byte(s) not enough for TestBigValueEnum enum that has 222222222 max number");
   }
 
+  @Test
+  public void serializeRequest_bitFields() throws Exception {
+    assertThat(converter.serializeRequest(null, TEST_BIT_FIELDS_MESSAGE)).isEqualTo(TEST_BIT_FIELDS_BYTE_ARRAY);
+    // Byte order doesn't apply to bit fields.
+    assertThat(converterLittleEndian.serializeRequest(null, TEST_BIT_FIELDS_MESSAGE)).isEqualTo(TEST_BIT_FIELDS_BYTE_ARRAY);
+  }
+
+  @Test
+  public void serializeRequest_bitFieldsKeepNeighbourBits() throws Exception {
+    assertThat(converter.serializeRequest(null, TestBitFieldsMessage.newBuilder()
+        .setIntValue(0x1FF)
+        .build()))
+        .isEqualTo(new byte[] {-8, 15, 0});
+    assertThat(converter.serializeRequest(null, TestBitFieldsMessage.newBuilder()
+        .setBoolValue(true)
+        .setIntValue(-1)
+        .build()))
+        .isEqualTo(new byte[] {-7, 15, 0});
+  }
+
+  @Test
+  public void serializeRequest_embeddedBitFields() throws Exception {
+    assertThat(converter.serializeRequest(null, TestNestedBitFieldsMessage.newBuilder()
+        .setIntValue(5)
+        .setBitFieldsValue(TEST_BIT_FIELDS_MESSAGE)
+        .build()))
+        .isEqualTo(new byte[] {5, 101, 9, 7});
+  }
+
+  @Test
+  public void serializeRequest_bitsRangesIntersect() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestBitsRangesIntersectMessage.getDefaultInstance()),
+        "Field int_value_1 bits range [0, 4] intersects with another field int_value_2 bits range [3, 8]");
+    assertError(() -> converter.serializeRequest(null, TestBitAndByteRangesIntersectMessage.getDefaultInstance()),
+        "Field bool_value bits range [8, 9] intersects with another field byte_value bits range [8, 16]");
+  }
+
+  @Test
+  public void serializeRequest_bytesAndBitsRange() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestBytesAndBitsRangeMessage.getDefaultInstance()),
+        "Field int_value has both bytes and bits ranges");
+  }
+
+  @Test
+  public void serializeRequest_bitRangeBiggerThanCount() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestBitRangeBiggerThanCountMessage.getDefaultInstance()),
+        "Field int_value has to_bit = 9 which is bigger than message bits size = 8");
+  }
+
+  @Test
+  public void serializeRequest_wrongBitFieldRange() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestWrongBitFieldRangeMessage.getDefaultInstance()),
+        "Bit field long_value has unsupported size 33. Only sizes in [1, 32] bits are supported.");
+    assertError(() -> converter.serializeRequest(null, TestWrongBooleanBitFieldRangeMessage.getDefaultInstance()),
+        "Boolean bit field bool_value has unsupported size 2. Only size 1 is supported.");
+  }
+
+  @Test
+  public void serializeRequest_unsupportedBitFieldType() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestByteStringBitFieldMessage.getDefaultInstance()),
+        "Unsupported bit field type: BYTE_STRING, field name: byte_string_value");
+  }
+
+  @Test
+  public void serializeRequest_notEnoughBitsForEnum() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestSmallEnumBitFieldMessage.newBuilder()
+            .setEnumValue(TestEnum.VALUE_1)
+            .build()),
+        "1 bit(s) not enough for TestEnum enum that has 2 max number");
+  }
+
+  @Test
+  public void serializeRequest_repeatedFields() throws Exception {
+    assertThat(converter.serializeRequest(null, TEST_REPEATED_MESSAGE)).isEqualTo(TEST_REPEATED_BYTE_ARRAY);
+    assertThat(converter.serializeRequest(null, TestRepeatedFloatMessage.newBuilder()
+        .addFloatValues(1.5f)
+        .addFloatValues(-2f)
+        .build()))
+        .isEqualTo(new byte[] {62, 0, -64, 0});
+  }
+
+  @Test
+  public void serializeRequest_repeatedFieldsWithFewerElements() throws Exception {
+    // The count field is serialized as it is set.
+    assertThat(converter.serializeRequest(null, TestRepeatedMessage.newBuilder()
+        .addIntValues(7)
+        .build()))
+        .isEqualTo(new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 7, 0, 0});
+  }
+
+  @Test
+  public void serializeRequest_repeatedFieldWithTooManyElements() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TEST_REPEATED_MESSAGE.toBuilder()
+            .addIntValues(3)
+            .build()),
+        "Repeated field int_values has 3 elements, but only 2 fit into its bytes range");
+  }
+
+  @Test
+  public void serializeRequest_wrongRepeatedFields() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestRepeatedWithoutElementSizeMessage.getDefaultInstance()),
+        "Repeated field int_values has element_size = 0 which must be bigger than zero");
+    assertError(() -> converter.serializeRequest(null, TestRepeatedWrongRangeMessage.getDefaultInstance()),
+        "Repeated field int_values has bytes range size 5 which is not a multiple of element_size = 2");
+    assertError(() -> converter.serializeRequest(null, TestRepeatedWrongElementSizeMessage.getDefaultInstance()),
+        "Int32 field int_values has unsupported size 5. Only sizes in [1, 4] are supported.");
+    assertError(() -> converter.serializeRequest(null, TestRepeatedWrongMessageSizeMessage.getDefaultInstance()),
+        "Non-primitive message TestSampleMessage has declared size 3, which is not equal to the size of it's type 4.");
+    assertError(() -> converter.serializeRequest(null, TestRepeatedWrongCountFieldMessage.getDefaultInstance()),
+        "Count field count of repeated field int_values must be an int32 or int64 field of message "
+            + "TestRepeatedWrongCountFieldMessage");
+    assertError(() -> converter.serializeRequest(null, TestRepeatedByteStringMessage.getDefaultInstance()),
+        "Unsupported repeated field type: BYTE_STRING, field name: byte_string_values");
+    assertError(() -> converter.serializeRequest(null, TestElementSizeNotRepeatedMessage.getDefaultInstance()),
+        "Field int_value has element_size or count_field but is not repeated");
+  }
+
+  @Test
+  public void serializeRequest_lengthPrefixedFields() throws Exception {
+    assertThat(converter.serializeRequest(null, TEST_LENGTH_PREFIXED_MESSAGE)).isEqualTo(TEST_LENGTH_PREFIXED_BYTE_ARRAY);
+    // An empty trailing field ends the message after its length.
+    assertThat(converter.serializeRequest(null, TestLengthPrefixedMessage.getDefaultInstance())).isEqualTo(new byte[8]);
+    assertThat(converterLittleEndian.serializeRequest(null, TestLengthPrefixedMessage.newBuilder()
+        .setStringValue("ab")
+        .build()))
+        .isEqualTo(new byte[] {0, 0, 0, 0, 0, 0, 2, 0, 97, 98});
+  }
+
+  @Test
+  public void serializeRequest_lengthPrefixedFieldsToBuffer() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(TEST_LENGTH_PREFIXED_BYTE_ARRAY.length + 1);
+    buffer.put((byte) 5);
+    converter.serializeRequest(null, TEST_LENGTH_PREFIXED_MESSAGE, Integer.MAX_VALUE, buffer);
+    assertThat(buffer.position()).isEqualTo(buffer.capacity());
+    assertThat(buffer.array()).isEqualTo(Bytes.concat(new byte[]{5}, TEST_LENGTH_PREFIXED_BYTE_ARRAY));
+  }
+
+  @Test
+  public void serializeRequest_lengthPrefixedValueTooLong() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestLengthPrefixedMessage.newBuilder()
+            .setByteStringValue(ByteString.copyFrom(new byte[5]))
+            .build()),
+        "Value of field byte_string_value has 5 bytes, but at most 4 fit into its bytes range");
+    assertError(() -> converter.serializeRequest(null, TestLengthPrefixedMessage.newBuilder()
+            .setStringValue("123456789")
+            .build()),
+        "Value of field string_value has 9 bytes, but at most 8 fit into its bytes range");
+  }
+
+  @Test
+  public void serializeRequest_wrongLengthPrefixedFields() throws Exception {
+    assertError(() -> converter.serializeRequest(null, TestLengthPrefixedIntMessage.getDefaultInstance()),
+        "Field int_value has length_prefix_size but is not a singular bytes or string field");
+    assertError(() -> converter.serializeRequest(null, TestWrongLengthPrefixSizeMessage.getDefaultInstance()),
+        "Field byte_string_value has unsupported length_prefix_size = 5. Only sizes in [1, 4] are supported.");
+    assertError(() -> converter.serializeRequest(null, TestLengthPrefixWrongRangeMessage.getDefaultInstance()),
+        "Field string_value has bytes range size 2 which must be bigger than length_prefix_size = 2");
+    assertError(() -> converter.serializeRequest(null, TestLengthPrefixTooSmallMessage.getDefaultInstance()),
+        "Field byte_string_value has maximum size 299 which doesn't fit into length_prefix_size = 1");
+  }
+
   @Test
   public void serializeRequest_messageByteOrder() throws Exception {
     assertThat(converter.serializeRequest(null, TestOverrideDefaultOrderMessage.newBuilder()
@@ -352,6 +691,35 @@ public class AnnotationMessageConverterTest {
             .build());
   }
 
+  @Test
+  public void deserializeResponse_bufferSlice() throws Exception {
+    byte[] value = Bytes.concat(new byte[]{7}, TEST_INT_BYTE_ARRAY, new byte[]{8});
+    ByteBuffer buffer = ByteBuffer.wrap(value, 1, TEST_INT_BYTE_ARRAY.length);
+    assertThat(converter.deserializeResponse(null, TestIntegerMessage.getDefaultInstance(), buffer))
+        .isEqualTo(TestIntegerMessage.newBuilder()
+            .setIntValue(intFrom(TEST_INT_BYTE_ARRAY))
+            .build());
+    assertThat(buffer.position()).isEqualTo(1);
+  }
+
+  @Test
+  public void deserializeResponse_bufferSlice_byteString() throws Exception {
+    byte[] value = Bytes.concat(new byte[]{7}, TEST_BYTE_STRING_BYTE_ARRAY);
+    assertThat(converter.deserializeResponse(null, TestByteStringMessage.getDefaultInstance(),
+        ByteBuffer.wrap(value, 1, TEST_BYTE_STRING_BYTE_ARRAY.length)))
+        .isEqualTo(TestByteStringMessage.newBuilder()
+            .setByteStringValue(ByteString.copyFrom(TEST_BYTE_STRING_BYTE_ARRAY))
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_invalidMessageFailsEveryTime() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      assertError(() -> converter.deserializeResponse(null, TestRangesIntersectMessage.getDefaultInstance(), new byte[10]),
+          "Field int_value_1 bytes range [0, 4] intersects with another field int_value_2 bytes range [2, 10]");
+    }
+  }
+
   @Test
   public void deserializeResponse_long() throws Exception {
     assertThat(converter.deserializeResponse(null, TestLongMessage.getDefaultInstance(),
@@ -506,10 +874,24 @@ public class AnnotationMessageConverterTest {
   public void deserializeResponse_unsupportedTypes() throws Exception {
     assertError(() -> converter.deserializeResponse(null, TestStringValueMessage.getDefaultInstance(), new byte[4]),
         "Unsupported field type: STRING");
-    assertError(() -> converter.deserializeResponse(null, TestFloatValueMessage.getDefaultInstance(), new byte[4]),
-        "Unsupported field type: FLOAT");
-    assertError(() -> converter.deserializeResponse(null, TestDoubleValueMessage.getDefaultInstance(), new byte[8]),
-        "Unsupported field type: DOUBLE");
+  }
+
+  @Test
+  public void deserializeResponse_floatEncodings() throws Exception {
+    assertThat(converter.deserializeResponse(null, TestFloatEncodingsMessage.getDefaultInstance(),
+        TEST_FLOAT_ENCODINGS_BYTE_ARRAY))
+        .isEqualTo(TEST_FLOAT_ENCODINGS_MESSAGE);
+    assertThat(converterLittleEndian.deserializeResponse(null, TestDoubleValueMessage.getDefaultInstance(),
+        new byte[] {0, 0, 0, 0, 0, -56, 114, 64}))
+        .isEqualTo(TestDoubleValueMessage.newBuilder()
+            .setDoubleValue(300.5d)
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_wrongFloatRange() throws Exception {
+    assertError(() -> converter.deserializeResponse(null, TestWrongFloatRangeMessage.getDefaultInstance(), new byte[3]),
+        "Float field float_value has unsupported size 3. Only sizes 2, 4 and 8 are supported.");
   }
 
   @Test
@@ -536,6 +918,132 @@ public class AnnotationMessageConverterTest {
         "Boolean field bool_value has unsupported size 2. Only sizes 1 are supported.");
   }
 
+  @Test
+  public void deserializeResponse_bitFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, TestBitFieldsMessage.getDefaultInstance(), TEST_BIT_FIELDS_BYTE_ARRAY))
+        .isEqualTo(TEST_BIT_FIELDS_MESSAGE);
+    assertThat(converterLittleEndian.deserializeResponse(null, TestBitFieldsMessage.getDefaultInstance(),
+        TEST_BIT_FIELDS_BYTE_ARRAY))
+        .isEqualTo(TEST_BIT_FIELDS_MESSAGE);
+  }
+
+  @Test
+  public void deserializeResponse_embeddedBitFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, TestNestedBitFieldsMessage.getDefaultInstance(),
+        new byte[] {5, 101, 9, 7}))
+        .isEqualTo(TestNestedBitFieldsMessage.newBuilder()
+            .setIntValue(5)
+            .setBitFieldsValue(TEST_BIT_FIELDS_MESSAGE)
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_bitFieldsShortValue() throws Exception {
+    // int_value continues in the second byte, so only the fields in the first byte are read.
+    assertThat(converter.deserializeResponse(null, TestBitFieldsMessage.getDefaultInstance(), new byte[] {101}))
+        .isEqualTo(TestBitFieldsMessage.newBuilder()
+            .setBoolValue(true)
+            .setEnumValue(TestEnum.VALUE_2)
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_bitsRangesIntersect() throws Exception {
+    assertError(() -> converter.deserializeResponse(null, TestBitsRangesIntersectMessage.getDefaultInstance(), new byte[2]),
+        "Field int_value_1 bits range [0, 4] intersects with another field int_value_2 bits range [3, 8]");
+  }
+
+  @Test
+  public void deserializeResponse_wrongBitFieldRange() throws Exception {
+    assertError(() -> converter.deserializeResponse(null, TestWrongBitFieldRangeMessage.getDefaultInstance(), new byte[5]),
+        "Bit field long_value has unsupported size 33. Only sizes in [1, 32] bits are supported.");
+  }
+
+  @Test
+  public void deserializeResponse_repeatedFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, TestRepeatedMessage.getDefaultInstance(), TEST_REPEATED_BYTE_ARRAY))
+        .isEqualTo(TEST_REPEATED_MESSAGE);
+    assertThat(converter.deserializeResponse(null, TestRepeatedFloatMessage.getDefaultInstance(),
+        new byte[] {62, 0, -64, 0}))
+        .isEqualTo(TestRepeatedFloatMessage.newBuilder()
+            .addFloatValues(1.5f)
+            .addFloatValues(-2f)
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_repeatedFieldsCount() throws Exception {
+    byte[] value = TEST_REPEATED_BYTE_ARRAY.clone();
+    value[0] = 1;
+    assertThat(converter.deserializeResponse(null, TestRepeatedMessage.getDefaultInstance(), value))
+        .isEqualTo(TEST_REPEATED_MESSAGE.toBuilder()
+            .setCount(1)
+            .removeSamples(1)
+            .build());
+    // A count bigger than the bytes range is limited by the bytes range.
+    value[0] = 5;
+    assertThat(converter.deserializeResponse(null, TestRepeatedMessage.getDefaultInstance(), value))
+        .isEqualTo(TEST_REPEATED_MESSAGE.toBuilder()
+            .setCount(5)
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_repeatedFieldsShortValue() throws Exception {
+    // Only the elements that are fully present are read.
+    assertThat(converter.deserializeResponse(null, TestRepeatedMessage.getDefaultInstance(),
+        Arrays.copyOf(TEST_REPEATED_BYTE_ARRAY, 12)))
+        .isEqualTo(TEST_REPEATED_MESSAGE.toBuilder()
+            .clearIntValues()
+            .addIntValues(7)
+            .build());
+    assertThat(converter.deserializeResponse(null, TestRepeatedMessage.getDefaultInstance(),
+        Arrays.copyOf(TEST_REPEATED_BYTE_ARRAY, 7)))
+        .isEqualTo(TestRepeatedMessage.newBuilder()
+            .setCount(2)
+            .addSamples(TEST_REPEATED_MESSAGE.getSamples(0))
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_lengthPrefixedFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, TestLengthPrefixedMessage.getDefaultInstance(),
+        TEST_LENGTH_PREFIXED_BYTE_ARRAY))
+        .isEqualTo(TEST_LENGTH_PREFIXED_MESSAGE);
+    // Bytes after the value of a field are ignored.
+    assertThat(converter.deserializeResponse(null, TestLengthPrefixedMessage.getDefaultInstance(),
+        Arrays.copyOf(TEST_LENGTH_PREFIXED_BYTE_ARRAY, 16)))
+        .isEqualTo(TEST_LENGTH_PREFIXED_MESSAGE);
+  }
+
+  @Test
+  public void deserializeResponse_lengthPrefixedFieldsShortValue() throws Exception {
+    // A field is read only if its length and its value are present.
+    assertThat(converter.deserializeResponse(null, TestLengthPrefixedMessage.getDefaultInstance(),
+        Arrays.copyOf(TEST_LENGTH_PREFIXED_BYTE_ARRAY, 10)))
+        .isEqualTo(TEST_LENGTH_PREFIXED_MESSAGE.toBuilder()
+            .clearStringValue()
+            .build());
+    assertThat(converter.deserializeResponse(null, TestLengthPrefixedMessage.getDefaultInstance(),
+        Arrays.copyOf(TEST_LENGTH_PREFIXED_BYTE_ARRAY, 3)))
+        .isEqualTo(TestLengthPrefixedMessage.newBuilder()
+            .setIntValue(7)
+            .build());
+  }
+
+  @Test
+  public void deserializeResponse_lengthPrefixedValueTooLong() throws Exception {
+    assertError(() -> converter.deserializeResponse(null, TestLengthPrefixedMessage.getDefaultInstance(),
+            new byte[] {0, 5, 1, 2, 3, 4, 5}),
+        "Value of field byte_string_value has 5 bytes, but at most 4 fit into its bytes range");
+  }
+
+  @Test
+  public void deserializeResponse_wrongRepeatedFields() throws Exception {
+    assertError(() -> converter.deserializeResponse(null, TestRepeatedWrongRangeMessage.getDefaultInstance(), new byte[5]),
+        "Repeated field int_values has bytes range size 5 which is not a multiple of element_size = 2");
+  }
+
   @Test
   public void deserializeResponse_messageByteOrder() throws Exception {
     assertThat(converter.deserializeResponse(null, TestOverrideDefaultOrderMessage.getDefaultInstance(),
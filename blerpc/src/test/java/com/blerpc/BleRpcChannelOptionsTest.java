@@ -0,0 +1,151 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.bluetooth.BluetoothGatt;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link BleRpcChannelOptions}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BleRpcChannelOptionsTest {
+
+  private static final int TEST_MTU = 185;
+  private static final long TEST_TIMEOUT_MILLIS = 100;
+
+  @Test
+  public void testDefaultInstance() {
+    BleRpcChannelOptions options = BleRpcChannelOptions.getDefaultInstance();
+    assertThat(options.getWriteWithoutResponseCredits()).isEqualTo(4);
+    assertThat(options.getCoalesceReads()).isFalse();
+    assertThat(options.getMtu()).isEqualTo(0);
+    assertThat(options.getCallTimeoutNanos()).isEqualTo(0);
+    assertThat(options.getOperationTimeoutNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(30));
+    assertThat(options.getRecycleConnectionOnTimeout()).isFalse();
+    assertThat(options.getMetrics()).isSameAs(BleRpcChannelMetrics.NONE);
+    assertThat(options.getConnectionPool().isPresent()).isFalse();
+    assertThat(options.getCallSchedulerFactory().create(Ticker.systemTicker())).isInstanceOf(FifoCallScheduler.class);
+  }
+
+  @Test
+  public void testBuilder() {
+    BleRpcChannelOptions options = BleRpcChannelOptions.newBuilder()
+        .setWriteWithoutResponseCredits(1)
+        .setCoalesceReads(true)
+        .setMtu(TEST_MTU)
+        .setCallTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .setOperationTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .setRecycleConnectionOnTimeout(true)
+        .build();
+    assertThat(options.getWriteWithoutResponseCredits()).isEqualTo(1);
+    assertThat(options.getCoalesceReads()).isTrue();
+    assertThat(options.getMtu()).isEqualTo(TEST_MTU);
+    assertThat(options.getCallTimeoutNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    assertThat(options.getOperationTimeoutNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    assertThat(options.getRecycleConnectionOnTimeout()).isTrue();
+  }
+
+  @Test
+  public void testConnectionPool() {
+    ConnectionPool pool = new ConnectionPool(1);
+    assertThat(BleRpcChannelOptions.newBuilder().setConnectionPool(pool).build().getConnectionPool().get())
+        .isSameAs(pool);
+  }
+
+  @Test
+  public void testInvalidWriteWithoutResponseCredits() {
+    assertError(() -> BleRpcChannelOptions.newBuilder().setWriteWithoutResponseCredits(0),
+        "Write credits must be positive, got 0.");
+  }
+
+  @Test
+  public void testInvalidMtu() {
+    assertError(() -> BleRpcChannelOptions.newBuilder().setMtu(BleRpcChannel.DEFAULT_MTU - 1),
+        "MTU must be 0 or from 23 to 517, got 22.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setMtu(BleRpcChannel.MAX_MTU + 1),
+        "MTU must be 0 or from 23 to 517, got 518.");
+  }
+
+  @Test
+  public void testConnectionPriorityOptions() {
+    BleRpcChannelOptions options = BleRpcChannelOptions.newBuilder()
+        .setHighPriorityQueueDepth(10)
+        .setHighPriorityNotificationRate(20)
+        .setConnectionIdleTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .setIdleConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER)
+        .build();
+    assertThat(options.getHighPriorityQueueDepth()).isEqualTo(10);
+    assertThat(options.getHighPriorityNotificationRate()).isEqualTo(20);
+    assertThat(options.getConnectionIdleTimeoutNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    assertThat(options.getIdleConnectionPriority()).isEqualTo(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER);
+  }
+
+  @Test
+  public void testInvalidIdleConnectionPriority() {
+    assertError(() -> BleRpcChannelOptions.newBuilder().setIdleConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH),
+        "Unsupported idle connection priority 1.");
+  }
+
+  @Test
+  public void testInvalidTimeouts() {
+    assertError(() -> BleRpcChannelOptions.newBuilder().setCallTimeout(-1, TimeUnit.SECONDS),
+        "Call timeout must not be negative, got -1.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setOperationTimeout(-1, TimeUnit.SECONDS),
+        "Operation timeout must not be negative, got -1.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setConnectionIdleTimeout(0, TimeUnit.SECONDS),
+        "Idle timeout must be positive, got 0.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setConnectionLinger(-1, TimeUnit.SECONDS),
+        "Connection linger must not be negative, got -1.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setNotificationBatchWindow(-1, TimeUnit.SECONDS),
+        "Notification batch window must not be negative, got -1.");
+  }
+
+  @Test
+  public void testReconnectOptions() {
+    BleRpcChannelOptions options = BleRpcChannelOptions.newBuilder()
+        .setMaxReconnectAttempts(5)
+        .setReconnectDelay(1, 60, TimeUnit.SECONDS)
+        .build();
+    assertThat(options.getMaxReconnectAttempts()).isEqualTo(5);
+    assertThat(options.getInitialReconnectDelayNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    assertThat(options.getMaxReconnectDelayNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(60));
+    assertThat(BleRpcChannelOptions.getDefaultInstance().getMaxReconnectAttempts()).isEqualTo(0);
+  }
+
+  @Test
+  public void testInvalidReconnectOptions() {
+    assertError(() -> BleRpcChannelOptions.newBuilder().setMaxReconnectAttempts(-1),
+        "Reconnect attempts must not be negative, got -1.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setReconnectDelay(-1, 1, TimeUnit.SECONDS),
+        "Initial reconnect delay must not be negative, got -1.");
+    assertError(() -> BleRpcChannelOptions.newBuilder().setReconnectDelay(2, 1, TimeUnit.SECONDS),
+        "Maximum reconnect delay 1 is less than the initial delay 2.");
+  }
+
+  @Test
+  public void testConnectionLinger() {
+    assertThat(BleRpcChannelOptions.getDefaultInstance().getConnectionLingerNanos()).isEqualTo(0);
+    assertThat(BleRpcChannelOptions.newBuilder().setConnectionLinger(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).build()
+        .getConnectionLingerNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+  }
+
+  @Test
+  public void testNotificationBatchWindow() {
+    assertThat(BleRpcChannelOptions.getDefaultInstance().getNotificationBatchWindowNanos()).isEqualTo(0);
+    assertThat(BleRpcChannelOptions.newBuilder().setNotificationBatchWindow(20, TimeUnit.MILLISECONDS).build()
+        .getNotificationBatchWindowNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void testPooledRequestBuffers() {
+    assertThat(BleRpcChannelOptions.getDefaultInstance().getPooledRequestBuffers()).isFalse();
+    assertThat(BleRpcChannelOptions.newBuilder().setPooledRequestBuffers(true).build().getPooledRequestBuffers())
+        .isTrue();
+  }
+}
@@ -4,8 +4,11 @@ import static com.blerpc.Assert.assertError;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -32,19 +35,26 @@ import com.blerpc.device.test.proto.TestBleWriteRequest;
 import com.blerpc.device.test.proto.TestBleWriteResponse;
 import com.blerpc.proto.BleCharacteristicRule;
 import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.CallPriority;
 import com.blerpc.proto.MethodType;
+import com.google.common.collect.ImmutableList;
 import com.google.protobuf.DescriptorProtos.MethodOptions;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -59,10 +69,14 @@ public class BleRpcChannelTest {
   private static final TestBleReadResponse TEST_READ_RESPONSE = TestBleReadResponse.newBuilder()
       .setIntValue(1000)
       .build();
+  private static final TestBleReadResponse TEST_READ_RESPONSE2 = TestBleReadResponse.newBuilder()
+      .setIntValue(1001)
+      .build();
   private static final TestBleWriteRequest TEST_WRITE_REQUEST = TestBleWriteRequest.newBuilder()
       .setIntValue(2000)
       .build();
   private static final byte[] TEST_WRITE_REQUEST_BYTES = new byte[]{40, 45};
+  private static final byte[] TEST_FRAGMENTED_VALUE = new byte[40];
   private static final TestBleWriteRequest TEST_WRITE_REQUEST2 = TestBleWriteRequest.newBuilder()
       .setIntValue(3000)
       .build();
@@ -82,6 +96,16 @@ public class BleRpcChannelTest {
   private static final int TEST_UNKNOWN_STATE =
       BluetoothProfile.STATE_CONNECTED + BluetoothProfile.STATE_DISCONNECTED + 1;
   private static final int TEST_STATUS_NOT_SUCCESS = BluetoothGatt.GATT_SUCCESS + 1;
+  private static final long TEST_QUEUE_WAIT_NANOS = 5000;
+  private static final long TEST_TIMEOUT_MILLIS = 100;
+  private static final int TEST_MTU = 185;
+  private static final long TEST_IDLE_TIMEOUT_MILLIS = 2000;
+  private static final long TEST_OPERATION_TIMEOUT_MILLIS = 1000;
+  private static final long TEST_RECONNECT_DELAY_MILLIS = 100;
+  private static final long TEST_MAX_RECONNECT_DELAY_MILLIS = 300;
+  private static final long TEST_LINGER_MILLIS = 3000;
+  private static final long TEST_BATCH_WINDOW_MILLIS = 50;
+  private static final String TEST_UNSUPPORTED_METHOD_NAME = "com.device.test.TestBleService.TestUnsupportedChar";
 
   private static final UUID TEST_SERVICE = UUID.fromString(TestBleService.getDescriptor().getOptions()
       .getExtension(Blerpc.service).getUuid());
@@ -138,7 +162,7 @@ public class BleRpcChannelTest {
   private static final byte[] TEST_ENABLE_NOTIFICATION_VALUE = new byte[]{1};
   private static final byte[] TEST_DISABLE_NOTIFICATION_VALUE = new byte[]{2};
 
-  @Mock
+  @Mock(answer = Answers.CALLS_REAL_METHODS)
   private MessageConverter messageConverter;
   @Mock
   private BluetoothDevice bluetoothDevice;
@@ -174,18 +198,37 @@ public class BleRpcChannelTest {
   private MethodDescriptor methodWriteChar2 = TestBleService.getDescriptor().findMethodByName("TestWriteChar2");
   private MethodDescriptor methodSubscribeChar2 =
       TestBleService.getDescriptor().findMethodByName("TestSubscribeChar2");
+  private MethodDescriptor methodWriteWithoutResponseChar =
+      TestBleService.getDescriptor().findMethodByName("TestWriteWithoutResponseChar");
+  private MethodDescriptor methodCoalescingWriteChar =
+      TestBleService.getDescriptor().findMethodByName("TestCoalescingWriteChar");
+  private MethodDescriptor methodHighPriorityReadChar2 =
+      TestBleService.getDescriptor().findMethodByName("TestHighPriorityReadChar2");
+  private MethodDescriptor methodFragmentedWriteChar =
+      TestBleService.getDescriptor().findMethodByName("TestFragmentedWriteChar");
+  private MethodDescriptor methodFragmentedWriteWithoutResponseChar =
+      TestBleService.getDescriptor().findMethodByName("TestFragmentedWriteWithoutResponseChar");
+  private MethodDescriptor methodFragmentedReadChar =
+      TestBleService.getDescriptor().findMethodByName("TestFragmentedReadChar");
+  private MethodDescriptor methodFragmentedSubscribeChar =
+      TestBleService.getDescriptor().findMethodByName("TestFragmentedSubscribeChar");
+  private MethodDescriptor methodDeltaSubscribeChar =
+      TestBleService.getDescriptor().findMethodByName("TestDeltaSubscribeChar");
   private BleRpcController controller = new BleRpcController();
   private BleRpcController controller2 = new BleRpcController();
   private ArgumentCaptor<BluetoothGattCallback> bluetoothCallback =
       ArgumentCaptor.forClass(BluetoothGattCallback.class);
 
   private BleRpcChannel channel;
+  private Handler workHandler;
+  private FakeTicker ticker = new FakeTicker();
 
   /**
    * Set up unsupported method.
    */
   @Before
   public void setUpUnsupportedMethod() throws Exception {
+    when(methodUnsupported.getFullName()).thenReturn(TEST_UNSUPPORTED_METHOD_NAME);
     when(methodUnsupported.getOptions()).thenReturn(MethodOptions.newBuilder()
         .setExtension(Blerpc.characteristic, BleCharacteristicRule.newBuilder()
             .setType(MethodType.UNKNOWN)
@@ -199,7 +242,19 @@ public class BleRpcChannelTest {
    */
   @Before
   public void setUp() throws Exception {
-    Handler workHandler = Mockito.mock(Handler.class);
+    setUpChannel(BleRpcChannelOptions.getDefaultInstance());
+  }
+
+  void setUpCoalescingChannel() {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setCoalesceReads(true).build());
+  }
+
+  void setUpPriorityChannel() {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setCallSchedulerFactory(PriorityCallScheduler.factory()).build());
+  }
+
+  void setUpChannel(BleRpcChannelOptions options) {
+    workHandler = Mockito.mock(Handler.class);
 
     doAnswer(invocationOnMock -> {
       ((Runnable) invocationOnMock.getArgument(0)).run();
@@ -211,7 +266,7 @@ public class BleRpcChannelTest {
     }).when(listenerHandler).post(any());
 
     channel = new BleRpcChannel(bluetoothDevice, context, messageConverter, workHandler, listenerHandler,
-        Mockito.mock(Logger.class));
+        Mockito.mock(Logger.class), options);
   }
 
   /**
@@ -248,6 +303,7 @@ public class BleRpcChannelTest {
     when(characteristic.getProperties()).thenReturn(
         BluetoothGattCharacteristic.PROPERTY_READ
             | BluetoothGattCharacteristic.PROPERTY_WRITE
+            | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE
             | BluetoothGattCharacteristic.PROPERTY_NOTIFY);
     when(characteristic2.getUuid()).thenReturn(TEST_CHARACTERISTIC2);
     when(characteristic2.setValue(any(byte[].class))).thenReturn(true);
@@ -376,6 +432,702 @@ public class BleRpcChannelTest {
     verifyReset();
   }
 
+  @Test
+  public void testMtuNotRequestedByDefault() throws Exception {
+    callMethod();
+    finishConnecting();
+    verify(bluetoothGatt, never()).requestMtu(Mockito.anyInt());
+    assertThat(channel.getMtu()).isEqualTo(BleRpcChannel.DEFAULT_MTU);
+  }
+
+  @Test
+  public void testMtuRequested() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMtu(TEST_MTU).build());
+    when(bluetoothGatt.requestMtu(TEST_MTU)).thenReturn(true);
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    verifyNoWrite();
+    onMtuChanged(TEST_MTU, BluetoothGatt.GATT_SUCCESS);
+    assertThat(channel.getMtu()).isEqualTo(TEST_MTU);
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testMtuRequestFailed_connectWithDefaultMtu() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMtu(TEST_MTU).build());
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    verify(bluetoothGatt).requestMtu(TEST_MTU);
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+    assertThat(channel.getMtu()).isEqualTo(BleRpcChannel.DEFAULT_MTU);
+  }
+
+  @Test
+  public void testMtuNegotiationStatusNotSuccess_connectWithDefaultMtu() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMtu(TEST_MTU).build());
+    when(bluetoothGatt.requestMtu(TEST_MTU)).thenReturn(true);
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    onMtuChanged(TEST_MTU, TEST_STATUS_NOT_SUCCESS);
+    assertThat(channel.getMtu()).isEqualTo(BleRpcChannel.DEFAULT_MTU);
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testMtuChangedWhenConnected() throws Exception {
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    onMtuChanged(TEST_MTU, BluetoothGatt.GATT_SUCCESS);
+    assertThat(channel.getMtu()).isEqualTo(TEST_MTU);
+  }
+
+  @Test
+  public void testMtuResetWhenDisconnected() throws Exception {
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onMtuChanged(TEST_MTU, BluetoothGatt.GATT_SUCCESS);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertThat(channel.getMtu()).isEqualTo(BleRpcChannel.DEFAULT_MTU);
+  }
+
+  @Test
+  public void testSerializeWithMaxPayloadSize() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMtu(TEST_MTU).build());
+    when(bluetoothGatt.requestMtu(TEST_MTU)).thenReturn(true);
+    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
+    finishConnecting();
+    onMtuChanged(TEST_MTU, BluetoothGatt.GATT_SUCCESS);
+    verify(messageConverter).serializeRequest(methodWriteChar, TEST_WRITE_REQUEST, TEST_MTU - 3);
+  }
+
+  @Test
+  public void testWriteWithoutResponseDoesNotFitMtu() throws Exception {
+    when(messageConverter.serializeRequest(methodWriteWithoutResponseChar, TEST_WRITE_REQUEST))
+        .thenReturn(new byte[BleRpcChannel.DEFAULT_MTU - 2]);
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback, TEST_WRITE_REQUEST);
+    finishConnecting();
+    verifyNoWrite();
+    assertCallFailed(controller);
+  }
+
+  @Test
+  public void testFragmentedWrite() throws Exception {
+    when(messageConverter.serializeRequest(methodFragmentedWriteChar, TEST_WRITE_REQUEST, Integer.MAX_VALUE))
+        .thenReturn(TEST_FRAGMENTED_VALUE);
+    callWriteMethod(methodFragmentedWriteChar, controller, callback, TEST_WRITE_REQUEST);
+    finishConnecting();
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_FRAGMENTED_VALUE), BleRpcChannel.DEFAULT_MTU - 3));
+    assertThat(chunks).hasSize(3);
+    verify(characteristic).setValue(chunks.get(0));
+    verify(characteristic, never()).setValue(chunks.get(1));
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verify(characteristic).setValue(chunks.get(1));
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verify(characteristic).setValue(chunks.get(2));
+    verifyNoCalls(callback);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt, times(3)).writeCharacteristic(characteristic);
+    assertCallSucceeded(controller);
+    verifyCalledWithDefault(callback);
+  }
+
+  @Test
+  public void testFragmentedWrite_requestLargerThanBuffer() throws Exception {
+    byte[] value = new byte[2000];
+    value[1999] = 1;
+    when(messageConverter.serializeRequest(methodFragmentedWriteChar, TEST_WRITE_REQUEST, Integer.MAX_VALUE))
+        .thenReturn(value);
+    callWriteMethod(methodFragmentedWriteChar, controller, callback, TEST_WRITE_REQUEST);
+    finishConnecting();
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(value), BleRpcChannel.DEFAULT_MTU - 3));
+    for (byte[] chunk : chunks) {
+      verify(characteristic).setValue(chunk);
+      onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    }
+    assertCallSucceeded(controller);
+    verifyCalledWithDefault(callback);
+  }
+
+  @Test
+  public void testFragmentedWriteWithoutResponsePipelined() throws Exception {
+    when(messageConverter.serializeRequest(methodFragmentedWriteWithoutResponseChar, TEST_WRITE_REQUEST,
+        Integer.MAX_VALUE)).thenReturn(TEST_FRAGMENTED_VALUE);
+    callWriteMethod(methodFragmentedWriteWithoutResponseChar, controller, callback, TEST_WRITE_REQUEST);
+    callWriteMethod(methodWriteChar2, controller2, callback2);
+    finishConnecting();
+    verify(bluetoothGatt, times(3)).writeCharacteristic(characteristic);
+    verify(characteristic, times(3)).setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt, never()).writeCharacteristic(characteristic2);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verifyCalledWithDefault(callback);
+    verify(bluetoothGatt).writeCharacteristic(characteristic2);
+  }
+
+  @Test
+  public void testFragmentedWriteFailsAfterChunksInFlight() throws Exception {
+    when(messageConverter.serializeRequest(methodFragmentedWriteWithoutResponseChar, TEST_WRITE_REQUEST,
+        Integer.MAX_VALUE)).thenReturn(TEST_FRAGMENTED_VALUE);
+    callWriteMethod(methodFragmentedWriteWithoutResponseChar, controller, callback, TEST_WRITE_REQUEST);
+    finishConnecting();
+    onChunkWritten(TEST_STATUS_NOT_SUCCESS);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verifyNoCalls(callback);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    assertCallFailed(controller);
+    verifyCalledWithDefault(callback);
+  }
+
+  @Test
+  public void testFragmentedRead() throws Exception {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_FRAGMENTED_VALUE), BleRpcChannel.DEFAULT_MTU - 3));
+    when(characteristic.getValue()).thenReturn(chunks.get(0), chunks.get(1), chunks.get(2));
+    when(messageConverter.deserializeResponse(methodFragmentedReadChar, TestBleReadResponse.getDefaultInstance(),
+        TEST_FRAGMENTED_VALUE)).thenReturn(TEST_READ_RESPONSE);
+    callReadMethod(methodFragmentedReadChar, controller, callback);
+    finishConnecting();
+    onChunkRead();
+    onChunkRead();
+    verifyNoCalls(callback);
+    onChunkRead();
+    verify(bluetoothGatt, times(3)).readCharacteristic(characteristic);
+    assertCallSucceeded(controller);
+    verify(callback).run(TEST_READ_RESPONSE);
+  }
+
+  @Test
+  public void testFragmentedReadMissingChunk() throws Exception {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_FRAGMENTED_VALUE), BleRpcChannel.DEFAULT_MTU - 3));
+    when(characteristic.getValue()).thenReturn(chunks.get(0), chunks.get(2));
+    callReadMethod(methodFragmentedReadChar, controller, callback);
+    finishConnecting();
+    onChunkRead();
+    onChunkRead();
+    verify(bluetoothGatt, times(2)).readCharacteristic(characteristic);
+    assertCallFailed(controller);
+    verify(callback).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testFragmentedNotificationsReassembled() throws Exception {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_FRAGMENTED_VALUE), BleRpcChannel.DEFAULT_MTU - 3));
+    when(messageConverter.deserializeResponse(methodFragmentedSubscribeChar,
+        TestBleSubscribeResponse.getDefaultInstance(), TEST_FRAGMENTED_VALUE)).thenReturn(TEST_READ_RESPONSE);
+    callSubscribeMethod(methodFragmentedSubscribeChar, controller, callback);
+    finishSubscribing(descriptor);
+    for (byte[] chunk : chunks) {
+      verifyNoCalls(callback);
+      when(characteristic.getValue()).thenReturn(chunk);
+      onCharacteristicChanged(characteristic);
+    }
+    verify(callback).run(TEST_READ_RESPONSE);
+  }
+
+  @Test
+  public void testFragmentedNotificationWithLostChunkDropped() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMetrics(metrics).build());
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_FRAGMENTED_VALUE), BleRpcChannel.DEFAULT_MTU - 3));
+    when(messageConverter.deserializeResponse(methodFragmentedSubscribeChar,
+        TestBleSubscribeResponse.getDefaultInstance(), TEST_FRAGMENTED_VALUE)).thenReturn(TEST_READ_RESPONSE);
+    callSubscribeMethod(methodFragmentedSubscribeChar, controller, callback);
+    finishSubscribing(descriptor);
+    when(characteristic.getValue()).thenReturn(chunks.get(0), chunks.get(2), chunks.get(0), chunks.get(1), chunks.get(2));
+    for (int i = 0; i < 5; i++) {
+      onCharacteristicChanged(characteristic);
+    }
+    verify(metrics).onFragmentedNotificationDropped(methodFragmentedSubscribeChar);
+    assertThat(controller.failed()).isFalse();
+    verify(callback).run(TEST_READ_RESPONSE);
+  }
+
+  @Test
+  public void testDeltaNotificationsRebuilt() throws Exception {
+    when(messageConverter.deserializeResponse(methodDeltaSubscribeChar, TestBleSubscribeResponse.getDefaultInstance(),
+        new byte[]{(byte) 0xff, 0, 2, 0})).thenReturn(TEST_READ_RESPONSE);
+    when(messageConverter.deserializeResponse(methodDeltaSubscribeChar, TestBleSubscribeResponse.getDefaultInstance(),
+        new byte[]{0, 1, 1, 0})).thenReturn(TEST_READ_RESPONSE2);
+    callSubscribeMethod(methodDeltaSubscribeChar, controller, callback);
+    finishSubscribing(descriptor);
+    when(characteristic.getValue()).thenReturn(new byte[]{(byte) 0x80, (byte) 0xff, 0, 2, 0});
+    onCharacteristicChanged(characteristic);
+    verify(callback).run(TEST_READ_RESPONSE);
+    when(characteristic.getValue()).thenReturn(new byte[]{1, 1, -1});
+    onCharacteristicChanged(characteristic);
+    verify(callback).run(TEST_READ_RESPONSE2);
+  }
+
+  @Test
+  public void testDeltaNotificationsDroppedUntilKeyframe() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMetrics(metrics).build());
+    when(messageConverter.deserializeResponse(methodDeltaSubscribeChar, TestBleSubscribeResponse.getDefaultInstance(),
+        new byte[]{1, 0})).thenReturn(TEST_READ_RESPONSE);
+    callSubscribeMethod(methodDeltaSubscribeChar, controller, callback);
+    finishSubscribing(descriptor);
+    when(characteristic.getValue()).thenReturn(new byte[]{0, 1}, new byte[]{1, 1}, new byte[]{(byte) 0x82, 1, 0});
+    onCharacteristicChanged(characteristic);
+    onCharacteristicChanged(characteristic);
+    verifyNoCalls(callback);
+    verify(metrics, times(2)).onDeltaNotificationDropped(methodDeltaSubscribeChar);
+    onCharacteristicChanged(characteristic);
+    verify(callback).run(TEST_READ_RESPONSE);
+    assertThat(controller.failed()).isFalse();
+  }
+
+  void onChunkWritten(int status) {
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, status);
+  }
+
+  void onChunkRead() {
+    bluetoothCallback.getValue().onCharacteristicRead(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+  }
+
+  @Test
+  public void testConnectionPriorityNotChangedByDefault() throws Exception {
+    callWriteMethod(methodWriteChar);
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    verify(bluetoothGatt, never()).requestConnectionPriority(Mockito.anyInt());
+  }
+
+  @Test
+  public void testHighConnectionPriority_queueDepth() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityQueueDepth(2).setMetrics(metrics));
+    callWriteMethod(methodWriteChar);
+    callWriteMethod(methodWriteChar);
+    verify(bluetoothGatt, never()).requestConnectionPriority(Mockito.anyInt());
+    finishConnecting();
+    verify(bluetoothGatt).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+    verify(metrics).onConnectionPriorityChanged(BluetoothGatt.CONNECTION_PRIORITY_BALANCED,
+        BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+  }
+
+  @Test
+  public void testHighConnectionPriority_queueDepthWhenConnected() throws Exception {
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityQueueDepth(2));
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    callWriteMethod(methodWriteChar);
+    verify(bluetoothGatt, never()).requestConnectionPriority(Mockito.anyInt());
+    callWriteMethod(methodWriteChar);
+    callWriteMethod(methodWriteChar);
+    // Only requested once while the connection stays busy.
+    verify(bluetoothGatt).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+  }
+
+  @Test
+  public void testHighConnectionPriority_notificationRate() throws Exception {
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityNotificationRate(2));
+    callSubscribeMethod(controller, callback);
+    finishSubscribing(descriptor);
+    onCharacteristicChanged(characteristic);
+    verify(bluetoothGatt, never()).requestConnectionPriority(Mockito.anyInt());
+    onCharacteristicChanged(characteristic);
+    verify(bluetoothGatt).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+  }
+
+  @Test
+  public void testHighConnectionPriority_notificationRateBelowThreshold() throws Exception {
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityNotificationRate(2));
+    callSubscribeMethod(controller, callback);
+    finishSubscribing(descriptor);
+    onCharacteristicChanged(characteristic);
+    ticker.advance(TimeUnit.SECONDS.toNanos(1));
+    onCharacteristicChanged(characteristic);
+    verify(bluetoothGatt, never()).requestConnectionPriority(Mockito.anyInt());
+  }
+
+  @Test
+  public void testIdleConnectionPriority() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityQueueDepth(1).setMetrics(metrics));
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_IDLE_TIMEOUT_MILLIS));
+    captureConnectionIdleCheck().run();
+    verify(bluetoothGatt).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+    verify(metrics).onConnectionPriorityChanged(BluetoothGatt.CONNECTION_PRIORITY_HIGH,
+        BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+  }
+
+  @Test
+  public void testIdleConnectionPriority_lowPower() throws Exception {
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder()
+        .setHighPriorityQueueDepth(1)
+        .setIdleConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER));
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_IDLE_TIMEOUT_MILLIS));
+    captureConnectionIdleCheck().run();
+    verify(bluetoothGatt).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER);
+  }
+
+  @Test
+  public void testIdleConnectionPriority_stillBusy() throws Exception {
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityQueueDepth(1));
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_IDLE_TIMEOUT_MILLIS / 2));
+    callWriteMethod(methodWriteChar2);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_IDLE_TIMEOUT_MILLIS / 2));
+    captureConnectionIdleCheck().run();
+    verify(bluetoothGatt, never()).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+    // Checked again when the remaining idle time passes.
+    verify(workHandler).postDelayed(any(), eq(TEST_IDLE_TIMEOUT_MILLIS / 2));
+  }
+
+  @Test
+  public void testIdleConnectionPriority_retriedWhenRequestFails() throws Exception {
+    setUpConnectionPriorityChannel(BleRpcChannelOptions.newBuilder().setHighPriorityQueueDepth(1));
+    callWriteMethod(methodWriteChar);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    when(bluetoothGatt.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_BALANCED)).thenReturn(false, true);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_IDLE_TIMEOUT_MILLIS));
+    captureConnectionIdleCheck().run();
+    ArgumentCaptor<Runnable> idleCheck = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler, times(2)).postDelayed(idleCheck.capture(), eq(TEST_IDLE_TIMEOUT_MILLIS));
+    idleCheck.getValue().run();
+    verify(bluetoothGatt, times(2)).requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+    verify(workHandler, times(2)).postDelayed(any(), eq(TEST_IDLE_TIMEOUT_MILLIS));
+  }
+
+  void setUpConnectionPriorityChannel(BleRpcChannelOptions.Builder options) {
+    when(bluetoothGatt.requestConnectionPriority(Mockito.anyInt())).thenReturn(true);
+    setUpChannel(options
+        .setTicker(ticker)
+        .setOperationTimeout(0, TimeUnit.SECONDS)
+        .setConnectionIdleTimeout(TEST_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .build());
+  }
+
+  Runnable captureConnectionIdleCheck() {
+    ArgumentCaptor<Runnable> idleCheck = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(idleCheck.capture(), eq(TEST_IDLE_TIMEOUT_MILLIS));
+    return idleCheck.getValue();
+  }
+
+  @Test
+  public void testSubscriptionRestoredAfterReconnect() throws Exception {
+    setUpReconnectChannel(1);
+    when(characteristic.getValue()).thenReturn(new byte[]{});
+    BleRpcController bleRpcController = spy(controller);
+    callSubscribeMethod(bleRpcController, callback);
+    finishSubscribing(descriptor);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallSucceeded(bleRpcController);
+    verifyNoCalls(callback);
+    reconnect(TEST_RECONNECT_DELAY_MILLIS, 2);
+    verify(bluetoothGatt, times(2)).writeDescriptor(descriptor);
+    bluetoothCallback.getValue().onDescriptorWrite(bluetoothGatt, descriptor, BluetoothGatt.GATT_SUCCESS);
+    verify(bleRpcController).onSubscribeSuccess();
+    onCharacteristicChanged(characteristic);
+    verify(callback).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testDeltaStreamResetAfterReconnect() throws Exception {
+    setUpReconnectChannel(1);
+    when(messageConverter.deserializeResponse(methodDeltaSubscribeChar, TestBleSubscribeResponse.getDefaultInstance(),
+        new byte[]{(byte) 0xff, 0, 2, 0})).thenReturn(TEST_READ_RESPONSE);
+    callSubscribeMethod(methodDeltaSubscribeChar, controller, callback);
+    finishSubscribing(descriptor);
+    when(characteristic.getValue()).thenReturn(new byte[]{(byte) 0x80, (byte) 0xff, 0, 2, 0});
+    onCharacteristicChanged(characteristic);
+    verify(callback).run(TEST_READ_RESPONSE);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    reconnect(TEST_RECONNECT_DELAY_MILLIS, 2);
+    bluetoothCallback.getValue().onDescriptorWrite(bluetoothGatt, descriptor, BluetoothGatt.GATT_SUCCESS);
+    // The delta continues the sequence of the previous connection, but the device may have restarted it.
+    when(characteristic.getValue()).thenReturn(new byte[]{1, 1, -1});
+    onCharacteristicChanged(characteristic);
+    verify(callback).run(any());
+  }
+
+  @Test
+  public void testCanceledSubscriptionNotRestored() throws Exception {
+    setUpReconnectChannel(1);
+    callSubscribeMethod(controller, callback);
+    callSubscribeMethod(methodSubscribeChar2, controller2, callback2);
+    finishSubscribing(descriptor);
+    onSubscribe(descriptor2);
+    controller.startCancel();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    reconnect(TEST_RECONNECT_DELAY_MILLIS, 2);
+    verify(bluetoothGatt, times(1)).writeDescriptor(descriptor);
+    verify(bluetoothGatt, times(2)).writeDescriptor(descriptor2);
+  }
+
+  @Test
+  public void testQueuedCallsWaitForReconnect() throws Exception {
+    setUpReconnectChannel(1);
+    when(characteristic.getValue()).thenReturn(new byte[]{});
+    callReadMethod(methodReadChar, controller, callback);
+    callWriteMethod(methodWriteChar2, controller2, callback2);
+    finishConnecting();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    verifyNoCalls(callback);
+    verifyNoCalls(callback2);
+    reconnect(TEST_RECONNECT_DELAY_MILLIS, 2);
+    onCharacteristicWrite(characteristic2);
+    assertCallSucceeded(controller2);
+    verify(bluetoothGatt, times(2)).readCharacteristic(characteristic);
+    bluetoothCallback.getValue().onCharacteristicRead(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    assertCallSucceeded(controller);
+    verify(callback).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testWriteInProgressFailsWhenReconnecting() throws Exception {
+    setUpReconnectChannel(1);
+    callWriteMethod(methodWriteChar, controller, callback);
+    callWriteMethod(methodWriteChar2, controller2, callback2);
+    finishConnecting();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallFailed(controller);
+    verifyCalledWithDefault(callback);
+    verifyNoCalls(callback2);
+    reconnect(TEST_RECONNECT_DELAY_MILLIS, 2);
+    verify(bluetoothGatt, times(1)).writeCharacteristic(characteristic);
+    verify(bluetoothGatt).writeCharacteristic(characteristic2);
+  }
+
+  @Test
+  public void testNoReconnectWithoutPendingCalls() throws Exception {
+    setUpReconnectChannel(1);
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallFailed(controller);
+    verify(workHandler, never()).postDelayed(any(), anyLong());
+    verifyReset();
+  }
+
+  @Test
+  public void testReconnectDelayDoubles() throws Exception {
+    setUpReconnectChannel(3);
+    callSubscribeMethod(controller, callback);
+    finishSubscribing(descriptor);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    captureReconnect(TEST_RECONNECT_DELAY_MILLIS).run();
+    bluetoothCallback.getValue().onConnectionStateChange(bluetoothGatt, 0, BluetoothProfile.STATE_DISCONNECTED);
+    captureReconnect(2 * TEST_RECONNECT_DELAY_MILLIS).run();
+    bluetoothCallback.getValue().onConnectionStateChange(bluetoothGatt, 0, BluetoothProfile.STATE_DISCONNECTED);
+    captureReconnect(TEST_MAX_RECONNECT_DELAY_MILLIS).run();
+    assertCallSucceeded(controller);
+    verifyNoCalls(callback);
+  }
+
+  @Test
+  public void testFailAllWhenReconnectAttemptsExhausted() throws Exception {
+    setUpReconnectChannel(1);
+    callSubscribeMethod(controller, callback);
+    callWriteMethod(methodWriteChar2, controller2, callback2);
+    finishSubscribing(descriptor);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    captureReconnect(TEST_RECONNECT_DELAY_MILLIS).run();
+    bluetoothCallback.getValue().onConnectionStateChange(bluetoothGatt, 0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallFailed(controller);
+    assertCallFailed(controller2);
+    verifyCalledWithDefault(callback2);
+  }
+
+  @Test
+  public void testNoReconnectByDefault() throws Exception {
+    callSubscribeMethod(controller, callback);
+    finishSubscribing(descriptor);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallFailed(controller);
+    verifyReset();
+  }
+
+  @Test
+  public void testConnectionReleasedAfterLinger() throws Exception {
+    setUpLingerChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS));
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    captureConnectionRelease().run();
+    verify(bluetoothGatt).disconnect();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallSucceeded(controller);
+    verifyReset();
+  }
+
+  @Test
+  public void testConnectionNotReleasedWhenCalledDuringLinger() throws Exception {
+    setUpLingerChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS));
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    Runnable releaseConnection = captureConnectionRelease();
+    callWriteMethod(methodWriteChar2, controller2);
+    verify(workHandler, atLeast(1)).removeCallbacks(releaseConnection);
+    releaseConnection.run();
+    verify(bluetoothGatt, never()).disconnect();
+    verify(bluetoothGatt).writeCharacteristic(characteristic2);
+  }
+
+  @Test
+  public void testReconnectWhenCalledDuringDisconnect() throws Exception {
+    setUpLingerChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS));
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    captureConnectionRelease().run();
+    callWriteMethod(methodWriteChar2, controller2);
+    verify(bluetoothDevice).connectGatt(eq(context), anyBoolean(), any());
+    bluetoothCallback.getValue().onConnectionStateChange(bluetoothGatt, 0, BluetoothProfile.STATE_DISCONNECTED);
+    verify(bluetoothGatt).close();
+    verify(bluetoothDevice, times(2)).connectGatt(eq(context), anyBoolean(), any());
+    bluetoothCallback.getValue().onConnectionStateChange(bluetoothGatt, BluetoothGatt.GATT_SUCCESS,
+        BluetoothProfile.STATE_CONNECTED);
+    bluetoothCallback.getValue().onServicesDiscovered(bluetoothGatt, BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt).writeCharacteristic(characteristic2);
+    assertCallSucceeded(controller2);
+  }
+
+  @Test
+  public void testSubscriptionHoldsConnection() throws Exception {
+    setUpLingerChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS));
+    callSubscribeMethod(controller);
+    finishSubscribing(descriptor);
+    verify(workHandler, never()).postDelayed(any(), eq(TEST_LINGER_MILLIS));
+  }
+
+  @Test
+  public void testConnectionClosedWhenDisconnectNotReported() throws Exception {
+    // The disconnect deadline doesn't depend on the operation timeout.
+    setUpLingerChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS));
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    captureConnectionRelease().run();
+    ArgumentCaptor<Runnable> disconnectWatchdog = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(disconnectWatchdog.capture(),
+        eq(TimeUnit.NANOSECONDS.toMillis(BleRpcChannel.DISCONNECT_TIMEOUT_NANOS)));
+    disconnectWatchdog.getValue().run();
+    verify(bluetoothGatt).close();
+    verifyReset();
+  }
+
+  @Test
+  public void testConnectionWaitsForPoolSlot() throws Exception {
+    ConnectionPool pool = new ConnectionPool(1);
+    ConnectionPool.Client otherChannel = Mockito.mock(ConnectionPool.Client.class);
+    pool.acquire(otherChannel);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setConnectionPool(pool).build());
+    callWriteMethod(methodWriteChar, controller);
+    verify(bluetoothDevice, never()).connectGatt(eq(context), anyBoolean(), any());
+    assertThat(pool.getWaitingCount()).isEqualTo(1);
+    pool.release(otherChannel);
+    verify(bluetoothDevice).connectGatt(eq(context), anyBoolean(), any());
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    assertCallSucceeded(controller);
+  }
+
+  @Test
+  public void testCallExpiresWhileWaitingForPoolSlot() throws Exception {
+    ConnectionPool pool = new ConnectionPool(1);
+    pool.acquire(Mockito.mock(ConnectionPool.Client.class));
+    setUpChannel(BleRpcChannelOptions.newBuilder().setTicker(ticker).setConnectionPool(pool).build());
+    controller.setTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    controller2.setTimeout(TEST_TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS);
+    callWriteMethod(methodWriteChar, controller2, callback2);
+    callWriteMethod(methodWriteChar, controller, callback);
+    ArgumentCaptor<Runnable> expiry = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(expiry.capture(), eq(TEST_TIMEOUT_MILLIS));
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    expiry.getValue().run();
+    assertCallFailed(controller);
+    verifyNoCalls(callback2);
+    verify(workHandler, times(2)).postDelayed(expiry.capture(), eq(TEST_TIMEOUT_MILLIS));
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    expiry.getValue().run();
+    assertCallFailed(controller2);
+    // Without calls the channel stops waiting for a slot.
+    assertThat(pool.getWaitingCount()).isEqualTo(0);
+    verify(bluetoothDevice, never()).connectGatt(eq(context), anyBoolean(), any());
+  }
+
+  @Test
+  public void testIdleConnectionEvictedForWaitingChannel() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    ConnectionPool pool = new ConnectionPool(1, metrics);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS).setConnectionPool(pool)
+        .build());
+    callWriteMethod(methodWriteChar, controller);
+    finishConnecting();
+    onCharacteristicWrite(characteristic);
+    ConnectionPool.Client otherChannel = Mockito.mock(ConnectionPool.Client.class);
+    assertThat(pool.acquire(otherChannel)).isFalse();
+    verify(bluetoothGatt).disconnect();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    verify(bluetoothGatt).close();
+    verify(otherChannel).onSlotGranted();
+    verify(metrics).onIdleConnectionEvicted();
+    assertCallSucceeded(controller);
+  }
+
+  @Test
+  public void testConnectionWithSubscriptionNotEvicted() throws Exception {
+    ConnectionPool pool = new ConnectionPool(1);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setConnectionPool(pool).build());
+    callSubscribeMethod(controller);
+    finishSubscribing(descriptor);
+    assertThat(pool.acquire(Mockito.mock(ConnectionPool.Client.class))).isFalse();
+    verify(bluetoothGatt, never()).disconnect();
+  }
+
+  @Test
+  public void testResetReturnsPoolSlot() throws Exception {
+    ConnectionPool pool = new ConnectionPool(1);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setConnectionPool(pool).build());
+    callWriteMethod(methodWriteChar, controller);
+    assertThat(pool.getConnectionsCount()).isEqualTo(1);
+    channel.reset();
+    assertThat(pool.getConnectionsCount()).isEqualTo(0);
+  }
+
+  void setUpLingerChannel(BleRpcChannelOptions.Builder options) {
+    setUpChannel(options.setConnectionLinger(TEST_LINGER_MILLIS, TimeUnit.MILLISECONDS).build());
+  }
+
+  Runnable captureConnectionRelease() {
+    ArgumentCaptor<Runnable> releaseConnection = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(releaseConnection.capture(), eq(TEST_LINGER_MILLIS));
+    return releaseConnection.getValue();
+  }
+
+  void setUpReconnectChannel(int maxReconnectAttempts) {
+    setUpChannel(BleRpcChannelOptions.newBuilder()
+        .setOperationTimeout(0, TimeUnit.SECONDS)
+        .setMaxReconnectAttempts(maxReconnectAttempts)
+        .setReconnectDelay(TEST_RECONNECT_DELAY_MILLIS, TEST_MAX_RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+        .build());
+  }
+
+  Runnable captureReconnect(long delayMillis) {
+    ArgumentCaptor<Runnable> reconnect = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(reconnect.capture(), eq(delayMillis));
+    return reconnect.getValue();
+  }
+
+  void reconnect(long delayMillis, int connection) {
+    captureReconnect(delayMillis).run();
+    verify(bluetoothDevice, times(connection)).connectGatt(eq(context), anyBoolean(), any());
+    bluetoothCallback.getValue().onConnectionStateChange(bluetoothGatt, BluetoothGatt.GATT_SUCCESS,
+        BluetoothProfile.STATE_CONNECTED);
+    bluetoothCallback.getValue().onServicesDiscovered(bluetoothGatt, BluetoothGatt.GATT_SUCCESS);
+  }
+
   @Test
   public void testSkipCanceledCall() throws Exception {
     callMethod(controller, callback);
@@ -459,6 +1211,144 @@ public class BleRpcChannelTest {
     verify(callback).run(TEST_READ_RESPONSE);
   }
 
+  @Test
+  public void testReadsAreCoalesced() throws Exception {
+    setUpCoalescingChannel();
+    when(characteristic.getValue()).thenReturn(TEST_READ_RESPONSE_BYTES);
+    when(messageConverter.deserializeResponse(methodReadChar, TestBleReadResponse.getDefaultInstance(), TEST_READ_RESPONSE_BYTES))
+        .thenReturn(TEST_READ_RESPONSE);
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    finishConnecting();
+    onCharacteristicRead();
+    assertCallSucceeded(controller);
+    assertCallSucceeded(controller2);
+    verify(callback).run(TEST_READ_RESPONSE);
+    verify(callback2).run(TEST_READ_RESPONSE);
+    verify(messageConverter).deserializeResponse(any(), any(Message.class), any(byte[].class));
+  }
+
+  @Test
+  public void testReadsAreCoalesced_whileReadInProgress() throws Exception {
+    setUpCoalescingChannel();
+    when(characteristic.getValue()).thenReturn(TEST_READ_RESPONSE_BYTES);
+    callReadMethod(methodReadChar, controller, callback);
+    finishConnecting();
+    callReadMethod(methodReadChar, controller2, callback2);
+    onCharacteristicRead();
+    verify(callback).run(TestBleReadResponse.getDefaultInstance());
+    verify(callback2).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testReadsAreCoalesced_metricReported() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setCoalesceReads(true).setMetrics(metrics).build());
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    verify(metrics).onCallCoalesced(MethodType.READ);
+  }
+
+  @Test
+  public void testReadsNotCoalesced_afterReadFinished() throws Exception {
+    setUpCoalescingChannel();
+    callReadMethod(methodReadChar, controller, callback);
+    finishConnecting();
+    onCharacteristicRead();
+    callReadMethod(methodReadChar, controller2, callback2);
+    verify(bluetoothGatt, times(2)).readCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testReadsNotCoalesced_differentMethods() throws Exception {
+    setUpCoalescingChannel();
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar2, controller2, callback2);
+    finishConnecting();
+    onCharacteristicRead();
+    verify(bluetoothGatt).readCharacteristic(characteristic2);
+  }
+
+  @Test
+  public void testReadsNotCoalesced_byDefault() throws Exception {
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    finishConnecting();
+    onCharacteristicRead();
+    verify(bluetoothGatt, times(2)).readCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testReadNotCoalescedIntoLowerPriorityRead() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder()
+        .setCoalesceReads(true)
+        .setCallSchedulerFactory(PriorityCallScheduler.factory())
+        .build());
+    when(bluetoothGatt.readCharacteristic(characteristic2)).thenReturn(true);
+    BleRpcController lowPriorityController = new BleRpcController();
+    lowPriorityController.setPriority(CallPriority.PRIORITY_LOW);
+    BleRpcController highPriorityController = new BleRpcController();
+    highPriorityController.setPriority(CallPriority.PRIORITY_HIGH);
+    RpcCallback<Message> callback3 = Mockito.mock(RpcCallback.class);
+    callReadMethod(methodReadChar, lowPriorityController, callback);
+    callReadMethod(methodReadChar2, controller2, callback2);
+    callReadMethod(methodReadChar, highPriorityController, callback3);
+    finishConnecting();
+    // The queued low priority read is sent with the high priority call, before the normal priority read.
+    verifyNoRead(characteristic2);
+    onCharacteristicRead();
+    verify(callback).run(TestBleReadResponse.getDefaultInstance());
+    verify(callback3).run(TestBleReadResponse.getDefaultInstance());
+    verify(bluetoothGatt).readCharacteristic(characteristic);
+    verify(bluetoothGatt).readCharacteristic(characteristic2);
+  }
+
+  @Test
+  public void testCoalescedReadsFailTogether() throws Exception {
+    setUpCoalescingChannel();
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    finishConnecting();
+    onCharacteristicReadFail();
+    assertCallFailed(controller);
+    assertCallFailed(controller2);
+    verify(callback2).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testCoalescedReadsFailTogether_whenDisconnected() throws Exception {
+    setUpCoalescingChannel();
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallFailed(controller);
+    assertCallFailed(controller2);
+  }
+
+  @Test
+  public void testCoalescedReadNotSkipped_whenNotAllCallsCanceled() throws Exception {
+    setUpCoalescingChannel();
+    when(characteristic.getValue()).thenReturn(TEST_READ_RESPONSE_BYTES);
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    controller.startCancel();
+    finishConnecting();
+    onCharacteristicRead();
+    verify(callback2).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testCoalescedReadSkipped_whenAllCallsCanceled() throws Exception {
+    setUpCoalescingChannel();
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    controller.startCancel();
+    controller2.startCancel();
+    finishConnecting();
+    verifyNoRead();
+    verify(callback2).run(TestBleReadResponse.getDefaultInstance());
+  }
+
   @Test
   public void testWriteFailIfCharacteristicNotWritable() throws Exception {
     when(characteristic.getProperties()).thenReturn(0);
@@ -469,23 +1359,91 @@ public class BleRpcChannelTest {
   }
 
   @Test
-  public void testWriteSerializeFailed() throws Exception {
+  public void testWriteSerializeFailed() throws Exception {
+    when(messageConverter.serializeRequest(methodWriteChar, TEST_WRITE_REQUEST))
+        .thenThrow(CouldNotConvertMessageException.serializeRequest("Error"));
+    callWriteMethod(methodWriteChar, controller, TEST_WRITE_REQUEST);
+    finishConnecting();
+    verifyNoWrite();
+    assertCallFailed(controller);
+  }
+
+  @Test
+  public void testWriteCalled() throws Exception {
+    when(messageConverter.serializeRequest(methodWriteChar, TEST_WRITE_REQUEST))
+        .thenReturn(TEST_WRITE_REQUEST_BYTES);
+    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
+    finishConnecting();
+    verify(characteristic).setValue(TEST_WRITE_REQUEST_BYTES);
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testWriteAllocatesValuePerCall() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMetrics(metrics).build());
+    when(messageConverter.serializeRequest(methodWriteChar, TEST_WRITE_REQUEST))
+        .thenReturn(TEST_WRITE_REQUEST_BYTES);
+    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
+    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
+    finishConnecting();
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    verify(metrics, times(2)).onRequestBufferAllocated(TEST_WRITE_REQUEST_BYTES.length);
+  }
+
+  @Test
+  public void testPooledRequestBuffers_writesReuseValue() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setPooledRequestBuffers(true).setMetrics(metrics).build());
     when(messageConverter.serializeRequest(methodWriteChar, TEST_WRITE_REQUEST))
-        .thenThrow(CouldNotConvertMessageException.serializeRequest("Error"));
-    callWriteMethod(methodWriteChar, controller, TEST_WRITE_REQUEST);
+        .thenReturn(TEST_WRITE_REQUEST_BYTES);
+    callWriteMethod(methodWriteChar, controller, callback, TEST_WRITE_REQUEST);
+    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
+    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
     finishConnecting();
-    verifyNoWrite();
-    assertCallFailed(controller);
+    for (int i = 0; i < 3; i++) {
+      onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    }
+    ArgumentCaptor<byte[]> values = ArgumentCaptor.forClass(byte[].class);
+    verify(characteristic, times(3)).setValue(values.capture());
+    assertThat(values.getAllValues().get(0)).isEqualTo(TEST_WRITE_REQUEST_BYTES);
+    assertThat(values.getAllValues().get(1)).isSameAs(values.getAllValues().get(0));
+    assertThat(values.getAllValues().get(2)).isSameAs(values.getAllValues().get(0));
+    verify(metrics).onRequestBufferAllocated(TEST_WRITE_REQUEST_BYTES.length);
+    assertCallSucceeded(controller);
   }
 
   @Test
-  public void testWriteCalled() throws Exception {
-    when(messageConverter.serializeRequest(methodWriteChar, TEST_WRITE_REQUEST))
+  public void testPooledRequestBuffers_writesWithoutResponseReuseValue() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setPooledRequestBuffers(true).setMetrics(metrics).build());
+    when(messageConverter.serializeRequest(methodWriteWithoutResponseChar, TEST_WRITE_REQUEST))
         .thenReturn(TEST_WRITE_REQUEST_BYTES);
-    callWriteMethod(methodWriteChar, TEST_WRITE_REQUEST);
+    callWriteMethod(methodWriteWithoutResponseChar, TEST_WRITE_REQUEST);
+    callWriteMethod(methodWriteWithoutResponseChar, TEST_WRITE_REQUEST);
     finishConnecting();
-    verify(characteristic).setValue(TEST_WRITE_REQUEST_BYTES);
-    verify(bluetoothGatt).writeCharacteristic(characteristic);
+    ArgumentCaptor<byte[]> values = ArgumentCaptor.forClass(byte[].class);
+    verify(characteristic, times(2)).setValue(values.capture());
+    assertThat(values.getAllValues().get(1)).isSameAs(values.getAllValues().get(0));
+    verify(metrics).onRequestBufferAllocated(TEST_WRITE_REQUEST_BYTES.length);
+  }
+
+  @Test
+  public void testPooledRequestBuffers_fragmentedWritesReuseChunks() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setPooledRequestBuffers(true).setMetrics(metrics).build());
+    when(messageConverter.serializeRequest(methodFragmentedWriteChar, TEST_WRITE_REQUEST, Integer.MAX_VALUE))
+        .thenReturn(TEST_FRAGMENTED_VALUE);
+    int chunkCount = Fragments.split(ByteBuffer.wrap(TEST_FRAGMENTED_VALUE), BleRpcChannel.DEFAULT_MTU - 3).size();
+    callWriteMethod(methodFragmentedWriteChar, TEST_WRITE_REQUEST);
+    callWriteMethod(methodFragmentedWriteChar, TEST_WRITE_REQUEST);
+    finishConnecting();
+    for (int i = 0; i < 2 * chunkCount; i++) {
+      onChunkWritten(BluetoothGatt.GATT_SUCCESS);
+    }
+    verify(characteristic, times(2 * chunkCount)).setValue(any(byte[].class));
+    verify(metrics, times(chunkCount)).onRequestBufferAllocated(anyInt());
   }
 
   @Test
@@ -598,6 +1556,414 @@ public class BleRpcChannelTest {
     verifySubscribe(descriptor2);
   }
 
+  @Test
+  public void testWriteWithoutResponseCalled() throws Exception {
+    when(messageConverter.serializeRequest(methodWriteWithoutResponseChar, TEST_WRITE_REQUEST))
+        .thenReturn(TEST_WRITE_REQUEST_BYTES);
+    callWriteMethod(methodWriteWithoutResponseChar, TEST_WRITE_REQUEST);
+    finishConnecting();
+    verify(characteristic).setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+    verify(characteristic).setValue(TEST_WRITE_REQUEST_BYTES);
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testWriteWithoutResponseFailIfCharacteristicNotWritableWithoutResponse() throws Exception {
+    when(characteristic.getProperties()).thenReturn(BluetoothGattCharacteristic.PROPERTY_WRITE);
+    callWriteMethod(methodWriteWithoutResponseChar, controller);
+    finishConnecting();
+    verifyNoWrite();
+    assertCallFailed(controller);
+  }
+
+  @Test
+  public void testWriteWithoutResponseSuccess() throws Exception {
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback);
+    finishConnecting();
+    verifyNoCalls(callback);
+    onCharacteristicWrite(characteristic);
+    assertCallSucceeded(controller);
+    verifyCalledWithDefault(callback);
+    verify(messageConverter, never()).deserializeResponse(any(), any(Message.class), any(byte[].class));
+  }
+
+  @Test
+  public void testWriteWithoutResponseStatusNotSuccess() throws Exception {
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback);
+    finishConnecting();
+    onCharacteristicWriteFail(characteristic);
+    assertCallFailed(controller);
+    verifyCalledWithDefault(callback);
+  }
+
+  @Test
+  public void testWriteWithoutResponseFailed() throws Exception {
+    when(bluetoothGatt.writeCharacteristic(characteristic)).thenReturn(false);
+    callWriteMethod(methodWriteWithoutResponseChar, controller);
+    finishConnecting();
+    assertCallFailed(controller);
+  }
+
+  @Test
+  public void testWritesWithoutResponseArePipelined() throws Exception {
+    BleRpcController controller3 = new BleRpcController();
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback);
+    callWriteMethod(methodWriteWithoutResponseChar, controller2, callback2);
+    callWriteMethod(methodWriteWithoutResponseChar, controller3, callback2);
+    finishConnecting();
+    // All writes are handed to the stack without waiting for GATT callbacks.
+    verify(bluetoothGatt, times(3)).writeCharacteristic(characteristic);
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verifyCalledWithDefault(callback);
+    verifyNoCalls(callback2);
+  }
+
+  @Test
+  public void testWritesWithoutResponseWaitForCredits() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setWriteWithoutResponseCredits(2).build());
+    callWriteMethod(methodWriteWithoutResponseChar);
+    callWriteMethod(methodWriteWithoutResponseChar);
+    callWriteMethod(methodWriteWithoutResponseChar);
+    finishConnecting();
+    verify(bluetoothGatt, times(2)).writeCharacteristic(characteristic);
+    // Sending one write returns a credit.
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt, times(3)).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testWritesWithoutResponseRetryWhenStackIsBusy() throws Exception {
+    when(bluetoothGatt.writeCharacteristic(characteristic)).thenReturn(true, false, true);
+    callWriteMethod(methodWriteWithoutResponseChar, controller);
+    callWriteMethod(methodWriteWithoutResponseChar, controller2);
+    finishConnecting();
+    verify(bluetoothGatt, times(2)).writeCharacteristic(characteristic);
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt, times(3)).writeCharacteristic(characteristic);
+    assertCallSucceeded(controller2);
+  }
+
+  @Test
+  public void testCallWaitsForWritesWithoutResponse() throws Exception {
+    callWriteMethod(methodWriteWithoutResponseChar);
+    callReadMethod(methodReadChar);
+    finishConnecting();
+    verifyNoRead();
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt).readCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testWriteWithoutResponseWaitsForCallInProgress() throws Exception {
+    callReadMethod(methodReadChar);
+    callWriteMethod(methodWriteWithoutResponseChar);
+    finishConnecting();
+    verifyNoWrite();
+    onCharacteristicRead();
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testFailWritesWithoutResponseWhenDisconnected() throws Exception {
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback);
+    finishConnecting();
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    assertCallFailed(controller);
+    verifyCalledWithDefault(callback);
+  }
+
+  @Test
+  public void testQueuedWritesAreCoalesced() throws Exception {
+    BleRpcController controller3 = new BleRpcController();
+    RpcCallback<Message> callback3 = Mockito.mock(RpcCallback.class);
+    when(messageConverter.serializeRequest(methodCoalescingWriteChar, TEST_WRITE_REQUEST2))
+        .thenReturn(TEST_WRITE_REQUEST_BYTES2);
+    callWriteMethod(methodCoalescingWriteChar, controller, callback, TEST_WRITE_REQUEST);
+    callWriteMethod(methodCoalescingWriteChar, controller2, callback2, TEST_WRITE_REQUEST);
+    callWriteMethod(methodCoalescingWriteChar, controller3, callback3, TEST_WRITE_REQUEST2);
+    assertThat(controller.isCoalesced()).isTrue();
+    assertThat(controller2.isCoalesced()).isTrue();
+    verifyCalledWithDefault(callback);
+    verifyCalledWithDefault(callback2);
+    finishConnecting();
+    verify(characteristic).setValue(TEST_WRITE_REQUEST_BYTES2);
+    onCharacteristicWrite(characteristic);
+    assertThat(controller3.isCoalesced()).isFalse();
+    assertCallSucceeded(controller3);
+    verify(callback3).run(any());
+  }
+
+  @Test
+  public void testWriteInProgressIsNotCoalesced() throws Exception {
+    BleRpcController controller3 = new BleRpcController();
+    callWriteMethod(methodCoalescingWriteChar, controller, callback);
+    finishConnecting();
+    callWriteMethod(methodCoalescingWriteChar, controller2, callback);
+    callWriteMethod(methodCoalescingWriteChar, controller3, callback);
+    assertThat(controller.isCoalesced()).isFalse();
+    assertThat(controller2.isCoalesced()).isTrue();
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt, times(2)).writeCharacteristic(characteristic);
+    assertThat(controller3.isCoalesced()).isFalse();
+  }
+
+  @Test
+  public void testWritesAreCoalesced_metricReported() throws Exception {
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setMetrics(metrics).build());
+    callWriteMethod(methodCoalescingWriteChar, controller, callback);
+    callWriteMethod(methodCoalescingWriteChar, controller2, callback2);
+    verify(metrics).onCallCoalesced(MethodType.WRITE);
+  }
+
+  @Test
+  public void testWritesNotCoalesced_withoutOption() throws Exception {
+    callWriteMethod(methodWriteChar, controller, callback);
+    callWriteMethod(methodWriteChar, controller2, callback2);
+    finishConnecting();
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verify(bluetoothGatt, times(2)).writeCharacteristic(characteristic);
+    assertThat(controller.isCoalesced()).isFalse();
+  }
+
+  @Test
+  public void testHighPriorityCallGoesFirst() throws Exception {
+    setUpPriorityChannel();
+    when(bluetoothGatt.readCharacteristic(characteristic2)).thenReturn(true);
+    callReadMethod(methodReadChar);
+    callWriteMethod(methodWriteChar);
+    callReadMethod(methodHighPriorityReadChar2);
+    finishConnecting();
+    verify(bluetoothGatt).readCharacteristic(characteristic2);
+    verifyNoRead(characteristic);
+  }
+
+  @Test
+  public void testControllerPriorityOverridesMethodPriority() throws Exception {
+    setUpPriorityChannel();
+    BleRpcController lowPriorityController = new BleRpcController();
+    lowPriorityController.setPriority(CallPriority.PRIORITY_LOW);
+    BleRpcController highPriorityController = new BleRpcController();
+    highPriorityController.setPriority(CallPriority.PRIORITY_HIGH);
+    callReadMethod(methodHighPriorityReadChar2, lowPriorityController, callback);
+    callWriteMethod(methodWriteChar, highPriorityController, callback2);
+    finishConnecting();
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+    verifyNoRead(characteristic2);
+  }
+
+  @Test
+  public void testCallsAreSequential_byDefault() throws Exception {
+    callReadMethod(methodReadChar);
+    callReadMethod(methodHighPriorityReadChar2);
+    finishConnecting();
+    verify(bluetoothGatt).readCharacteristic(characteristic);
+    verifyNoRead(characteristic2);
+  }
+
+  @Test
+  public void testQueueWaitReported() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    BleRpcChannelMetrics metrics = Mockito.mock(BleRpcChannelMetrics.class);
+    setUpChannel(BleRpcChannelOptions.newBuilder().setTicker(ticker).setMetrics(metrics).build());
+    callWriteMethod(methodWriteChar);
+    ticker.advance(TEST_QUEUE_WAIT_NANOS);
+    finishConnecting();
+    verify(metrics).onQueueWait(CallPriority.PRIORITY_NORMAL, TEST_QUEUE_WAIT_NANOS);
+  }
+
+  @Test
+  public void testWatchdogStarted() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callReadMethod(methodReadChar);
+    finishConnecting();
+    verify(workHandler).postDelayed(any(), eq(TEST_OPERATION_TIMEOUT_MILLIS));
+  }
+
+  @Test
+  public void testWatchdogStarted_callDeadlineFirst() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    controller.setTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    callReadMethod(methodReadChar);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS / 2));
+    finishConnecting();
+    verify(workHandler).postDelayed(any(), eq(TEST_TIMEOUT_MILLIS / 2));
+  }
+
+  @Test
+  public void testWatchdogNotStarted_withoutTimeouts() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setOperationTimeout(0, TimeUnit.SECONDS).build());
+    callReadMethod(methodReadChar);
+    finishConnecting();
+    verify(workHandler, never()).postDelayed(any(), Mockito.anyLong());
+  }
+
+  @Test
+  public void testWatchdogStopped_whenCallFinished() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callReadMethod(methodReadChar);
+    finishConnecting();
+    Runnable watchdog = captureWatchdog();
+    onCharacteristicRead();
+    verify(workHandler, atLeast(1)).removeCallbacks(watchdog);
+  }
+
+  @Test
+  public void testCallTimesOut() throws Exception {
+    when(bluetoothGatt.readCharacteristic(characteristic2)).thenReturn(true);
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar2, controller2, callback2);
+    finishConnecting();
+    captureWatchdog().run();
+    assertCallFailed(controller);
+    verify(callback).run(TestBleReadResponse.getDefaultInstance());
+    // The channel moves on to the next call.
+    verify(bluetoothGatt).readCharacteristic(characteristic2);
+    verify(bluetoothGatt, never()).close();
+  }
+
+  @Test
+  public void testCallTimesOut_lateCallbackIgnored() throws Exception {
+    when(bluetoothGatt.readCharacteristic(characteristic2)).thenReturn(true);
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar2, controller2, callback2);
+    finishConnecting();
+    captureWatchdog().run();
+    onCharacteristicRead(characteristic);
+    verifyNoCalls(callback2);
+  }
+
+  @Test
+  public void testCallTimesOut_lateCallbackOfSameCharacteristicIgnored() throws Exception {
+    when(characteristic.getValue()).thenReturn(TEST_READ_RESPONSE_BYTES);
+    when(messageConverter.deserializeResponse(methodReadChar, TestBleReadResponse.getDefaultInstance(), TEST_READ_RESPONSE_BYTES))
+        .thenReturn(TEST_READ_RESPONSE);
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callReadMethod(methodReadChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    finishConnecting();
+    captureWatchdog().run();
+    assertCallFailed(controller);
+    verify(bluetoothGatt, times(2)).readCharacteristic(characteristic);
+    // The first callback reports the read that timed out.
+    bluetoothCallback.getValue().onCharacteristicRead(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    verifyNoCalls(callback2);
+    bluetoothCallback.getValue().onCharacteristicRead(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    assertCallSucceeded(controller2);
+    verify(callback2).run(TEST_READ_RESPONSE);
+  }
+
+  @Test
+  public void testCallTimesOut_recycleConnection() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder().setRecycleConnectionOnTimeout(true));
+    callReadMethod(methodReadChar, controller, callback);
+    callWriteMethod(methodWriteChar, controller2, callback2);
+    finishConnecting();
+    captureWatchdog().run();
+    assertCallFailed(controller);
+    assertCallFailed(controller2);
+    verifyReset();
+  }
+
+  @Test
+  public void testSubscribeTimesOut() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callSubscribeMethod(controller, callback);
+    finishConnecting();
+    captureWatchdog().run();
+    assertCallFailed(controller);
+    verifyUnsubscribed();
+  }
+
+  @Test
+  public void testSubscribeTimesOut_lateDescriptorCallbackIgnored() throws Exception {
+    when(bluetoothGatt.readCharacteristic(characteristic2)).thenReturn(true);
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callSubscribeMethod(controller, callback);
+    callReadMethod(methodReadChar2, controller2, callback2);
+    finishConnecting();
+    captureWatchdog().run();
+    assertCallFailed(controller);
+    onSubscribe(descriptor);
+    verifyNoCalls(callback2);
+    onCharacteristicRead(characteristic2);
+    verify(callback2).run(TestBleReadResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void testWriteWithoutResponseTimesOut() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder());
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback);
+    callReadMethod(methodReadChar, controller2, callback2);
+    finishConnecting();
+    captureWatchdog().run();
+    assertCallFailed(controller);
+    verify(bluetoothGatt).readCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testWriteWithoutResponseTimesOut_deadlineOfRemainingWrite() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder().setTicker(ticker).setOperationTimeout(0, TimeUnit.SECONDS).build());
+    controller.setTimeout(TEST_TIMEOUT_MILLIS * 3, TimeUnit.MILLISECONDS);
+    controller2.setTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    callWriteMethod(methodWriteWithoutResponseChar, controller, callback);
+    callWriteMethod(methodWriteWithoutResponseChar, controller2, callback2);
+    finishConnecting();
+    Mockito.clearInvocations(workHandler);
+    bluetoothCallback.getValue().onCharacteristicWrite(bluetoothGatt, characteristic, BluetoothGatt.GATT_SUCCESS);
+    assertCallSucceeded(controller);
+    // Without the operation timeout, the watchdog fires at the deadline of the write that is still outstanding.
+    ArgumentCaptor<Runnable> watchdog = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(watchdog.capture(), eq(TEST_TIMEOUT_MILLIS));
+    watchdog.getValue().run();
+    assertCallFailed(controller2);
+  }
+
+  @Test
+  public void testExpiredCallIsDropped() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder().setCallTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    callWriteMethod(methodWriteChar, controller, callback);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    finishConnecting();
+    verifyNoWrite();
+    assertCallFailed(controller);
+    verifyCalledWithDefault(callback);
+  }
+
+  @Test
+  public void testControllerTimeoutOverridesChannelTimeout() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder().setCallTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    controller.setTimeout(TEST_TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS);
+    callWriteMethod(methodWriteChar, controller, callback);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    finishConnecting();
+    verify(bluetoothGatt).writeCharacteristic(characteristic);
+  }
+
+  @Test
+  public void testSubscribeDoesNotExpire() throws Exception {
+    setUpTimeoutChannel(BleRpcChannelOptions.newBuilder().setCallTimeout(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    callSubscribeMethod(controller, callback);
+    ticker.advance(TimeUnit.MILLISECONDS.toNanos(TEST_TIMEOUT_MILLIS));
+    finishConnecting();
+    verifySubscribe(descriptor);
+  }
+
+  void setUpTimeoutChannel(BleRpcChannelOptions.Builder options) {
+    setUpChannel(options
+        .setTicker(ticker)
+        .setOperationTimeout(TEST_OPERATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .build());
+  }
+
+  Runnable captureWatchdog() {
+    ArgumentCaptor<Runnable> watchdog = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler, atLeast(1)).postDelayed(watchdog.capture(), Mockito.anyLong());
+    return watchdog.getValue();
+  }
+
   @Test
   public void testLoopUntilNotCanceledCall() throws Exception {
     callWriteMethod(methodWriteChar, controller, callback);
@@ -782,6 +2148,75 @@ public class BleRpcChannelTest {
     verify(callback).run(TEST_SUBSCRIBE_RESPONSE2);
   }
 
+  @Test
+  public void testNotificationDeliveredToAllSubscribersWithOnePost() throws Exception {
+    callSubscribeMethod(methodSubscribeChar, controller, callback);
+    callSubscribeMethod(methodSubscribeCharCopy, controller2, callback2);
+    finishSubscribing(descriptor);
+    setUpNotification(TEST_SUBSCRIBE_RESPONSE_BYTES, TEST_SUBSCRIBE_RESPONSE);
+    clearInvocations(listenerHandler);
+    onCharacteristicChanged(characteristic);
+    verify(listenerHandler).post(any());
+    verify(callback).run(TEST_SUBSCRIBE_RESPONSE);
+    verify(callback2).run(TEST_SUBSCRIBE_RESPONSE);
+  }
+
+  @Test
+  public void testNotificationsBatchedWithinWindow() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder()
+        .setOperationTimeout(0, TimeUnit.SECONDS)
+        .setNotificationBatchWindow(TEST_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS)
+        .build());
+    RpcCallback<List<Message>> batchCallback = Mockito.mock(RpcCallback.class);
+    controller2.setNotificationBatchCallback(batchCallback);
+    callSubscribeMethod(methodSubscribeChar, controller, callback);
+    callSubscribeMethod(methodSubscribeCharCopy, controller2, callback2);
+    finishSubscribing(descriptor);
+    setUpNotification(TEST_SUBSCRIBE_RESPONSE_BYTES, TEST_SUBSCRIBE_RESPONSE);
+    onCharacteristicChanged(characteristic);
+    setUpNotification(TEST_SUBSCRIBE_RESPONSE_BYTES2, TEST_SUBSCRIBE_RESPONSE2);
+    onCharacteristicChanged(characteristic);
+    verifyNoCalls(callback);
+    verify(batchCallback, never()).run(any());
+    clearInvocations(listenerHandler);
+    captureNotificationFlush().run();
+    verify(listenerHandler).post(any());
+    InOrder inOrder = Mockito.inOrder(callback);
+    inOrder.verify(callback).run(TEST_SUBSCRIBE_RESPONSE);
+    inOrder.verify(callback).run(TEST_SUBSCRIBE_RESPONSE2);
+    verify(batchCallback).run(ImmutableList.of(TEST_SUBSCRIBE_RESPONSE, TEST_SUBSCRIBE_RESPONSE2));
+    verifyNoCalls(callback2);
+  }
+
+  @Test
+  public void testBatchedNotificationsDeliveredBeforeFailure() throws Exception {
+    setUpChannel(BleRpcChannelOptions.newBuilder()
+        .setOperationTimeout(0, TimeUnit.SECONDS)
+        .setNotificationBatchWindow(TEST_BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS)
+        .build());
+    callSubscribeMethod(methodSubscribeChar, controller, callback);
+    finishSubscribing(descriptor);
+    setUpNotification(TEST_SUBSCRIBE_RESPONSE_BYTES, TEST_SUBSCRIBE_RESPONSE);
+    onCharacteristicChanged(characteristic);
+    onConnectionStateChange(0, BluetoothProfile.STATE_DISCONNECTED);
+    InOrder inOrder = Mockito.inOrder(callback);
+    inOrder.verify(callback).run(TEST_SUBSCRIBE_RESPONSE);
+    inOrder.verify(callback).run(TestBleSubscribeResponse.getDefaultInstance());
+    assertCallFailed(controller);
+  }
+
+  void setUpNotification(byte[] value, Message response) throws Exception {
+    when(characteristic.getValue()).thenReturn(value);
+    when(messageConverter.deserializeResponse(methodSubscribeChar, TestBleSubscribeResponse.getDefaultInstance(), value))
+        .thenReturn(response);
+  }
+
+  Runnable captureNotificationFlush() {
+    ArgumentCaptor<Runnable> notificationFlush = ArgumentCaptor.forClass(Runnable.class);
+    verify(workHandler).postDelayed(notificationFlush.capture(), eq(TEST_BATCH_WINDOW_MILLIS));
+    return notificationFlush.getValue();
+  }
+
   @Test
   public void testSubscribeUnsubscribeFailed() throws Exception {
     callSubscribeMethod(controller, callback);
@@ -1150,6 +2585,10 @@ public class BleRpcChannelTest {
     onSubscribe(descriptor);
   }
 
+  void onMtuChanged(int mtu, int status) {
+    bluetoothCallback.getValue().onMtuChanged(bluetoothGatt, mtu, status);
+  }
+
   void onCharacteristicReadFail() {
     onCharacteristicRead(characteristic, TEST_STATUS_NOT_SUCCESS);
   }
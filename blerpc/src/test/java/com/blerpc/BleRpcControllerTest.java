@@ -3,7 +3,11 @@ package com.blerpc;
 import static com.blerpc.Assert.assertError;
 import static com.google.common.truth.Truth.assertThat;
 
+import com.blerpc.proto.CallPriority;
+import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -15,8 +19,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 public class BleRpcControllerTest {
 
   private static final String TEST_FAIL_MESSAGE = "TEST_FAIL_MESSAGE";
+  private static final long TEST_TIMEOUT_SECONDS = 5;
   private static final RpcCallback<Object> TEST_RPC_CALLBACK = parameter -> {
   };
+  private static final RpcCallback<List<Message>> TEST_BATCH_CALLBACK = messages -> {
+  };
 
   private final BleRpcController bleRpcController = new BleRpcController();
 
@@ -59,9 +66,43 @@ public class BleRpcControllerTest {
     assertThat(bleRpcController.errorText()).isEqualTo(TEST_FAIL_MESSAGE);
   }
 
+  @Test
+  public void testSetPriority() {
+    bleRpcController.setPriority(CallPriority.PRIORITY_HIGH);
+    assertThat(bleRpcController.getPriority()).isEqualTo(CallPriority.PRIORITY_HIGH);
+  }
+
+  @Test
+  public void testSetCoalesced() {
+    bleRpcController.setCoalesced();
+    assertThat(bleRpcController.isCoalesced()).isTrue();
+    assertThat(bleRpcController.failed()).isFalse();
+  }
+
+  @Test
+  public void testSetTimeout() {
+    bleRpcController.setTimeout(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertThat(bleRpcController.getTimeoutNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(TEST_TIMEOUT_SECONDS));
+  }
+
+  @Test
+  public void testSetTimeout_negative() {
+    assertError(() -> bleRpcController.setTimeout(-1, TimeUnit.SECONDS), "Timeout must not be negative, got -1.");
+  }
+
+  @Test
+  public void testSetNotificationBatchCallback() {
+    bleRpcController.setNotificationBatchCallback(TEST_BATCH_CALLBACK);
+    assertThat(bleRpcController.getNotificationBatchCallback().get()).isSameAs(TEST_BATCH_CALLBACK);
+  }
+
   @Test
   public void testReset() {
     bleRpcController.setFailed(TEST_FAIL_MESSAGE);
+    bleRpcController.setTimeout(TEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    bleRpcController.setCoalesced();
+    bleRpcController.setPriority(CallPriority.PRIORITY_LOW);
+    bleRpcController.setNotificationBatchCallback(TEST_BATCH_CALLBACK);
     bleRpcController.startCancel();
     assertThat(bleRpcController.isCanceled()).isTrue();
     assertThat(bleRpcController.failed()).isTrue();
@@ -81,5 +122,9 @@ public class BleRpcControllerTest {
     assertThat(bleRpcController.isCanceled()).isFalse();
     assertThat(bleRpcController.failed()).isFalse();
     assertThat(bleRpcController.errorText()).isNull();
+    assertThat(bleRpcController.getPriority()).isEqualTo(CallPriority.PRIORITY_DEFAULT);
+    assertThat(bleRpcController.isCoalesced()).isFalse();
+    assertThat(bleRpcController.getTimeoutNanos()).isEqualTo(0);
+    assertThat(bleRpcController.getNotificationBatchCallback().isPresent()).isFalse();
   }
 }
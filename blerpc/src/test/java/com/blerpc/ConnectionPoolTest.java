@@ -0,0 +1,146 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link ConnectionPool}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ConnectionPoolTest {
+
+  @Mock ConnectionPool.Client client;
+  @Mock ConnectionPool.Client client2;
+  @Mock ConnectionPool.Client client3;
+  @Mock BleRpcChannelMetrics metrics;
+  private final FakeTicker ticker = new FakeTicker();
+
+  @Test
+  public void testAcquire() {
+    ConnectionPool pool = new ConnectionPool(2, metrics, ticker);
+    assertThat(pool.acquire(client)).isTrue();
+    assertThat(pool.acquire(client2)).isTrue();
+    assertThat(pool.acquire(client)).isTrue();
+    assertThat(pool.getConnectionsCount()).isEqualTo(2);
+    assertThat(pool.holds(client)).isTrue();
+    verify(metrics).onConnectionPoolChanged(2, 0, 2);
+    verify(metrics, Mockito.times(2)).onConnectionSlotWait(0);
+  }
+
+  @Test
+  public void testAcquire_waitsForRelease() {
+    ConnectionPool pool = new ConnectionPool(1, metrics, ticker);
+    pool.acquire(client);
+    assertThat(pool.acquire(client2)).isFalse();
+    assertThat(pool.getWaitingCount()).isEqualTo(1);
+    verify(metrics).onConnectionPoolChanged(1, 1, 1);
+    ticker.advance(100);
+    pool.release(client);
+    verify(client2).onSlotGranted();
+    assertThat(pool.holds(client2)).isTrue();
+    assertThat(pool.holds(client)).isFalse();
+    assertThat(pool.getWaitingCount()).isEqualTo(0);
+    verify(metrics).onConnectionSlotWait(100);
+  }
+
+  @Test
+  public void testRelease_grantsInOrder() {
+    ConnectionPool pool = new ConnectionPool(1, metrics, ticker);
+    pool.acquire(client);
+    pool.acquire(client2);
+    pool.acquire(client3);
+    pool.release(client);
+    verify(client2).onSlotGranted();
+    verify(client3, never()).onSlotGranted();
+    pool.release(client2);
+    verify(client3).onSlotGranted();
+  }
+
+  @Test
+  public void testRelease_waiterStopsWaiting() {
+    ConnectionPool pool = new ConnectionPool(1, metrics, ticker);
+    pool.acquire(client);
+    pool.acquire(client2);
+    pool.release(client2);
+    assertThat(pool.getWaitingCount()).isEqualTo(0);
+    pool.release(client);
+    verify(client2, never()).onSlotGranted();
+    assertThat(pool.getConnectionsCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testIdleHolderEvictedForWaiter() {
+    ConnectionPool pool = new ConnectionPool(1, metrics, ticker);
+    pool.acquire(client);
+    pool.setIdle(client, true);
+    pool.acquire(client2);
+    verify(client).onEvictionRequested();
+    pool.release(client);
+    verify(metrics).onIdleConnectionEvicted();
+    verify(client2).onSlotGranted();
+  }
+
+  @Test
+  public void testHolderEvictedWhenBecomesIdle() {
+    ConnectionPool pool = new ConnectionPool(1, metrics, ticker);
+    pool.acquire(client);
+    pool.acquire(client2);
+    verify(client, never()).onEvictionRequested();
+    pool.setIdle(client, true);
+    verify(client).onEvictionRequested();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvictedFirst() {
+    ConnectionPool pool = new ConnectionPool(2, metrics, ticker);
+    pool.acquire(client);
+    pool.acquire(client2);
+    pool.setIdle(client, true);
+    pool.setIdle(client2, true);
+    // The first client is used again, the second one is idle the longest.
+    pool.setIdle(client, false);
+    pool.setIdle(client, true);
+    pool.acquire(client3);
+    verify(client2).onEvictionRequested();
+    verify(client, never()).onEvictionRequested();
+  }
+
+  @Test
+  public void testBusyEvictedHolder_anotherHolderEvicted() {
+    ConnectionPool pool = new ConnectionPool(2, metrics, ticker);
+    pool.acquire(client);
+    pool.acquire(client2);
+    pool.setIdle(client, true);
+    pool.setIdle(client2, true);
+    pool.acquire(client3);
+    InOrder inOrder = Mockito.inOrder(client, client2);
+    inOrder.verify(client).onEvictionRequested();
+    pool.setIdle(client, false);
+    inOrder.verify(client2).onEvictionRequested();
+    pool.release(client2);
+    verify(client3).onSlotGranted();
+  }
+
+  @Test
+  public void testSetIdle_notHolderIgnored() {
+    ConnectionPool pool = new ConnectionPool(1, metrics, ticker);
+    pool.acquire(client);
+    pool.setIdle(client2, true);
+    pool.acquire(client3);
+    verify(client2, never()).onEvictionRequested();
+  }
+
+  @Test
+  public void testInvalidMaxConnections() {
+    assertError(() -> new ConnectionPool(0), "Max connections must be positive, got 0.");
+  }
+}
@@ -0,0 +1,141 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Optional;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link DeltaStream}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DeltaStreamTest {
+
+  @Test
+  public void testKeyframe() throws Exception {
+    DeltaStream stream = new DeltaStream(2, ByteOrder.BIG_ENDIAN);
+    assertThat(add(stream, 0x85, 1, 2, 3, 4).get()).isEqualTo(wrap(1, 2, 3, 4));
+  }
+
+  @Test
+  public void testDeltas_bigEndian() throws Exception {
+    DeltaStream stream = new DeltaStream(2, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 0x00, 0xff, 0x01, 0x00);
+    assertThat(add(stream, 1, 1, -1).get()).isEqualTo(wrap(0x01, 0x00, 0x00, 0xff));
+    assertThat(add(stream, 2, -2, 0x7f).get()).isEqualTo(wrap(0x00, 0xfe, 0x01, 0x7e));
+  }
+
+  @Test
+  public void testDeltas_littleEndian() throws Exception {
+    DeltaStream stream = new DeltaStream(2, ByteOrder.LITTLE_ENDIAN);
+    add(stream, 0x80, 0xff, 0x00, 0x00, 0x01);
+    assertThat(add(stream, 1, 1, -1).get()).isEqualTo(wrap(0x00, 0x01, 0xff, 0x00));
+  }
+
+  @Test
+  public void testDeltas_wrapAround() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 0xff, 0x00);
+    assertThat(add(stream, 1, 1, -1).get()).isEqualTo(wrap(0x00, 0xff));
+  }
+
+  @Test
+  public void testDeltas_eightByteWords() throws Exception {
+    DeltaStream stream = new DeltaStream(8, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff);
+    assertThat(add(stream, 1, 1).get()).isEqualTo(wrap(0x80, 0, 0, 0, 0, 0, 0, 0));
+  }
+
+  @Test
+  public void testSequenceWrapsAround() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80 | 127, 0);
+    assertThat(add(stream, 0, 5).get()).isEqualTo(wrap(5));
+  }
+
+  @Test
+  public void testDeltaBeforeKeyframe_dropped() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    assertThat(add(stream, 0, 1).isPresent()).isFalse();
+    assertThat(add(stream, 0x81, 7).get()).isEqualTo(wrap(7));
+  }
+
+  @Test
+  public void testLostNotification_resyncsOnKeyframe() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 10);
+    assertThat(add(stream, 2, 1).isPresent()).isFalse();
+    // Deltas that follow the gap are dropped as well, even with consecutive sequence numbers.
+    assertThat(add(stream, 3, 1).isPresent()).isFalse();
+    assertThat(add(stream, 0x84, 20).get()).isEqualTo(wrap(20));
+    assertThat(add(stream, 5, -1).get()).isEqualTo(wrap(19));
+  }
+
+  @Test
+  public void testKeyframeChangesSize() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 1);
+    assertThat(add(stream, 0x81, 1, 2, 3).get()).isEqualTo(wrap(1, 2, 3));
+    assertThat(add(stream, 2, 1, 1, 1).get()).isEqualTo(wrap(2, 3, 4));
+  }
+
+  @Test
+  public void testBufferSlice() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    ByteBuffer keyframe = ByteBuffer.wrap(new byte[]{9, (byte) 0x80, 4, 9}, 1, 2);
+    assertThat(stream.add(keyframe).get()).isEqualTo(wrap(4));
+    assertThat(keyframe.position()).isEqualTo(1);
+  }
+
+  @Test
+  public void testNoHeader() throws Exception {
+    assertError(() -> new DeltaStream(1, ByteOrder.BIG_ENDIAN).add(ByteBuffer.allocate(0)),
+        "Could not deserialize response: Notification has no header.");
+  }
+
+  @Test
+  public void testKeyframeNotMultipleOfWordSize() throws Exception {
+    assertError(() -> add(new DeltaStream(2, ByteOrder.BIG_ENDIAN), 0x80, 1, 2, 3),
+        "Could not deserialize response: Keyframe size 3 is not a multiple of the word size 2.");
+  }
+
+  @Test
+  public void testWrongDeltasCount() throws Exception {
+    DeltaStream stream = new DeltaStream(2, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 1, 2, 3, 4);
+    assertError(() -> add(stream, 1, 1), "Could not deserialize response: Expected 2 deltas, got 1.");
+    // The value is dropped.
+    assertThat(add(stream, 2, 1, 1).isPresent()).isFalse();
+  }
+
+  @Test
+  public void testInvalidWordSize() {
+    assertError(() -> new DeltaStream(0, ByteOrder.BIG_ENDIAN), "Delta word size must be from 1 to 8, got 0.");
+    assertError(() -> new DeltaStream(9, ByteOrder.BIG_ENDIAN), "Delta word size must be from 1 to 8, got 9.");
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    DeltaStream stream = new DeltaStream(1, ByteOrder.BIG_ENDIAN);
+    add(stream, 0x80, 1);
+    stream.reset();
+    assertThat(add(stream, 1, 1).isPresent()).isFalse();
+  }
+
+  private static Optional<ByteBuffer> add(DeltaStream stream, int... bytes) throws CouldNotConvertMessageException {
+    return stream.add(wrap(bytes));
+  }
+
+  private static ByteBuffer wrap(int... bytes) {
+    byte[] value = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      value[i] = (byte) bytes[i];
+    }
+    return ByteBuffer.wrap(value);
+  }
+}
@@ -0,0 +1,25 @@
+package com.blerpc;
+
+import com.google.common.base.Ticker;
+
+/**
+ * A {@link Ticker} for tests that only moves when advanced.
+ */
+public class FakeTicker extends Ticker {
+
+  private long nanos = 0;
+
+  @Override
+  public long read() {
+    return nanos;
+  }
+
+  /**
+   * Move the time forward.
+   *
+   * @param nanos - number of nanoseconds to move the time by.
+   */
+  public void advance(long nanos) {
+    this.nanos += nanos;
+  }
+}
@@ -0,0 +1,94 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link FloatEncodings}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class FloatEncodingsTest {
+
+  @Test
+  public void testFloatToFloat16() {
+    assertThat(FloatEncodings.floatToFloat16(0f)).isEqualTo(0x0000);
+    assertThat(FloatEncodings.floatToFloat16(-0f)).isEqualTo(0x8000);
+    assertThat(FloatEncodings.floatToFloat16(1.5f)).isEqualTo(0x3E00);
+    assertThat(FloatEncodings.floatToFloat16(-2f)).isEqualTo(0xC000);
+    assertThat(FloatEncodings.floatToFloat16(65504f)).isEqualTo(0x7BFF);
+  }
+
+  @Test
+  public void testFloatToFloat16_rounding() {
+    assertThat(FloatEncodings.floatToFloat16(1f / 3)).isEqualTo(0x3555);
+    // Halfway between 0x3C00 and 0x3C01 rounds to even, above halfway rounds up.
+    assertThat(FloatEncodings.floatToFloat16(1f + 0x1p-11f)).isEqualTo(0x3C00);
+    assertThat(FloatEncodings.floatToFloat16(1f + 0x1p-11f + 0x1p-20f)).isEqualTo(0x3C01);
+    // Rounding up the largest mantissa carries into the exponent.
+    assertThat(FloatEncodings.floatToFloat16(65520f)).isEqualTo(0x7C00);
+  }
+
+  @Test
+  public void testFloatToFloat16_subnormal() {
+    assertThat(FloatEncodings.floatToFloat16(0x1p-24f)).isEqualTo(0x0001);
+    assertThat(FloatEncodings.floatToFloat16(0x1p-15f)).isEqualTo(0x0200);
+    assertThat(FloatEncodings.floatToFloat16(0x1p-26f)).isEqualTo(0x0000);
+  }
+
+  @Test
+  public void testFloatToFloat16_special() {
+    assertThat(FloatEncodings.floatToFloat16(Float.POSITIVE_INFINITY)).isEqualTo(0x7C00);
+    assertThat(FloatEncodings.floatToFloat16(Float.NEGATIVE_INFINITY)).isEqualTo(0xFC00);
+    assertThat(FloatEncodings.floatToFloat16(1e10f)).isEqualTo(0x7C00);
+    assertThat(FloatEncodings.floatToFloat16(Float.NaN) & 0x7FFF).isGreaterThan(0x7C00);
+  }
+
+  @Test
+  public void testFloat16ToFloat() {
+    assertThat(FloatEncodings.float16ToFloat(0x3E00)).isEqualTo(1.5f);
+    assertThat(FloatEncodings.float16ToFloat(0xC000)).isEqualTo(-2f);
+    assertThat(FloatEncodings.float16ToFloat(0x7BFF)).isEqualTo(65504f);
+    assertThat(FloatEncodings.float16ToFloat(0x0001)).isEqualTo(0x1p-24f);
+    assertThat(FloatEncodings.float16ToFloat(0x8001)).isEqualTo(-0x1p-24f);
+    assertThat(FloatEncodings.float16ToFloat(0xFC00)).isEqualTo(Float.NEGATIVE_INFINITY);
+    assertThat(FloatEncodings.float16ToFloat(0x7E00)).isNaN();
+  }
+
+  @Test
+  public void testFloat16_allValuesRoundTrip() {
+    for (int bits = 0; bits <= 0xFFFF; bits++) {
+      if ((bits & 0x7C00) == 0x7C00 && (bits & 0x3FF) != 0) {
+        continue;
+      }
+      assertThat(FloatEncodings.floatToFloat16(FloatEncodings.float16ToFloat(bits))).isEqualTo(bits);
+    }
+  }
+
+  @Test
+  public void testToFixedPoint() {
+    assertThat(FloatEncodings.toFixedPoint(21.5, 0.01, -40, 2, "value")).isEqualTo(6150);
+    assertThat(FloatEncodings.toFixedPoint(0.26, 0.5, 0, 1, "value")).isEqualTo(1);
+    assertThat(FloatEncodings.toFixedPoint(-40.004, 0.01, -40, 2, "value")).isEqualTo(0);
+    assertThat(FloatEncodings.toFixedPoint(0xFFFFFFFFL, 1, 0, 4, "value")).isEqualTo(0xFFFFFFFFL);
+  }
+
+  @Test
+  public void testToFixedPoint_doesNotFit() {
+    assertError(() -> FloatEncodings.toFixedPoint(256, 1, 0, 1, "value"),
+        "Value 256.0 of fixed-point field value doesn't fit into 1 byte(s).");
+    assertError(() -> FloatEncodings.toFixedPoint(-1, 1, 0, 1, "value"),
+        "Value -1.0 of fixed-point field value doesn't fit into 1 byte(s).");
+    assertError(() -> FloatEncodings.toFixedPoint(Double.POSITIVE_INFINITY, 1, 0, 4, "value"),
+        "Value Infinity of fixed-point field value doesn't fit into 4 byte(s).");
+  }
+
+  @Test
+  public void testFromFixedPoint() {
+    assertThat(FloatEncodings.fromFixedPoint(6150, 0.01, -40)).isWithin(1e-9).of(21.5);
+    assertThat(FloatEncodings.fromFixedPoint(0, 0.5, 3)).isEqualTo(3.0);
+  }
+}
@@ -0,0 +1,168 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link Fragments}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class FragmentsTest {
+
+  private static final byte[] TEST_VALUE = new byte[]{1, 2, 3, 4, 5};
+
+  @Test
+  public void testSplit() {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_VALUE), 3));
+    assertThat(chunks).hasSize(3);
+    assertThat(chunks.get(0)).isEqualTo(new byte[]{0, 1, 2});
+    assertThat(chunks.get(1)).isEqualTo(new byte[]{1, 3, 4});
+    assertThat(chunks.get(2)).isEqualTo(new byte[]{(byte) 0x82, 5});
+  }
+
+  @Test
+  public void testSplit_fitsIntoOneChunk() {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.wrap(TEST_VALUE), 6));
+    assertThat(chunks).hasSize(1);
+    assertThat(chunks.get(0)).isEqualTo(new byte[]{(byte) 0x80, 1, 2, 3, 4, 5});
+  }
+
+  @Test
+  public void testSplit_emptyValue() {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.allocate(0), 3));
+    assertThat(chunks).hasSize(1);
+    assertThat(chunks.get(0)).isEqualTo(new byte[]{(byte) 0x80});
+  }
+
+  @Test
+  public void testSplit_sequenceWrapsAround() {
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(ByteBuffer.allocate(130), 2));
+    assertThat(chunks).hasSize(130);
+    assertThat(chunks.get(127)[0]).isEqualTo((byte) 127);
+    assertThat(chunks.get(128)[0]).isEqualTo((byte) 0);
+    assertThat(chunks.get(129)[0]).isEqualTo((byte) 0x81);
+  }
+
+  @Test
+  public void testSplit_bufferSlice() {
+    ByteBuffer value = ByteBuffer.wrap(TEST_VALUE, 1, 3);
+    List<byte[]> chunks = ImmutableList.copyOf(Fragments.split(value, 3));
+    assertThat(chunks).hasSize(2);
+    assertThat(chunks.get(0)).isEqualTo(new byte[]{0, 2, 3});
+    assertThat(chunks.get(1)).isEqualTo(new byte[]{(byte) 0x81, 4});
+    assertThat(value.hasRemaining()).isFalse();
+  }
+
+  @Test
+  public void testSplit_invalidChunkSize() {
+    assertError(() -> Fragments.split(ByteBuffer.wrap(TEST_VALUE), 1), "Chunk size must be greater than 1, got 1.");
+  }
+
+  @Test
+  public void testReassemble() throws Exception {
+    Fragments.Reassembler reassembler = new Fragments.Reassembler();
+    Optional<ByteBuffer> value = Optional.absent();
+    for (byte[] chunk : Fragments.split(ByteBuffer.allocate(300), 20)) {
+      assertThat(value.isPresent()).isFalse();
+      value = reassembler.add(chunk);
+    }
+    assertThat(value.get()).isEqualTo(ByteBuffer.allocate(300));
+    for (byte[] chunk : Fragments.split(ByteBuffer.wrap(TEST_VALUE), 3)) {
+      value = reassembler.add(chunk);
+    }
+    assertThat(value.get()).isEqualTo(ByteBuffer.wrap(TEST_VALUE));
+  }
+
+  @Test
+  public void testReassemble_valueLargerThanBuffer() throws Exception {
+    byte[] largeValue = new byte[2000];
+    largeValue[1999] = 7;
+    Fragments.Reassembler reassembler = new Fragments.Reassembler();
+    Optional<ByteBuffer> value = Optional.absent();
+    for (byte[] chunk : Fragments.split(ByteBuffer.wrap(largeValue), 100)) {
+      value = reassembler.add(chunk);
+    }
+    assertThat(value.get()).isEqualTo(ByteBuffer.wrap(largeValue));
+  }
+
+  @Test
+  public void testReassemble_singleChunkNotCopied() throws Exception {
+    byte[] chunk = new byte[]{(byte) 0x80, 1, 2};
+    ByteBuffer value = new Fragments.Reassembler().add(chunk).get();
+    assertThat(value.array()).isSameAs(chunk);
+    assertThat(value).isEqualTo(ByteBuffer.wrap(new byte[]{1, 2}));
+  }
+
+  @Test
+  public void testReassemble_sequenceWrapsAround() throws Exception {
+    Fragments.Reassembler reassembler = new Fragments.Reassembler();
+    Optional<ByteBuffer> value = Optional.absent();
+    for (byte[] chunk : Fragments.split(ByteBuffer.allocate(130), 2)) {
+      value = reassembler.add(chunk);
+    }
+    assertThat(value.get()).isEqualTo(ByteBuffer.allocate(130));
+  }
+
+  @Test
+  public void testReassemble_missingChunk() throws Exception {
+    Fragments.Reassembler reassembler = new Fragments.Reassembler();
+    reassembler.add(new byte[]{0, 1});
+    assertError(() -> reassembler.add(new byte[]{(byte) 0x82, 3}),
+        "Could not deserialize response: Expected chunk 1, got chunk 2.");
+    // The unfinished value is dropped.
+    assertThat(reassembler.add(new byte[]{(byte) 0x80, 4}).get()).isEqualTo(ByteBuffer.wrap(new byte[]{4}));
+  }
+
+  @Test
+  public void testReassemble_missingChunkDropped() throws Exception {
+    Runnable onValueDropped = Mockito.mock(Runnable.class);
+    Fragments.Reassembler reassembler = new Fragments.Reassembler(onValueDropped);
+    reassembler.add(new byte[]{0, 1});
+    assertThat(reassembler.add(new byte[]{2, 3}).isPresent()).isFalse();
+    // Chunks up to the first chunk of the next value are dropped, the value is reported once.
+    assertThat(reassembler.add(new byte[]{(byte) 0x83, 4}).isPresent()).isFalse();
+    verify(onValueDropped).run();
+    reassembler.add(new byte[]{0, 5});
+    assertThat(reassembler.add(new byte[]{(byte) 0x81, 6}).get()).isEqualTo(ByteBuffer.wrap(new byte[]{5, 6}));
+  }
+
+  @Test
+  public void testReassemble_lostLastChunkResyncsOnNextValue() throws Exception {
+    Runnable onValueDropped = Mockito.mock(Runnable.class);
+    Fragments.Reassembler reassembler = new Fragments.Reassembler(onValueDropped);
+    reassembler.add(new byte[]{0, 1});
+    assertThat(reassembler.add(new byte[]{(byte) 0x80, 2}).get()).isEqualTo(ByteBuffer.wrap(new byte[]{2}));
+    verify(onValueDropped).run();
+  }
+
+  @Test
+  public void testReassemble_noHeaderDropped() throws Exception {
+    Runnable onValueDropped = Mockito.mock(Runnable.class);
+    Fragments.Reassembler reassembler = new Fragments.Reassembler(onValueDropped);
+    assertThat(reassembler.add(new byte[0]).isPresent()).isFalse();
+    verify(onValueDropped).run();
+  }
+
+  @Test
+  public void testReassemble_noHeader() throws Exception {
+    assertError(() -> new Fragments.Reassembler().add(new byte[0]), "Could not deserialize response: Chunk has no header.");
+  }
+
+  @Test
+  public void testReassemble_reset() throws Exception {
+    Fragments.Reassembler reassembler = new Fragments.Reassembler();
+    reassembler.add(new byte[]{0, 1});
+    reassembler.reset();
+    assertThat(reassembler.add(new byte[]{(byte) 0x80, 2}).get()).isEqualTo(ByteBuffer.wrap(new byte[]{2}));
+  }
+}
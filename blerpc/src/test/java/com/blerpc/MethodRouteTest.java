@@ -0,0 +1,86 @@
+package com.blerpc;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.blerpc.device.test.proto.TestBleService;
+import com.blerpc.proto.CallPriority;
+import com.blerpc.proto.MethodType;
+import com.google.protobuf.Descriptors.MethodDescriptor;
+import java.nio.ByteOrder;
+import java.util.UUID;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link MethodRoute}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class MethodRouteTest {
+
+  private static final UUID TEST_SERVICE = UUID.fromString("F0CDAA70-0451-4000-B000-000000000000");
+  private static final UUID TEST_CHARACTERISTIC = UUID.fromString("F0CDAA72-0451-4000-B000-000000000000");
+  private static final UUID TEST_CHARACTERISTIC2 = UUID.fromString("F0CDBA74-0451-4000-B000-000000000000");
+  private static final UUID TEST_DESCRIPTOR = UUID.fromString("F0CDBB72-0451-4000-B000-000000000000");
+
+  private final MethodDescriptor methodReadChar = TestBleService.getDescriptor().findMethodByName("TestReadChar");
+  private final MethodDescriptor methodSubscribeChar =
+      TestBleService.getDescriptor().findMethodByName("TestSubscribeChar");
+  private final MethodDescriptor methodWriteWithoutResponseChar =
+      TestBleService.getDescriptor().findMethodByName("TestWriteWithoutResponseChar");
+  private final MethodDescriptor methodCoalescingWriteChar =
+      TestBleService.getDescriptor().findMethodByName("TestCoalescingWriteChar");
+  private final MethodDescriptor methodHighPriorityReadChar2 =
+      TestBleService.getDescriptor().findMethodByName("TestHighPriorityReadChar2");
+
+  @Test
+  public void testRoute() {
+    MethodRoute route = MethodRoute.forMethod(methodReadChar);
+    assertThat(route.getMethodType()).isEqualTo(MethodType.READ);
+    assertThat(route.getService()).isEqualTo(TEST_SERVICE);
+    assertThat(route.getCharacteristic()).isEqualTo(TEST_CHARACTERISTIC);
+    assertThat(route.getDescriptor()).isNull();
+    assertThat(route.isWriteWithoutResponse()).isFalse();
+    assertThat(route.isCoalescingWrite()).isFalse();
+    assertThat(route.isFragmented()).isFalse();
+    assertThat(route.isDeltaEncoded()).isFalse();
+    assertThat(route.getPriority()).isEqualTo(CallPriority.PRIORITY_NORMAL);
+  }
+
+  @Test
+  public void testRoute_descriptor() {
+    assertThat(MethodRoute.forMethod(methodSubscribeChar).getDescriptor()).isEqualTo(TEST_DESCRIPTOR);
+  }
+
+  @Test
+  public void testRoute_writeOptions() {
+    assertThat(MethodRoute.forMethod(methodWriteWithoutResponseChar).isWriteWithoutResponse()).isTrue();
+    assertThat(MethodRoute.forMethod(methodCoalescingWriteChar).isCoalescingWrite()).isTrue();
+  }
+
+  @Test
+  public void testRoute_fragmented() {
+    assertThat(MethodRoute.forMethod(TestBleService.getDescriptor().findMethodByName("TestFragmentedReadChar"))
+        .isFragmented()).isTrue();
+  }
+
+  @Test
+  public void testRoute_deltaEncoded() {
+    MethodRoute route = MethodRoute.forMethod(TestBleService.getDescriptor().findMethodByName("TestDeltaSubscribeChar"));
+    assertThat(route.isDeltaEncoded()).isTrue();
+    assertThat(route.getDeltaWordSize()).isEqualTo(2);
+    assertThat(route.getDeltaByteOrder()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Test
+  public void testRoute_priority() {
+    MethodRoute route = MethodRoute.forMethod(methodHighPriorityReadChar2);
+    assertThat(route.getCharacteristic()).isEqualTo(TEST_CHARACTERISTIC2);
+    assertThat(route.getPriority()).isEqualTo(CallPriority.PRIORITY_HIGH);
+  }
+
+  @Test
+  public void testRouteIsResolvedOnce() {
+    assertThat(MethodRoute.forMethod(methodReadChar)).isSameAs(MethodRoute.forMethod(methodReadChar));
+  }
+}
@@ -0,0 +1,188 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.blerpc.proto.CallPriority;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link PriorityCallScheduler}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PriorityCallSchedulerTest {
+
+  private static final UUID TEST_CHARACTERISTIC = UUID.fromString("F0CDAA72-0451-4000-B000-000000000000");
+  private static final UUID TEST_CHARACTERISTIC2 = UUID.fromString("F0CDBA74-0451-4000-B000-000000000000");
+  private static final long TEST_AGING_INTERVAL_NANOS = 1000;
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final PriorityCallScheduler<TestCall> scheduler =
+      new PriorityCallScheduler<>(ticker, TEST_AGING_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+
+  @Test
+  public void testInitialState() {
+    assertThat(scheduler.isEmpty()).isTrue();
+    assertThat(scheduler.size()).isEqualTo(0);
+    assertError(scheduler::peek, "There are no queued calls.");
+  }
+
+  @Test
+  public void testInvalidAgingInterval() {
+    assertError(() -> new PriorityCallScheduler<TestCall>(ticker, 0, TimeUnit.SECONDS),
+        "Aging interval must be positive, got 0.");
+  }
+
+  @Test
+  public void testDefaultPriorityNotSupported() {
+    assertError(() -> scheduler.add(call(CallPriority.PRIORITY_DEFAULT, TEST_CHARACTERISTIC)),
+        "Unsupported call priority PRIORITY_DEFAULT.");
+  }
+
+  @Test
+  public void testHigherPriorityGoesFirst() {
+    TestCall lowCall = add(CallPriority.PRIORITY_LOW, TEST_CHARACTERISTIC);
+    TestCall normalCall = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall highCall = add(CallPriority.PRIORITY_HIGH, TEST_CHARACTERISTIC);
+    assertThat(send()).isSameAs(highCall);
+    assertThat(send()).isSameAs(normalCall);
+    assertThat(send()).isSameAs(lowCall);
+    assertThat(scheduler.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testSamePriorityIsFifoForOneCharacteristic() {
+    TestCall call1 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall call2 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    assertThat(send()).isSameAs(call1);
+    assertThat(send()).isSameAs(call2);
+  }
+
+  @Test
+  public void testCharacteristicsTakeTurns() {
+    TestCall call1 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall call2 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall call3 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC2);
+    assertThat(send()).isSameAs(call1);
+    assertThat(send()).isSameAs(call3);
+    assertThat(send()).isSameAs(call2);
+  }
+
+  @Test
+  public void testDroppedCallKeepsCharacteristicTurn() {
+    TestCall call1 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall call2 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC2);
+    assertThat(scheduler.remove(call2)).isTrue();
+    assertThat(send()).isSameAs(call1);
+  }
+
+  @Test
+  public void testDroppedNextCallKeepsCharacteristicTurn() {
+    TestCall call1 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall call2 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    TestCall call3 = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC2);
+    assertThat(scheduler.peek()).isSameAs(call1);
+    // The call is dropped without being sent, for example because it expired.
+    assertThat(scheduler.remove(call1)).isTrue();
+    assertThat(send()).isSameAs(call2);
+    assertThat(send()).isSameAs(call3);
+  }
+
+  @Test
+  public void testAgedCallIsPromoted() {
+    TestCall lowCall = add(CallPriority.PRIORITY_LOW, TEST_CHARACTERISTIC);
+    ticker.advance(TEST_AGING_INTERVAL_NANOS);
+    TestCall normalCall = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    // Promoted to the normal class, where it's older than the normal call.
+    assertThat(send()).isSameAs(lowCall);
+    assertThat(send()).isSameAs(normalCall);
+  }
+
+  @Test
+  public void testAgingBelowIntervalDoesNotPromote() {
+    TestCall lowCall = add(CallPriority.PRIORITY_LOW, TEST_CHARACTERISTIC);
+    ticker.advance(TEST_AGING_INTERVAL_NANOS - 1);
+    TestCall normalCall = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    assertThat(send()).isSameAs(normalCall);
+    assertThat(send()).isSameAs(lowCall);
+  }
+
+  @Test
+  public void testPeekReturnsSameCall() {
+    TestCall call = add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    ticker.advance(TEST_AGING_INTERVAL_NANOS * 10);
+    assertThat(scheduler.peek()).isSameAs(call);
+    assertThat(scheduler.peek()).isSameAs(call);
+  }
+
+  @Test
+  public void testRemoveUnknownCall() {
+    add(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC);
+    assertThat(scheduler.remove(call(CallPriority.PRIORITY_NORMAL, TEST_CHARACTERISTIC))).isFalse();
+    assertThat(scheduler.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testIterateAllCalls() {
+    TestCall call1 = add(CallPriority.PRIORITY_LOW, TEST_CHARACTERISTIC);
+    TestCall call2 = add(CallPriority.PRIORITY_HIGH, TEST_CHARACTERISTIC2);
+    assertThat(scheduler).containsExactly(call1, call2);
+  }
+
+  @Test
+  public void testClear() {
+    add(CallPriority.PRIORITY_LOW, TEST_CHARACTERISTIC);
+    add(CallPriority.PRIORITY_HIGH, TEST_CHARACTERISTIC2);
+    scheduler.clear();
+    assertThat(scheduler.isEmpty()).isTrue();
+    assertThat(scheduler).isEmpty();
+  }
+
+  private TestCall add(CallPriority priority, UUID characteristic) {
+    TestCall call = call(priority, characteristic);
+    scheduler.add(call);
+    return call;
+  }
+
+  private TestCall send() {
+    TestCall call = scheduler.peek();
+    assertThat(scheduler.poll()).isSameAs(call);
+    return call;
+  }
+
+  private TestCall call(CallPriority priority, UUID characteristic) {
+    return new TestCall(priority, characteristic, ticker.read());
+  }
+
+  private static class TestCall implements CallScheduler.Call {
+    private final CallPriority priority;
+    private final UUID characteristic;
+    private final long enqueueTimeNanos;
+
+    TestCall(CallPriority priority, UUID characteristic, long enqueueTimeNanos) {
+      this.priority = priority;
+      this.characteristic = characteristic;
+      this.enqueueTimeNanos = enqueueTimeNanos;
+    }
+
+    @Override
+    public CallPriority getPriority() {
+      return priority;
+    }
+
+    @Override
+    public UUID getCharacteristic() {
+      return characteristic;
+    }
+
+    @Override
+    public long getEnqueueTimeNanos() {
+      return enqueueTimeNanos;
+    }
+  }
+}
@@ -47,6 +47,7 @@ public class ServiceStubFactoryTest {
   @Mock Context context;
   @Mock MessageConverter messageConverter;
   @Mock Handler handler;
+  @Mock Handler handler2;
   @Mock Logger logger;
 
   /**
@@ -99,6 +100,26 @@ public class ServiceStubFactoryTest {
     assertThat(serviceStubFactory.provideService(bluetoothDevice, TestBleService.class)).isInstanceOf(TestBleService.class);
   }
 
+  @Test
+  public void testProvideService_cached() throws Exception {
+    assertThat(serviceStubFactory.provideService(bluetoothDevice, TestBleService.class))
+        .isSameAs(serviceStubFactory.provideService(bluetoothDevice, TestBleService.class));
+  }
+
+  @Test
+  public void testProvideService_notCachedAfterDisconnect() throws Exception {
+    TestBleService service = (TestBleService) serviceStubFactory.provideService(bluetoothDevice, TestBleService.class);
+    serviceStubFactory.disconnect(DEVICE_ADDRESS);
+    assertThat(serviceStubFactory.provideService(bluetoothDevice, TestBleService.class)).isNotSameAs(service);
+  }
+
+  @Test
+  public void testProvideService_differentDevicesNotShared() throws Exception {
+    when(bluetoothDeviceSecond.getAddress()).thenReturn(SECOND_DEVICE_ADDRESS);
+    assertThat(serviceStubFactory.provideService(bluetoothDevice, TestBleService.class))
+        .isNotSameAs(serviceStubFactory.provideService(bluetoothDeviceSecond, TestBleService.class));
+  }
+
   @Test
   public void testProvideService_equalDevices() throws Exception {
     TestBleService serviceFirst = (TestBleService) serviceStubFactory.provideService(bluetoothDevice, TestBleService.class);
@@ -146,6 +167,63 @@ public class ServiceStubFactoryTest {
     verify(bluetoothDeviceSecond).connectGatt(eq(context), anyBoolean(), any(BluetoothGattCallback.class));
   }
 
+  @Test
+  public void testProvideService_workHandlerPool() throws Exception {
+    ServiceStubFactory.clearInstance();
+    serviceStubFactory =
+        ServiceStubFactory.getInstance(context, messageConverter, WorkHandlerPool.of(handler, handler2), handler, logger);
+    when(bluetoothDeviceSecond.getAddress()).thenReturn(SECOND_DEVICE_ADDRESS);
+    TestBleService serviceFirst = (TestBleService) serviceStubFactory.provideService(bluetoothDevice, TestBleService.class);
+    TestBleService serviceSecond = (TestBleService) serviceStubFactory.provideService(bluetoothDeviceSecond, TestBleService.class);
+    serviceFirst.callMethod(
+        methodWriteChar,
+        new BleRpcController(),
+        TestBleWriteRequest.getDefaultInstance(),
+        callback
+    );
+    // The first device is run by the first handler.
+    verify(bluetoothDevice).connectGatt(eq(context), anyBoolean(), any(BluetoothGattCallback.class));
+    verify(handler2, never()).post(any());
+    serviceSecond.callMethod(
+        methodWriteChar,
+        new BleRpcController(),
+        TestBleWriteRequest.getDefaultInstance(),
+        callback
+    );
+    // The second handler doesn't run posted code, so the second device is not connected.
+    verify(handler2).post(any());
+    verify(bluetoothDeviceSecond, never()).connectGatt(eq(context), anyBoolean(), any(BluetoothGattCallback.class));
+  }
+
+  @Test
+  public void testProvideService_connectionPool() throws Exception {
+    ServiceStubFactory.clearInstance();
+    ConnectionPool pool = new ConnectionPool(1);
+    serviceStubFactory = ServiceStubFactory.getInstance(context, messageConverter, WorkHandlerPool.of(handler), handler,
+        logger, BleRpcChannelOptions.newBuilder().setConnectionPool(pool).build());
+    when(bluetoothDeviceSecond.getAddress()).thenReturn(SECOND_DEVICE_ADDRESS);
+    TestBleService serviceFirst = (TestBleService) serviceStubFactory.provideService(bluetoothDevice, TestBleService.class);
+    TestBleService serviceSecond = (TestBleService) serviceStubFactory.provideService(bluetoothDeviceSecond, TestBleService.class);
+    serviceFirst.callMethod(
+        methodWriteChar,
+        new BleRpcController(),
+        TestBleWriteRequest.getDefaultInstance(),
+        callback
+    );
+    serviceSecond.callMethod(
+        methodWriteChar,
+        new BleRpcController(),
+        TestBleWriteRequest.getDefaultInstance(),
+        callback
+    );
+    // The second device waits until the first one returns its connection.
+    verify(bluetoothDevice).connectGatt(eq(context), anyBoolean(), any(BluetoothGattCallback.class));
+    verify(bluetoothDeviceSecond, never()).connectGatt(eq(context), anyBoolean(), any(BluetoothGattCallback.class));
+    assertThat(pool.getWaitingCount()).isEqualTo(1);
+    serviceStubFactory.disconnect(DEVICE_ADDRESS);
+    verify(bluetoothDeviceSecond).connectGatt(eq(context), anyBoolean(), any(BluetoothGattCallback.class));
+  }
+
   @Test
   public void testProvideService_incorrectClass() throws Exception {
     assertError(() -> serviceStubFactory.provideService(bluetoothDevice, String.class), "Service class is incorrect");
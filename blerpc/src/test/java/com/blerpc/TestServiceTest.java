@@ -183,6 +183,7 @@ public class TestServiceTest {
             | BluetoothGattCharacteristic.PROPERTY_WRITE
             | BluetoothGattCharacteristic.PROPERTY_NOTIFY);
     when(descriptor.setValue(any(byte[].class))).thenReturn(true);
+    when(descriptor.getCharacteristic()).thenReturn(characteristic);
 
     BleRpcChannel channel = new BleRpcChannel(bluetoothDevice, context, messageConverter, workHandler,
         listenerHandler, Logger.getGlobal());
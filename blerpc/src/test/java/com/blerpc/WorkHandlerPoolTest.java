@@ -0,0 +1,53 @@
+package com.blerpc;
+
+import static com.blerpc.Assert.assertError;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Handler;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * Tests for {@link WorkHandlerPool}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class WorkHandlerPoolTest {
+
+  @Mock Handler handler;
+  @Mock Handler handler2;
+  @Mock Handler handler3;
+
+  @Test
+  public void testHandlerFor_stripedByAddress() {
+    WorkHandlerPool pool = WorkHandlerPool.of(handler, handler2, handler3);
+    assertThat(pool.size()).isEqualTo(3);
+    assertThat(pool.handlerFor("00:11:22:33:44:55")).isSameAs(handler2);
+    assertThat(pool.handlerFor("00:11:22:33:44:56")).isSameAs(handler3);
+    assertThat(pool.handlerFor("00:11:22:33:44:57")).isSameAs(handler);
+  }
+
+  @Test
+  public void testHandlerFor_sameAddressSameHandler() {
+    WorkHandlerPool pool = WorkHandlerPool.of(handler, handler2, handler3);
+    assertThat(pool.handlerFor(new String("00:11:22:33:44:55"))).isSameAs(pool.handlerFor("00:11:22:33:44:55"));
+  }
+
+  @Test
+  public void testHandlerFor_singleHandler() {
+    WorkHandlerPool pool = WorkHandlerPool.of(handler);
+    assertThat(pool.handlerFor("00:11:22:33:44:55")).isSameAs(handler);
+    assertThat(pool.handlerFor("00:11:22:33:44:56")).isSameAs(handler);
+  }
+
+  @Test
+  public void testOf_noHandlers() {
+    assertError(() -> WorkHandlerPool.of(), "At least one handler is required.");
+  }
+
+  @Test
+  public void testCreate_invalidThreadsCount() {
+    assertError(() -> WorkHandlerPool.create(0), "Threads count must be positive, got 0.");
+  }
+}
@@ -0,0 +1,246 @@
+package com.blerpc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.blerpc.reactive.BleMessageConverter;
+import com.device.proto.BitFieldTestMessage;
+import com.device.proto.ConverterTestMessage;
+import com.device.proto.FloatTestMessage;
+import com.device.proto.GetValueRequest;
+import com.device.proto.LengthPrefixedTestMessage;
+import com.device.proto.NestedMessage;
+import com.device.proto.RepeatedTestMessage;
+import com.device.proto.SetValueRequest;
+import com.device.proto.SetValueResponse;
+import com.device.proto.TestEnum;
+import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for message converters generated by reactive blerpc plugin. */
+@RunWith(JUnit4.class)
+public class BleMessageConverterTest {
+
+  private static final ConverterTestMessage TEST_MESSAGE = ConverterTestMessage.newBuilder()
+      .setLongValue(0x0102030405L)
+      .setBoolValue(true)
+      .setBytesValue(ByteString.copyFrom(new byte[] {1, 2, 3, 4}))
+      .setNestedValue(NestedMessage.newBuilder().setNestedIntValue(0x0A0B))
+      .setIntValue(-2)
+      .build();
+  private static final SetValueRequest SET_VALUE_REQUEST = SetValueRequest.newBuilder()
+      .setIntValue(7)
+      .setNestedMessageValue(NestedMessage.newBuilder().setNestedIntValue(-7))
+      .build();
+
+  private static final FloatTestMessage FLOAT_TEST_MESSAGE = FloatTestMessage.newBuilder()
+      .setHalfValue(1.5f)
+      .setFloatValue(85.5f)
+      .setDoubleValue(300.5d)
+      .setFixedPointValue(21.5f)
+      .build();
+  private static final byte[] FLOAT_TEST_MESSAGE_BYTES =
+      new byte[] {62, 0, 66, -85, 0, 0, 64, 114, -56, 0, 0, 0, 0, 0, 6, 24};
+
+  private static final BitFieldTestMessage BIT_FIELD_TEST_MESSAGE = BitFieldTestMessage.newBuilder()
+      .setConnected(true)
+      .setState(TestEnum.TEST_ENUM_LARGE_VALUE)
+      .setLevel(37)
+      .build();
+  private static final byte[] BIT_FIELD_TEST_MESSAGE_BYTES = new byte[] {89, -106};
+
+  private static final RepeatedTestMessage REPEATED_TEST_MESSAGE = RepeatedTestMessage.newBuilder()
+      .setCount(2)
+      .addSamples(NestedMessage.newBuilder().setNestedIntValue(0x0A0B))
+      .addSamples(NestedMessage.newBuilder().setNestedIntValue(7))
+      .addLevels(1)
+      .addLevels(2)
+      .addLevels(3)
+      .build();
+  private static final byte[] REPEATED_TEST_MESSAGE_BYTES = new byte[] {2, 11, 10, 0, 0, 7, 0, 0, 0, 1, 0, 2, 0, 3, 0};
+  private static final LengthPrefixedTestMessage LENGTH_PREFIXED_TEST_MESSAGE = LengthPrefixedTestMessage.newBuilder()
+      .setName(ByteString.copyFrom(new byte[] {1, 2}))
+      .setText("h\u00e9")
+      .build();
+  private static final byte[] LENGTH_PREFIXED_TEST_MESSAGE_BYTES = new byte[] {2, 1, 2, 0, 3, 0, 104, -61, -87};
+
+  private final BleMessageConverter converter = new BleMessageConverter();
+  private final BleMessageConverter converterLittleEndian = new BleMessageConverter(ByteOrder.LITTLE_ENDIAN);
+  private final AnnotationMessageConverter annotationConverter = new AnnotationMessageConverter();
+  private final AnnotationMessageConverter annotationConverterLittleEndian =
+      new AnnotationMessageConverter(ByteOrder.LITTLE_ENDIAN);
+
+  @Test
+  public void serializeRequest() throws Exception {
+    assertThat(converter.serializeRequest(null, TEST_MESSAGE)).isEqualTo(new byte[] {
+        5, 4, 3, 2, 1, 0, 0, 1, 1, 2, 3, 4, 0, 0, 10, 11, -1, -1, -1, -2});
+  }
+
+  @Test
+  public void serializeRequest_sameAsAnnotationConverter() throws Exception {
+    assertThat(converter.serializeRequest(null, TEST_MESSAGE))
+        .isEqualTo(annotationConverter.serializeRequest(null, TEST_MESSAGE));
+    assertThat(converterLittleEndian.serializeRequest(null, TEST_MESSAGE))
+        .isEqualTo(annotationConverterLittleEndian.serializeRequest(null, TEST_MESSAGE));
+    assertThat(converter.serializeRequest(null, SET_VALUE_REQUEST))
+        .isEqualTo(annotationConverter.serializeRequest(null, SET_VALUE_REQUEST));
+    assertThat(converterLittleEndian.serializeRequest(null, SET_VALUE_REQUEST))
+        .isEqualTo(annotationConverterLittleEndian.serializeRequest(null, SET_VALUE_REQUEST));
+  }
+
+  @Test
+  public void serializeRequest_intoReusedBuffer() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(24);
+    Arrays.fill(buffer.array(), (byte) -1);
+    buffer.position(2);
+    converter.serializeRequest(null, ConverterTestMessage.newBuilder().setIntValue(1).build(), 20, buffer);
+    assertThat(buffer.position()).isEqualTo(22);
+    assertThat(buffer.array()).isEqualTo(new byte[] {
+        -1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, -1, -1});
+  }
+
+  @Test
+  public void serializeRequest_enumDoesNotFit() throws Exception {
+    try {
+      converter.serializeRequest(null, ConverterTestMessage.newBuilder().setEnumValue(TestEnum.TEST_ENUM_VALUE).build());
+      fail();
+    } catch (IllegalArgumentException exception) {
+      assertThat(exception).hasMessageThat().isEqualTo("1 byte(s) not enough for TestEnum enum that has 300 max number");
+    }
+  }
+
+  @Test
+  public void serializeRequest_floatEncodings() throws Exception {
+    assertThat(converter.serializeRequest(null, FLOAT_TEST_MESSAGE)).isEqualTo(FLOAT_TEST_MESSAGE_BYTES);
+    assertThat(converter.serializeRequest(null, FLOAT_TEST_MESSAGE))
+        .isEqualTo(annotationConverter.serializeRequest(null, FLOAT_TEST_MESSAGE));
+    assertThat(converter.serializeRequest(null, FloatTestMessage.getDefaultInstance()))
+        .isEqualTo(annotationConverter.serializeRequest(null, FloatTestMessage.getDefaultInstance()));
+  }
+
+  @Test
+  public void serializeRequest_bitFields() throws Exception {
+    assertThat(converter.serializeRequest(null, BIT_FIELD_TEST_MESSAGE)).isEqualTo(BIT_FIELD_TEST_MESSAGE_BYTES);
+    assertThat(converterLittleEndian.serializeRequest(null, BIT_FIELD_TEST_MESSAGE))
+        .isEqualTo(annotationConverterLittleEndian.serializeRequest(null, BIT_FIELD_TEST_MESSAGE));
+  }
+
+  @Test
+  public void serializeRequest_repeatedFields() throws Exception {
+    assertThat(converter.serializeRequest(null, REPEATED_TEST_MESSAGE)).isEqualTo(REPEATED_TEST_MESSAGE_BYTES);
+    assertThat(converter.serializeRequest(null, REPEATED_TEST_MESSAGE))
+        .isEqualTo(annotationConverter.serializeRequest(null, REPEATED_TEST_MESSAGE));
+  }
+
+  @Test
+  public void serializeRequest_tooManyRepeatedElements() throws Exception {
+    try {
+      converter.serializeRequest(null, REPEATED_TEST_MESSAGE.toBuilder().addLevels(4).build());
+      fail();
+    } catch (IllegalArgumentException exception) {
+      assertThat(exception).hasMessageThat()
+          .isEqualTo("Repeated field levels has 4 elements, but only 3 fit into its bytes range");
+    }
+  }
+
+  @Test
+  public void serializeRequest_lengthPrefixedFields() throws Exception {
+    assertThat(converter.serializeRequest(null, LENGTH_PREFIXED_TEST_MESSAGE)).isEqualTo(LENGTH_PREFIXED_TEST_MESSAGE_BYTES);
+    assertThat(converter.serializeRequest(null, LengthPrefixedTestMessage.getDefaultInstance()))
+        .isEqualTo(annotationConverter.serializeRequest(null, LengthPrefixedTestMessage.getDefaultInstance()));
+    ByteBuffer buffer = ByteBuffer.allocate(LENGTH_PREFIXED_TEST_MESSAGE_BYTES.length);
+    converter.serializeRequest(null, LENGTH_PREFIXED_TEST_MESSAGE, Integer.MAX_VALUE, buffer);
+    assertThat(buffer.hasRemaining()).isFalse();
+  }
+
+  @Test
+  public void serializeRequest_lengthPrefixedValueTooLong() throws Exception {
+    try {
+      converter.serializeRequest(null, LengthPrefixedTestMessage.newBuilder().setText("12345678901").build());
+      fail();
+    } catch (IllegalArgumentException exception) {
+      assertThat(exception).hasMessageThat()
+          .isEqualTo("Value of field text has 11 bytes, but at most 10 fit into its bytes range");
+    }
+  }
+
+  @Test
+  public void serializeRequest_emptyMessage() throws Exception {
+    assertThat(converter.serializeRequest(null, GetValueRequest.getDefaultInstance())).isEmpty();
+  }
+
+  @Test
+  public void deserializeResponse() throws Exception {
+    byte[] value = converter.serializeRequest(null, TEST_MESSAGE);
+    assertThat(converter.deserializeResponse(null, ConverterTestMessage.getDefaultInstance(), value))
+        .isEqualTo(TEST_MESSAGE);
+    assertThat(converterLittleEndian.deserializeResponse(null, SetValueRequest.getDefaultInstance(),
+        annotationConverterLittleEndian.serializeRequest(null, SET_VALUE_REQUEST)))
+        .isEqualTo(SET_VALUE_REQUEST);
+  }
+
+  @Test
+  public void deserializeResponse_floatEncodings() throws Exception {
+    assertThat(converter.deserializeResponse(null, FloatTestMessage.getDefaultInstance(), FLOAT_TEST_MESSAGE_BYTES))
+        .isEqualTo(FLOAT_TEST_MESSAGE);
+  }
+
+  @Test
+  public void deserializeResponse_bitFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, BitFieldTestMessage.getDefaultInstance(), BIT_FIELD_TEST_MESSAGE_BYTES))
+        .isEqualTo(BIT_FIELD_TEST_MESSAGE);
+    // Only the fields in the first byte are read from a short value.
+    assertThat(converter.deserializeResponse(null, BitFieldTestMessage.getDefaultInstance(), new byte[] {89}))
+        .isEqualTo(BitFieldTestMessage.newBuilder().setConnected(true).build());
+  }
+
+  @Test
+  public void deserializeResponse_repeatedFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, RepeatedTestMessage.getDefaultInstance(), REPEATED_TEST_MESSAGE_BYTES))
+        .isEqualTo(REPEATED_TEST_MESSAGE);
+    byte[] value = Arrays.copyOf(REPEATED_TEST_MESSAGE_BYTES, 12);
+    value[0] = 1;
+    assertThat(converter.deserializeResponse(null, RepeatedTestMessage.getDefaultInstance(), value))
+        .isEqualTo(annotationConverter.deserializeResponse(null, RepeatedTestMessage.getDefaultInstance(), value));
+  }
+
+  @Test
+  public void deserializeResponse_lengthPrefixedFields() throws Exception {
+    assertThat(converter.deserializeResponse(null, LengthPrefixedTestMessage.getDefaultInstance(),
+        LENGTH_PREFIXED_TEST_MESSAGE_BYTES))
+        .isEqualTo(LENGTH_PREFIXED_TEST_MESSAGE);
+    byte[] value = Arrays.copyOf(LENGTH_PREFIXED_TEST_MESSAGE_BYTES, 8);
+    assertThat(converter.deserializeResponse(null, LengthPrefixedTestMessage.getDefaultInstance(), value))
+        .isEqualTo(annotationConverter.deserializeResponse(null, LengthPrefixedTestMessage.getDefaultInstance(), value));
+  }
+
+  @Test
+  public void deserializeResponse_shortValue() throws Exception {
+    byte[] value = Arrays.copyOf(converter.serializeRequest(null, TEST_MESSAGE), 14);
+    assertThat(converter.deserializeResponse(null, ConverterTestMessage.getDefaultInstance(), value))
+        .isEqualTo(annotationConverter.deserializeResponse(null, ConverterTestMessage.getDefaultInstance(), value));
+  }
+
+  @Test
+  public void deserializeResponse_bufferSlice() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(24);
+    buffer.position(2);
+    buffer.put(converter.serializeRequest(null, TEST_MESSAGE));
+    buffer.flip();
+    buffer.position(2);
+    assertThat(converter.deserializeResponse(null, ConverterTestMessage.getDefaultInstance(), buffer))
+        .isEqualTo(TEST_MESSAGE);
+    assertThat(buffer.position()).isEqualTo(2);
+  }
+
+  @Test
+  public void deserializeResponse_emptyMessage() throws Exception {
+    assertThat(converter.deserializeResponse(null, SetValueResponse.getDefaultInstance(), new byte[0]))
+        .isEqualTo(SetValueResponse.getDefaultInstance());
+  }
+}
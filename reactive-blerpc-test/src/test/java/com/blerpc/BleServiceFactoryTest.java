@@ -6,6 +6,8 @@ import static org.mockito.Mockito.when;
 import android.bluetooth.BluetoothDevice;
 import com.blerpc.reactive.BleServiceFactory;
 import com.device.proto.RxTestService;
+import com.device.proto.TestService;
+import com.google.protobuf.RpcChannel;
 import java.util.logging.Logger;
 import org.junit.Before;
 import org.junit.Rule;
@@ -28,6 +30,7 @@ public class BleServiceFactoryTest {
   @Mock ServiceStubFactory serviceStubFactory;
   @Mock Logger logger;
   @Mock BluetoothDevice bluetoothDevice;
+  @Mock RpcChannel rpcChannel;
   private BleServiceFactory bleServiceFactory;
 
   /** Set up. */
@@ -41,4 +44,20 @@ public class BleServiceFactoryTest {
   public void createTestService() {
     assertThat(bleServiceFactory.createTestService(bluetoothDevice)).isInstanceOf(RxTestService.class);
   }
+
+  @Test
+  public void createTestService_cached() {
+    when(serviceStubFactory.provideService(bluetoothDevice, TestService.class))
+        .thenReturn(TestService.newStub(rpcChannel));
+    assertThat(bleServiceFactory.createTestService(bluetoothDevice))
+        .isSameAs(bleServiceFactory.createTestService(bluetoothDevice));
+  }
+
+  @Test
+  public void createTestService_stubChanged() {
+    when(serviceStubFactory.provideService(bluetoothDevice, TestService.class))
+        .thenReturn(TestService.newStub(rpcChannel), TestService.newStub(rpcChannel));
+    assertThat(bleServiceFactory.createTestService(bluetoothDevice))
+        .isNotSameAs(bleServiceFactory.createTestService(bluetoothDevice));
+  }
 }
@@ -10,6 +10,7 @@ import com.device.proto.GetValueResponse;
 import com.device.proto.RxTestService;
 import com.google.protobuf.RpcCallback;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
 import java.util.logging.Logger;
 import org.junit.Before;
 import org.junit.Rule;
@@ -140,6 +141,49 @@ public class ReactiveServiceTest {
         .getValueUpdates(eq(bleRpcController), eq(GET_VALUE_REQUEST), callbackCaptor.capture());
   }
 
+  @Test
+  public void getValueUpdatesFlowable_success() {
+    TestSubscriber<GetValueResponse> testSubscriber =
+        testService.getValueUpdatesFlowable(GET_VALUE_REQUEST).test();
+    verify(testServiceProto)
+        .getValueUpdates(controllerCaptor.capture(), eq(GET_VALUE_REQUEST), callbackCaptor.capture());
+
+    callbackCaptor.getValue().run(GET_VALUE_RESPONSE);
+    callbackCaptor.getValue().run(GET_VALUE_RESPONSE2);
+    testSubscriber.assertValues(GET_VALUE_RESPONSE, GET_VALUE_RESPONSE2);
+    assertThat(testService.getValueUpdatesDroppedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void getValueUpdatesFlowable_bufferOverflow() {
+    TestSubscriber<GetValueResponse> testSubscriber =
+        testService.getValueUpdatesFlowable(GET_VALUE_REQUEST).test(0);
+    verify(testServiceProto)
+        .getValueUpdates(controllerCaptor.capture(), eq(GET_VALUE_REQUEST), callbackCaptor.capture());
+
+    // The test service buffers up to 16 values.
+    callbackCaptor.getValue().run(GET_VALUE_RESPONSE);
+    for (int i = 0; i < 16; i++) {
+      callbackCaptor.getValue().run(GET_VALUE_RESPONSE2);
+    }
+    assertThat(testService.getValueUpdatesDroppedCount()).isEqualTo(1);
+
+    testSubscriber.request(1);
+    testSubscriber.assertValues(GET_VALUE_RESPONSE2);
+    testSubscriber.assertNoErrors();
+  }
+
+  @Test
+  public void getValueUpdatesFlowable_cancel() {
+    TestSubscriber<GetValueResponse> testSubscriber =
+        testService.getValueUpdatesFlowable(GET_VALUE_REQUEST).test();
+    verify(testServiceProto)
+        .getValueUpdates(controllerCaptor.capture(), eq(GET_VALUE_REQUEST), callbackCaptor.capture());
+
+    testSubscriber.cancel();
+    assertThat(controllerCaptor.getValue().isCanceled()).isTrue();
+  }
+
   private TestObserver<GetValueResponse> readValue() {
     TestObserver<GetValueResponse> testSubscriber = testService.readValue(GET_VALUE_REQUEST).test();
     verify(testServiceProto)
@@ -27,3 +27,57 @@ if [ $? -ne 0 ]; then
   echo "$difflines"
   exit 1
 fi
+
+generated_converter=reactive-blerpc-test/tests/com/device/proto/ConverterTestMessageConverter.java
+expected_converter=reactive-blerpc-test/tests/outputs/test_converter_expected_output
+difflines=$(diff "${generated_converter}" "${expected_converter}")
+if [ $? -ne 0 ]; then
+  echo -e "${red_color}Generated message converter is not equals to expected converter.${default_color}\n"
+  echo "$difflines"
+  exit 1
+fi
+
+generated_float_converter=reactive-blerpc-test/tests/com/device/proto/FloatTestMessageConverter.java
+expected_float_converter=reactive-blerpc-test/tests/outputs/test_float_converter_expected_output
+difflines=$(diff "${generated_float_converter}" "${expected_float_converter}")
+if [ $? -ne 0 ]; then
+  echo -e "${red_color}Generated float message converter is not equals to expected converter.${default_color}\n"
+  echo "$difflines"
+  exit 1
+fi
+
+generated_bit_field_converter=reactive-blerpc-test/tests/com/device/proto/BitFieldTestMessageConverter.java
+expected_bit_field_converter=reactive-blerpc-test/tests/outputs/test_bit_field_converter_expected_output
+difflines=$(diff "${generated_bit_field_converter}" "${expected_bit_field_converter}")
+if [ $? -ne 0 ]; then
+  echo -e "${red_color}Generated bit field message converter is not equals to expected converter.${default_color}\n"
+  echo "$difflines"
+  exit 1
+fi
+
+generated_repeated_converter=reactive-blerpc-test/tests/com/device/proto/RepeatedTestMessageConverter.java
+expected_repeated_converter=reactive-blerpc-test/tests/outputs/test_repeated_converter_expected_output
+difflines=$(diff "${generated_repeated_converter}" "${expected_repeated_converter}")
+if [ $? -ne 0 ]; then
+  echo -e "${red_color}Generated repeated message converter is not equals to expected converter.${default_color}\n"
+  echo "$difflines"
+  exit 1
+fi
+
+generated_length_prefixed_converter=reactive-blerpc-test/tests/com/device/proto/LengthPrefixedTestMessageConverter.java
+expected_length_prefixed_converter=reactive-blerpc-test/tests/outputs/test_length_prefixed_converter_expected_output
+difflines=$(diff "${generated_length_prefixed_converter}" "${expected_length_prefixed_converter}")
+if [ $? -ne 0 ]; then
+  echo -e "${red_color}Generated length-prefixed message converter is not equals to expected converter.${default_color}\n"
+  echo "$difflines"
+  exit 1
+fi
+
+generated_message_converter=reactive-blerpc-test/tests/com/blerpc/reactive/BleMessageConverter.java
+expected_message_converter=reactive-blerpc-test/tests/outputs/test_message_converter_expected_output
+difflines=$(diff "${generated_message_converter}" "${expected_message_converter}")
+if [ $? -ne 0 ]; then
+  echo -e "${red_color}Generated BleMessageConverter is not equals to expected converter.${default_color}\n"
+  echo "$difflines"
+  exit 1
+fi
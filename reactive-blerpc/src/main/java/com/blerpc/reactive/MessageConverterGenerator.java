@@ -0,0 +1,883 @@
+package com.blerpc.reactive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.ByteOrder;
+import com.blerpc.proto.FieldExtension;
+import com.blerpc.proto.FloatEncoding;
+import com.blerpc.proto.MessageExtension;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.LongMath;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumValueDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
+import com.google.protobuf.Descriptors.FieldDescriptor.Type;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.compiler.PluginProtos;
+import com.salesforce.jprotoc.Generator;
+import com.salesforce.jprotoc.ProtoTypeMap;
+import edu.umd.cs.findbugs.annotations.SuppressWarnings;
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Protoc generator that generate {@link com.blerpc.MessageConverter} implementations for messages with the
+ * com.blerpc.message annotation.
+ *
+ * <p>The generated converters have the same byte layout as com.blerpc.AnnotationMessageConverter, but call the getters
+ * and setters of the message classes directly instead of using descriptors and reflection. The annotations are
+ * validated while generating, so an invalid layout fails the protoc run.
+ */
+public class MessageConverterGenerator extends Generator {
+
+  private static final String CONVERTER_CLASS_SUFFIX = "Converter";
+  private static final String JAVA_SOURCE_EXTENSION = ".java";
+  private static final String CONVERTER_TEMPLATE_FILE = "MessageConverter.mustache";
+  private static final String ROUTER_TEMPLATE_FILE = "BleMessageConverter.mustache";
+  private static final String ROUTER_PATH =
+      Paths.get("com", "blerpc", "reactive", "BleMessageConverter.java").toString();
+  private static final String BYTE_ORDER_PARAMETER = "bigEndian";
+  private static final String OVERRIDE_BYTE_ORDER_PARAMETER = "overrideByteOrder";
+
+  @Override
+  public Stream<PluginProtos.CodeGeneratorResponse.File> generate(PluginProtos.CodeGeneratorRequest request) {
+    ImmutableList<MessageContext> messages = buildMessageContexts(request);
+    if (messages.isEmpty()) {
+      return Stream.empty();
+    }
+
+    PluginProtos.CodeGeneratorResponse.File routerFile =
+        PluginProtos.CodeGeneratorResponse.File.newBuilder()
+            .setName(ROUTER_PATH)
+            .setContent(generateRouterFile(messages))
+            .build();
+    return Stream.concat(messages.stream().map(this::buildConverterFile), Stream.of(routerFile));
+  }
+
+  @VisibleForTesting
+  ImmutableList<MessageContext> buildMessageContexts(PluginProtos.CodeGeneratorRequest request) {
+    TypeIndex typeIndex = new TypeIndex(request.getProtoFileList());
+    ImmutableList.Builder<MessageContext> messages = ImmutableList.builder();
+    request
+        .getProtoFileList()
+        .stream()
+        .filter(file -> !file.getPackage().isEmpty())
+        .filter(file -> request.getFileToGenerateList().contains(file.getName()))
+        .forEach(
+            file -> {
+              for (DescriptorProto messageProto : file.getMessageTypeList()) {
+                String fullName = "." + file.getPackage() + "." + messageProto.getName();
+                addMessageContexts(
+                    messages, file, fullName, typeIndex.protoTypeMap.toJavaTypeName(fullName), messageProto, typeIndex);
+              }
+            });
+    return messages.build();
+  }
+
+  private void addMessageContexts(
+      ImmutableList.Builder<MessageContext> messages,
+      FileDescriptorProto file,
+      String fullName,
+      String javaType,
+      DescriptorProto messageProto,
+      TypeIndex typeIndex) {
+    if (hasOption(messageProto.getOptions().getUnknownFields(), Blerpc.MESSAGE_FIELD_NUMBER)) {
+      messages.add(buildMessageContext(file, fullName, javaType, messageProto, typeIndex));
+    }
+    // ProtoTypeMap doesn't resolve nested types of files with java_multiple_files, so they are resolved here.
+    for (DescriptorProto nestedProto : messageProto.getNestedTypeList()) {
+      addMessageContexts(
+          messages,
+          file,
+          fullName + "." + nestedProto.getName(),
+          javaType + "." + nestedProto.getName(),
+          nestedProto,
+          typeIndex);
+    }
+  }
+
+  private MessageContext buildMessageContext(
+      FileDescriptorProto file,
+      String fullName,
+      String javaType,
+      DescriptorProto messageProto,
+      TypeIndex typeIndex) {
+    MessageExtension messageExtension = getMessageExtension(messageProto);
+    validateMessageSchema(messageProto, messageExtension);
+    MessageContext messageContext = new MessageContext();
+    messageContext.packageName = ReactiveBleRpcGenerator.extractPackageName(file);
+    messageContext.className = typeIndex.getConverterType(fullName).substring(messageContext.packageName.length() + 1);
+    messageContext.fileName = messageContext.className + JAVA_SOURCE_EXTENSION;
+    messageContext.messageName = fullName.substring(1);
+    messageContext.messageType = javaType;
+    messageContext.sizeBytes = messageExtension.getSizeBytes();
+    messageContext.fields =
+        messageProto
+            .getFieldList()
+            .stream()
+            .map(fieldProto -> buildFieldContext(fieldProto, messageProto, messageExtension, typeIndex))
+            .collect(ImmutableList.toImmutableList());
+    messageContext.hasBitFields = messageContext.fields.stream().anyMatch(field -> field.isBitField);
+    messageContext.serializedSize = "SIZE_BYTES";
+    // A message with a trailing field ends right after the value of the field. A value that doesn't fit into the field
+    // fails later, when it is encoded.
+    for (FieldContext field : messageContext.fields) {
+      if (field.isLengthPrefixed && field.toByte == messageContext.sizeBytes) {
+        messageContext.trailingSizeExpression =
+            String.format(
+                "Math.min(%s + %s.size(), SIZE_BYTES)", field.fromByte + field.lengthPrefixSize, field.valueBytes);
+        messageContext.serializedSize = String.format("serializedSize((%s) message)", javaType);
+      }
+    }
+    return messageContext;
+  }
+
+  private FieldContext buildFieldContext(
+      FieldDescriptorProto fieldProto,
+      DescriptorProto messageProto,
+      MessageExtension messageExtension,
+      TypeIndex typeIndex) {
+    String fieldName = fieldProto.getName();
+    FieldExtension fieldExtension = getFieldExtension(fieldProto);
+    boolean repeated = fieldProto.getLabel() == FieldDescriptorProto.Label.LABEL_REPEATED;
+    // The type of a repeated field is checked for the size of one element.
+    int bytesSize =
+        repeated ? fieldExtension.getElementSize() : fieldExtension.getToByte() - fieldExtension.getFromByte();
+    JavaType fieldType = Type.valueOf(fieldProto.getType()).getJavaType();
+    FieldContext fieldContext = new FieldContext();
+    fieldContext.fieldName = fieldName;
+    fieldContext.accessorName = toAccessorName(fieldName);
+    if (isBitField(fieldExtension)) {
+      return buildBitFieldContext(fieldContext, fieldProto, fieldExtension, typeIndex);
+    }
+    checkArgument(
+        !repeated || fieldType != JavaType.BYTE_STRING,
+        "Unsupported repeated field type: %s, field name: %s",
+        fieldType.name(),
+        fieldName);
+    fieldContext.fromByte = fieldExtension.getFromByte();
+    fieldContext.toByte = fieldExtension.getToByte();
+    fieldContext.sizeBytes = bytesSize;
+    fieldContext.byteOrder = byteOrderExpression(fieldExtension.getByteOrder(), messageExtension.getByteOrder());
+    switch (fieldType) {
+      case MESSAGE:
+        DescriptorProto nestedProto = typeIndex.getMessage(fieldProto.getTypeName());
+        checkArgument(
+            getMessageExtension(nestedProto).getSizeBytes() == bytesSize,
+            "Non-primitive message %s has declared size %s, which is not equal to the size of it's type %s.",
+            nestedProto.getName(),
+            bytesSize,
+            getMessageExtension(nestedProto).getSizeBytes());
+        fieldContext.isMessage = true;
+        fieldContext.converterType = typeIndex.getConverterType(fieldProto.getTypeName());
+        fieldContext.overrideByteOrder = fieldExtension.getByteOrder() != ByteOrder.DEFAULT;
+        break;
+      case INT:
+        checkArgument(
+            bytesSize <= 4,
+            "Int32 field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
+            fieldName,
+            bytesSize);
+        fieldContext.isInt = true;
+        break;
+      case LONG:
+        checkArgument(
+            bytesSize <= 8,
+            "Int64 field %s has unsupported size %s. Only sizes in [1, 8] are supported.",
+            fieldName,
+            bytesSize);
+        fieldContext.isLong = true;
+        break;
+      case ENUM:
+        EnumDescriptorProto enumProto = typeIndex.getEnum(fieldProto.getTypeName());
+        checkArgument(
+            bytesSize <= 4,
+            "Enum %s field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
+            enumProto.getName(),
+            fieldName,
+            bytesSize);
+        fieldContext.isEnum = true;
+        fieldContext.enumRangeError = getEnumRangeError(enumProto, bytesSize);
+        break;
+      case BOOLEAN:
+        checkArgument(
+            bytesSize == 1,
+            "Boolean field %s has unsupported size %s. Only sizes 1 are supported.",
+            fieldName,
+            bytesSize);
+        fieldContext.isBoolean = true;
+        break;
+      case BYTE_STRING:
+        if (fieldExtension.getLengthPrefixSize() > 0) {
+          buildLengthPrefixedFieldContext(
+              fieldContext, fieldExtension, "message.get" + fieldContext.accessorName + "()");
+        } else {
+          fieldContext.isByteString = true;
+        }
+        break;
+      case STRING:
+        // Strings have a variable size, only length-prefixed strings are supported.
+        checkArgument(
+            fieldExtension.getLengthPrefixSize() > 0,
+            "Unsupported field type: %s, field name: %s",
+            fieldType.name(),
+            fieldName);
+        buildLengthPrefixedFieldContext(
+            fieldContext, fieldExtension, "message.get" + fieldContext.accessorName + "Bytes()");
+        fieldContext.isString = true;
+        break;
+      case FLOAT:
+      case DOUBLE:
+        checkFloatBytesRangeValid(fieldExtension, fieldType, bytesSize, fieldName);
+        fieldContext.isFloat = true;
+        String value = "message.get" + fieldContext.accessorName + "()";
+        fieldContext.encodeExpression = floatEncodeExpression(fieldExtension, fieldType, value, fieldContext);
+        fieldContext.decodeExpression =
+            floatDecodeExpression(fieldExtension, fieldType, "offset + " + fieldContext.fromByte, fieldContext);
+        break;
+      default:
+        throw new IllegalArgumentException(
+            String.format("Unsupported field type: %s, field name: %s", fieldType.name(), fieldName));
+    }
+    if (repeated) {
+      buildRepeatedFieldContext(fieldContext, fieldExtension, fieldType, messageProto, messageExtension);
+    }
+    return fieldContext;
+  }
+
+  // The value of a length-prefixed field is written as a ByteString, strings are written as their UTF-8 bytes.
+  private static void buildLengthPrefixedFieldContext(
+      FieldContext fieldContext, FieldExtension fieldExtension, String valueBytes) {
+    fieldContext.isLengthPrefixed = true;
+    fieldContext.lengthPrefixSize = fieldExtension.getLengthPrefixSize();
+    fieldContext.valueFromByte = fieldContext.fromByte + fieldContext.lengthPrefixSize;
+    fieldContext.maxSize = fieldContext.sizeBytes - fieldContext.lengthPrefixSize;
+    fieldContext.valueBytes = valueBytes;
+  }
+
+  // Element i of a repeated field is read and written like a single field i element sizes after the first one.
+  private static void buildRepeatedFieldContext(
+      FieldContext fieldContext,
+      FieldExtension fieldExtension,
+      JavaType fieldType,
+      DescriptorProto messageProto,
+      MessageExtension messageExtension) {
+    fieldContext.isRepeated = true;
+    fieldContext.variableName =
+        Character.toLowerCase(fieldContext.accessorName.charAt(0)) + fieldContext.accessorName.substring(1);
+    fieldContext.capacity = (fieldContext.toByte - fieldContext.fromByte) / fieldContext.sizeBytes;
+    fieldContext.valueAccessorName = fieldContext.accessorName;
+    String index = String.format("offset + %s + %s * i", fieldContext.fromByte, fieldContext.sizeBytes);
+    String value = "message.get" + fieldContext.accessorName + "(i)";
+    String bits = String.format("getLong(buffer, %s, %s, %s)", index, fieldContext.sizeBytes, fieldContext.byteOrder);
+    switch (fieldType) {
+      case MESSAGE:
+        fieldContext.elementEncodeStatement =
+            String.format(
+                "%s.encode(%s, buffer, %s, %s, %s)",
+                fieldContext.converterType,
+                value,
+                index,
+                fieldContext.byteOrder,
+                fieldContext.overrideByteOrder);
+        fieldContext.elementDecodeExpression =
+            String.format(
+                "%s.decode(buffer, %s, limit, %s, %s)",
+                fieldContext.converterType,
+                index,
+                fieldContext.byteOrder,
+                fieldContext.overrideByteOrder);
+        break;
+      case BOOLEAN:
+        fieldContext.elementEncodeStatement =
+            String.format("buffer.put(%s, %s ? (byte) 1 : (byte) 0)", index, value);
+        fieldContext.elementDecodeExpression = String.format("buffer.get(%s) != 0", index);
+        break;
+      case FLOAT:
+      case DOUBLE:
+        fieldContext.elementEncodeStatement =
+            String.format(
+                "putLong(buffer, %s, %s, %s, %s)",
+                index,
+                fieldContext.sizeBytes,
+                floatEncodeExpression(fieldExtension, fieldType, value, fieldContext),
+                fieldContext.byteOrder);
+        fieldContext.elementDecodeExpression = floatDecodeExpression(fieldExtension, fieldType, index, fieldContext);
+        break;
+      default:
+        if (fieldType == JavaType.ENUM) {
+          fieldContext.valueAccessorName = fieldContext.accessorName + "Value";
+          value = "message.get" + fieldContext.valueAccessorName + "(i)";
+        }
+        fieldContext.elementEncodeStatement =
+            String.format(
+                "putLong(buffer, %s, %s, %s, %s)", index, fieldContext.sizeBytes, value, fieldContext.byteOrder);
+        fieldContext.elementDecodeExpression = fieldType == JavaType.LONG ? bits : "(int) " + bits;
+        break;
+    }
+    String countFieldName = fieldExtension.getCountField();
+    if (!countFieldName.isEmpty()) {
+      FieldExtension countExtension =
+          getFieldExtension(
+              messageProto
+                  .getFieldList()
+                  .stream()
+                  .filter(field -> field.getName().equals(countFieldName))
+                  .findFirst()
+                  .get());
+      fieldContext.countFieldToByte = countExtension.getToByte();
+      fieldContext.countExpression =
+          String.format(
+              "getLong(buffer, offset + %s, %s, %s)",
+              countExtension.getFromByte(),
+              countExtension.getToByte() - countExtension.getFromByte(),
+              byteOrderExpression(countExtension.getByteOrder(), messageExtension.getByteOrder()));
+    }
+  }
+
+  // Bit fields are read and written as one little endian word of the bytes that contain them, byte order doesn't apply.
+  private static FieldContext buildBitFieldContext(
+      FieldContext fieldContext, FieldDescriptorProto fieldProto, FieldExtension fieldExtension, TypeIndex typeIndex) {
+    String fieldName = fieldContext.fieldName;
+    JavaType fieldType = Type.valueOf(fieldProto.getType()).getJavaType();
+    int bitsSize = fieldExtension.getToBit() - fieldExtension.getFromBit();
+    fieldContext.isBitField = true;
+    fieldContext.fromBit = fieldExtension.getFromBit();
+    fieldContext.sizeBits = bitsSize;
+    fieldContext.fromByte = fieldExtension.getFromBit() / 8;
+    fieldContext.toByte = (fieldExtension.getToBit() + 7) / 8;
+    fieldContext.sizeBytes = fieldContext.toByte - fieldContext.fromByte;
+    fieldContext.valueAccessorName = fieldContext.accessorName;
+    String value = "message.get" + fieldContext.accessorName + "()";
+    String bits = String.format("getBits(buffer, 8 * offset + %s, %s)", fieldContext.fromBit, bitsSize);
+    switch (fieldType) {
+      case INT:
+      case LONG:
+      case ENUM:
+        checkArgument(
+            bitsSize <= 32,
+            "Bit field %s has unsupported size %s. Only sizes in [1, 32] bits are supported.",
+            fieldName,
+            bitsSize);
+        if (fieldType == JavaType.ENUM) {
+          EnumDescriptorProto enumProto = typeIndex.getEnum(fieldProto.getTypeName());
+          fieldContext.enumRangeError = getEnumRangeError(enumProto, bitsSize, bitsSize + " bit(s)");
+          fieldContext.valueAccessorName = fieldContext.accessorName + "Value";
+          value = "message.get" + fieldContext.valueAccessorName + "()";
+        }
+        fieldContext.encodeExpression = value;
+        fieldContext.decodeExpression = fieldType == JavaType.LONG ? bits : "(int) " + bits;
+        break;
+      case BOOLEAN:
+        checkArgument(
+            bitsSize == 1, "Boolean bit field %s has unsupported size %s. Only size 1 is supported.", fieldName, bitsSize);
+        fieldContext.encodeExpression = value + " ? 1 : 0";
+        fieldContext.decodeExpression = bits + " != 0";
+        break;
+      default:
+        throw new IllegalArgumentException(
+            String.format("Unsupported bit field type: %s, field name: %s", fieldType.name(), fieldName));
+    }
+    return fieldContext;
+  }
+
+  private static void checkFloatBytesRangeValid(
+      FieldExtension fieldExtension, JavaType fieldType, int bytesSize, String fieldName) {
+    if (fieldExtension.getFloatEncoding() == FloatEncoding.FIXED_POINT) {
+      checkArgument(
+          bytesSize <= 4,
+          "Fixed-point field %s has unsupported size %s. Only sizes in [1, 4] are supported.",
+          fieldName,
+          bytesSize);
+      checkArgument(fieldExtension.getScale() != 0, "Fixed-point field %s must have a non-zero scale.", fieldName);
+      return;
+    }
+    checkArgument(
+        bytesSize == 2 || bytesSize == 4 || bytesSize == 8,
+        "%s field %s has unsupported size %s. Only sizes 2, 4 and 8 are supported.",
+        fieldType == JavaType.FLOAT ? "Float" : "Double",
+        fieldName,
+        bytesSize);
+  }
+
+  // The integer that encodes the value of a float or double field in the message, see com.blerpc.FloatEncoding.
+  private static String floatEncodeExpression(
+      FieldExtension fieldExtension, JavaType fieldType, String value, FieldContext fieldContext) {
+    if (fieldExtension.getFloatEncoding() == FloatEncoding.FIXED_POINT) {
+      return String.format(
+          "com.blerpc.FloatEncodings.toFixedPoint(%s, %s, %s, %s, \"%s\")",
+          value,
+          fieldExtension.getScale(),
+          fieldExtension.getOffset(),
+          fieldContext.sizeBytes,
+          fieldContext.fieldName);
+    }
+    String floatValue = fieldType == JavaType.FLOAT ? value : "(float) " + value;
+    switch (fieldContext.sizeBytes) {
+      case 2:
+        return "com.blerpc.FloatEncodings.floatToFloat16(" + floatValue + ")";
+      case 4:
+        return "Float.floatToRawIntBits(" + floatValue + ")";
+      default:
+        return "Double.doubleToRawLongBits(" + value + ")";
+    }
+  }
+
+  // The value of a float or double field decoded from the integer that encodes it, see com.blerpc.FloatEncoding.
+  private static String floatDecodeExpression(
+      FieldExtension fieldExtension, JavaType fieldType, String index, FieldContext fieldContext) {
+    String bits = String.format("getLong(buffer, %s, %s, %s)", index, fieldContext.sizeBytes, fieldContext.byteOrder);
+    String value;
+    if (fieldExtension.getFloatEncoding() == FloatEncoding.FIXED_POINT) {
+      value =
+          String.format(
+              "com.blerpc.FloatEncodings.fromFixedPoint(%s, %s, %s)",
+              bits,
+              fieldExtension.getScale(),
+              fieldExtension.getOffset());
+    } else if (fieldContext.sizeBytes == 2) {
+      value = "com.blerpc.FloatEncodings.float16ToFloat((int) " + bits + ")";
+    } else if (fieldContext.sizeBytes == 4) {
+      value = "Float.intBitsToFloat((int) " + bits + ")";
+    } else {
+      value = "Double.longBitsToDouble(" + bits + ")";
+    }
+    boolean decodesToDouble =
+        fieldExtension.getFloatEncoding() == FloatEncoding.FIXED_POINT || fieldContext.sizeBytes == 8;
+    return fieldType == JavaType.FLOAT && decodesToDouble ? "(float) " + value : value;
+  }
+
+  // Mirrors the byte order resolution of com.blerpc.AnnotationMessageConverter: a field uses its own byte order, then
+  // the byte order of its message, then the byte order passed by the caller, unless the caller overrides all of them.
+  private static String byteOrderExpression(ByteOrder fieldByteOrder, ByteOrder messageByteOrder) {
+    ByteOrder declaredByteOrder = fieldByteOrder != ByteOrder.DEFAULT ? fieldByteOrder : messageByteOrder;
+    if (declaredByteOrder == ByteOrder.DEFAULT) {
+      return BYTE_ORDER_PARAMETER;
+    }
+    return String.format(
+        "%s ? %s : %s",
+        OVERRIDE_BYTE_ORDER_PARAMETER,
+        BYTE_ORDER_PARAMETER,
+        declaredByteOrder == ByteOrder.BIG_ENDIAN);
+  }
+
+  private static void validateMessageSchema(DescriptorProto messageProto, MessageExtension messageExtension) {
+    for (FieldDescriptorProto fieldProto : messageProto.getFieldList()) {
+      checkArgument(
+          hasOption(fieldProto.getOptions().getUnknownFields(), Blerpc.FIELD_FIELD_NUMBER),
+          "Proto field %s doesn't have com.blerpc.field_extension annotation",
+          fieldProto.getName());
+      if (isBitField(getFieldExtension(fieldProto))) {
+        checkBitsRangeValid(getFieldExtension(fieldProto), messageExtension.getSizeBytes(), fieldProto.getName());
+      } else {
+        checkBytesRangeValid(getFieldExtension(fieldProto), messageExtension.getSizeBytes(), fieldProto.getName());
+      }
+      checkLengthPrefixValid(getFieldExtension(fieldProto), fieldProto);
+      checkRepeatedFieldValid(getFieldExtension(fieldProto), fieldProto, messageProto);
+    }
+    checkBytesRangesNotIntersect(messageProto.getFieldList());
+  }
+
+  private static void checkBytesRangeValid(FieldExtension fieldExtension, int messageBytesSize, String name) {
+    int firstByte = fieldExtension.getFromByte();
+    int lastByte = fieldExtension.getToByte();
+    checkArgument(
+        firstByte < lastByte,
+        "Field %s has from_bytes = %s which must be less than to_bytes = %s",
+        name,
+        firstByte,
+        lastByte);
+    checkArgument(firstByte >= 0, "Field %s has from_bytes = %s which is less than zero", name, firstByte);
+    checkArgument(
+        lastByte <= messageBytesSize,
+        "Field %s has to_bytes = %s which is bigger than message bytes size = %s",
+        name,
+        lastByte,
+        messageBytesSize);
+  }
+
+  private static void checkBitsRangeValid(FieldExtension fieldExtension, int messageBytesSize, String name) {
+    int firstBit = fieldExtension.getFromBit();
+    int lastBit = fieldExtension.getToBit();
+    checkArgument(
+        fieldExtension.getFromByte() == 0 && fieldExtension.getToByte() == 0,
+        "Field %s has both bytes and bits ranges",
+        name);
+    checkArgument(
+        firstBit < lastBit, "Field %s has from_bit = %s which must be less than to_bit = %s", name, firstBit, lastBit);
+    checkArgument(firstBit >= 0, "Field %s has from_bit = %s which is less than zero", name, firstBit);
+    checkArgument(
+        lastBit <= 8 * messageBytesSize,
+        "Field %s has to_bit = %s which is bigger than message bits size = %s",
+        name,
+        lastBit,
+        8 * messageBytesSize);
+  }
+
+  private static void checkLengthPrefixValid(FieldExtension fieldExtension, FieldDescriptorProto fieldProto) {
+    int prefixSize = fieldExtension.getLengthPrefixSize();
+    if (prefixSize == 0) {
+      return;
+    }
+    String name = fieldProto.getName();
+    JavaType fieldType = Type.valueOf(fieldProto.getType()).getJavaType();
+    checkArgument(
+        fieldProto.getLabel() != FieldDescriptorProto.Label.LABEL_REPEATED
+            && !isBitField(fieldExtension)
+            && (fieldType == JavaType.BYTE_STRING || fieldType == JavaType.STRING),
+        "Field %s has length_prefix_size but is not a singular bytes or string field",
+        name);
+    checkArgument(
+        prefixSize > 0 && prefixSize <= 4,
+        "Field %s has unsupported length_prefix_size = %s. Only sizes in [1, 4] are supported.",
+        name,
+        prefixSize);
+    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
+    checkArgument(
+        bytesSize > prefixSize,
+        "Field %s has bytes range size %s which must be bigger than length_prefix_size = %s",
+        name,
+        bytesSize,
+        prefixSize);
+    checkArgument(
+        prefixSize == 4 || bytesSize - prefixSize < 1 << (8 * prefixSize),
+        "Field %s has maximum size %s which doesn't fit into length_prefix_size = %s",
+        name,
+        bytesSize - prefixSize,
+        prefixSize);
+  }
+
+  private static void checkRepeatedFieldValid(
+      FieldExtension fieldExtension, FieldDescriptorProto fieldProto, DescriptorProto messageProto) {
+    String name = fieldProto.getName();
+    int elementSize = fieldExtension.getElementSize();
+    String countFieldName = fieldExtension.getCountField();
+    if (fieldProto.getLabel() != FieldDescriptorProto.Label.LABEL_REPEATED) {
+      checkArgument(
+          elementSize == 0 && countFieldName.isEmpty(),
+          "Field %s has element_size or count_field but is not repeated",
+          name);
+      return;
+    }
+    checkArgument(!isBitField(fieldExtension), "Repeated field %s can't have a bits range", name);
+    checkArgument(
+        elementSize > 0, "Repeated field %s has element_size = %s which must be bigger than zero", name, elementSize);
+    int bytesSize = fieldExtension.getToByte() - fieldExtension.getFromByte();
+    checkArgument(
+        bytesSize % elementSize == 0,
+        "Repeated field %s has bytes range size %s which is not a multiple of element_size = %s",
+        name,
+        bytesSize,
+        elementSize);
+    if (countFieldName.isEmpty()) {
+      return;
+    }
+    boolean validCountField =
+        messageProto
+            .getFieldList()
+            .stream()
+            .anyMatch(
+                field ->
+                    field.getName().equals(countFieldName)
+                        && field.getLabel() != FieldDescriptorProto.Label.LABEL_REPEATED
+                        && !isBitField(getFieldExtension(field))
+                        && (Type.valueOf(field.getType()).getJavaType() == JavaType.INT
+                            || Type.valueOf(field.getType()).getJavaType() == JavaType.LONG));
+    checkArgument(
+        validCountField,
+        "Count field %s of repeated field %s must be an int32 or int64 field of message %s",
+        countFieldName,
+        name,
+        messageProto.getName());
+  }
+
+  // Ranges of byte fields are reported in bytes, ranges that involve a bit field are reported in bits.
+  private static void checkBytesRangesNotIntersect(List<FieldDescriptorProto> fields) {
+    List<Integer> sortedIndexes = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      sortedIndexes.add(i);
+    }
+    Collections.sort(
+        sortedIndexes,
+        (first, second) ->
+            Integer.compare(
+                getFromBit(getFieldExtension(fields.get(first))), getFromBit(getFieldExtension(fields.get(second)))));
+    for (int i = 0; i + 1 < sortedIndexes.size(); i++) {
+      FieldDescriptorProto firstField = fields.get(Math.min(sortedIndexes.get(i), sortedIndexes.get(i + 1)));
+      FieldDescriptorProto secondField = fields.get(Math.max(sortedIndexes.get(i), sortedIndexes.get(i + 1)));
+      FieldExtension firstExtension = getFieldExtension(firstField);
+      FieldExtension secondExtension = getFieldExtension(secondField);
+      if (isBitField(firstExtension) || isBitField(secondExtension)) {
+        checkArgument(
+            getFromBit(firstExtension) >= getToBit(secondExtension)
+                || getFromBit(secondExtension) >= getToBit(firstExtension),
+            "Field %s bits range [%s, %s] intersects with another field %s bits range [%s, %s]",
+            firstField.getName(),
+            getFromBit(firstExtension),
+            getToBit(firstExtension),
+            secondField.getName(),
+            getFromBit(secondExtension),
+            getToBit(secondExtension));
+        continue;
+      }
+      boolean intersect =
+          firstExtension.getFromByte() < secondExtension.getFromByte()
+              ? firstExtension.getToByte() > secondExtension.getFromByte()
+              : secondExtension.getToByte() > firstExtension.getFromByte();
+      checkArgument(
+          !intersect,
+          "Field %s bytes range [%s, %s] intersects with another field %s bytes range [%s, %s]",
+          firstField.getName(),
+          firstExtension.getFromByte(),
+          firstExtension.getToByte(),
+          secondField.getName(),
+          secondExtension.getFromByte(),
+          secondExtension.getToByte());
+    }
+  }
+
+  // Enum values that don't fit into the bytes range are only an error when a message with the enum field set is serialized.
+  @Nullable
+  private static String getEnumRangeError(EnumDescriptorProto enumProto, int bytesSize) {
+    return getEnumRangeError(enumProto, 8 * bytesSize, bytesSize + " byte(s)");
+  }
+
+  @Nullable
+  private static String getEnumRangeError(EnumDescriptorProto enumProto, int bitsSize, String sizeDescription) {
+    int maxValueNumber = 0;
+    for (EnumValueDescriptorProto value : enumProto.getValueList()) {
+      maxValueNumber = Math.max(maxValueNumber, value.getNumber());
+    }
+    if (LongMath.pow(2, bitsSize) - 1 >= maxValueNumber) {
+      return null;
+    }
+    return String.format(
+        "%s not enough for %s enum that has %s max number", sizeDescription, enumProto.getName(), maxValueNumber);
+  }
+
+  private static boolean isBitField(FieldExtension fieldExtension) {
+    return fieldExtension.getFromBit() != 0 || fieldExtension.getToBit() != 0;
+  }
+
+  private static int getFromBit(FieldExtension fieldExtension) {
+    return isBitField(fieldExtension) ? fieldExtension.getFromBit() : 8 * fieldExtension.getFromByte();
+  }
+
+  private static int getToBit(FieldExtension fieldExtension) {
+    return isBitField(fieldExtension) ? fieldExtension.getToBit() : 8 * fieldExtension.getToByte();
+  }
+
+  // Same as the accessor names of protobuf Java classes: "int_value" has getIntValue() and setIntValue().
+  @VisibleForTesting
+  static String toAccessorName(String fieldName) {
+    StringBuilder builder = new StringBuilder();
+    boolean capitalizeNext = true;
+    for (char character : fieldName.toCharArray()) {
+      if (character == '_') {
+        capitalizeNext = true;
+      } else if (Character.isDigit(character)) {
+        builder.append(character);
+        capitalizeNext = true;
+      } else {
+        builder.append(capitalizeNext ? Character.toUpperCase(character) : character);
+        capitalizeNext = false;
+      }
+    }
+    return builder.toString();
+  }
+
+  private static boolean hasOption(UnknownFieldSet unknownFields, int fieldNumber) {
+    return unknownFields.hasField(fieldNumber);
+  }
+
+  private static MessageExtension getMessageExtension(DescriptorProto messageProto) {
+    return mergeOption(
+            messageProto.getOptions().getUnknownFields(),
+            Blerpc.MESSAGE_FIELD_NUMBER,
+            MessageExtension.newBuilder(),
+            "message " + messageProto.getName())
+        .build();
+  }
+
+  private static FieldExtension getFieldExtension(FieldDescriptorProto fieldProto) {
+    return mergeOption(
+            fieldProto.getOptions().getUnknownFields(),
+            Blerpc.FIELD_FIELD_NUMBER,
+            FieldExtension.newBuilder(),
+            "field " + fieldProto.getName())
+        .build();
+  }
+
+  /**
+   * Parse a custom option, which protoc passes to plugins as an unknown field of the options.
+   *
+   * @param unknownFields - unknown fields of the options.
+   * @param fieldNumber - number of the option extension.
+   * @param builder - builder of the option message.
+   * @param owner - description of the options owner for errors.
+   * @return the builder merged with the option values.
+   */
+  static <T extends Message.Builder> T mergeOption(
+      UnknownFieldSet unknownFields, int fieldNumber, T builder, String owner) {
+    for (ByteString value : unknownFields.getField(fieldNumber).getLengthDelimitedList()) {
+      try {
+        builder.mergeFrom(value);
+      } catch (InvalidProtocolBufferException exception) {
+        throw new IllegalArgumentException(String.format("Invalid option of %s.", owner), exception);
+      }
+    }
+    return builder;
+  }
+
+  private String generateRouterFile(ImmutableList<MessageContext> messages) {
+    RouterContext routerContext = new RouterContext();
+    routerContext.messages = messages;
+    return applyTemplate(ROUTER_TEMPLATE_FILE, routerContext);
+  }
+
+  private PluginProtos.CodeGeneratorResponse.File buildConverterFile(MessageContext context) {
+    return PluginProtos.CodeGeneratorResponse.File.newBuilder()
+        .setName(Paths.get(context.packageName.replace(".", File.separator), context.fileName).toString())
+        .setContent(applyTemplate(CONVERTER_TEMPLATE_FILE, context))
+        .build();
+  }
+
+  /** Message and enum types of all proto files of a request, by their full names starting with a dot. */
+  private static class TypeIndex {
+    final ProtoTypeMap protoTypeMap;
+    final ImmutableMap<String, DescriptorProto> messages;
+    final ImmutableMap<String, EnumDescriptorProto> enums;
+    final ImmutableMap<String, String> converterTypes;
+
+    TypeIndex(List<FileDescriptorProto> files) {
+      protoTypeMap = ProtoTypeMap.of(files);
+      ImmutableMap.Builder<String, DescriptorProto> messagesBuilder = ImmutableMap.builder();
+      ImmutableMap.Builder<String, EnumDescriptorProto> enumsBuilder = ImmutableMap.builder();
+      ImmutableMap.Builder<String, String> converterTypesBuilder = ImmutableMap.builder();
+      for (FileDescriptorProto file : files) {
+        String scope = file.getPackage().isEmpty() ? "" : "." + file.getPackage();
+        String javaPackage = ReactiveBleRpcGenerator.extractPackageName(file);
+        for (EnumDescriptorProto enumProto : file.getEnumTypeList()) {
+          enumsBuilder.put(scope + "." + enumProto.getName(), enumProto);
+        }
+        for (DescriptorProto messageProto : file.getMessageTypeList()) {
+          addTypes(messagesBuilder, enumsBuilder, converterTypesBuilder, scope, javaPackage + ".", messageProto);
+        }
+      }
+      messages = messagesBuilder.build();
+      enums = enumsBuilder.build();
+      converterTypes = converterTypesBuilder.build();
+    }
+
+    private static void addTypes(
+        ImmutableMap.Builder<String, DescriptorProto> messagesBuilder,
+        ImmutableMap.Builder<String, EnumDescriptorProto> enumsBuilder,
+        ImmutableMap.Builder<String, String> converterTypesBuilder,
+        String scope,
+        String classNamePrefix,
+        DescriptorProto messageProto) {
+      String fullName = scope + "." + messageProto.getName();
+      String className = classNamePrefix + messageProto.getName();
+      messagesBuilder.put(fullName, messageProto);
+      converterTypesBuilder.put(fullName, className + CONVERTER_CLASS_SUFFIX);
+      for (EnumDescriptorProto enumProto : messageProto.getEnumTypeList()) {
+        enumsBuilder.put(fullName + "." + enumProto.getName(), enumProto);
+      }
+      for (DescriptorProto nestedProto : messageProto.getNestedTypeList()) {
+        addTypes(messagesBuilder, enumsBuilder, converterTypesBuilder, fullName, className, nestedProto);
+      }
+    }
+
+    DescriptorProto getMessage(String typeName) {
+      checkArgument(messages.containsKey(typeName), "Unknown message type %s.", typeName);
+      return messages.get(typeName);
+    }
+
+    EnumDescriptorProto getEnum(String typeName) {
+      checkArgument(enums.containsKey(typeName), "Unknown enum type %s.", typeName);
+      return enums.get(typeName);
+    }
+
+    String getConverterType(String typeName) {
+      checkArgument(converterTypes.containsKey(typeName), "Unknown message type %s.", typeName);
+      return converterTypes.get(typeName);
+    }
+  }
+
+  /** Template class that describe all generated converters. */
+  @SuppressWarnings(value = "URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+  private static class RouterContext {
+    public ImmutableList<MessageContext> messages = ImmutableList.of();
+  }
+
+  /** Template class that describe protobuf messages. */
+  @SuppressWarnings("URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+  @VisibleForTesting
+  static class MessageContext {
+    public String fileName;
+    public String packageName;
+    public String className;
+    public String messageName;
+    public String messageType;
+    public int sizeBytes;
+    public boolean hasBitFields;
+    public String serializedSize;
+    @Nullable public String trailingSizeExpression;
+    public ImmutableList<FieldContext> fields = ImmutableList.of();
+  }
+
+  /** Template class that describe protobuf message fields. */
+  @SuppressWarnings("URF_UNREAD_PUBLIC_OR_PROTECTED_FIELD")
+  @VisibleForTesting
+  static class FieldContext {
+    public String fieldName;
+    public String accessorName;
+    public int fromByte;
+    public int toByte;
+    public int sizeBytes;
+    public String byteOrder;
+    public boolean isInt;
+    public boolean isLong;
+    public boolean isEnum;
+    public boolean isBoolean;
+    public boolean isByteString;
+    public boolean isMessage;
+    public boolean isFloat;
+    public boolean isBitField;
+    public boolean isLengthPrefixed;
+    public boolean isString;
+    public int lengthPrefixSize;
+    public int valueFromByte;
+    public int maxSize;
+    @Nullable public String valueBytes;
+    public boolean isRepeated;
+    @Nullable public String variableName;
+    public int capacity;
+    @Nullable public String elementEncodeStatement;
+    @Nullable public String elementDecodeExpression;
+    @Nullable public String countExpression;
+    public int countFieldToByte;
+    public int fromBit;
+    public int sizeBits;
+    @Nullable public String valueAccessorName;
+    @Nullable public String encodeExpression;
+    @Nullable public String decodeExpression;
+    @Nullable public String converterType;
+    public boolean overrideByteOrder;
+    @Nullable public String enumRangeError;
+  }
+}
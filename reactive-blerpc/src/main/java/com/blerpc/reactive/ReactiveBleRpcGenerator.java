@@ -2,6 +2,8 @@ package com.blerpc.reactive;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.blerpc.proto.BackpressureStrategy;
+import com.blerpc.proto.BleCharacteristicRule;
 import com.blerpc.proto.Blerpc;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
@@ -54,9 +56,13 @@ public class ReactiveBleRpcGenerator extends Generator {
   private static final String JAVA_SOURCE_EXTENSION = ".java";
   private static final String RX_SERVICE_TEMPLATE_FILE = RX_CLASS_PREFIX + "Stub.mustache";
   private static final String FACTORY_TEMPLATE_FILE = "FactoryService.mustache";
+  private static final String DEFAULT_BUFFER_SIZE = "io.reactivex.Flowable.bufferSize()";
+  private static final String LATEST_BUFFER_SIZE = "1";
   private static final String SERVICE_FACTORY_PATH =
       Paths.get("com", "blerpc", "reactive", "BleServiceFactory.java").toString();
 
+  private final MessageConverterGenerator messageConverterGenerator = new MessageConverterGenerator();
+
   public static void main(String[] args) {
     ProtocPlugin.generate(new ReactiveBleRpcGenerator());
   }
@@ -65,6 +71,11 @@ public class ReactiveBleRpcGenerator extends Generator {
   @Override
   public Stream<PluginProtos.CodeGeneratorResponse.File> generate(
       PluginProtos.CodeGeneratorRequest request) throws GeneratorException {
+    return Stream.concat(generateServices(request), messageConverterGenerator.generate(request));
+  }
+
+  private Stream<PluginProtos.CodeGeneratorResponse.File> generateServices(
+      PluginProtos.CodeGeneratorRequest request) {
     ImmutableList<ServiceContext> services = buildServiceContexts(request);
     if (services.isEmpty()) {
       return Stream.empty();
@@ -113,6 +124,7 @@ public class ReactiveBleRpcGenerator extends Generator {
     ServiceContext serviceContext = new ServiceContext();
     serviceContext.serviceName = serviceProto.getName();
     serviceContext.className = RX_CLASS_PREFIX + serviceContext.serviceName;
+    serviceContext.cacheFieldName = lowerCaseFirstLetter(serviceContext.className) + "ByDevice";
     serviceContext.fileName = serviceContext.className + JAVA_SOURCE_EXTENSION;
     serviceContext.deprecated = serviceProto.getOptions().getDeprecated();
     serviceContext.javaDoc = getJavaDoc(fileLocation.getLeadingComments(), SERVICE_JAVADOC_PREFIX).orElse(null);
@@ -128,7 +140,7 @@ public class ReactiveBleRpcGenerator extends Generator {
     return serviceContext;
   }
 
-  private String extractPackageName(FileDescriptorProto proto) {
+  static String extractPackageName(FileDescriptorProto proto) {
     String javaPackage = proto.getOptions().getJavaPackage();
     return !javaPackage.isEmpty() ? javaPackage : proto.getPackage();
   }
@@ -147,9 +159,56 @@ public class ReactiveBleRpcGenerator extends Generator {
     methodContext.deprecated = methodProto.getOptions().getDeprecated();
     methodContext.isManyOutput = methodProto.getServerStreaming();
     methodContext.javaDoc = getJavaDoc(location.getLeadingComments(), METHOD_JAVADOC_PREFIX).orElse(null);
+    setBackpressure(methodContext, methodProto);
     return methodContext;
   }
 
+  private void setBackpressure(MethodContext methodContext, MethodDescriptorProto methodProto) {
+    BleCharacteristicRule rule = getCharacteristicRule(methodProto);
+    BackpressureStrategy strategy = rule.getBackpressure();
+    int bufferSize = rule.getBackpressureBufferSize();
+    checkArgument(
+        strategy == BackpressureStrategy.BACKPRESSURE_NONE || methodProto.getServerStreaming(),
+        "Backpressure strategy %s is set for method %s, which is not a streaming method.",
+        strategy,
+        methodProto.getName());
+    checkArgument(
+        bufferSize == 0 || strategy == BackpressureStrategy.BACKPRESSURE_BUFFER,
+        "Backpressure buffer size is set for method %s, which has backpressure strategy %s.",
+        methodProto.getName(),
+        strategy);
+    checkArgument(
+        bufferSize >= 0,
+        "Backpressure buffer size of method %s must not be negative, got %s.",
+        methodProto.getName(),
+        bufferSize);
+    switch (strategy) {
+      case BACKPRESSURE_BUFFER:
+        methodContext.isFlowable = true;
+        methodContext.bufferSize = bufferSize == 0 ? DEFAULT_BUFFER_SIZE : String.valueOf(bufferSize);
+        break;
+      case BACKPRESSURE_LATEST:
+        methodContext.isFlowable = true;
+        methodContext.bufferSize = LATEST_BUFFER_SIZE;
+        break;
+      case BACKPRESSURE_DROP:
+        methodContext.isFlowable = true;
+        methodContext.isDropBackpressure = true;
+        break;
+      default:
+        break;
+    }
+  }
+
+  private BleCharacteristicRule getCharacteristicRule(MethodDescriptorProto methodProto) {
+    return MessageConverterGenerator.mergeOption(
+            methodProto.getOptions().getUnknownFields(),
+            Blerpc.CHARACTERISTIC_FIELD_NUMBER,
+            BleCharacteristicRule.newBuilder(),
+            "method " + methodProto.getName())
+        .build();
+  }
+
   private String lowerCaseFirstLetter(String string) {
     return Character.toLowerCase(string.charAt(0)) + string.substring(1);
   }
@@ -223,6 +282,7 @@ public class ReactiveBleRpcGenerator extends Generator {
     public String packageName;
     public String className;
     public String serviceName;
+    public String cacheFieldName;
     public boolean deprecated;
     @Nullable public String javaDoc;
     public ImmutableList<MethodContext> methods = ImmutableList.of();
@@ -237,6 +297,9 @@ public class ReactiveBleRpcGenerator extends Generator {
     public String outputType;
     public boolean deprecated;
     public boolean isManyOutput;
+    public boolean isFlowable;
+    public boolean isDropBackpressure;
+    @Nullable public String bufferSize;
     @Nullable public String javaDoc;
   }
 }
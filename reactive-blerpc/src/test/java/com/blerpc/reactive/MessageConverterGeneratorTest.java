@@ -0,0 +1,608 @@
+package com.blerpc.reactive;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.extensions.proto.ProtoTruth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.ByteOrder;
+import com.blerpc.proto.FieldExtension;
+import com.blerpc.proto.FloatEncoding;
+import com.blerpc.proto.MessageExtension;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.compiler.PluginProtos;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link MessageConverterGenerator}. */
+@RunWith(JUnit4.class)
+public class MessageConverterGeneratorTest {
+
+  static final String FILE_NAME = "test_messages";
+  static final String PROTO_PACKAGE = "com.test";
+  static final String JAVA_PACKAGE = "com.test.proto";
+  static final String MESSAGE_NAME = "TestMessage";
+  static final String NESTED_MESSAGE_NAME = "NestedMessage";
+  static final String ENUM_NAME = "TestEnum";
+  static final String CONVERTER_FULL_PATH = "com/test/proto/TestMessageConverter.java";
+  static final String NESTED_CONVERTER_FULL_PATH = "com/test/proto/NestedMessageConverter.java";
+  static final String ROUTER_FULL_PATH = "com/blerpc/reactive/BleMessageConverter.java";
+  static final DescriptorProtos.EnumDescriptorProto ENUM_TYPE =
+      DescriptorProtos.EnumDescriptorProto.newBuilder()
+          .setName(ENUM_NAME)
+          .addValue(DescriptorProtos.EnumValueDescriptorProto.newBuilder().setName("UNKNOWN").setNumber(0))
+          .addValue(DescriptorProtos.EnumValueDescriptorProto.newBuilder().setName("LARGE").setNumber(256))
+          .build();
+  static final DescriptorProtos.DescriptorProto NESTED_MESSAGE_TYPE =
+      DescriptorProtos.DescriptorProto.newBuilder()
+          .setName(NESTED_MESSAGE_NAME)
+          .setOptions(messageOptions(2, ByteOrder.DEFAULT))
+          .addField(field("value", FieldDescriptorProto.Type.TYPE_INT32, 0, 2, ByteOrder.DEFAULT))
+          .build();
+  static final DescriptorProtos.DescriptorProto MESSAGE_TYPE =
+      DescriptorProtos.DescriptorProto.newBuilder()
+          .setName(MESSAGE_NAME)
+          .setOptions(messageOptions(16, ByteOrder.LITTLE_ENDIAN))
+          .addField(field("int_value", FieldDescriptorProto.Type.TYPE_INT32, 0, 4, ByteOrder.DEFAULT))
+          .addField(field("long_value_2x", FieldDescriptorProto.Type.TYPE_UINT64, 4, 10, ByteOrder.BIG_ENDIAN))
+          .addField(
+              field("enum_value", FieldDescriptorProto.Type.TYPE_ENUM, 10, 11, ByteOrder.DEFAULT)
+                  .toBuilder()
+                  .setTypeName("." + PROTO_PACKAGE + "." + ENUM_NAME))
+          .addField(field("bool_value", FieldDescriptorProto.Type.TYPE_BOOL, 11, 12, ByteOrder.DEFAULT))
+          .addField(
+              field("nested_value", FieldDescriptorProto.Type.TYPE_MESSAGE, 12, 14, ByteOrder.BIG_ENDIAN)
+                  .toBuilder()
+                  .setTypeName("." + PROTO_PACKAGE + "." + NESTED_MESSAGE_NAME))
+          .addField(field("bytes_value", FieldDescriptorProto.Type.TYPE_BYTES, 14, 16, ByteOrder.DEFAULT))
+          .build();
+  static final DescriptorProtos.FileDescriptorProto FILE =
+      DescriptorProtos.FileDescriptorProto.newBuilder()
+          .setName(FILE_NAME)
+          .setPackage(PROTO_PACKAGE)
+          .setOptions(
+              DescriptorProtos.FileOptions.newBuilder()
+                  .setJavaPackage(JAVA_PACKAGE)
+                  .setJavaMultipleFiles(true))
+          .addMessageType(MESSAGE_TYPE)
+          .addMessageType(NESTED_MESSAGE_TYPE)
+          .addMessageType(DescriptorProtos.DescriptorProto.newBuilder().setName("NotAnnotatedMessage"))
+          .addEnumType(ENUM_TYPE)
+          .build();
+  static final PluginProtos.CodeGeneratorRequest REQUEST =
+      PluginProtos.CodeGeneratorRequest.newBuilder()
+          .addFileToGenerate(FILE_NAME)
+          .addProtoFile(FILE)
+          .build();
+
+  MessageConverterGenerator generator;
+
+  /** Set up. */
+  @Before
+  public void setUp() {
+    generator = new MessageConverterGenerator();
+  }
+
+  @Test
+  public void generate() throws Exception {
+    assertThat(generator.generate(REQUEST).collect(ImmutableList.toImmutableList()))
+        .ignoringFields(PluginProtos.CodeGeneratorResponse.File.CONTENT_FIELD_NUMBER)
+        .containsExactly(
+            PluginProtos.CodeGeneratorResponse.File.newBuilder().setName(CONVERTER_FULL_PATH).build(),
+            PluginProtos.CodeGeneratorResponse.File.newBuilder().setName(NESTED_CONVERTER_FULL_PATH).build(),
+            PluginProtos.CodeGeneratorResponse.File.newBuilder().setName(ROUTER_FULL_PATH).build());
+  }
+
+  @Test
+  public void generate_noAnnotatedMessages() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        PluginProtos.CodeGeneratorRequest.newBuilder()
+            .addFileToGenerate(FILE_NAME)
+            .addProtoFile(FILE.toBuilder().clearMessageType())
+            .build();
+    assertThat(generator.generate(request).count()).isEqualTo(0);
+  }
+
+  @Test
+  public void buildMessageContexts() throws Exception {
+    ImmutableList<MessageConverterGenerator.MessageContext> messages = generator.buildMessageContexts(REQUEST);
+    assertThat(messages).hasSize(2);
+    MessageConverterGenerator.MessageContext message = messages.get(0);
+    assertThat(message.packageName).isEqualTo(JAVA_PACKAGE);
+    assertThat(message.className).isEqualTo("TestMessageConverter");
+    assertThat(message.fileName).isEqualTo("TestMessageConverter.java");
+    assertThat(message.messageName).isEqualTo("com.test.TestMessage");
+    assertThat(message.messageType).isEqualTo("com.test.proto.TestMessage");
+    assertThat(message.sizeBytes).isEqualTo(16);
+    assertThat(message.fields).hasSize(6);
+
+    MessageConverterGenerator.FieldContext intField = message.fields.get(0);
+    assertThat(intField.accessorName).isEqualTo("IntValue");
+    assertThat(intField.isInt).isTrue();
+    assertThat(intField.fromByte).isEqualTo(0);
+    assertThat(intField.toByte).isEqualTo(4);
+    assertThat(intField.sizeBytes).isEqualTo(4);
+    assertThat(intField.byteOrder).isEqualTo("overrideByteOrder ? bigEndian : false");
+
+    MessageConverterGenerator.FieldContext longField = message.fields.get(1);
+    assertThat(longField.accessorName).isEqualTo("LongValue2X");
+    assertThat(longField.isLong).isTrue();
+    assertThat(longField.byteOrder).isEqualTo("overrideByteOrder ? bigEndian : true");
+
+    MessageConverterGenerator.FieldContext enumField = message.fields.get(2);
+    assertThat(enumField.isEnum).isTrue();
+    assertThat(enumField.enumRangeError).isEqualTo("1 byte(s) not enough for TestEnum enum that has 256 max number");
+
+    assertThat(message.fields.get(3).isBoolean).isTrue();
+
+    MessageConverterGenerator.FieldContext messageField = message.fields.get(4);
+    assertThat(messageField.isMessage).isTrue();
+    assertThat(messageField.converterType).isEqualTo("com.test.proto.NestedMessageConverter");
+    assertThat(messageField.overrideByteOrder).isTrue();
+
+    MessageConverterGenerator.FieldContext bytesField = message.fields.get(5);
+    assertThat(bytesField.isByteString).isTrue();
+    assertThat(bytesField.fieldName).isEqualTo("bytes_value");
+
+    MessageConverterGenerator.FieldContext nestedField = messages.get(1).fields.get(0);
+    assertThat(nestedField.byteOrder).isEqualTo("bigEndian");
+    assertThat(nestedField.enumRangeError).isNull();
+  }
+
+  @Test
+  public void buildMessageContexts_nestedDeclaration() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        PluginProtos.CodeGeneratorRequest.newBuilder()
+            .addFileToGenerate(FILE_NAME)
+            .addProtoFile(
+                FILE.toBuilder()
+                    .clearMessageType()
+                    .addMessageType(
+                        DescriptorProtos.DescriptorProto.newBuilder()
+                            .setName("Outer")
+                            .addNestedType(NESTED_MESSAGE_TYPE)))
+            .build();
+    ImmutableList<MessageConverterGenerator.MessageContext> messages = generator.buildMessageContexts(request);
+    assertThat(messages).hasSize(1);
+    assertThat(messages.get(0).className).isEqualTo("OuterNestedMessageConverter");
+    assertThat(messages.get(0).messageType).isEqualTo("com.test.proto.Outer.NestedMessage");
+  }
+
+  @Test
+  public void buildMessageContexts_noFileToGenerate() throws Exception {
+    assertThat(generator.buildMessageContexts(REQUEST.toBuilder().clearFileToGenerate().build())).isEmpty();
+  }
+
+  @Test
+  public void buildMessageContexts_fieldWithoutAnnotation() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder().addField(FieldDescriptorProto.newBuilder().setName("other").setNumber(2)),
+        "Proto field other doesn't have com.blerpc.field_extension annotation");
+  }
+
+  @Test
+  public void buildMessageContexts_rangeOutOfMessage() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(0, field("value", FieldDescriptorProto.Type.TYPE_INT32, 0, 3, ByteOrder.DEFAULT)),
+        "Field value has to_bytes = 3 which is bigger than message bytes size = 2");
+  }
+
+  @Test
+  public void buildMessageContexts_rangesIntersect() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .addField(field("other", FieldDescriptorProto.Type.TYPE_BOOL, 1, 2, ByteOrder.DEFAULT)),
+        "Field value bytes range [0, 2] intersects with another field other bytes range [1, 2]");
+  }
+
+  @Test
+  public void buildMessageContexts_unsupportedSize() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setOptions(messageOptions(5, ByteOrder.DEFAULT))
+            .setField(0, field("value", FieldDescriptorProto.Type.TYPE_INT32, 0, 5, ByteOrder.DEFAULT)),
+        "Int32 field value has unsupported size 5. Only sizes in [1, 4] are supported.");
+  }
+
+  @Test
+  public void buildMessageContexts_unsupportedType() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(0, field("value", FieldDescriptorProto.Type.TYPE_STRING, 0, 2, ByteOrder.DEFAULT)),
+        "Unsupported field type: STRING, field name: value");
+  }
+
+  @Test
+  public void buildMessageContexts_floatFields() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        PluginProtos.CodeGeneratorRequest.newBuilder()
+            .addFileToGenerate(FILE_NAME)
+            .addProtoFile(
+                FILE.toBuilder()
+                    .clearMessageType()
+                    .addMessageType(
+                        DescriptorProtos.DescriptorProto.newBuilder()
+                            .setName(MESSAGE_NAME)
+                            .setOptions(messageOptions(12, ByteOrder.DEFAULT))
+                            .addField(field("half_value", FieldDescriptorProto.Type.TYPE_FLOAT, 0, 2, ByteOrder.DEFAULT))
+                            .addField(
+                                field("double_value", FieldDescriptorProto.Type.TYPE_DOUBLE, 2, 10, ByteOrder.DEFAULT))
+                            .addField(
+                                field(
+                                    "fixed_point_value",
+                                    FieldDescriptorProto.Type.TYPE_FLOAT,
+                                    FieldExtension.newBuilder()
+                                        .setFromByte(10)
+                                        .setToByte(12)
+                                        .setFloatEncoding(FloatEncoding.FIXED_POINT)
+                                        .setScale(0.01)
+                                        .setOffset(-40)
+                                        .build()))))
+            .build();
+    ImmutableList<MessageConverterGenerator.FieldContext> fields =
+        generator.buildMessageContexts(request).get(0).fields;
+
+    assertThat(fields.get(0).isFloat).isTrue();
+    assertThat(fields.get(0).encodeExpression)
+        .isEqualTo("com.blerpc.FloatEncodings.floatToFloat16(message.getHalfValue())");
+    assertThat(fields.get(0).decodeExpression)
+        .isEqualTo("com.blerpc.FloatEncodings.float16ToFloat((int) getLong(buffer, offset + 0, 2, bigEndian))");
+    assertThat(fields.get(1).encodeExpression).isEqualTo("Double.doubleToRawLongBits(message.getDoubleValue())");
+    assertThat(fields.get(1).decodeExpression)
+        .isEqualTo("Double.longBitsToDouble(getLong(buffer, offset + 2, 8, bigEndian))");
+    assertThat(fields.get(2).encodeExpression)
+        .isEqualTo(
+            "com.blerpc.FloatEncodings.toFixedPoint(message.getFixedPointValue(), 0.01, -40.0, 2, \"fixed_point_value\")");
+    assertThat(fields.get(2).decodeExpression)
+        .isEqualTo(
+            "(float) com.blerpc.FloatEncodings.fromFixedPoint(getLong(buffer, offset + 10, 2, bigEndian), 0.01, -40.0)");
+  }
+
+  @Test
+  public void buildMessageContexts_unsupportedFloatSize() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setOptions(messageOptions(3, ByteOrder.DEFAULT))
+            .setField(0, field("value", FieldDescriptorProto.Type.TYPE_DOUBLE, 0, 3, ByteOrder.DEFAULT)),
+        "Double field value has unsupported size 3. Only sizes 2, 4 and 8 are supported.");
+  }
+
+  @Test
+  public void buildMessageContexts_fixedPointWithoutScale() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(
+                0,
+                field(
+                    "value",
+                    FieldDescriptorProto.Type.TYPE_FLOAT,
+                    FieldExtension.newBuilder()
+                        .setFromByte(0)
+                        .setToByte(2)
+                        .setFloatEncoding(FloatEncoding.FIXED_POINT)
+                        .build())),
+        "Fixed-point field value must have a non-zero scale.");
+  }
+
+  @Test
+  public void buildMessageContexts_bitFields() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        PluginProtos.CodeGeneratorRequest.newBuilder()
+            .addFileToGenerate(FILE_NAME)
+            .addProtoFile(
+                FILE.toBuilder()
+                    .clearMessageType()
+                    .addMessageType(
+                        DescriptorProtos.DescriptorProto.newBuilder()
+                            .setName(MESSAGE_NAME)
+                            .setOptions(messageOptions(4, ByteOrder.DEFAULT))
+                            .addField(bitField("bool_value", FieldDescriptorProto.Type.TYPE_BOOL, 0, 1))
+                            .addField(
+                                bitField("enum_value", FieldDescriptorProto.Type.TYPE_ENUM, 1, 9)
+                                    .toBuilder()
+                                    .setTypeName("." + PROTO_PACKAGE + "." + ENUM_NAME))
+                            .addField(bitField("long_value", FieldDescriptorProto.Type.TYPE_INT64, 9, 20))
+                            .addField(field("int_value", FieldDescriptorProto.Type.TYPE_INT32, 3, 4, ByteOrder.DEFAULT))))
+            .build();
+    MessageConverterGenerator.MessageContext message = generator.buildMessageContexts(request).get(0);
+    ImmutableList<MessageConverterGenerator.FieldContext> fields = message.fields;
+
+    assertThat(message.hasBitFields).isTrue();
+    assertThat(fields.get(0).isBitField).isTrue();
+    assertThat(fields.get(0).isBoolean).isFalse();
+    assertThat(fields.get(0).encodeExpression).isEqualTo("message.getBoolValue() ? 1 : 0");
+    assertThat(fields.get(0).decodeExpression).isEqualTo("getBits(buffer, 8 * offset + 0, 1) != 0");
+    assertThat(fields.get(1).valueAccessorName).isEqualTo("EnumValueValue");
+    assertThat(fields.get(1).enumRangeError).isEqualTo("8 bit(s) not enough for TestEnum enum that has 256 max number");
+    assertThat(fields.get(1).fromByte).isEqualTo(0);
+    assertThat(fields.get(1).toByte).isEqualTo(2);
+    assertThat(fields.get(2).fromBit).isEqualTo(9);
+    assertThat(fields.get(2).sizeBits).isEqualTo(11);
+    assertThat(fields.get(2).fromByte).isEqualTo(1);
+    assertThat(fields.get(2).toByte).isEqualTo(3);
+    assertThat(fields.get(2).decodeExpression).isEqualTo("getBits(buffer, 8 * offset + 9, 11)");
+    assertThat(fields.get(3).isBitField).isFalse();
+  }
+
+  @Test
+  public void buildMessageContexts_bitsRangesIntersect() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(0, bitField("value", FieldDescriptorProto.Type.TYPE_INT32, 0, 9))
+            .addField(field("value_2", FieldDescriptorProto.Type.TYPE_INT32, 1, 2, ByteOrder.DEFAULT)),
+        "Field value bits range [0, 9] intersects with another field value_2 bits range [8, 16]");
+  }
+
+  @Test
+  public void buildMessageContexts_bitRangeOutOfMessage() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder().setField(0, bitField("value", FieldDescriptorProto.Type.TYPE_INT32, 10, 17)),
+        "Field value has to_bit = 17 which is bigger than message bits size = 16");
+  }
+
+  @Test
+  public void buildMessageContexts_unsupportedBitFieldSize() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder().setField(0, bitField("value", FieldDescriptorProto.Type.TYPE_BOOL, 0, 2)),
+        "Boolean bit field value has unsupported size 2. Only size 1 is supported.");
+  }
+
+  @Test
+  public void buildMessageContexts_unsupportedBitFieldType() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder().setField(0, bitField("value", FieldDescriptorProto.Type.TYPE_FLOAT, 0, 16)),
+        "Unsupported bit field type: FLOAT, field name: value");
+  }
+
+  @Test
+  public void buildMessageContexts_repeatedFields() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        PluginProtos.CodeGeneratorRequest.newBuilder()
+            .addFileToGenerate(FILE_NAME)
+            .addProtoFile(
+                FILE.toBuilder()
+                    .clearMessageType()
+                    .addMessageType(NESTED_MESSAGE_TYPE)
+                    .addMessageType(
+                        DescriptorProtos.DescriptorProto.newBuilder()
+                            .setName(MESSAGE_NAME)
+                            .setOptions(messageOptions(11, ByteOrder.DEFAULT))
+                            .addField(field("count", FieldDescriptorProto.Type.TYPE_INT32, 0, 1, ByteOrder.DEFAULT))
+                            .addField(
+                                repeatedField(
+                                        "nested_values",
+                                        FieldDescriptorProto.Type.TYPE_MESSAGE,
+                                        FieldExtension.newBuilder()
+                                            .setFromByte(1)
+                                            .setToByte(5)
+                                            .setElementSize(2)
+                                            .setCountField("count"))
+                                    .toBuilder()
+                                    .setTypeName("." + PROTO_PACKAGE + "." + NESTED_MESSAGE_NAME))
+                            .addField(
+                                repeatedField(
+                                        "enum_values",
+                                        FieldDescriptorProto.Type.TYPE_ENUM,
+                                        FieldExtension.newBuilder().setFromByte(5).setToByte(7).setElementSize(1))
+                                    .toBuilder()
+                                    .setTypeName("." + PROTO_PACKAGE + "." + ENUM_NAME))
+                            .addField(
+                                repeatedField(
+                                    "float_values",
+                                    FieldDescriptorProto.Type.TYPE_FLOAT,
+                                    FieldExtension.newBuilder().setFromByte(7).setToByte(11).setElementSize(2)))))
+            .build();
+    ImmutableList<MessageConverterGenerator.FieldContext> fields =
+        generator.buildMessageContexts(request).get(1).fields;
+
+    assertThat(fields.get(0).isRepeated).isFalse();
+    assertThat(fields.get(1).isRepeated).isTrue();
+    assertThat(fields.get(1).variableName).isEqualTo("nestedValues");
+    assertThat(fields.get(1).capacity).isEqualTo(2);
+    assertThat(fields.get(1).elementEncodeStatement)
+        .isEqualTo(
+            "com.test.proto.NestedMessageConverter.encode(message.getNestedValues(i), buffer, offset + 1 + 2 * i, "
+                + "bigEndian, false)");
+    assertThat(fields.get(1).elementDecodeExpression)
+        .isEqualTo("com.test.proto.NestedMessageConverter.decode(buffer, offset + 1 + 2 * i, limit, bigEndian, false)");
+    assertThat(fields.get(1).countExpression).isEqualTo("getLong(buffer, offset + 0, 1, bigEndian)");
+    assertThat(fields.get(1).countFieldToByte).isEqualTo(1);
+    assertThat(fields.get(2).valueAccessorName).isEqualTo("EnumValuesValue");
+    assertThat(fields.get(2).elementEncodeStatement)
+        .isEqualTo("putLong(buffer, offset + 5 + 1 * i, 1, message.getEnumValuesValue(i), bigEndian)");
+    assertThat(fields.get(2).enumRangeError).isEqualTo("1 byte(s) not enough for TestEnum enum that has 256 max number");
+    assertThat(fields.get(2).countExpression).isNull();
+    assertThat(fields.get(3).elementDecodeExpression)
+        .isEqualTo("com.blerpc.FloatEncodings.float16ToFloat((int) getLong(buffer, offset + 7 + 2 * i, 2, bigEndian))");
+  }
+
+  @Test
+  public void buildMessageContexts_repeatedFieldWithoutElementSize() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(
+                0,
+                repeatedField(
+                    "value",
+                    FieldDescriptorProto.Type.TYPE_INT32,
+                    FieldExtension.newBuilder().setFromByte(0).setToByte(2))),
+        "Repeated field value has element_size = 0 which must be bigger than zero");
+  }
+
+  @Test
+  public void buildMessageContexts_repeatedFieldWrongCountField() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(
+                0,
+                repeatedField(
+                    "value",
+                    FieldDescriptorProto.Type.TYPE_INT32,
+                    FieldExtension.newBuilder().setFromByte(0).setToByte(2).setElementSize(1).setCountField("count"))),
+        "Count field count of repeated field value must be an int32 or int64 field of message NestedMessage");
+  }
+
+  @Test
+  public void buildMessageContexts_repeatedByteString() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(
+                0,
+                repeatedField(
+                    "value",
+                    FieldDescriptorProto.Type.TYPE_BYTES,
+                    FieldExtension.newBuilder().setFromByte(0).setToByte(2).setElementSize(1))),
+        "Unsupported repeated field type: BYTE_STRING, field name: value");
+  }
+
+  @Test
+  public void buildMessageContexts_lengthPrefixedFields() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        REQUEST.toBuilder()
+            .setProtoFile(
+                0,
+                FILE.toBuilder()
+                    .clearMessageType()
+                    .addMessageType(
+                        NESTED_MESSAGE_TYPE.toBuilder()
+                            .setOptions(messageOptions(12, ByteOrder.DEFAULT))
+                            .addField(
+                                field(
+                                    "bytes_value",
+                                    FieldDescriptorProto.Type.TYPE_BYTES,
+                                    FieldExtension.newBuilder()
+                                        .setFromByte(2)
+                                        .setToByte(6)
+                                        .setLengthPrefixSize(1)
+                                        .build()))
+                            .addField(
+                                field(
+                                    "string_value",
+                                    FieldDescriptorProto.Type.TYPE_STRING,
+                                    FieldExtension.newBuilder()
+                                        .setFromByte(6)
+                                        .setToByte(12)
+                                        .setLengthPrefixSize(2)
+                                        .build()))))
+            .build();
+    MessageConverterGenerator.MessageContext message = generator.buildMessageContexts(request).get(0);
+
+    assertThat(message.fields.get(1).isLengthPrefixed).isTrue();
+    assertThat(message.fields.get(1).isByteString).isFalse();
+    assertThat(message.fields.get(1).valueFromByte).isEqualTo(3);
+    assertThat(message.fields.get(1).maxSize).isEqualTo(3);
+    assertThat(message.fields.get(1).valueBytes).isEqualTo("message.getBytesValue()");
+    assertThat(message.fields.get(2).isString).isTrue();
+    assertThat(message.fields.get(2).valueBytes).isEqualTo("message.getStringValueBytes()");
+    assertThat(message.serializedSize).isEqualTo("serializedSize((com.test.proto.NestedMessage) message)");
+    assertThat(message.trailingSizeExpression)
+        .isEqualTo("Math.min(8 + message.getStringValueBytes().size(), SIZE_BYTES)");
+    assertThat(generator.buildMessageContexts(REQUEST).get(0).trailingSizeExpression).isNull();
+  }
+
+  @Test
+  public void buildMessageContexts_wrongLengthPrefixedFields() throws Exception {
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(
+                0,
+                field(
+                    "value",
+                    FieldDescriptorProto.Type.TYPE_INT32,
+                    FieldExtension.newBuilder().setFromByte(0).setToByte(2).setLengthPrefixSize(1).build())),
+        "Field value has length_prefix_size but is not a singular bytes or string field");
+    assertError(
+        NESTED_MESSAGE_TYPE.toBuilder()
+            .setField(
+                0,
+                field(
+                    "value",
+                    FieldDescriptorProto.Type.TYPE_BYTES,
+                    FieldExtension.newBuilder().setFromByte(0).setToByte(2).setLengthPrefixSize(2).build())),
+        "Field value has bytes range size 2 which must be bigger than length_prefix_size = 2");
+  }
+
+  @Test
+  public void buildMessageContexts_nestedMessageSizeMismatch() throws Exception {
+    assertError(
+        MESSAGE_TYPE.toBuilder()
+            .setField(
+                4,
+                field("nested_value", FieldDescriptorProto.Type.TYPE_MESSAGE, 12, 13, ByteOrder.DEFAULT)
+                    .toBuilder()
+                    .setTypeName("." + PROTO_PACKAGE + "." + NESTED_MESSAGE_NAME)),
+        "Non-primitive message NestedMessage has declared size 1, which is not equal to the size of it's type 2.");
+  }
+
+  @Test
+  public void toAccessorName() throws Exception {
+    assertThat(MessageConverterGenerator.toAccessorName("value")).isEqualTo("Value");
+    assertThat(MessageConverterGenerator.toAccessorName("int_value")).isEqualTo("IntValue");
+    assertThat(MessageConverterGenerator.toAccessorName("value2x")).isEqualTo("Value2X");
+    assertThat(MessageConverterGenerator.toAccessorName("camelCase")).isEqualTo("CamelCase");
+  }
+
+  private void assertError(DescriptorProtos.DescriptorProto.Builder messageType, String message) {
+    DescriptorProtos.FileDescriptorProto.Builder file = FILE.toBuilder().clearMessageType().addMessageType(messageType);
+    if (!messageType.getName().equals(NESTED_MESSAGE_NAME)) {
+      file.addMessageType(NESTED_MESSAGE_TYPE);
+    }
+    PluginProtos.CodeGeneratorRequest request =
+        PluginProtos.CodeGeneratorRequest.newBuilder().addFileToGenerate(FILE_NAME).addProtoFile(file).build();
+    IllegalArgumentException exception =
+        assertThrows(IllegalArgumentException.class, () -> generator.buildMessageContexts(request));
+    assertThat(exception).hasMessageThat().isEqualTo(message);
+  }
+
+  private static DescriptorProtos.MessageOptions messageOptions(int sizeBytes, ByteOrder byteOrder) {
+    return DescriptorProtos.MessageOptions.newBuilder()
+        .setUnknownFields(
+            option(
+                Blerpc.MESSAGE_FIELD_NUMBER,
+                MessageExtension.newBuilder().setSizeBytes(sizeBytes).setByteOrder(byteOrder).build().toByteString()))
+        .build();
+  }
+
+  private static FieldDescriptorProto field(
+      String name, FieldDescriptorProto.Type type, int fromByte, int toByte, ByteOrder byteOrder) {
+    return field(
+        name,
+        type,
+        FieldExtension.newBuilder().setFromByte(fromByte).setToByte(toByte).setByteOrder(byteOrder).build());
+  }
+
+  private static FieldDescriptorProto field(
+      String name, FieldDescriptorProto.Type type, FieldExtension fieldExtension) {
+    return FieldDescriptorProto.newBuilder()
+        .setName(name)
+        .setType(type)
+        .setOptions(
+            DescriptorProtos.FieldOptions.newBuilder()
+                .setUnknownFields(option(Blerpc.FIELD_FIELD_NUMBER, fieldExtension.toByteString())))
+        .build();
+  }
+
+  private static FieldDescriptorProto bitField(String name, FieldDescriptorProto.Type type, int fromBit, int toBit) {
+    return field(name, type, FieldExtension.newBuilder().setFromBit(fromBit).setToBit(toBit).build());
+  }
+
+  private static FieldDescriptorProto repeatedField(
+      String name, FieldDescriptorProto.Type type, FieldExtension.Builder fieldExtension) {
+    return field(name, type, fieldExtension.build())
+        .toBuilder()
+        .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED)
+        .build();
+  }
+
+  private static UnknownFieldSet option(int fieldNumber, com.google.protobuf.ByteString value) {
+    return UnknownFieldSet.newBuilder()
+        .addField(fieldNumber, UnknownFieldSet.Field.newBuilder().addLengthDelimited(value).build())
+        .build();
+  }
+}
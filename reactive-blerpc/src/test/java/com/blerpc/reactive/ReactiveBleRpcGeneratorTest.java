@@ -4,6 +4,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.extensions.proto.ProtoTruth.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.blerpc.proto.BackpressureStrategy;
+import com.blerpc.proto.BleCharacteristicRule;
 import com.blerpc.proto.Blerpc;
 import com.google.common.collect.ImmutableList;
 import com.google.protobuf.DescriptorProtos;
@@ -408,11 +410,159 @@ public class ReactiveBleRpcGeneratorTest {
         .contains("BleRpc doesn't support client streaming to BLE device.");
   }
 
+  @Test
+  public void buildServiceContexts_backpressureBuffer() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_BUFFER)
+                .setBackpressureBufferSize(16)
+                .build());
+    ReactiveBleRpcGenerator.ServiceContext serviceContext = createServiceContext();
+    serviceContext.methods.get(1).isFlowable = true;
+    serviceContext.methods.get(1).bufferSize = "16";
+    assertEquals(generator.buildServiceContexts(request), serviceContext);
+  }
+
+  @Test
+  public void buildServiceContexts_backpressureBuffer_defaultSize() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_BUFFER)
+                .build());
+    ReactiveBleRpcGenerator.ServiceContext serviceContext = createServiceContext();
+    serviceContext.methods.get(1).isFlowable = true;
+    serviceContext.methods.get(1).bufferSize = "io.reactivex.Flowable.bufferSize()";
+    assertEquals(generator.buildServiceContexts(request), serviceContext);
+  }
+
+  @Test
+  public void buildServiceContexts_backpressureLatest() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_LATEST)
+                .build());
+    ReactiveBleRpcGenerator.ServiceContext serviceContext = createServiceContext();
+    serviceContext.methods.get(1).isFlowable = true;
+    serviceContext.methods.get(1).bufferSize = "1";
+    assertEquals(generator.buildServiceContexts(request), serviceContext);
+  }
+
+  @Test
+  public void buildServiceContexts_backpressureDrop() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_DROP)
+                .build());
+    ReactiveBleRpcGenerator.ServiceContext serviceContext = createServiceContext();
+    serviceContext.methods.get(1).isFlowable = true;
+    serviceContext.methods.get(1).isDropBackpressure = true;
+    assertEquals(generator.buildServiceContexts(request), serviceContext);
+  }
+
+  @Test
+  public void buildServiceContexts_backpressureNotStreamingMethod() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_DROP)
+                .build());
+    PluginProtos.CodeGeneratorRequest unaryRequest =
+        request
+            .toBuilder()
+            .setProtoFile(
+                0,
+                request
+                    .getProtoFile(0)
+                    .toBuilder()
+                    .setService(
+                        0,
+                        request
+                            .getProtoFile(0)
+                            .getService(0)
+                            .toBuilder()
+                            .setMethod(
+                                1,
+                                request
+                                    .getProtoFile(0)
+                                    .getService(0)
+                                    .getMethod(1)
+                                    .toBuilder()
+                                    .setServerStreaming(false))))
+            .build();
+    Exception exception =
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(unaryRequest));
+    assertThat(exception.getMessage())
+        .contains(
+            "Backpressure strategy BACKPRESSURE_DROP is set for method SubscribeValue, "
+                + "which is not a streaming method.");
+  }
+
+  @Test
+  public void buildServiceContexts_backpressureBufferSizeWithoutBuffer() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_DROP)
+                .setBackpressureBufferSize(16)
+                .build());
+    Exception exception =
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(request));
+    assertThat(exception.getMessage())
+        .contains(
+            "Backpressure buffer size is set for method SubscribeValue, "
+                + "which has backpressure strategy BACKPRESSURE_DROP.");
+  }
+
+  @Test
+  public void buildServiceContexts_backpressureNegativeBufferSize() throws Exception {
+    PluginProtos.CodeGeneratorRequest request =
+        createBackpressureRequest(
+            BleCharacteristicRule.newBuilder()
+                .setBackpressure(BackpressureStrategy.BACKPRESSURE_BUFFER)
+                .setBackpressureBufferSize(-1)
+                .build());
+    Exception exception =
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(request));
+    assertThat(exception.getMessage())
+        .contains("Backpressure buffer size of method SubscribeValue must not be negative, got -1.");
+  }
+
+  private PluginProtos.CodeGeneratorRequest createBackpressureRequest(BleCharacteristicRule rule) {
+    return PluginProtos.CodeGeneratorRequest.newBuilder()
+        .addFileToGenerate(FILE_NAME)
+        .addProtoFile(
+            FILE.toBuilder()
+                .setService(
+                    0,
+                    SERVICE
+                        .toBuilder()
+                        .setMethod(
+                            1,
+                            SUBSCRIBE_METHOD
+                                .toBuilder()
+                                .setOptions(
+                                    DescriptorProtos.MethodOptions.newBuilder()
+                                        .setUnknownFields(
+                                            UnknownFieldSet.newBuilder()
+                                                .addField(
+                                                    Blerpc.CHARACTERISTIC_FIELD_NUMBER,
+                                                    UnknownFieldSet.Field.newBuilder()
+                                                        .addLengthDelimited(rule.toByteString())
+                                                        .build())
+                                                .build())))))
+        .build();
+  }
+
   private ReactiveBleRpcGenerator.ServiceContext createServiceContext() {
     ReactiveBleRpcGenerator.ServiceContext serviceContext =
         new ReactiveBleRpcGenerator.ServiceContext();
     serviceContext.serviceName = SERVICE_NAME;
     serviceContext.className = RX_CLASS_PREFIX + SERVICE_NAME;
+    serviceContext.cacheFieldName = "rx" + SERVICE_NAME + "ByDevice";
     serviceContext.fileName = SERVICE_FILE_NAME;
     serviceContext.javaDoc = String.format(SERVICE_JAVADOC_TEMPLATE, SERVICE_JAVADOC);
     serviceContext.packageName = JAVA_PACKAGE;
@@ -457,6 +607,7 @@ public class ReactiveBleRpcGeneratorTest {
     assertThat(firstService.packageName).isEqualTo(secondService.packageName);
     assertThat(firstService.fileName).isEqualTo(secondService.fileName);
     assertThat(firstService.serviceName).isEqualTo(secondService.serviceName);
+    assertThat(firstService.cacheFieldName).isEqualTo(secondService.cacheFieldName);
     assertThat(firstService.javaDoc).isEqualTo(secondService.javaDoc);
     assertThat(firstService.deprecated).isEqualTo(secondService.deprecated);
     assertThat(firstService.methods.size()).isEqualTo(secondService.methods.size());
@@ -474,5 +625,8 @@ public class ReactiveBleRpcGeneratorTest {
     assertThat(firstMethod.javaDoc).isEqualTo(secondMethod.javaDoc);
     assertThat(firstMethod.isManyOutput).isEqualTo(secondMethod.isManyOutput);
     assertThat(firstMethod.deprecated).isEqualTo(secondMethod.deprecated);
+    assertThat(firstMethod.isFlowable).isEqualTo(secondMethod.isFlowable);
+    assertThat(firstMethod.isDropBackpressure).isEqualTo(secondMethod.isDropBackpressure);
+    assertThat(firstMethod.bufferSize).isEqualTo(secondMethod.bufferSize);
   }
 }
@@ -36,3 +36,12 @@ echo -e "${red_color}Generated proto file with enum is not equals to expected fi
 echo "$difflines"
 exit 1
 fi
+
+generated_float_message_file=swift-reactive-blerpc-test/tests/com/device/proto/FloatTestMessageExtension.swift
+expected_float_message_file=swift-reactive-blerpc-test/tests/outputs/test_expected_float_message_output
+difflines=$(diff "${generated_float_message_file}" "${expected_float_message_file}")
+if [ $? -ne 0 ]; then
+echo -e "${red_color}Generated proto file with float fields is not equals to expected file.${default_color}\n"
+echo "$difflines"
+exit 1
+fi
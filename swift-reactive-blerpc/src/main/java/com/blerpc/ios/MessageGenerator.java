@@ -3,6 +3,8 @@ package com.blerpc.ios;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.FieldExtension;
+import com.blerpc.proto.FloatEncoding;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.protobuf.DescriptorProtos.DescriptorProto;
@@ -24,10 +26,15 @@ public class MessageGenerator {
     private static final String TYPE_MESSAGE = "TYPE_MESSAGE";
     private static final String PROTO_TYPE_INT32 = "TYPE_INT32";
     private static final String PROTO_TYPE_BYTES = "TYPE_BYTES";
+    private static final String PROTO_TYPE_STRING = "TYPE_STRING";
     private static final String PROTO_TYPE_BOOL = "TYPE_BOOL";
+    private static final String PROTO_TYPE_FLOAT = "TYPE_FLOAT";
+    private static final String PROTO_TYPE_DOUBLE = "TYPE_DOUBLE";
     private static final String SWIFT_TYPE_INT32 = "ProtoType.int32";
     private static final String SWIFT_TYPE_BYTES = "ProtoType.byte";
     private static final String SWIFT_TYPE_BOOL = "ProtoType.bool";
+    private static final String SWIFT_TYPE_FLOAT = "ProtoType.float";
+    private static final String SWIFT_TYPE_DOUBLE = "ProtoType.double";
     private static final String SWIFT_TYPE_UNKNOWN = "ProtoType.unknown";
 
     /**
@@ -58,14 +65,16 @@ public class MessageGenerator {
         messageContext.messageName = messageType.getName();
         messageContext.className = messageContext.messageName + OUTPUT_CLASS_POSTFIX;
         messageContext.fileName = messageContext.className + OUTPUT_FILE_EXTENSION;
+        int sizeBytes = messageType.getOptions().getExtension(Blerpc.message).getSizeBytes();
         messageContext.fields = messageType.getFieldList().stream().map(fieldType ->
-                generateFieldsInformation(fieldType, protoFile)
+                generateFieldsInformation(fieldType, protoFile, sizeBytes)
         ).collect(toImmutableList());
         return messageContext;
     }
 
     private FieldContext generateFieldsInformation(FieldDescriptorProto field,
-                                                      FileDescriptorProto protoFile) {
+                                                      FileDescriptorProto protoFile,
+                                                      int messageSizeBytes) {
         FieldContext fieldContext = new FieldContext();
         fieldContext.name = field.getJsonName().replace(PROTO_ID_NAME, SWIFT_ID_NAME); // to conform output swift rules
         fieldContext.type = field.getType().toString();
@@ -89,13 +98,38 @@ public class MessageGenerator {
             case  PROTO_TYPE_BOOL:
                 fieldContext.swiftType = SWIFT_TYPE_BOOL;
                 break;
+            case PROTO_TYPE_FLOAT:
+                fieldContext.swiftType = SWIFT_TYPE_FLOAT;
+                break;
+            case PROTO_TYPE_DOUBLE:
+                fieldContext.swiftType = SWIFT_TYPE_DOUBLE;
+                break;
             default:
                 fieldContext.swiftType = SWIFT_TYPE_UNKNOWN;
                 break;
         }
 
-        fieldContext.toByte = field.getOptions().getExtension(Blerpc.field).getToByte();
-        fieldContext.fromByte = field.getOptions().getExtension(Blerpc.field).getFromByte();
+        FieldExtension fieldExtension = field.getOptions().getExtension(Blerpc.field);
+        fieldContext.toByte = fieldExtension.getToByte();
+        fieldContext.fromByte = fieldExtension.getFromByte();
+        // Fixed-point values are decoded and encoded with their scale and offset instead of by their type.
+        fieldContext.isFixedPoint = fieldContext.isPrimitiveType
+                && (fieldContext.type.equals(PROTO_TYPE_FLOAT) || fieldContext.type.equals(PROTO_TYPE_DOUBLE))
+                && fieldExtension.getFloatEncoding() == FloatEncoding.FIXED_POINT;
+        if (fieldContext.isFixedPoint) {
+            fieldContext.isPrimitiveType = false;
+            fieldContext.scale = fieldExtension.getScale();
+            fieldContext.offset = fieldExtension.getOffset();
+        }
+        // Length-prefixed values have a variable size, a trailing field ends the encoded message right after its value.
+        fieldContext.isLengthPrefixed = fieldExtension.getLengthPrefixSize() > 0
+                && (fieldContext.type.equals(PROTO_TYPE_BYTES) || fieldContext.type.equals(PROTO_TYPE_STRING));
+        if (fieldContext.isLengthPrefixed) {
+            fieldContext.isPrimitiveType = false;
+            fieldContext.isString = fieldContext.type.equals(PROTO_TYPE_STRING);
+            fieldContext.lengthPrefixSize = fieldExtension.getLengthPrefixSize();
+            fieldContext.isTrailing = fieldContext.toByte == messageSizeBytes;
+        }
         return fieldContext;
     }
 
@@ -124,5 +158,12 @@ public class MessageGenerator {
         public boolean isEnum;
         public boolean isProtoObject;
         public boolean isPrimitiveType;
+        public boolean isFixedPoint;
+        public double scale;
+        public double offset;
+        public boolean isLengthPrefixed;
+        public boolean isString;
+        public boolean isTrailing;
+        public int lengthPrefixSize;
     }
 }
@@ -4,6 +4,9 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.blerpc.proto.Blerpc;
+import com.blerpc.proto.FieldExtension;
+import com.blerpc.proto.FloatEncoding;
+import com.blerpc.proto.MessageExtension;
 import com.google.common.collect.ImmutableList;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.UnknownFieldSet;
@@ -32,8 +35,12 @@ public class MessageGeneratorTest {
     static final String METHOD_OUTPUT_TYPE_FULL_PATH = ".com.test.TestOutputValue";
     static final String MESSAGE_INT_NAME = "int_value";
     static final String MESSAGE_ENUM_NAME = "enum_value";
+    static final String MESSAGE_STRING_NAME = "string_value";
     static final String MESSAGE_FLOAT_NAME = "float_value";
+    static final String MESSAGE_FIXED_POINT_NAME = "fixed_point_value";
     static final String SWIFT_TYPE_INT32 = "ProtoType.int32";
+    static final String SWIFT_TYPE_FLOAT = "ProtoType.float";
+    static final String SWIFT_TYPE_DOUBLE = "ProtoType.double";
     private static final String SWIFT_TYPE_UNKNOWN = "ProtoType.unknown";
     static final String FILE_POSTFIX = "Extension";
     static final String FILE_EXTENSION = ".swift";
@@ -50,13 +57,40 @@ public class MessageGeneratorTest {
     static final DescriptorProtos.FieldDescriptorProto FIELD_ENUM = DescriptorProtos.FieldDescriptorProto.newBuilder()
             .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_ENUM)
             .setJsonName(MESSAGE_ENUM_NAME).setOptions(FIELD_OPTIONS).build();
+    static final DescriptorProtos.FieldDescriptorProto FIELD_STRING = DescriptorProtos.FieldDescriptorProto.newBuilder()
+            .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING)
+            .setJsonName(MESSAGE_STRING_NAME).setOptions(FIELD_OPTIONS).build();
     static final DescriptorProtos.FieldDescriptorProto FIELD_FLOAT = DescriptorProtos.FieldDescriptorProto.newBuilder()
             .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_FLOAT)
             .setJsonName(MESSAGE_FLOAT_NAME).setOptions(FIELD_OPTIONS).build();
+    static final DescriptorProtos.FieldDescriptorProto FIELD_FIXED_POINT =
+            DescriptorProtos.FieldDescriptorProto.newBuilder()
+                    .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_DOUBLE)
+                    .setJsonName(MESSAGE_FIXED_POINT_NAME)
+                    .setOptions(DescriptorProtos.FieldOptions.newBuilder()
+                            .setExtension(Blerpc.field, FieldExtension.newBuilder()
+                                    .setFromByte(4)
+                                    .setToByte(6)
+                                    .setFloatEncoding(FloatEncoding.FIXED_POINT)
+                                    .setScale(0.5)
+                                    .setOffset(-10)
+                                    .build()))
+                    .build();
+    static final DescriptorProtos.FieldDescriptorProto FIELD_LENGTH_PREFIXED_STRING =
+            DescriptorProtos.FieldDescriptorProto.newBuilder()
+                    .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING)
+                    .setJsonName(MESSAGE_STRING_NAME)
+                    .setOptions(DescriptorProtos.FieldOptions.newBuilder()
+                            .setExtension(Blerpc.field, FieldExtension.newBuilder()
+                                    .setFromByte(4)
+                                    .setToByte(16)
+                                    .setLengthPrefixSize(2)
+                                    .build()))
+                    .build();
     static final DescriptorProtos.DescriptorProto INPUT_MESSAGE_TYPE =
             DescriptorProtos.DescriptorProto.newBuilder()
                     .setName(METHOD_INPUT_TYPE).addField(0, FIELD_INT)
-                    .addField(1, FIELD_ENUM).addField(2, FIELD_FLOAT).build();
+                    .addField(1, FIELD_ENUM).addField(2, FIELD_STRING).build();
     static final DescriptorProtos.DescriptorProto OUTPUT_MESSAGE_TYPE =
             DescriptorProtos.DescriptorProto.newBuilder().setName(METHOD_OUTPUT_TYPE).build();
     static final DescriptorProtos.FileOptions FILE_OPTIONS =
@@ -176,6 +210,50 @@ public class MessageGeneratorTest {
         assertThat(enumField.swiftType).isEqualTo(SWIFT_TYPE_INT32);
     }
 
+    @Test
+    public void buildServiceContexts_FloatTypes() throws Exception {
+        PluginProtos.CodeGeneratorRequest request = REQUEST.toBuilder()
+                .setProtoFile(0, FILE.toBuilder()
+                        .setMessageType(0, INPUT_MESSAGE_TYPE.toBuilder()
+                                .clearField()
+                                .addField(FIELD_FLOAT)
+                                .addField(FIELD_FIXED_POINT)))
+                .build();
+        MessageGenerator.MessageContext message = generator.buildMessageContexts(request).findFirst().get();
+        MessageGenerator.FieldContext floatField = message.fields.get(0);
+        assertThat(floatField.swiftType).isEqualTo(SWIFT_TYPE_FLOAT);
+        assertThat(floatField.isPrimitiveType).isTrue();
+        assertThat(floatField.isFixedPoint).isFalse();
+        MessageGenerator.FieldContext fixedPointField = message.fields.get(1);
+        assertThat(fixedPointField.swiftType).isEqualTo(SWIFT_TYPE_DOUBLE);
+        assertThat(fixedPointField.isPrimitiveType).isFalse();
+        assertThat(fixedPointField.isFixedPoint).isTrue();
+        assertThat(fixedPointField.fromByte).isEqualTo(4);
+        assertThat(fixedPointField.toByte).isEqualTo(6);
+        assertThat(fixedPointField.scale).isEqualTo(0.5);
+        assertThat(fixedPointField.offset).isEqualTo(-10.0);
+    }
+
+    @Test
+    public void buildServiceContexts_LengthPrefixedTypes() throws Exception {
+        DescriptorProtos.DescriptorProto.Builder messageType = INPUT_MESSAGE_TYPE.toBuilder()
+                .clearField()
+                .addField(FIELD_LENGTH_PREFIXED_STRING);
+        messageType.getOptionsBuilder().setExtension(Blerpc.message, MessageExtension.newBuilder()
+                .setSizeBytes(16)
+                .build());
+        PluginProtos.CodeGeneratorRequest request = REQUEST.toBuilder()
+                .setProtoFile(0, FILE.toBuilder().setMessageType(0, messageType))
+                .build();
+        MessageGenerator.MessageContext message = generator.buildMessageContexts(request).findFirst().get();
+        MessageGenerator.FieldContext stringField = message.fields.get(0);
+        assertThat(stringField.isPrimitiveType).isFalse();
+        assertThat(stringField.isLengthPrefixed).isTrue();
+        assertThat(stringField.isString).isTrue();
+        assertThat(stringField.lengthPrefixSize).isEqualTo(2);
+        assertThat(stringField.isTrailing).isTrue();
+    }
+
     private MessageGenerator.MessageContext createMessageContext() {
         MessageGenerator.MessageContext messageContext =
                 new MessageGenerator.MessageContext();
@@ -199,8 +277,8 @@ public class MessageGeneratorTest {
         fieldEnum.isPrimitiveType = true;
 
         MessageGenerator.FieldContext unknownField = new MessageGenerator.FieldContext();
-        unknownField.name = MESSAGE_FLOAT_NAME;
-        unknownField.type = DescriptorProtos.FieldDescriptorProto.Type.TYPE_FLOAT.name();
+        unknownField.name = MESSAGE_STRING_NAME;
+        unknownField.type = DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING.name();
         unknownField.swiftType = SWIFT_TYPE_UNKNOWN;
         unknownField.isPrimitiveType = true;
 